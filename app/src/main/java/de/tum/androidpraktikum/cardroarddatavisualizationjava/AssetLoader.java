@@ -1,8 +1,10 @@
 package de.tum.androidpraktikum.cardroarddatavisualizationjava;
 
 import android.content.Context;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.opengl.ETC1;
 
 import static android.opengl.GLES20.*;
 import static android.opengl.GLUtils.*;
@@ -10,61 +12,48 @@ import static android.opengl.GLUtils.*;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.MipChain;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.TextureAtlas;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.TextureFile;
 
 public class AssetLoader {
     public static final String TAG = "AssetLoader";
 
-    public static final int VERTEX_SHADER = 0;
-    public static final int FRAGMENT_SHADER = 1;
-    public static final int LIGHT_VERTEX_SHADER = 2;
-    public static final int LIGHT_FRAGMENT_SHADER = 3;
-    public static final int SKYBOX_VERTEX_SHADER = 4;
-    public static final int SKYBOX_FRAGMENT_SHADER = 5;
+    /**
+     * Folder of the textures shipped in the assets as KTX files, named like the drawables they replace.
+     */
+    public static final String TEXTURE_ASSETS = "textures/";
 
     /**
-     * Retrieves a shader by a {@code shader} code.
+     * Retrieves a shader by its raw {@code resourceId}.
      *
-     * @param shader - int code of the shader to retrieve.
+     * @param appContext
+     * @param resourceId
      * @return shader code as a String.
      */
     @NonNull
-    public static String loadShader(final Context appContext, int shader) {
-        InputStream shaderInputStream = null;
-        // Initialize the input stream
-        switch (shader) {
-            case VERTEX_SHADER:
-                shaderInputStream = appContext.getResources().openRawResource(R.raw.vert);
-                break;
-            case FRAGMENT_SHADER:
-                shaderInputStream = appContext.getResources().openRawResource(R.raw.frag);
-                break;
-            case LIGHT_VERTEX_SHADER:
-                shaderInputStream = appContext.getResources().openRawResource(R.raw.light_vert);
-                break;
-            case LIGHT_FRAGMENT_SHADER:
-                shaderInputStream = appContext.getResources().openRawResource(R.raw.light_frag);
-                break;
-            case SKYBOX_VERTEX_SHADER:
-                shaderInputStream = appContext.getResources().openRawResource(R.raw.skybox_vert);
-                break;
-            case SKYBOX_FRAGMENT_SHADER:
-                shaderInputStream = appContext.getResources().openRawResource(R.raw.skybox_frag);
-                break;
-        }
-
-        StringBuilder shaderCode = null;
+    public static String loadShaderResource(final Context appContext, int resourceId) {
+        final StringBuilder shaderCode = new StringBuilder();
         try {
-            int bytesAvailable = shaderInputStream.available();
-            shaderCode = new StringBuilder(bytesAvailable);
-            int content;
-
-            while ((content = shaderInputStream.read()) != -1) {
-                shaderCode.append((char) content);
+            final Reader reader = new InputStreamReader(appContext.getResources().openRawResource(resourceId), "UTF-8");
+            try {
+                final char[] buffer = new char[4096];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    shaderCode.append(buffer, 0, read);
+                }
+            } finally {
+                reader.close();
             }
-
-            shaderInputStream.close();
         } catch (IOException e) {
             throw new RuntimeException("Error while reading the shader file!");
         }
@@ -80,36 +69,325 @@ public class AssetLoader {
      * @return
      */
     public static int[] loadTextures(final Context appContext, final int... resourceIds) {
-        // Generate texture/handle;
         final int[] textureHandle = new int[resourceIds.length];
-        glGenTextures(1, textureHandle, 0);
 
-        // Load the texture from resources.
+        for (int i = 0; i < resourceIds.length; i++) {
+            textureHandle[i] = uploadTexture(decodeBitmap(appContext, resourceIds[i]));
+        }
+
+        return textureHandle;
+    }
+
+    /**
+     * Decodes the bitmap specified by {@code resourceId}. Doesn't touch OpenGL, so it can be called from any thread.
+     *
+     * @param appContext
+     * @param resourceId
+     * @return the bitmap or null, if it couldn't be decoded.
+     */
+    public static Bitmap decodeBitmap(final Context appContext, final int resourceId) {
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inScaled = false; // By default, Android applies pre-scaling to bitmaps depending on the resolution of your device and which resource folder you placed the image in. We don’t want Android to scale our bitmap at all, so to be sure, we set inScaled to false.
 
-        Bitmap bitmap;
+        Bitmap bitmap = BitmapFactory.decodeResource(appContext.getResources(), resourceId, options);
+        if (bitmap == null) {
+            Log.w(TAG, "Resource ID " + resourceId + " could not be decoded.");
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Reads the size of the image specified by {@code resourceId} without decoding it.
+     *
+     * @param appContext
+     * @param resourceId
+     * @return width and height, 0 if the image couldn't be read.
+     */
+    public static int[] decodeBounds(final Context appContext, final int resourceId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inJustDecodeBounds = true;
+
+        BitmapFactory.decodeResource(appContext.getResources(), resourceId, options);
+        return new int[]{Math.max(0, options.outWidth), Math.max(0, options.outHeight)};
+    }
 
+    /**
+     * Lays out the textures specified by {@code resourceIds} in atlases. Only reads the sizes of the images.
+     *
+     * @param appContext
+     * @param maxSize     the largest width and height of an atlas
+     * @param resourceIds
+     * @return the layout
+     */
+    public static TextureAtlas packAtlas(final Context appContext, final int maxSize, final int... resourceIds) {
+        final int[] widths = new int[resourceIds.length];
+        final int[] heights = new int[resourceIds.length];
         for (int i = 0; i < resourceIds.length; i++) {
-            bitmap = BitmapFactory.decodeResource(appContext.getResources(), resourceIds[i], options);
+            final int[] bounds = decodeBounds(appContext, resourceIds[i]);
+            widths[i] = bounds[0];
+            heights[i] = bounds[1];
+        }
+        return TextureAtlas.pack(widths, heights, maxSize);
+    }
+
+    /**
+     * Loads the texture specified by {@code resourceId} with its mip chain. Prefers a KTX file shipped in the
+     * {@link #TEXTURE_ASSETS}, then the texture cache. Otherwise decodes the image, builds the mip chain on the CPU,
+     * compresses it and writes the cache for the next start. Doesn't touch OpenGL, so it can be called from any thread.
+     *
+     * @param appContext
+     * @param resourceId
+     * @param luminance     whether the image is single channel data (e.g. a heightmap), which is stored as luminance
+     *                      and never compressed
+     * @param etc1Supported whether opaque color textures may be ETC1 compressed
+     * @return the texture or null, if it couldn't be decoded.
+     */
+    public static TextureFile loadTextureFile(final Context appContext, final int resourceId, final boolean luminance,
+                                              final boolean etc1Supported) {
+        final String name = appContext.getResources().getResourceEntryName(resourceId);
+        TextureFile textureFile = findTextureFile(appContext, name, etc1Supported);
+        if (textureFile != null) {
+            return textureFile;
+        }
 
-            // Bind to texture in OpenGL. Binding to a texture tells OpenGL that subsequent OpenGL calls should affect this texture.
-            glBindTexture(GL_TEXTURE_2D, textureHandle[i]);
-            // Set filtering
-            // Texture value used for minification.
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-            // Texture value used for magnification.
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        final Bitmap bitmap = decodeBitmap(appContext, resourceId);
+        if (bitmap == null) {
+            return null;
+        }
+        textureFile = buildTextureFile(getPixels(bitmap), bitmap.getWidth(), bitmap.getHeight(), luminance, etc1Supported,
+                getSourceStamp(appContext));
+        bitmap.recycle();
+        cacheTextureFile(appContext, name, textureFile);
+        return textureFile;
+    }
 
-            // Load the bitmap into the bound texture.
-            texImage2D(GL_TEXTURE_2D, 0, bitmap, 0);
+    /**
+     * Loads an atlas of the textures specified by {@code resourceIds}, like
+     * {@link #loadTextureFile(Context, int, boolean, boolean)} does for a single texture. Only the images in the
+     * atlas are decoded, if it has to be built.
+     *
+     * @param appContext
+     * @param textureAtlas  the layout of the textures
+     * @param atlas         the number of the atlas
+     * @param resourceIds   the images in the order of the layout
+     * @param repeats       whether a texture repeats, i.e. the texels of its models leave [0; 1]
+     * @param etc1Supported whether opaque atlases may be ETC1 compressed
+     * @return the atlas or null, if an image couldn't be decoded.
+     */
+    public static TextureFile loadAtlasFile(final Context appContext, final TextureAtlas textureAtlas, final int atlas,
+                                            final int[] resourceIds, final boolean[] repeats, final boolean etc1Supported) {
+        final int width = textureAtlas.getWidth(atlas);
+        final int height = textureAtlas.getHeight(atlas);
+        final String name = String.format(Locale.US, "atlas%d_%dx%d", atlas, width, height);
+        TextureFile textureFile = findTextureFile(appContext, name, etc1Supported);
+        if (textureFile != null) {
+            return textureFile;
+        }
 
-            glBindTexture(GL_TEXTURE_2D, 0);
-            // Recycle the bitmap, since its data has been loaded into OpenGL.
+        final int[][] images = new int[resourceIds.length][];
+        for (int i = 0; i < resourceIds.length; i++) {
+            if (textureAtlas.getRegion(i).getAtlas() != atlas) {
+                continue;
+            }
+            final Bitmap bitmap = decodeBitmap(appContext, resourceIds[i]);
+            if (bitmap == null) {
+                return null;
+            }
+            images[i] = getPixels(bitmap);
             bitmap.recycle();
         }
 
-        return textureHandle;
+        textureFile = buildTextureFile(textureAtlas.compose(atlas, images, repeats), width, height, false, etc1Supported,
+                getSourceStamp(appContext));
+        cacheTextureFile(appContext, name, textureFile);
+        return textureFile;
+    }
+
+    /**
+     * Looks for the texture {@code name} in the {@link #TEXTURE_ASSETS}, then in the texture cache.
+     *
+     * @return the texture or null, if there's none, which can be uploaded.
+     */
+    private static TextureFile findTextureFile(Context appContext, String name, boolean etc1Supported) {
+        final String fileName = name + TextureFile.EXTENSION;
+        try {
+            InputStream inputStream = appContext.getAssets().open(TEXTURE_ASSETS + fileName);
+            try {
+                final TextureFile textureFile = TextureFile.read(inputStream);
+                if (isUsable(textureFile, etc1Supported)) {
+                    logTextureFile(name, textureFile, "asset");
+                    return textureFile;
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            // None shipped.
+        }
+
+        final File cacheFile = new File(appContext.getCacheDir(), fileName);
+        try {
+            final TextureFile textureFile = TextureFile.map(cacheFile, getSourceStamp(appContext));
+            if (isUsable(textureFile, etc1Supported)) {
+                logTextureFile(name, textureFile, "cache");
+                return textureFile;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error mapping the texture cache " + cacheFile + ". Falling back to the image.");
+        }
+        return null;
+    }
+
+    /**
+     * Writes the texture {@code name}, which has just been built, to the texture cache.
+     */
+    private static void cacheTextureFile(Context appContext, String name, TextureFile textureFile) {
+        logTextureFile(name, textureFile, "image");
+        final File cacheFile = new File(appContext.getCacheDir(), name + TextureFile.EXTENSION);
+        try {
+            textureFile.write(cacheFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing the texture cache " + cacheFile);
+        }
+    }
+
+    private static void logTextureFile(String name, TextureFile textureFile, String source) {
+        Log.i(TAG, String.format(Locale.US, "%s: %dx%d %s from the %s, %d levels%s, %d KB (%d KB as RGBA without mipmaps)",
+                name, textureFile.getWidth(0), textureFile.getHeight(0), textureFile.getFormatName(), source, textureFile.getLevels(),
+                textureFile.needsGeneratedMipmaps() ? " + generated" : "", textureFile.getGpuBytes() / 1024,
+                getRgbaBytes(textureFile) / 1024));
+    }
+
+    /**
+     * @return the pixels of the {@code bitmap} as ARGB, row by row.
+     */
+    private static int[] getPixels(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] argb = new int[width * height];
+        bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+        return argb;
+    }
+
+    /**
+     * @return whether the {@code textureFile} exists and can be uploaded.
+     */
+    private static boolean isUsable(TextureFile textureFile, boolean etc1Supported) {
+        return textureFile != null && (etc1Supported || !textureFile.isCompressed());
+    }
+
+    /**
+     * @return the size of the level 0 of the {@code textureFile} as RGBA in bytes, which is what uploading the
+     * decoded bitmap takes.
+     */
+    public static int getRgbaBytes(TextureFile textureFile) {
+        return textureFile.getWidth(0) * textureFile.getHeight(0) * 4;
+    }
+
+    /**
+     * Builds the texture and its mip chain from the ARGB pixels. Gray images and {@code luminance} data are stored as
+     * luminance, opaque ones as ETC1 (if supported) or RGB, the rest as RGBA.
+     */
+    private static TextureFile buildTextureFile(int[] argb, int width, int height, boolean luminance, boolean etc1Supported,
+                                                long sourceStamp) {
+        final int channels = luminance ? MipChain.LUMINANCE : MipChain.getChannels(argb);
+        final byte[] pixels = MipChain.toBytes(argb, channels);
+        // OpenGL ES 2.0 can only mipmap textures of a power of two.
+        final byte[][] levels = MipChain.isPowerOfTwo(width) && MipChain.isPowerOfTwo(height)
+                ? MipChain.build(pixels, width, height, channels)
+                : new byte[][]{pixels};
+
+        if (etc1Supported && channels == MipChain.RGB) {
+            final TextureFile textureFile = TextureFile.allocate(0, 0, TextureFile.GL_ETC1_RGB8_OES, width, height, levels.length, sourceStamp);
+            for (int level = 0; level < levels.length; level++) {
+                final int levelWidth = textureFile.getWidth(level);
+                final ByteBuffer input = ByteBuffer.allocateDirect(levels[level].length).order(ByteOrder.nativeOrder());
+                input.put(levels[level]).position(0);
+                ETC1.encodeImage(input, levelWidth, textureFile.getHeight(level), MipChain.RGB, levelWidth * MipChain.RGB,
+                        textureFile.getLevelData(level));
+            }
+            return textureFile;
+        }
+
+        final int glFormat = channels == MipChain.LUMINANCE ? GL_LUMINANCE : channels == MipChain.RGB ? GL_RGB : GL_RGBA;
+        final TextureFile textureFile = TextureFile.allocate(GL_UNSIGNED_BYTE, glFormat, glFormat, width, height, levels.length, sourceStamp);
+        for (int level = 0; level < levels.length; level++) {
+            textureFile.putLevel(level, levels[level]);
+        }
+        return textureFile;
+    }
+
+    /**
+     * Resources only change with an app update, so the time of the last update identifies the version of the
+     * resources. Used to tell stale caches.
+     */
+    public static long getSourceStamp(Context appContext) {
+        try {
+            return appContext.getPackageManager().getPackageInfo(appContext.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Uploads the {@code bitmap} into a new 2D texture and recycles the bitmap. Must be called on the GL thread.
+     *
+     * @param bitmap
+     * @return the texture handle or 0, if the upload failed.
+     */
+    public static int uploadTexture(Bitmap bitmap) {
+        if (bitmap == null) {
+            return 0;
+        }
+
+        // Generate texture/handle;
+        final int[] textureHandle = new int[1];
+        glGenTextures(1, textureHandle, 0);
+
+        // Bind to texture in OpenGL. Binding to a texture tells OpenGL that subsequent OpenGL calls should affect this texture.
+        glBindTexture(GL_TEXTURE_2D, textureHandle[0]);
+        // Mipmaps are generated on the GPU, if the size allows it.
+        final boolean mipmapped = MipChain.isPowerOfTwo(bitmap.getWidth()) && MipChain.isPowerOfTwo(bitmap.getHeight());
+        // Set filtering
+        // Texture value used for minification.
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, mipmapped ? GL_LINEAR_MIPMAP_LINEAR : GL_LINEAR);
+        // Texture value used for magnification.
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+
+        // Load the bitmap into the bound texture.
+        texImage2D(GL_TEXTURE_2D, 0, bitmap, 0);
+        if (mipmapped) {
+            glGenerateMipmap(GL_TEXTURE_2D);
+        }
+
+        glBindTexture(GL_TEXTURE_2D, 0);
+        // Recycle the bitmap, since its data has been loaded into OpenGL.
+        bitmap.recycle();
+
+        return textureHandle[0];
+    }
+
+    /**
+     * Creates a 1x1 white texture to be used until the real texture is loaded. Must be called on the GL thread.
+     *
+     * @return the texture handle.
+     */
+    public static int createPlaceholderTexture() {
+        final int[] textureHandle = new int[1];
+        glGenTextures(1, textureHandle, 0);
+
+        ByteBuffer white = ByteBuffer.allocateDirect(4);
+        white.put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF}).position(0);
+
+        glBindTexture(GL_TEXTURE_2D, textureHandle[0]);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, 1, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, white);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        return textureHandle[0];
     }
 
     /**
@@ -122,28 +400,36 @@ public class AssetLoader {
      * @return
      */
     public static int loadCubeMap(Context context, int ... cubeResources) {
+        final Bitmap[] cubeBitmaps = new Bitmap[6];
+        for (int i = 0; i < 6; i++) {
+            cubeBitmaps[i] = decodeBitmap(context, cubeResources[i]);
+        }
+
+        return uploadCubeMap(cubeBitmaps);
+    }
+
+    /**
+     * Uploads the given faces into a new cubemap texture and recycles the bitmaps. Must be called on the GL thread.
+     *
+     * @param cubeBitmaps the faces in this order: left, right, bottom, top, front, back.
+     * @return the texture handle or 0, if the upload failed.
+     */
+    public static int uploadCubeMap(Bitmap[] cubeBitmaps) {
+        for (Bitmap bitmap : cubeBitmaps) {
+            if (bitmap == null) {
+                recycle(cubeBitmaps);
+                return 0;
+            }
+        }
+
         final int[] textureObjectIds = new int[1];
         glGenTextures(1, textureObjectIds, 0);
 
         if (textureObjectIds[0] == 0) {
             Log.w(TAG, "Could not generate a new OpenGL texture object.");
+            recycle(cubeBitmaps);
             return 0;
         }
-        final BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inScaled = false;
-        final Bitmap[] cubeBitmaps = new Bitmap[6];
-        for (int i = 0; i < 6; i++) {
-            cubeBitmaps[i] =
-                    BitmapFactory.decodeResource(context.getResources(),
-                            cubeResources[i], options);
-
-            if (cubeBitmaps[i] == null) {
-                Log.w(TAG, "Resource ID " + cubeResources[i]
-                        + " could not be decoded.");
-                glDeleteTextures(1, textureObjectIds, 0);
-                return 0;
-            }
-        }
         // Linear filtering for minification and magnification
         glBindTexture(GL_TEXTURE_CUBE_MAP, textureObjectIds[0]);
 
@@ -158,12 +444,18 @@ public class AssetLoader {
 
         texImage2D(GL_TEXTURE_CUBE_MAP_NEGATIVE_Z, 0, cubeBitmaps[4], 0);
         texImage2D(GL_TEXTURE_CUBE_MAP_POSITIVE_Z, 0, cubeBitmaps[5], 0);
-        glBindTexture(GL_TEXTURE_2D, 0);
+        glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
 
-        for (Bitmap bitmap : cubeBitmaps) {
-            bitmap.recycle();
-        }
+        recycle(cubeBitmaps);
 
         return textureObjectIds[0];
     }
-}
\ No newline at end of file
+
+    private static void recycle(Bitmap[] bitmaps) {
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+}
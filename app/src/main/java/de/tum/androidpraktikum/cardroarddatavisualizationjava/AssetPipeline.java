@@ -0,0 +1,404 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.TextureAtlas;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.TextureFile;
+
+/**
+ * Loads the assets in the background. Meshes are parsed (or mapped from the mesh cache) and images are decoded in
+ * parallel on a worker pool. The ready CPU-side data is queued for the GL thread, which uploads a limited number of
+ * assets per frame in {@link #processUploads(int)}, so the renderer can start drawing (with placeholders) right away.
+ */
+public class AssetPipeline {
+    private static final String TAG = "AssetPipeline";
+
+    /**
+     * Called on the GL thread, once a model has been uploaded.
+     */
+    public interface ModelCallback {
+        void onModelLoaded(Model model);
+    }
+
+    /**
+     * Called on the GL thread, once a texture has been uploaded.
+     */
+    public interface TextureCallback {
+        void onTextureLoaded(int textureHandle);
+    }
+
+    /**
+     * Called on the GL thread, once an atlas has been uploaded.
+     */
+    public interface AtlasCallback {
+        void onAtlasLoaded(int atlas, int textureHandle);
+    }
+
+    /**
+     * Work, which has to be done on the GL thread.
+     */
+    private abstract static class Upload {
+        /**
+         * The generation the upload belongs to.
+         */
+        final int generation;
+
+        Upload(int generation) {
+            this.generation = generation;
+        }
+
+        abstract void upload();
+
+        /**
+         * Releases the CPU-side data of a stale upload.
+         */
+        void discard() {
+        }
+    }
+
+    private final Context appContext;
+    private final GLApi gl;
+    private final ExecutorService workers;
+    private final ConcurrentLinkedQueue<Upload> uploads = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Bumped on every {@link #reset()}. Uploads of the previous generations belong to a lost OpenGL context.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+    /**
+     * Whether the models are switched to the compact vertex layout, see {@link Model#quantizeVertices()}.
+     */
+    private volatile boolean quantizeVertices;
+    /**
+     * Whether the textures may be ETC1 compressed.
+     */
+    private volatile boolean etc1Supported;
+
+    // Startup measurements.
+    /**
+     * Assets requested, but not uploaded yet.
+     */
+    private final AtomicInteger pendingAssets = new AtomicInteger();
+    /**
+     * When the current batch of requests started.
+     */
+    private volatile long startTime;
+    /**
+     * Total time spent on the workers (parsing, decoding). This is roughly what loading everything in sequence on a
+     * single thread would take.
+     */
+    private final AtomicLong workerTime = new AtomicLong();
+    /**
+     * Total time spent on the GL thread uploading.
+     */
+    private long uploadTime;
+    /**
+     * Video memory of the uploaded 2D textures with their mip levels.
+     */
+    private long textureBytes;
+    /**
+     * Video memory the same textures would take as RGBA bitmaps without mipmaps.
+     */
+    private long rgbaTextureBytes;
+
+    public AssetPipeline(Context appContext, GLApi gl) {
+        this.appContext = appContext;
+        this.gl = gl;
+
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + "-" + count.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Drops all the pending uploads, e.g. because the OpenGL context they were meant for is gone. Must be called on
+     * the GL thread, before the assets are requested again.
+     */
+    public void reset() {
+        generation.incrementAndGet();
+        discardStaleUploads();
+
+        pendingAssets.set(0);
+        workerTime.set(0);
+        uploadTime = 0;
+        textureBytes = 0;
+        rgbaTextureBytes = 0;
+        startTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @param quantizeVertices whether the models loaded from now on use the compact vertex layout of
+     *                         {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.models.QuantizedVertices}
+     */
+    public void setQuantizeVertices(boolean quantizeVertices) {
+        this.quantizeVertices = quantizeVertices;
+    }
+
+    /**
+     * @param etc1Supported whether the textures loaded from now on may be ETC1 compressed
+     */
+    public void setEtc1Supported(boolean etc1Supported) {
+        this.etc1Supported = etc1Supported;
+    }
+
+    /**
+     * Loads the model specified by {@code resId} on a worker and uploads it on the GL thread.
+     *
+     * @param resId
+     * @param callback
+     */
+    public void loadModel(int resId, ModelCallback callback) {
+        loadModel(resId, 0, callback);
+    }
+
+    /**
+     * Loads the model specified by {@code resId} on a worker, replicates it for instanced drawing and uploads it on the
+     * GL thread.
+     *
+     * @param resId
+     * @param instances instances per draw, see {@link Model#prepareInstances(int)}. 0 to skip the replication.
+     * @param callback
+     */
+    public void loadModel(int resId, int instances, ModelCallback callback) {
+        loadModel(resId, instances, null, callback);
+    }
+
+    /**
+     * Loads the model specified by {@code resId} on a worker, maps its texels into the {@code region} of a texture
+     * atlas, replicates it for instanced drawing and uploads it on the GL thread.
+     *
+     * @param resId
+     * @param instances instances per draw, see {@link Model#prepareInstances(int)}. 0 to skip the replication.
+     * @param region    see {@link Model#mapTexels(TextureAtlas.Region)}. Null to keep the texels.
+     * @param callback
+     */
+    public void loadModel(final int resId, final int instances, final TextureAtlas.Region region, final ModelCallback callback) {
+        pendingAssets.incrementAndGet();
+        final int requestGeneration = generation.get();
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = SystemClock.elapsedRealtime();
+                final Model model = new Model(appContext, resId);
+                if (region != null) {
+                    model.mapTexels(region);
+                }
+                if (quantizeVertices) {
+                    model.quantizeVertices();
+                }
+                if (instances > 0) {
+                    model.prepareInstances(instances);
+                }
+                workerTime.addAndGet(SystemClock.elapsedRealtime() - start);
+
+                uploads.add(new Upload(requestGeneration) {
+                    @Override
+                    void upload() {
+                        model.upload(gl);
+                        callback.onModelLoaded(model);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads the color texture specified by {@code resId} with its mip chain on a worker and uploads it on the GL
+     * thread. See {@link AssetLoader#loadTextureFile(Context, int, boolean, boolean)}.
+     *
+     * @param resId
+     * @param callback
+     */
+    public void loadTexture(int resId, TextureCallback callback) {
+        loadTexture(resId, false, callback);
+    }
+
+    /**
+     * Loads the single channel data (e.g. a heightmap) specified by {@code resId} as a luminance texture with its mip
+     * chain on a worker and uploads it on the GL thread.
+     *
+     * @param resId
+     * @param callback
+     */
+    public void loadLuminanceTexture(int resId, TextureCallback callback) {
+        loadTexture(resId, true, callback);
+    }
+
+    private void loadTexture(final int resId, final boolean luminance, final TextureCallback callback) {
+        pendingAssets.incrementAndGet();
+        final int requestGeneration = generation.get();
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = SystemClock.elapsedRealtime();
+                final TextureFile textureFile = AssetLoader.loadTextureFile(appContext, resId, luminance, etc1Supported);
+                workerTime.addAndGet(SystemClock.elapsedRealtime() - start);
+
+                uploads.add(new Upload(requestGeneration) {
+                    @Override
+                    void upload() {
+                        if (textureFile == null) {
+                            callback.onTextureLoaded(0);
+                            return;
+                        }
+                        textureBytes += textureFile.getGpuBytes();
+                        rgbaTextureBytes += AssetLoader.getRgbaBytes(textureFile);
+                        callback.onTextureLoaded(textureFile.upload(gl));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads every atlas of the {@code textureAtlas} on a worker and uploads it on the GL thread. See
+     * {@link AssetLoader#loadAtlasFile(Context, TextureAtlas, int, int[], boolean[], boolean)}.
+     *
+     * @param textureAtlas the layout of the textures
+     * @param resIds       the images in the order of the layout
+     * @param repeats      whether a texture repeats, i.e. the texels of its models leave [0; 1]
+     * @param callback     called once per atlas
+     */
+    public void loadAtlases(final TextureAtlas textureAtlas, final int[] resIds, final boolean[] repeats, final AtlasCallback callback) {
+        for (int i = 0; i < textureAtlas.getAtlases(); i++) {
+            final int atlas = i;
+            pendingAssets.incrementAndGet();
+            final int requestGeneration = generation.get();
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final long start = SystemClock.elapsedRealtime();
+                    final TextureFile textureFile = AssetLoader.loadAtlasFile(appContext, textureAtlas, atlas, resIds, repeats, etc1Supported);
+                    workerTime.addAndGet(SystemClock.elapsedRealtime() - start);
+
+                    uploads.add(new Upload(requestGeneration) {
+                        @Override
+                        void upload() {
+                            if (textureFile == null) {
+                                callback.onAtlasLoaded(atlas, 0);
+                                return;
+                            }
+                            textureBytes += textureFile.getGpuBytes();
+                            rgbaTextureBytes += AssetLoader.getRgbaBytes(textureFile);
+                            callback.onAtlasLoaded(atlas, textureFile.upload(gl));
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Decodes the six faces of a cubemap in parallel and uploads them on the GL thread, once all of them are ready.
+     *
+     * @param callback
+     * @param cubeResources the faces in this order: left, right, bottom, top, front, back.
+     */
+    public void loadCubeMap(final TextureCallback callback, final int... cubeResources) {
+        pendingAssets.incrementAndGet();
+        final int requestGeneration = generation.get();
+        final Bitmap[] cubeBitmaps = new Bitmap[cubeResources.length];
+        final AtomicInteger remainingFaces = new AtomicInteger(cubeResources.length);
+
+        for (int i = 0; i < cubeResources.length; i++) {
+            final int face = i;
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final long start = SystemClock.elapsedRealtime();
+                    cubeBitmaps[face] = AssetLoader.decodeBitmap(appContext, cubeResources[face]);
+                    workerTime.addAndGet(SystemClock.elapsedRealtime() - start);
+
+                    // The last decoded face queues the upload. The atomic decrement publishes the other faces.
+                    if (remainingFaces.decrementAndGet() == 0) {
+                        uploads.add(new Upload(requestGeneration) {
+                            @Override
+                            void upload() {
+                                callback.onTextureLoaded(AssetLoader.uploadCubeMap(cubeBitmaps));
+                            }
+
+                            @Override
+                            void discard() {
+                                for (Bitmap bitmap : cubeBitmaps) {
+                                    if (bitmap != null) {
+                                        bitmap.recycle();
+                                    }
+                                }
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Uploads at most {@code maxUploads} of the ready assets. Must be called on the GL thread, once per frame.
+     *
+     * @param maxUploads
+     */
+    public void processUploads(int maxUploads) {
+        for (int i = 0; i < maxUploads; i++) {
+            Upload upload = uploads.poll();
+            if (upload == null) {
+                return;
+            }
+
+            if (upload.generation != generation.get()) {
+                upload.discard();
+                continue;
+            }
+
+            final long start = SystemClock.elapsedRealtime();
+            upload.upload();
+            uploadTime += SystemClock.elapsedRealtime() - start;
+
+            if (pendingAssets.decrementAndGet() == 0) {
+                Log.i(TAG, String.format(Locale.US,
+                        "All assets ready after %d ms wall-clock. Loading them in sequence would take about %d ms (%d ms decoding and parsing, %d ms uploading).",
+                        SystemClock.elapsedRealtime() - startTime, workerTime.get() + uploadTime, workerTime.get(), uploadTime));
+                Log.i(TAG, String.format(Locale.US,
+                        "The textures take %d KB with their mipmaps, %d KB as RGBA bitmaps without mipmaps.",
+                        textureBytes / 1024, rgbaTextureBytes / 1024));
+            }
+        }
+    }
+
+    /**
+     * Stops the workers.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+        generation.incrementAndGet();
+        discardStaleUploads();
+    }
+
+    private void discardStaleUploads() {
+        Upload upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.discard();
+        }
+    }
+}
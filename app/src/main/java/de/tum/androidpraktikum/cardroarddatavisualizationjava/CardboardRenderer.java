@@ -1,7 +1,8 @@
 package de.tum.androidpraktikum.cardroarddatavisualizationjava;
 
+import android.content.Context;
 import android.opengl.GLES20;
-import android.opengl.Matrix;
+import android.opengl.GLES30;
 import android.os.SystemClock;
 import android.util.Log;
 import android.view.Gravity;
@@ -13,16 +14,33 @@ import com.google.vr.sdk.base.GvrView;
 import com.google.vr.sdk.base.HeadTransform;
 import com.google.vr.sdk.base.Viewport;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Locale;
 
 import javax.microedition.khronos.egl.EGLConfig;
 
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.AndroidGL;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLStateCache;
 import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Scene;
 import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Skybox;
-import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Unit;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.SnapshotExchange;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.render.Matrices;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.render.SceneRenderer;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.InstancedModelShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ModelShaderVariants;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.PointShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ProgramCache;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ShaderLibrary;
 import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.SkyboxShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.Colormap;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.ColormapTexture;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.TextureAtlas;
 
 /**
  * This class implements our custom renderer. Note that the GL10 parameter passed in is unused for OpenGL ES 2.0
@@ -31,64 +49,57 @@ import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.SkyboxShad
 public class CardboardRenderer implements GvrView.StereoRenderer {
     private static final String TAG = "CardboardRenderer";
     /**
-     * Determines the number of interpolated colors (for the fill level) to be shown between the two consequently fetched colors.
+     * The asset describing the scene.
      */
-    public static final int COLOR_STEPS_PER_INTERVAL = 10;
-    /**
-     * The current step in interpolating the color [1, COLOR_STEPS_PER_INTERVAL].
-     */
-    private int[] stepNum = new int[NUM_OF_UNITS];
-    /**
-     * The new color retrieved per model.
-     */
-    private float[][] newColor = new float[NUM_OF_UNITS][4];
-
-    /**
-     * The color before the latest retrieval per model.
-     */
-    private float[][] currColor = new float[NUM_OF_UNITS][4];
+    public static final String SCENE_FILE = "scene.json";
     private final MainActivity mainActivity;
 
     /**
      * Shows the model data.
      */
     private Toast toast;
-
-    /**
-     * Number of brewery units to render. Does not necessarily corresponds to the number of the 3D breweryModels.
-     */
-    public static final int NUM_OF_UNITS = 6;
-
     /**
-     * Storage for brewery model data.
+     * Milliseconds, after which the unchanged info is shown again, less than a Toast of {@link Toast#LENGTH_SHORT} lasts.
      */
-    private Unit[] breweryModelsData = new Unit[NUM_OF_UNITS];
+    private static final long INFO_REFRESH_MILLIS = 1500;
 
     /**
      * Determines whether to show the model info or not.
      */
     private boolean showInfo = false;
 
-    {
-        for (int i = 0; i < NUM_OF_UNITS; i++) {
-            breweryModelsData[i] = new Unit();
-            stepNum[i] = 1;
-        }
-    }
+    private Skybox skybox;
+
 
     /**
-     * Storage for brewery breweryModels.
+     * Hands the data of the units from the network threads to the GL thread.
      */
-    private Model[] breweryModels = new Model[3];
+    private final SnapshotExchange snapshots = new SnapshotExchange(16);
+
+    // Scratch storage of showInfo().
+    private final float[] headView = new float[16];
     /**
-     * Storage for the floor model.
+     * The unit, which the info was shown of, and the version of the data it was taken from.
      */
-    private Model floorModel;
-    private Skybox skybox;
-
-
-    // Center of screen to be re-projected in model space.
-    private float[] center = new float[4];
+    private int observedUnitNum = -1;
+    private int observedDataVersion = -1;
+    private long infoShownMillis;
+    /**
+     * The data of the unit, which the user observes. Read by {@link #showInfoRunnable}, so taken on the GL thread, which
+     * updates the units.
+     */
+    private volatile String observedUnitInfo;
+    /**
+     * Shows the info Toast with the {@link #observedUnitInfo}.
+     */
+    private final Runnable showInfoRunnable = new Runnable() {
+        @Override
+        public void run() {
+            toast.setText(observedUnitInfo);
+            toast.setGravity(Gravity.LEFT, 0, 0);
+            toast.show();
+        }
+    };
 
     /**
      * Near clipping plane.
@@ -100,97 +111,79 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
     private float FAR = 40.0f;
 
     /**
-     * Store the model matrix. This matrix is used to move breweryModels from object space (where each model can be thought
-     * of being located at the center of the universe) to world space.
-     */
-    private float[][] modelMatrix = new float[NUM_OF_UNITS][16];
-    /**
-     * Store the view matrix. This can be thought of as our camera. This matrix transforms world space to eye space;
-     * it positions things relative to our eye.
+     * Animates and draws the units, the floor and the walls.
      */
-    private float[] mViewMatrix = new float[16];
+    private final SceneRenderer sceneRenderer;
     /**
-     * Allocate storage for the final combined matrix. This will be passed into the shader program.
+     * The brewery models loaded so far by their names.
      */
-    private float[] mvpMatrix = new float[16];
+    private final HashMap<String, Model> breweryModels = new HashMap<>();
     /**
-     * Stores a copy of the model matrix specifically for the light position.
+     * Allocate storage for the skybox view/projection matrix.
      */
-    private float[] mLightModelMatrix = new float[16];
-
-    //Store our model data in a float buffer.
-    //TODO: add description
-    private final FloatBuffer[] breweryModelsBuffers = new FloatBuffer[9];
-    private final FloatBuffer[] floorModelBuffers = new FloatBuffer[3];
+    private final float[] viewProjectionMatrix = new float[16];
 
     /**
-     * This will be used to pass in the transformation matrix.
+     * Handle to the heightmap texture data.
      */
-    private int mvpMatrixHandle;
+    private int floorTilesHeightmapDataHandle;
     /**
-     * This will be used to pass in the modelview matrix.
+     * All the OpenGL calls of the models go through here. Drops the redundant state changes.
      */
-    private int mvMatrixHandle;
-
+    private final GLStateCache gl = new GLStateCache(new AndroidGL());
     /**
-     * Handle to the texture data.
+     * How many OpenGL calls a frame may issue, before a warning is logged.
      */
-    private int floorTilesTextureDataHandle;
+    private static final int GL_CALL_BUDGET = 500;
+
     /**
-     * Handle to the heightmap texture data.
+     * Loads the models and textures in the background.
      */
-    private int floorTilesHeightmapDataHandle;
+    private final AssetPipeline assetPipeline;
     /**
-     * Handle to the texture data of brewery breweryModels.
+     * How many assets may be uploaded per frame.
      */
-    private int breweryModelsTextureDataHandle;
+    private static final int MAX_UPLOADS_PER_FRAME = 2;
     /**
-     * This will be used to pass in the texture itself.
+     * Whether the models use the compact vertex layout. Halves the vertex memory and bandwidth, which is what limits
+     * low-end phones.
      */
-    private int textureUniformHandle;
-
-    private SkyboxShaderProgram skyboxShaderProgram;
-    private int cubemapTextureDataHandle;
-    // Uniforms.
-    private int uMatrixLocation;
-    private int uTextureUnitLocation;
-    // Atributes.
-    private int aPostionLocation;
-
+    private static final boolean QUANTIZE_VERTICES = true;
     /**
-     * This will be used to pass in the light position.
+     * Whether the floor, the walls and the units share texture atlases instead of binding a texture each. With a
+     * single atlas, all of them are drawn with one texture bound.
      */
-    private int lightUniformPosHandle;
+    private static final boolean USE_TEXTURE_ATLAS = true;
     /**
-     * This will be used to pass in the highest Y coordinate of the model.
+     * The textures packed into the atlases: the floor tiles and the units.
      */
-    private int highestYUniformHandle;
+    private static final int[] ATLAS_TEXTURES = {R.drawable.floor_tiles_texture, R.drawable.brewery_models_texture};
     /**
-     * This will be used to pass in the the lowest Y coordinate of the model.
+     * The floor tiles repeat, the texels of the units stay in [0; 1].
      */
-    private int lowestYUniformHandle;
-
+    private static final boolean[] ATLAS_REPEATS = {true, false};
+    private static final int FLOOR_ATLAS_TEXTURE = 0;
+    private static final int UNITS_ATLAS_TEXTURE = 1;
     /**
-     * This will be used to pass in the fill level of the {@link Unit}.
+     * The colormaps the units can be colored with, one row of a texture each.
      */
-    private int fillLevel;
-
+    private static final ColormapTexture COLORMAPS = new ColormapTexture(Colormap.BLUE_YELLOW_RED, Colormap.VIRIDIS,
+            Colormap.INFERNO, Colormap.COOL_WARM);
     /**
-     * This will be used to pass in texture per-vertex coordinates.
+     * The colormap the units are colored with. The temperature scale they always had.
      */
-    private int texCoordinateHandle;
+    private static final Colormap COLORMAP = Colormap.BLUE_YELLOW_RED;
     /**
-     * This will be used to pass in model position information.
+     * The layout of the {@link #ATLAS_TEXTURES}, null if {@link #USE_TEXTURE_ATLAS} is off.
      */
-    private int positionHandle;
+    private TextureAtlas textureAtlas;
     /**
-     * This will be used to pass in model color information.
+     * Whether 32-bit indices are supported.
      */
-    private int colorHandle;
-    /**
-     * This will be used to pass in model normal information.
-     */
-    private int normalHandle;
+    private boolean supportsUintIndices;
+
+    private SkyboxShaderProgram skyboxShaderProgram;
+    private int cubemapTextureDataHandle;
 
     /**
      * How many bytes per float.
@@ -215,33 +208,26 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
     private final int textureDataSize = 2;
 
     /**
-     * Used to hold a light centered on the origin in model space. We need a 4th coordinate so we can get translations to work when
-     * we multiply this by our transformation matrices.
+     * The shader sources, read once and kept across context losses.
      */
-    private final float[] mLightPosInModelSpace = new float[]{0.0f, 0.0f, 0.0f, 1.0f};
-
+    private final ShaderLibrary shaderLibrary;
     /**
-     * Used to hold the current position of the light in world space (after transformation via model matrix).
+     * The programs of the units, which aren't instanced, the floor and the walls.
      */
-    private final float[] mLightPosInWorldSpace = new float[4];
-
+    private ModelShaderVariants modelShaderVariants;
     /**
-     * Used to hold the transformed position of the light in eye space (after transformation via modelview matrix)
+     * Our light point program.
      */
-    private final float[] mLightPosInEyeSpace = new float[4];
+    private PointShaderProgram pointShaderProgram;
 
     /**
-     * This is a handle to our per-vertex cube shading program.
-     */
-    private int perVertexProgramHandle;
-    /**
-     * This is a handle to our light point program.
+     * Frames drawn since the last stats log.
      */
-    private int pointProgramHandle;
+    private int framesSinceStatsLog;
     /**
-     * This is a handle to our skybox program.
+     * How often (in frames) to log the uniform upload and GL call counts.
      */
-    private int skyboxProgramHandle;
+    private static final int STATS_LOG_INTERVAL = 600;
 
     /**
      * Initialize the model data.
@@ -249,24 +235,67 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
     public CardboardRenderer(final MainActivity mainActivity) {
         // Store the application context for shader retrieval.
         this.mainActivity = mainActivity;
+        shaderLibrary = new ShaderLibrary(mainActivity);
         // The toast to show model data.
         toast = Toast.makeText(this.mainActivity, "", Toast.LENGTH_SHORT);
 
-        // Initialize 3D breweryModels.
-        // Brewery breweryModels.
-        breweryModels[0] = new Model(mainActivity, R.raw.aging_vessel);
-        breweryModels[1] = new Model(mainActivity, R.raw.brewkettle);
-        breweryModels[2] = new Model(mainActivity, R.raw.bright_beer_vessel);
-        // Floor.
-        floorModel = new Model(mainActivity, R.raw.floor);
+        // The scene logic doesn't depend on Android, so it's allocated here once.
+        sceneRenderer = new SceneRenderer(gl, FAR);
+        sceneRenderer.setScene(loadScene(mainActivity));
+
+        // The models and textures are loaded in the background, once the surface is created.
+        assetPipeline = new AssetPipeline(mainActivity, gl);
+        assetPipeline.setQuantizeVertices(QUANTIZE_VERTICES);
         // Skybox.
         skybox = new Skybox();
+    }
 
-        // Fill brewery model's buffers.
-        fillBuffers(breweryModelsBuffers, breweryModels);
+    /**
+     * Loads the scene description from the {@link #SCENE_FILE} asset.
+     */
+    private static Scene loadScene(Context context) {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(context.getAssets().open(SCENE_FILE), "UTF-8");
+            final Scene scene = Scene.parse(reader);
+            Log.i(TAG, "Loaded a scene of " + scene.size() + " units and " + scene.getMeshTypeCount() + " meshes.");
+            return scene;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading the scene description " + SCENE_FILE, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Error closing the scene description.");
+                }
+            }
+        }
+    }
 
-        // Fill the floor model's buffers.
-        fillBuffers(floorModelBuffers, floorModel);
+    /**
+     * Program binaries are part of OpenGL ES 3.0. The context is created for 2.0, but most drivers hand out a 3.x one.
+     * The binaries are keyed by the renderer and the driver version.
+     */
+    private ProgramCache createProgramCache() {
+        final String version = GLES20.glGetString(GLES20.GL_VERSION);
+        final int[] binaryFormats = new int[1];
+        if (version != null && version.startsWith("OpenGL ES 3")) {
+            GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, binaryFormats, 0);
+        }
+        return new ProgramCache(new File(mainActivity.getCacheDir(), ProgramCache.DIRECTORY),
+                GLES20.glGetString(GLES20.GL_RENDERER) + "; " + version, binaryFormats[0] > 0);
+    }
+
+    /**
+     * Replaces the scene, e.g. with a bigger one. Loads the models of the new mesh types. Must be called on the GL
+     * thread (see {@link GvrView#queueEvent(Runnable)}).
+     *
+     * @param scene
+     */
+    public void setScene(Scene scene) {
+        sceneRenderer.setScene(scene);
+        requestBreweryModels();
     }
 
     @Override
@@ -276,68 +305,172 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
         GLES20.glClearColor(0.2f, 0.2f, 0.2f, 1.0f);
 
 
+        // A new context starts with the default state.
+        gl.invalidate();
+
         // Use culling to remove back faces.
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
+        gl.glEnable(GLES20.GL_CULL_FACE);
 
         // Enable depth testing
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        gl.glEnable(GLES20.GL_DEPTH_TEST);
 
-        // Position the eye in front of the origin.
-        final float eyeX = 0.0f;
-        final float eyeY = 0.0f;
-        final float eyeZ = -0.5f;
+        // Linked programs are kept on disk, so that only the first start after an update compiles the shaders.
+        final ProgramCache programCache = createProgramCache();
 
-        // We are looking toward the distance.
-        final float lookX = 0.0f;
-        final float lookY = 0.0f;
-        final float lookZ = -5.0f;
+        // The uniforms and attributes are looked up once per program. The variants of the model program are created,
+        // when the first item needs them.
+        modelShaderVariants = new ModelShaderVariants(shaderLibrary, gl, programCache);
+        sceneRenderer.setModelShaderVariants(modelShaderVariants);
+        // Draws the units in batches per model.
+        sceneRenderer.setInstancedModelShaderProgram(new InstancedModelShaderProgram(shaderLibrary, gl, programCache));
 
-        // Set our up vector. This is where our head would be pointing were we holding the camera.
-        final float upX = 0.0f;
-        final float upY = 1.0f;
-        final float upZ = 0.0f;
+        // Define a simple shader program for our point.
+        pointShaderProgram = new PointShaderProgram(shaderLibrary, gl, programCache);
 
-        // Set the view matrix. This matrix can be said to represent the camera position.
-        // NOTE: In OpenGL 1, a ModelView matrix is used, which is a combination of a model and
-        // view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
-        Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
+        // Skybox shader.
+        skyboxShaderProgram = new SkyboxShaderProgram(shaderLibrary, gl, programCache);
+        skybox = new Skybox();
+        Log.i(TAG, String.format(Locale.US, "Programs: %d compiled in %.1f ms, %d loaded from the cache in %.1f ms, %d cached binaries rejected%s",
+                programCache.getCompiledPrograms(), programCache.getCompileNanos() / 1e6, programCache.getLoadedPrograms(),
+                programCache.getLoadNanos() / 1e6, programCache.getRejectedBinaries(),
+                programCache.areBinariesSupported() ? "" : " (program binaries not supported)"));
+
+        // 32-bit indices are an extension in OpenGL ES 2.0.
+        final String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        supportsUintIndices = extensions != null && extensions.contains("GL_OES_element_index_uint");
+        // ETC1 is part of nearly every OpenGL ES 2.0 driver, but still an extension.
+        assetPipeline.setEtc1Supported(extensions != null && extensions.contains("GL_OES_compressed_ETC1_RGB8_texture"));
+        if (USE_TEXTURE_ATLAS) {
+            final int[] maxTextureSize = new int[1];
+            GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, maxTextureSize, 0);
+            textureAtlas = AssetLoader.packAtlas(mainActivity, Integer.highestOneBit(maxTextureSize[0]), ATLAS_TEXTURES);
+        }
 
-        final String vertexShader = AssetLoader.loadShader(mainActivity, AssetLoader.VERTEX_SHADER);
-        final String fragmentShader = AssetLoader.loadShader(mainActivity, AssetLoader.FRAGMENT_SHADER);
-        final int vertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-        final int fragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
+        // Draw with placeholders until the assets are loaded.
+        final int placeholderTexture = AssetLoader.createPlaceholderTexture();
+        sceneRenderer.setFloorTexture(placeholderTexture);
+        floorTilesHeightmapDataHandle = placeholderTexture;
+        sceneRenderer.setBreweryModelsTexture(placeholderTexture);
+        cubemapTextureDataHandle = 0;
+        // The colormaps are baked on the CPU, so they're there right away.
+        sceneRenderer.setColormap(COLORMAPS.upload(gl), COLORMAPS.getRow(COLORMAP));
+        sceneRenderer.reset();
+        breweryModels.clear();
+
+        // (Re-)load all the assets. After a context loss, the models are re-mapped from the mesh cache.
+        assetPipeline.reset();
+        requestAssets();
+    }
 
-        perVertexProgramHandle = createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle,
-                new String[]{"a_Position", "a_Color", "a_Normal", "a_TexCoordinate"});
+    /**
+     * Requests the models and textures from the {@link AssetPipeline}. They are stored, as soon as they are uploaded.
+     */
+    private void requestAssets() {
+        // Brewery breweryModels.
+        requestBreweryModels();
+        // Floor.
+        assetPipeline.loadModel(R.raw.floor, 0, getAtlasRegion(FLOOR_ATLAS_TEXTURE), new AssetPipeline.ModelCallback() {
+            @Override
+            public void onModelLoaded(Model model) {
+                sceneRenderer.setFloorModel(checkIndexType(model));
+            }
+        });
 
-        // Define a simple shader program for our point.
-        final String pointVertexShader = AssetLoader.loadShader(mainActivity, AssetLoader.LIGHT_VERTEX_SHADER);
-        final String pointFragmentShader = AssetLoader.loadShader(mainActivity, AssetLoader.LIGHT_FRAGMENT_SHADER);
-        final int pointVertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, pointVertexShader);
-        final int pointFragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, pointFragmentShader);
+        // Textures.
+        if (textureAtlas != null) {
+            assetPipeline.loadAtlases(textureAtlas, ATLAS_TEXTURES, ATLAS_REPEATS, new AssetPipeline.AtlasCallback() {
+                @Override
+                public void onAtlasLoaded(int atlas, int textureHandle) {
+                    if (textureAtlas.getRegion(FLOOR_ATLAS_TEXTURE).getAtlas() == atlas) {
+                        sceneRenderer.setFloorTexture(textureHandle);
+                    }
+                    if (textureAtlas.getRegion(UNITS_ATLAS_TEXTURE).getAtlas() == atlas) {
+                        sceneRenderer.setBreweryModelsTexture(textureHandle);
+                    }
+                }
+            });
+        } else {
+            assetPipeline.loadTexture(R.drawable.floor_tiles_texture, new AssetPipeline.TextureCallback() {
+                @Override
+                public void onTextureLoaded(int textureHandle) {
+                    sceneRenderer.setFloorTexture(textureHandle);
+                }
+            });
+            assetPipeline.loadTexture(R.drawable.brewery_models_texture, new AssetPipeline.TextureCallback() {
+                @Override
+                public void onTextureLoaded(int textureHandle) {
+                    sceneRenderer.setBreweryModelsTexture(textureHandle);
+                }
+            });
+        }
+        assetPipeline.loadLuminanceTexture(R.drawable.floor_tiles_heightmap, new AssetPipeline.TextureCallback() {
+            @Override
+            public void onTextureLoaded(int textureHandle) {
+                floorTilesHeightmapDataHandle = textureHandle;
+            }
+        });
 
-        pointProgramHandle = createAndLinkProgram(pointVertexShaderHandle, pointFragmentShaderHandle,
-                new String[]{"a_Position"});
+        // Skybox cubemap.
+        assetPipeline.loadCubeMap(new AssetPipeline.TextureCallback() {
+            @Override
+            public void onTextureLoaded(int textureHandle) {
+                cubemapTextureDataHandle = textureHandle;
+            }
+        }, R.drawable.sky_afternoon_left, R.drawable.sky_afternoon_right, R.drawable.sky_afternoon_bottom, R.drawable.sky_afternoon_top, R.drawable.sky_afternoon_front
+                , R.drawable.sky_afternoon_back);
+    }
 
-        // Skybox shader.
-        /*final String skyboxVertexShader = AssetLoader.loadShader(mainActivity, AssetLoader.SKYBOX_VERTEX_SHADER);
-        final String skyboxFragmentShader = AssetLoader.loadShader(mainActivity, AssetLoader.SKYBOX_FRAGMENT_SHADER);
-        final int skyboxVertexShaderHandle =compileShader(GLES20.GL_VERTEX_SHADER, skyboxVertexShader);
-        final int skyboxFragmentShaderHandle =compileShader(GLES20.GL_FRAGMENT_SHADER, skyboxFragmentShader);
+    /**
+     * @return the region of the {@code texture} of the {@link #ATLAS_TEXTURES}, null without atlases.
+     */
+    private TextureAtlas.Region getAtlasRegion(int texture) {
+        return textureAtlas != null ? textureAtlas.getRegion(texture) : null;
+    }
 
-        skyboxProgramHandle = createAndLinkProgram(skyboxVertexShaderHandle, skyboxFragmentShaderHandle, new String[] { "a_Position" });*/
-        skyboxShaderProgram = new SkyboxShaderProgram(mainActivity);
-        skybox = new Skybox();
+    /**
+     * Requests the models of the mesh types of the scene, which are not loaded yet. The loaded ones are passed on
+     * right away.
+     */
+    private void requestBreweryModels() {
+        final Scene scene = sceneRenderer.getScene();
+        for (int meshType = 0; meshType < scene.getMeshTypeCount(); meshType++) {
+            final String meshName = scene.getMeshName(meshType);
+            final Model loaded = breweryModels.get(meshName);
+            if (loaded != null) {
+                sceneRenderer.setBreweryModel(meshType, loaded);
+                continue;
+            }
 
-        // Load handles for the texture bitmaps.
-        int[] textureDataHandles = AssetLoader.loadTextures(mainActivity, R.drawable.floor_tiles_texture, R.drawable.floor_tiles_heightmap, R.drawable.brewery_models_texture);
-        floorTilesTextureDataHandle = textureDataHandles[0];
-        floorTilesHeightmapDataHandle = textureDataHandles[1];
-        breweryModelsTextureDataHandle = textureDataHandles[2];
+            final int resId = mainActivity.getResources().getIdentifier(meshName, "raw", mainActivity.getPackageName());
+            if (resId == 0) {
+                Log.e(TAG, "There's no mesh " + meshName + "!");
+                continue;
+            }
+            final int requestedMeshType = meshType;
+            final TextureAtlas.Region region = getAtlasRegion(UNITS_ATLAS_TEXTURE);
+            assetPipeline.loadModel(resId, InstancedModelShaderProgram.MAX_INSTANCES, region, new AssetPipeline.ModelCallback() {
+                @Override
+                public void onModelLoaded(Model model) {
+                    breweryModels.put(meshName, checkIndexType(model));
+                    // The scene may have been replaced meanwhile.
+                    if (sceneRenderer.getScene().getMeshType(meshName) == requestedMeshType) {
+                        sceneRenderer.setBreweryModel(requestedMeshType, model);
+                    }
+                }
+            });
+        }
+    }
 
-        // Load a handle for the skybox cubemap.
-        cubemapTextureDataHandle = AssetLoader.loadCubeMap(mainActivity, R.drawable.sky_afternoon_left, R.drawable.sky_afternoon_right, R.drawable.sky_afternoon_bottom, R.drawable.sky_afternoon_top, R.drawable.sky_afternoon_front
-                , R.drawable.sky_afternoon_back);
+    /**
+     * Logs an error, if the {@code model} needs 32-bit indices, but they are not supported.
+     *
+     * @return the {@code model}
+     */
+    private Model checkIndexType(Model model) {
+        if (!supportsUintIndices && model.getIndexType() == GLES20.GL_UNSIGNED_INT) {
+            Log.e(TAG, model.getName() + " needs 32-bit indices, which are not supported!");
+        }
+        return model;
     }
 
     @Override
@@ -351,299 +484,131 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
 
     @Override
     public void onNewFrame(HeadTransform headTransform) {
+        gl.beginFrame();
+
+        // Upload the assets, which are ready, but not too many at once to keep the frame rate.
+        assetPipeline.processUploads(MAX_UPLOADS_PER_FRAME);
+
+        // The newest data of the units, if any arrived since the last frame.
+        final long uptimeMillis = SystemClock.uptimeMillis();
+        final TelemetrySnapshot snapshot = snapshots.acquire();
+        if (snapshot != null) {
+            sceneRenderer.updateModelData(snapshot, uptimeMillis);
+        }
+
         if (showInfo) {
-            showInfo(headTransform);
+            showInfo(headTransform, uptimeMillis);
         }
 
         // Update sound.
         mainActivity.getGvrAudioEngine().update();
 
-        // Do a complete rotation every 10 seconds.
-        long time = SystemClock.uptimeMillis() % 10000L;
-        float angleInDegrees = (360.0f / 10000.0f) * ((int) time);
-
-        // Set program handles for drawing.
-        mvpMatrixHandle = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_MVPMatrix");
-        mvMatrixHandle = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_MVMatrix");
-        textureUniformHandle = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_Texture");
-        lightUniformPosHandle = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_LightPos");
-        highestYUniformHandle = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_HighestY");
-        lowestYUniformHandle = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_LowestY");
-        fillLevel = GLES20.glGetUniformLocation(perVertexProgramHandle, "u_FillLevel");
-
-        texCoordinateHandle = GLES20.glGetAttribLocation(perVertexProgramHandle, "a_TexCoordinate");
-        positionHandle = GLES20.glGetAttribLocation(perVertexProgramHandle, "a_Position");
-        colorHandle = GLES20.glGetAttribLocation(perVertexProgramHandle, "a_Color");
-        normalHandle = GLES20.glGetAttribLocation(perVertexProgramHandle, "a_Normal");
-
-        // Set program handles for skybox
-        uMatrixLocation = GLES20.glGetUniformLocation(skyboxProgramHandle, "u_Matrix");
-        uTextureUnitLocation = GLES20.glGetUniformLocation(skyboxProgramHandle, "u_TextureUnit");
-        aPostionLocation = GLES20.glGetAttribLocation(skyboxProgramHandle, "a_Position");
-
-        // Calculate position of the light. Rotate and then push into the distance.
-        Matrix.setIdentityM(mLightModelMatrix, 0);
-        Matrix.translateM(mLightModelMatrix, 0, -5.0f, 10.0f, 0.0f);
-        //Matrix.rotateM(mLightModelMatrix, 0, angleInDegrees, 0.0f, 1.0f, 0.0f);
-        //Matrix.translateM(mLightModelMatrix, 0, 0.0f, 0.0f, 2.0f);
-
-        Matrix.multiplyMV(mLightPosInWorldSpace, 0, mLightModelMatrix, 0, mLightPosInModelSpace, 0);
-
-        // Draw the models.
-        float displacementAngle = 360.f / NUM_OF_UNITS;
-        for (int i = 0; i < NUM_OF_UNITS; i++) {
-            Matrix.setIdentityM(modelMatrix[i], 0);
-            Matrix.rotateM(modelMatrix[i], 0, displacementAngle * i, 0.0f, 1.0f, 0.0f);
-            Matrix.translateM(modelMatrix[i], 0, 0.0f, -5.f, -15.0f);
-            // Rotate the breweryModels.
-            Matrix.rotateM(modelMatrix[i], 0, angleInDegrees, 0.0f, 1.0f, 0.0f);
-        }
+        // Animate the scene and collect the draws of this frame. Both eyes replay them.
+        sceneRenderer.newFrame(uptimeMillis);
     }
 
     @Override
     public void onDrawEye(Eye eye) {
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
-
-        // Get eye matrices from the Eye object
-        float[] mEyeViewMatrix = eye.getEyeView();
-        float[] mEyeProjectionMatrix = eye.getPerspective(NEAR, FAR);
-
-        // Apply the eye transformation to the camera.
-        Matrix.multiplyMM(mEyeViewMatrix, 0, mEyeViewMatrix, 0, mViewMatrix, 0);
-        Matrix.multiplyMV(mLightPosInEyeSpace, 0, mEyeViewMatrix, 0, mLightPosInWorldSpace, 0);
-
-        // Get screen center coordinates.
-        Viewport viewport = eye.getViewport();
-        viewport.getClass();
-
-        // Set our per-vertex lighting program.
-        GLES20.glUseProgram(perVertexProgramHandle);
-
-        for (int i = 0; i < NUM_OF_UNITS; i++) {
-            // Draw all the units.
-            // TODO: may need some tweaking, if the breweryModelsData remains the same, but has to be used for a lot 3D breweryModels
-            drawModel(modelMatrix[i], mEyeViewMatrix, mEyeProjectionMatrix, // matrices
-                    breweryModelsBuffers[(i * 3) % 9], breweryModelsBuffers[(i * 3 + 1) % 9], breweryModelsBuffers[(i * 3 + 2) % 9], // model buffers
-                    breweryModels[i % 3].getHighest()[1], breweryModels[i % 3].getLowest()[1], // lowest/highest
-                    breweryModelsData[i].level, breweryModels[i % 3].getModelInfo().getVertices(), interpolateColors(currColor[i], newColor[i], 0),
-                    breweryModelsTextureDataHandle); // textures
-        }
+        // GVR changes the state between the eyes and frames (e.g. for the distortion pass).
+        gl.invalidate();
 
-        // Floor.
-        // TODO: move to global scope.
-        // TODO: scale dat bitch
-        float[] floorModelMatrix = new float[16];
-        Matrix.setIdentityM(floorModelMatrix, 0);
-        Matrix.translateM(floorModelMatrix, 0, 0.f, -5.f, 0.f);
-        Matrix.scaleM(floorModelMatrix, 0, 2.f, 2.f, 2.f);
-        drawModel(floorModelMatrix, mEyeViewMatrix, mEyeProjectionMatrix, floorModelBuffers[0], floorModelBuffers[1], floorModelBuffers[2], floorModel.getHighest()[1], floorModel.getLowest()[1], 0, floorModel.getModelInfo().getVertices(), new float[]{.1f, .1f, .7f, 1.f}, floorTilesTextureDataHandle);
-
-        // Walls.
-        for (int i = 0; i < 4; i++) {
-            Matrix.setIdentityM(floorModelMatrix, 0);
-            Matrix.translateM(floorModelMatrix, 0, 20.f * (-1 + (i % 2) * 2) * (1 - i / 2), -25.f, 20.f * (-1 + (i % 2) * 2) * (i / 2));
-            Matrix.rotateM(floorModelMatrix, 0, 90.f, 1.f * (i / 2), 0.f, 1.f * (1 - i /2));
-            drawModel(floorModelMatrix, mEyeViewMatrix, mEyeProjectionMatrix, floorModelBuffers[0], floorModelBuffers[1], floorModelBuffers[2], floorModel.getHighest()[1], floorModel.getLowest()[1], 0, floorModel.getModelInfo().getVertices(), new float[]{.1f, .1f, .7f, 1.f}, floorTilesTextureDataHandle);
-        }
+        gl.glEnable(GLES20.GL_DEPTH_TEST);
+        gl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+
+        // Get eye matrices from the Eye object. Combined with the camera into the scene's own storage, the eye's are
+        // left untouched.
+        final float[] eyeProjectionMatrix = eye.getPerspective(NEAR, FAR);
+        sceneRenderer.drawEye(eye.getEyeView(), eyeProjectionMatrix);
 
         // Draw a point to indicate the light.
-        //GLES20.glUseProgram(pointProgramHandle);
+        //pointShaderProgram.useProgram();
         //drawLight(mEyeViewMatrix, mEyeProjectionMatrix);
 
 
-        drawSkybox(mEyeViewMatrix, mEyeProjectionMatrix);
+        // The skybox stays empty until the cubemap is loaded.
+        if (cubemapTextureDataHandle != 0) {
+            drawSkybox(sceneRenderer.getEyeViewMatrix(), eyeProjectionMatrix);
+        }
     }
 
     @Override
     public void onFinishFrame(Viewport viewport) {
+        final int glCalls = gl.getIssuedCalls();
+        if (++framesSinceStatsLog == STATS_LOG_INTERVAL) {
+            Log.d(TAG, "Uniform uploads in the last " + STATS_LOG_INTERVAL + " frames: "
+                    + modelShaderVariants.getIssuedUploads() + " issued, " + modelShaderVariants.getSkippedUploads() + " skipped"
+                    + " (" + modelShaderVariants.getProgramCount() + " model program variants)");
+            Log.d(TAG, "GL calls in this frame: " + glCalls + " issued, " + gl.getSuppressedCalls() + " suppressed");
+            if (glCalls > GL_CALL_BUDGET) {
+                Log.w(TAG, "The frame exceeds the GL call budget of " + GL_CALL_BUDGET + " calls.");
+            }
+            modelShaderVariants.resetUploadCounts();
+            framesSinceStatsLog = 0;
+        }
     }
 
 
     @Override
     public void onRendererShutdown() {
         Log.i(TAG, "onRendererShutdown");
+        assetPipeline.shutdown();
     }
 
     /**
-     * Shows the info about the model, which the user observes.
+     * Shows the info about the model, which the user observes. Takes the text of the info only, if the unit or its data
+     * changed, and shows it again only before the Toast times out, so that the frames don't allocate.
      * @param headTransform
      */
-    private void showInfo(HeadTransform headTransform) {
+    private void showInfo(HeadTransform headTransform, long uptimeMillis) {
         // Determine the model user is looking at.
-        //
-        // TODO: maybe, move in a separate method.
-        // Gonna be used to determine the angle.
-        float[] vecStraight = {0.f, 0.f, 1.f, 1.f};
-        // Used to determined where the user is looking.
-        float[] center = new float[]{0.f, 0.f, 0.f, 1.f};
-        float[] centerInHeadViewSpace = new float[4];
-        // TODO: play with mViewMatrix, maybe add a global camera matrix and re-init here
-        float[] headViewMatrix = new float[16];
-        Matrix.multiplyMM(headViewMatrix, 0, headTransform.getHeadView(), 0, mViewMatrix, 0);
-        Matrix.multiplyMV(centerInHeadViewSpace, 0, headViewMatrix, 0, center, 0);
-
-        // Normalize the Z component of the center of the view.
-        // Take Y component as 0 to project on ZX plane.
-        float lengthCenterInHeadViewSpace = Matrix.length(centerInHeadViewSpace[0], centerInHeadViewSpace[1] * 0, centerInHeadViewSpace[2]);
-        centerInHeadViewSpace[2] = centerInHeadViewSpace[2] / lengthCenterInHeadViewSpace;
-        // Calculate the dot product. Only Z component is non-zero in vecStraight.
-        float dot = centerInHeadViewSpace[2] * vecStraight[2];
-        float angle = (float) ((Math.acos(dot) / Math.PI) * 180);
-        // If in the bottom half of the unit circle -> result is (360 - angle).
-        if (centerInHeadViewSpace[0] > 0) {
-            angle = 360 - angle;
+        headTransform.getHeadView(headView, 0);
+        final int unitNum = sceneRenderer.findUnitInView(headView);
+        if (unitNum < 0) {
+            return;
         }
-
-        final short modelNum = getModelNum(angle);
+        if (unitNum != observedUnitNum || sceneRenderer.getDataVersion() != observedDataVersion) {
+            observedUnitNum = unitNum;
+            observedDataVersion = sceneRenderer.getDataVersion();
+            observedUnitInfo = sceneRenderer.getUnitData(unitNum).toString();
+        } else if (uptimeMillis - infoShownMillis < INFO_REFRESH_MILLIS) {
+            return;
+        }
+        infoShownMillis = uptimeMillis;
 
         // Show the info Toast with the model data.
-        mainActivity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                toast.setText(breweryModelsData[modelNum].toString());
-                toast.setGravity(Gravity.LEFT, 0, 0);
-                toast.show();
-            }
-        });
+        mainActivity.runOnUiThread(showInfoRunnable);
 
         // Show the info in the text view.
         //TextView info = (TextView) mainActivity.findViewById(R.id.info);
         //info.setText(breweryModelsData[modelNum].toString());
     }
 
-    /**
-     * Fills the given {@code buffers} with the data from {@code models}.
-     *
-     * @param buffers
-     * @param models
-     */
-    private void fillBuffers(FloatBuffer[] buffers, Model... models) {
-        // Check the lengths.
-        if (buffers.length != models.length * 3) {
-            throw new RuntimeException("Buffers have insufficient capacity!");
-        }
-
-        // Fill the buffers.
-        for (int i = 0; i < models.length; i++) {
-            // Positions.
-            buffers[i * 3] = ByteBuffer.allocateDirect(models[i].getPositions().length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer();
-            buffers[i * 3].put(models[i].getPositions()).position(0);
-            // Normals.
-            buffers[i * 3 + 1] = ByteBuffer.allocateDirect(models[i].getNormals().length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer();
-            buffers[i * 3 + 1].put(models[i].getNormals()).position(0);
-            // Texels.
-            buffers[i * 3 + 2] = ByteBuffer.allocateDirect(models[i].getTexels().length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer();
-            buffers[i * 3 + 2].put(models[i].getTexels()).position(0);
-        }
-    }
-
-    /**
-     * Draws a model given by it's {@code positions}, {@code normals} FloatBuffer-s and a float array containing the color.
-     * Preserves the {@code lowestY} and {@code highestY} values.
-     *
-     * @param modelMatrix         the number of the model matrix to apply
-     * @param eyeViewMatrix
-     * @param eyeProjectionMatrix
-     * @param positions
-     * @param normals
-     * @param highestY
-     * @param lowestY
-     * @param fillLevel           [0; 1]
-     * @param numVertices
-     * @param color
-     */
-    private void drawModel(float[] modelMatrix, float[] eyeViewMatrix, float[] eyeProjectionMatrix, FloatBuffer positions, FloatBuffer normals, FloatBuffer texels, float highestY, float lowestY, float fillLevel, int numVertices, float[] color, int textureDataHandle) {
-        // Check the given color array
-        if (color == null || color.length != 4) {
-            throw new RuntimeException("Bad color array format! Expecting 4 values..");
-        }
-
-        // Pass attributes and stuff to the shader program
-        //
-
-        // TODO: try getting rid of '.position(0)' and see what happens
-        // Pass in the position information
-        positions.position(0);
-        GLES20.glVertexAttribPointer(positionHandle, positionDataSize, GLES20.GL_FLOAT, false,
-                0, positions);
-        GLES20.glEnableVertexAttribArray(positionHandle);
-        // Pass in the normal information
-        normals.position(0);
-        GLES20.glVertexAttribPointer(normalHandle, normalDataSize, GLES20.GL_FLOAT, false,
-                0, normals);
-        GLES20.glEnableVertexAttribArray(normalHandle);
-        // Pass in the texture information.
-        texels.position(0);
-        GLES20.glVertexAttribPointer(texCoordinateHandle, textureDataSize, GLES20.GL_FLOAT, false, 0, texels);
-        GLES20.glEnableVertexAttribArray(texCoordinateHandle);
-
-        // Pass in the texture itself (sampler).
-        // Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureDataHandle);
-        // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
-        GLES20.glUniform1i(textureUniformHandle, 0);
-
-        // Attributes.
-        //
-        // Pass in the color information
-        GLES20.glVertexAttrib4f(colorHandle, color[0], color[1], color[2], color[3]);
-        GLES20.glDisableVertexAttribArray(colorHandle);
-
-        // Projection matrix construction
-        //
-        // This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
-        // (which currently contains model * view).
-        Matrix.multiplyMM(mvpMatrix, 0, eyeViewMatrix, 0, modelMatrix, 0);
-
-        // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mvMatrixHandle, 1, false, mvpMatrix, 0);
-
-        // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
-        // (which now contains model * view * projection).
-        Matrix.multiplyMM(mvpMatrix, 0, eyeProjectionMatrix, 0, mvpMatrix, 0);
-
-        // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, mvpMatrix, 0);
-
-        // Pass in the light position in eye space.
-        GLES20.glUniform3f(lightUniformPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
-
-        // Pass in the highest and the lowest vertices
-        GLES20.glUniform1f(highestYUniformHandle, highestY);
-        GLES20.glUniform1f(lowestYUniformHandle, lowestY);
-        GLES20.glUniform1f(this.fillLevel, fillLevel);
-
-        // Draw the model.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, numVertices);
-    }
-
     /**
      * Draws a point representing the position of the light.
      */
     private void drawLight(float[] mEyeViewMatrix, float[] mEyeProjectionMatrix) {
-        final int pointMVPMatrixHandle = GLES20.glGetUniformLocation(pointProgramHandle, "u_MVPMatrix");
-        final int pointPositionHandle = GLES20.glGetAttribLocation(pointProgramHandle, "a_Position");
+        final int pointPositionHandle = pointShaderProgram.getPositionAttributeLocation();
 
         // Pass in the position.
-        GLES20.glVertexAttrib3f(pointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+        final float[] lightPosInWorldSpace = sceneRenderer.getLightPosInWorldSpace();
+        GLES20.glVertexAttrib3f(pointPositionHandle, lightPosInWorldSpace[0], lightPosInWorldSpace[1], lightPosInWorldSpace[2]);
         // Since we are not using a buffer object, disable vertex arrays for this attribute.
         GLES20.glDisableVertexAttribArray(pointPositionHandle);
 
-        // Pass in the transformation matrix.
-        Matrix.multiplyMM(mvpMatrix, 0, mEyeViewMatrix, 0, mLightModelMatrix, 0);
-        Matrix.multiplyMM(mvpMatrix, 0, mEyeProjectionMatrix, 0, mvpMatrix, 0);
-        GLES20.glUniformMatrix4fv(pointMVPMatrixHandle, 1, false, mvpMatrix, 0);
+        // Pass in the transformation matrix. The position is in world space already.
+        Matrices.multiplyMM(viewProjectionMatrix, 0, mEyeProjectionMatrix, 0, mEyeViewMatrix, 0);
+        pointShaderProgram.setMatrix(viewProjectionMatrix);
 
         // Draw the point.
         GLES20.glDrawArrays(GLES20.GL_POINTS, 0, 1);
     }
 
     private void drawSkybox(float[] viewMatrix, float[] projectionMatrix) {
-        float[] viewProjectionMatrix = new float[16];
-        Matrix.multiplyMM(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+        // The skybox uses client-side arrays.
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        Matrices.multiplyMM(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
         skyboxShaderProgram.useProgram();
 
         skyboxShaderProgram.setUniforms(viewProjectionMatrix, cubemapTextureDataHandle);
@@ -651,181 +616,18 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
         skybox.bindData(skyboxShaderProgram);
 
         skybox.draw();
+        // The skybox sets its attribute pointer past the state cache.
+        gl.invalidate();
     }
 
     /**
-     * Helper function to compile a shader.
-     *
-     * @param shaderType   The shader type.
-     * @param shaderSource The shader source code.
-     * @return An OpenGL handle to the shader.
-     */
-    public static int compileShader(final int shaderType, final String shaderSource) {
-        int shaderHandle = GLES20.glCreateShader(shaderType);
-
-        if (shaderHandle != 0) {
-            // Pass in the shader source.
-            GLES20.glShaderSource(shaderHandle, shaderSource);
-
-            // Compile the shader.
-            GLES20.glCompileShader(shaderHandle);
-
-            // Get the compilation status.
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-            // If the compilation failed, delete the shader.
-            if (compileStatus[0] == 0) {
-                Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-                GLES20.glDeleteShader(shaderHandle);
-                shaderHandle = 0;
-            }
-        }
-
-        if (shaderHandle == 0) {
-            throw new RuntimeException("Error creating shader.");
-        }
-
-        return shaderHandle;
-    }
-
-    /**
-     * Helper function to compile and link a program.
+     * Updates the data of the units with the next frame. Called on the network threads: the GL thread picks the newest
+     * data up at the start of a frame without waiting for them.
      *
-     * @param vertexShaderHandle   An OpenGL handle to an already-compiled vertex shader.
-     * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment shader.
-     * @param attributes           Attributes that need to be bound to the program.
-     * @return An OpenGL handle to the program.
-     */
-    public static int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) {
-        int programHandle = GLES20.glCreateProgram();
-
-        if (programHandle != 0) {
-            // Bind the vertex shader to the program.
-            GLES20.glAttachShader(programHandle, vertexShaderHandle);
-
-            // Bind the fragment shader to the program.
-            GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-
-            // Bind attributes
-            if (attributes != null) {
-                final int size = attributes.length;
-                for (int i = 0; i < size; i++) {
-                    GLES20.glBindAttribLocation(programHandle, i, attributes[i]);
-                }
-            }
-
-            // Link the two shaders together into a program.
-            GLES20.glLinkProgram(programHandle);
-
-            // Get the link status.
-            final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-
-            // If the link failed, delete the program.
-            if (linkStatus[0] == 0) {
-                Log.e(TAG, "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-                GLES20.glDeleteProgram(programHandle);
-                programHandle = 0;
-            }
-        }
-
-        if (programHandle == 0) {
-            throw new RuntimeException("Error creating program.");
-        }
-
-        return programHandle;
-    }
-
-
-    /**
-     * Update current {@code breweryModelsData} with the new {@code breweryModelsData}. Sets stepNum to 1.
-     *
-     * @param newModelData
+     * @param snapshot the data of the updated units, copied
      */
-    public void updateModelData(Unit[] newModelData) {
-        if (newModelData != null && newModelData.length != NUM_OF_UNITS) {
-            throw new RuntimeException("Bad model data format! Expecting " + NUM_OF_UNITS + " values..");
-        }
-
-        // Update the model data.
-        breweryModelsData = newModelData;
-
-        for (int i = 0; i < NUM_OF_UNITS; i++) {
-            // Remap breweryModelsData to [0, 1] range
-            breweryModelsData[i].level /= 100;
-            // Update the colors for rendering.
-            newColor[i] = getColorFromTemperature(breweryModelsData[i].temperature);
-            // Update the current interpolation step number.
-            stepNum[i] = 1;
-        }
-    }
-
-    /**
-     * Interpolates between the given colors {@code COLOR_STEPS_PER_INTERVAL} number of times
-     *
-     * @param currColor color before data retrieval
-     * @param newColor  color after data retrieval
-     * @return float[4] interpolatedColor
-     */
-    private float[] interpolateColors(float[] currColor, float[] newColor, int modelNum) {
-        int colorLength = currColor.length;
-        if (colorLength != newColor.length) {
-            Log.e(TAG, "Bad color format! Expecting arrays of the same length(==4). Aborting..");
-            return new float[]{0.f, 0.f, 0.f, 0.f};
-        }
-
-        // Calculate the interpolated color.
-        float[] interpolatedColor = new float[colorLength];
-        float leftFactor = (COLOR_STEPS_PER_INTERVAL - stepNum[modelNum]) / COLOR_STEPS_PER_INTERVAL;
-        float rightFactor = 1 - leftFactor;
-        for (int i = 0; i < colorLength; i++) {
-            interpolatedColor[i] = currColor[i] * leftFactor + newColor[i] * rightFactor;
-        }
-
-        // Increment stepNum.
-        incrementStepNum(modelNum);
-
-        return interpolatedColor;
-    }
-
-    /**
-     * Defines the logic behind setting the {@code newColor}.
-     *
-     * @param temperature
-     */
-    private float[] getColorFromTemperature(int temperature) {
-        // A color for the temperature == 50.
-        float[] fiftyColor = new float[]{1.f, 1.f, .0f, 1.f}; // temperature == 50 -> color == YELLOW
-        float[] result = new float[4];
-        float leftFactor, rightFactor;
-
-        // Interpolate between the given zeroColor, fiftyColor, hundredColor.
-        if (temperature <= 50 && temperature >= 0) {
-            leftFactor = (50.f - temperature) / 100;
-            rightFactor = 1 - leftFactor;
-            // A color for the temperature == 0.
-            float[] zeroColor = new float[]{0.f, 0.f, 1.f, 1.f}; // temperature == 0 -> color == BLUE
-            result[0] = zeroColor[0] * leftFactor + fiftyColor[0] * rightFactor;
-            result[1] = zeroColor[1] * leftFactor + fiftyColor[1] * rightFactor;
-            result[2] = zeroColor[2] * leftFactor + fiftyColor[2] * rightFactor;
-        } else if (temperature <= 100 && temperature >= 0) {
-            leftFactor = (100.f - temperature) / 100;
-            rightFactor = 1 - leftFactor;
-            // A color for the temperature == 100.
-            float[] hundredColor = new float[]{1.f, .0f, .0f, 1.f}; // temperature == 100 -> color == RED
-            result[0] = fiftyColor[0] * leftFactor + hundredColor[0] * rightFactor;
-            result[1] = fiftyColor[1] * leftFactor + hundredColor[1] * rightFactor;
-            result[2] = fiftyColor[2] * leftFactor + hundredColor[2] * rightFactor;
-        }
-        result[3] = 1.f;
-
-        return result;
-    }
-
-    private void incrementStepNum(int modelNum) {
-        if (stepNum[modelNum] < COLOR_STEPS_PER_INTERVAL)
-            stepNum[modelNum] += 1;
+    public void updateModelData(TelemetrySnapshot snapshot) {
+        snapshots.publish(snapshot);
     }
 
     /**
@@ -837,55 +639,6 @@ public class CardboardRenderer implements GvrView.StereoRenderer {
         this.newColor = newColor;
     }*/
 
-    /**
-     * Get the model number from the current observation angle on ZX plane.
-     *
-     * @param lookingAngle current observation angle on ZX plane.
-     * @return model number if all ok, -1 otherwise.
-     */
-    private short getModelNum(float lookingAngle) {
-        final float[] modelAngles = new float[]{0.f, 60.f, 120.f, 180.f, 240.f, 300.f, 360.f};
-        // Differences between the modelAngles and the lookingAngle on the previous and current steps respectively.
-        float prevDiff = modelAngles[0] - lookingAngle;
-        float currDiff;
-        // The to-be-devised model number.
-        short modelNum = -1;
-
-        for (int i = 1; i < modelAngles.length; i++) {
-            currDiff = modelAngles[i] - lookingAngle;
-
-            if (prevDiff < 0 && currDiff > 0) { // If the sign changes on this interval (aka the angle is inside the interval).
-                if (currDiff > Math.abs(prevDiff)) {
-                    // If difference with the current angle is bigger than with the previous, devise the modelNum from the previous angle.
-                    modelNum = (short) (modelAngles[i - 1] / 60.f);
-                    break;
-                } else {
-                    // If difference with the current angle is smaller than with the previous, devise the modelNum from the current angle.
-                    modelNum = (short) (modelAngles[i] / 60.f);
-                    break;
-                }
-
-            } else {
-                if (currDiff == 0) {
-                    // If currDiff is 0, devise the angle from the current angle.
-                    modelNum = (short) (modelAngles[i] / 60.f);
-                    break;
-                } else if (prevDiff == 0) {
-                    // If prevDiff is 0, devise the angle from the previous angle.
-                    modelNum = (short) (modelAngles[i - 1] / 60.f);
-                    break;
-                }
-            }
-
-            prevDiff = currDiff;
-        }
-
-        // If model num is 6 make it 0.
-        modelNum = (short) (modelNum % 6);
-
-        return modelNum;
-    }
-
     public boolean isShowInfo() {
         return showInfo;
     }
@@ -10,24 +10,23 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.MotionEvent;
 
-import com.google.gson.Gson;
 import com.google.vr.sdk.audio.GvrAudioEngine;
 import com.google.vr.sdk.base.GvrActivity;
 import com.google.vr.sdk.base.GvrView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.net.HttpURLConnection;
+import java.io.StringReader;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Timer;
 import java.util.TimerTask;
 
-import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Unit;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.net.TelemetryClient;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.net.TelemetryDecoder;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.net.TelemetryStream;
 
 public class MainActivity extends GvrActivity {
     private static final String TAG = "MainActivity";
@@ -36,10 +35,17 @@ public class MainActivity extends GvrActivity {
      * Determines how often the data is fetched by the {@link DataRetriever};
      */
     public static final int DATA_FETCH_INTERVAL = 5000;
+    /**
+     * Whether the server pushes the updates of the units, as they happen, instead of the latest row being polled every
+     * {@link #DATA_FETCH_INTERVAL}. Falls back to polling, if the server doesn't push. Off until the server supports
+     * it.
+     */
+    private static final boolean STREAM_TELEMETRY = false;
     /**
      * StereoRenderer used in the main activity.
      */
     private CardboardRenderer cardboardRenderer;
+    private GvrView gvrView;
 
     /**
      *
@@ -51,6 +57,32 @@ public class MainActivity extends GvrActivity {
      * This timer is used to schedule JSON data retrieval.
      */
     private Timer timer;
+    /**
+     * Polls the latest row over a kept-alive connection. Used by one {@link DataRetriever} at a time.
+     */
+    private TelemetryClient telemetryClient;
+    /**
+     * Receives the updates pushed by the server, null while polling.
+     */
+    private volatile TelemetryStream telemetryStream;
+    /**
+     * Decodes the rows of units. Stateless, so shared by the polls and the stream.
+     */
+    private final TelemetryDecoder telemetryDecoder = new TelemetryDecoder();
+    /**
+     * Whether the latest row was fetched, before the stream is connected. Used on the UI thread.
+     */
+    private boolean seeded;
+    /**
+     * Whether the activity is in the foreground. Used on the UI thread.
+     */
+    private boolean resumed;
+    /**
+     * Storage of the units decoded by the {@link DataRetriever}s, one at a time, and by the stream. Reused, as the
+     * renderer copies what it's handed.
+     */
+    private final TelemetrySnapshot pollSnapshot = new TelemetrySnapshot(16);
+    private final TelemetrySnapshot streamSnapshot = new TelemetrySnapshot(16);
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
@@ -65,7 +97,7 @@ public class MainActivity extends GvrActivity {
 
         // Setup GvrView
         setContentView(R.layout.common_ui);
-        GvrView gvrView = (GvrView) findViewById(R.id.gvr_view);
+        gvrView = (GvrView) findViewById(R.id.gvr_view);
         gvrView.setEGLConfigChooser(8, 8, 8, 8, 16, 8);
 
         gvrView.setTransitionViewEnabled(true);
@@ -111,33 +143,89 @@ public class MainActivity extends GvrActivity {
         // Retrieve data from server
         //
         timer = new Timer();
+        try {
+            telemetryClient = new TelemetryClient(new URL(getResources().getString(R.string.get_last_row)));
+            if (STREAM_TELEMETRY) {
+                telemetryStream = new TelemetryStream(new URL(getResources().getString(R.string.get_events)),
+                        new URL(getResources().getString(R.string.get_updates)), new TelemetryStream.Listener() {
+                    @Override
+                    public void onUpdate(long sequence, String data) {
+                        updateModelData(data);
+                    }
+
+                    @Override
+                    public void onUnsupported() {
+                        Log.i(TAG, "The server doesn't push the updates, polling them.");
+                        telemetryStream = null;
+                        scheduleDataFetch(0);
+                    }
+                });
+            }
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Bad telemetry URL!", e);
+        }
+        // The first poll seeds the scene with the latest row, even when streaming: the stream only pushes what changes
+        // after it connects. It's connected once seeded, while the activity is in the foreground.
+        scheduleDataFetch(0);
+    }
+
+    /**
+     * Schedules the next poll. Every poll schedules the next one, when it's done: after the
+     * {@link #DATA_FETCH_INTERVAL} or, if it failed, after the backoff of the {@link TelemetryClient}.
+     *
+     * @param delayMillis
+     */
+    private void scheduleDataFetch(long delayMillis) {
         final Context appContext = this.getApplicationContext();
-        // Schedule a TimerTask with 0 delay every 10 seconds.
-        timer.scheduleAtFixedRate(new TimerTask() {
+        timer.schedule(new TimerTask() {
             @Override
             public void run() {
-                String stringUrl = appContext.getResources().getString(R.string.get_last_row);
                 ConnectivityManager connMgr = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
                 NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
                 if (networkInfo != null && networkInfo.isConnected()) {
-                    new DataRetriever().execute(stringUrl);
+                    new DataRetriever().execute();
                 } else {
                     Log.i(TAG,"No network connection available.");
+                    scheduleDataFetch(DATA_FETCH_INTERVAL);
                 }
             }
-        }, 0, DATA_FETCH_INTERVAL);
+        }, delayMillis);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
         gvrAudioEngine.pause();
+        resumed = false;
+        if (telemetryStream != null) {
+            telemetryStream.stop();
+        }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         gvrAudioEngine.resume();
+        resumed = true;
+        // Resumes from the last update received.
+        if (telemetryStream != null && seeded) {
+            telemetryStream.start();
+        }
+    }
+
+    /**
+     * Decodes an update pushed by the server and hands it to the renderer. Called on the thread of the stream.
+     *
+     * @param json a row of the units, which changed, or of all of them
+     */
+    private void updateModelData(String json) {
+        try {
+            telemetryDecoder.decode(new StringReader(json), streamSnapshot);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to decode the update.", e);
+            return;
+        }
+        cardboardRenderer.updateModelData(streamSnapshot);
     }
 
     public int getSoundId() {
@@ -152,95 +240,50 @@ public class MainActivity extends GvrActivity {
         return gvrAudioEngine;
     }
 
-    private class DataRetriever extends AsyncTask<String, Void, String> {
-
-        private static final String DEBUG_TAG = "DEBUG";
-        private Unit[] modelData = new Unit[CardboardRenderer.NUM_OF_UNITS];
-
-        private String downloadUrl(String myurl) throws IOException {
-            InputStream is = null;
-
-            try {
-                URL url = new URL(myurl);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setReadTimeout(10000 /* milliseconds */);
-                conn.setConnectTimeout(15000 /* milliseconds */);
-                conn.setRequestMethod("GET");
-                conn.setDoInput(true);
-                // Starts the query
-                conn.connect();
-                int response = conn.getResponseCode();
-                //Log.d(DEBUG_TAG, "The response is: " + response);
-                is = conn.getInputStream();
-
-                int available = is.available();
-                // Convert the InputStream into a string
-                String contentAsString = readIt(is, 3000);
-                return contentAsString;
-
-                // Makes sure that the InputStream is closed after the app is
-                // finished using it.
-            } catch (Exception e) {
-                // TODO: change; and check all the exceptions in this class
-                System.err.println(e.getMessage());
-                e.printStackTrace();
-                return "T__T";
-            } finally {
-                if (is != null) {
-                    is.close();
-                }
-            }
-        }
-
+    private class DataRetriever extends AsyncTask<Void, Void, Void> {
         /**
-         * Reads an InputStream and converts it to a String.
+         * Whether the request failed.
          */
-        public String readIt(InputStream stream, int len) {
-            char[] buffer = null;
-            try {
-                Reader reader = null;
-                reader = new InputStreamReader(stream, "UTF-8");
-                buffer = new char[len];
-                reader.read(buffer);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return new String(buffer);
-        }
+        private boolean failed;
 
         @Override
-        protected String doInBackground(String... urls) {
-            if (urls.length < 1) {
-                return "";
-            }
-
-            // params comes from the execute() call: params[0] is the url.
+        protected Void doInBackground(Void... params) {
             try {
-                return downloadUrl(urls[0]);
+                // Decoded while it's received, and handed to the renderer right away, off the UI thread.
+                final boolean changed = telemetryClient.fetch(new TelemetryClient.BodyReader() {
+                    @Override
+                    public void read(Reader body) throws IOException {
+                        telemetryDecoder.decode(body, pollSnapshot);
+                    }
+                });
+                // Unchanged since the last poll otherwise.
+                if (changed) {
+                    cardboardRenderer.updateModelData(pollSnapshot);
+                }
             } catch (IOException e) {
-                return "Unable to retrieve web page. URL may be invalid.";
+                Log.w(TAG, "Unable to retrieve the latest row, retrying in " + telemetryClient.getRetryDelayMillis() + " ms.", e);
+                failed = true;
             }
+            return null;
         }
 
         @Override
-        protected void onPostExecute(String json) {
-            super.onPostExecute(json);
-
-            // Data expected in as [ { 'id' : ..., 'Unit1' : { ... }, ..., 'UnitN' : { ... } } ]
-            JSONArray ja = null;
-            try {
-                ja = new JSONArray(json);
-                modelData[0] = new Gson().fromJson(ja.getJSONObject(0).getJSONObject("Unit1").toString(), Unit.class);
-                modelData[1] = new Gson().fromJson(ja.getJSONObject(0).getJSONObject("Unit2").toString(), Unit.class);
-                modelData[2] = new Gson().fromJson(ja.getJSONObject(0).getJSONObject("Unit3").toString(), Unit.class);
-                modelData[3] = new Gson().fromJson(ja.getJSONObject(0).getJSONObject("Unit4").toString(), Unit.class);
-                modelData[4] = new Gson().fromJson(ja.getJSONObject(0).getJSONObject("Unit5").toString(), Unit.class);
-                modelData[5] = new Gson().fromJson(ja.getJSONObject(0).getJSONObject("Unit6").toString(), Unit.class);
-                cardboardRenderer.updateModelData(modelData);
-            } catch (JSONException e) {
-                e.printStackTrace();
+        protected void onPostExecute(Void result) {
+            super.onPostExecute(result);
+            if (failed) {
+                scheduleDataFetch(telemetryClient.getRetryDelayMillis());
+                return;
+            }
+            final TelemetryStream telemetryStream = MainActivity.this.telemetryStream;
+            if (telemetryStream == null) {
+                scheduleDataFetch(DATA_FETCH_INTERVAL);
+                return;
+            }
+            // Seeded, the stream takes over.
+            seeded = true;
+            if (resumed) {
+                telemetryStream.start();
             }
-            //throw new RuntimeException(newUnit.toString());
         }
     }
 }
@@ -0,0 +1,120 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.gl;
+
+import java.nio.Buffer;
+
+/**
+ * The part of OpenGL ES 2.0 the renderer uses. Mirrors the signatures of {@link android.opengl.GLES20}, so that the
+ * upload and draw logic can run against a fake on the JVM.
+ */
+public interface GLApi {
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glVertexAttrib4f(int index, float x, float y, float z, float w);
+
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    // Textures.
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+
+    void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data);
+
+    void glGenerateMipmap(int target);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform3f(int location, float x, float y, float z);
+
+    void glUniform2f(int location, float x, float y);
+
+    void glUniform4f(int location, float x, float y, float z, float w);
+
+    void glUniform4fv(int location, int count, float[] v, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glDrawElements(int mode, int count, int type, int offset);
+
+    void glClear(int mask);
+
+    // Fixed-function state.
+    void glEnable(int cap);
+
+    void glDisable(int cap);
+
+    void glBlendFunc(int sfactor, int dfactor);
+
+    void glDepthMask(boolean flag);
+
+    // Shaders and programs.
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, String string);
+
+    void glCompileShader(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glDetachShader(int program, int shader);
+
+    void glBindAttribLocation(int program, int index, String name);
+
+    void glLinkProgram(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    String glGetProgramInfoLog(int program);
+
+    void glDeleteProgram(int program);
+
+    // Program binaries, OpenGL ES 3.0 only.
+    void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat,
+                            int binaryFormatOffset, Buffer binary);
+
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+    void glUseProgram(int program);
+
+    /**
+     * @return the name of the active uniform at {@code index}.
+     */
+    String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset);
+
+    /**
+     * @return the name of the active attribute at {@code index}.
+     */
+    String glGetActiveAttrib(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset);
+
+    int glGetUniformLocation(int program, String name);
+
+    int glGetAttribLocation(int program, String name);
+}
@@ -0,0 +1,577 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.gl;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+
+/**
+ * {@link GLApi}, which remembers the OpenGL state set through it and drops the calls, which wouldn't change anything:
+ * the current program, the active texture unit, the textures bound per unit, the buffer bindings, the enabled vertex
+ * attribute arrays and their pointers, the enable caps (depth test, culling, blending, ...), the blend function and
+ * the depth mask. Everything else is passed on.
+ * <p>
+ * The cache only knows about the calls made through it. Call {@link #invalidate()} whenever someone else may have
+ * touched the state (e.g. the GVR distortion pass between the frames, or direct {@link GLES20} calls).
+ */
+public class GLStateCache implements GLApi {
+    /**
+     * Number of texture units tracked. Binds to the other units are passed on.
+     */
+    public static final int MAX_TEXTURE_UNITS = 8;
+    /**
+     * Number of vertex attributes tracked. Calls for the other attributes are passed on.
+     */
+    public static final int MAX_VERTEX_ATTRIBS = 16;
+
+    /**
+     * Marks a value, which is not known.
+     */
+    private static final int UNKNOWN = -1;
+    /**
+     * The enable caps tracked. The other ones are passed on.
+     */
+    private static final int[] CAPS = {GLES20.GL_DEPTH_TEST, GLES20.GL_CULL_FACE, GLES20.GL_BLEND,
+            GLES20.GL_SCISSOR_TEST, GLES20.GL_STENCIL_TEST, GLES20.GL_POLYGON_OFFSET_FILL};
+    // Attribute pointer fields.
+    private static final int POINTER_BUFFER = 0;
+    private static final int POINTER_SIZE = 1;
+    private static final int POINTER_TYPE = 2;
+    private static final int POINTER_NORMALIZED = 3;
+    private static final int POINTER_STRIDE = 4;
+    private static final int POINTER_OFFSET = 5;
+    private static final int POINTER_FIELDS = 6;
+
+    private final GLApi gl;
+
+    private int program;
+    /**
+     * Active texture unit as an offset from {@link GLES20#GL_TEXTURE0}.
+     */
+    private int activeTextureUnit;
+    private final int[] boundTextures2D = new int[MAX_TEXTURE_UNITS];
+    private final int[] boundTexturesCubeMap = new int[MAX_TEXTURE_UNITS];
+    private int arrayBuffer;
+    private int elementArrayBuffer;
+    /**
+     * 1 if enabled, 0 if disabled, {@link #UNKNOWN} otherwise.
+     */
+    private final int[] enabledAttribs = new int[MAX_VERTEX_ATTRIBS];
+    /**
+     * {@link #POINTER_FIELDS} values per attribute.
+     */
+    private final int[] attribPointers = new int[MAX_VERTEX_ATTRIBS * POINTER_FIELDS];
+    /**
+     * 1 if enabled, 0 if disabled, {@link #UNKNOWN} otherwise. Same order as {@link #CAPS}.
+     */
+    private final int[] caps = new int[CAPS.length];
+    private int blendSrcFactor;
+    private int blendDstFactor;
+    private int depthMask;
+
+    // Call counts.
+    private int issuedCalls;
+    private int suppressedCalls;
+    private int lastFrameIssuedCalls;
+    private int lastFrameSuppressedCalls;
+
+    public GLStateCache(GLApi gl) {
+        this.gl = gl;
+        invalidate();
+    }
+
+    /**
+     * Forgets the whole state, so that the next call of every kind is passed on.
+     */
+    public void invalidate() {
+        program = UNKNOWN;
+        activeTextureUnit = UNKNOWN;
+        Arrays.fill(boundTextures2D, UNKNOWN);
+        Arrays.fill(boundTexturesCubeMap, UNKNOWN);
+        arrayBuffer = UNKNOWN;
+        elementArrayBuffer = UNKNOWN;
+        Arrays.fill(enabledAttribs, UNKNOWN);
+        invalidateAttribPointers();
+        Arrays.fill(caps, UNKNOWN);
+        blendSrcFactor = UNKNOWN;
+        blendDstFactor = UNKNOWN;
+        depthMask = UNKNOWN;
+    }
+
+    private void invalidateAttribPointers() {
+        for (int i = 0; i < MAX_VERTEX_ATTRIBS; i++) {
+            attribPointers[i * POINTER_FIELDS + POINTER_BUFFER] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Starts counting the calls of a new frame. The counts of the previous one are kept for
+     * {@link #getLastFrameIssuedCalls()} and {@link #getLastFrameSuppressedCalls()}.
+     */
+    public void beginFrame() {
+        lastFrameIssuedCalls = issuedCalls;
+        lastFrameSuppressedCalls = suppressedCalls;
+        issuedCalls = 0;
+        suppressedCalls = 0;
+    }
+
+    /**
+     * @return whether the call should be dropped, because the state is {@code unchanged}. Counts the call either way.
+     */
+    private boolean redundant(boolean unchanged) {
+        if (unchanged) {
+            suppressedCalls++;
+            return true;
+        }
+        issuedCalls++;
+        return false;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (redundant(this.program == program)) {
+            return;
+        }
+        this.program = program;
+        gl.glUseProgram(program);
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        final int unit = texture - GLES20.GL_TEXTURE0;
+        if (redundant(activeTextureUnit == unit)) {
+            return;
+        }
+        activeTextureUnit = unit;
+        gl.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        final int[] boundTextures = target == GLES20.GL_TEXTURE_2D ? boundTextures2D
+                : target == GLES20.GL_TEXTURE_CUBE_MAP ? boundTexturesCubeMap : null;
+        if (boundTextures == null || activeTextureUnit < 0 || activeTextureUnit >= MAX_TEXTURE_UNITS) {
+            issuedCalls++;
+            gl.glBindTexture(target, texture);
+            return;
+        }
+        if (redundant(boundTextures[activeTextureUnit] == texture)) {
+            return;
+        }
+        boundTextures[activeTextureUnit] = texture;
+        gl.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            if (redundant(arrayBuffer == buffer)) {
+                return;
+            }
+            arrayBuffer = buffer;
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            if (redundant(elementArrayBuffer == buffer)) {
+                return;
+            }
+            elementArrayBuffer = buffer;
+        } else {
+            issuedCalls++;
+        }
+        gl.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        issuedCalls++;
+        // Deleting a bound buffer reverts the binding to 0.
+        for (int i = 0; i < n; i++) {
+            final int buffer = buffers[offset + i];
+            if (buffer == arrayBuffer) {
+                arrayBuffer = 0;
+            }
+            if (buffer == elementArrayBuffer) {
+                elementArrayBuffer = 0;
+            }
+        }
+        // The attribute pointers still reference the deleted name.
+        invalidateAttribPointers();
+        gl.glDeleteBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS) {
+            if (redundant(enabledAttribs[index] == 1)) {
+                return;
+            }
+            enabledAttribs[index] = 1;
+        } else {
+            issuedCalls++;
+        }
+        gl.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS) {
+            if (redundant(enabledAttribs[index] == 0)) {
+                return;
+            }
+            enabledAttribs[index] = 0;
+        } else {
+            issuedCalls++;
+        }
+        gl.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        // The pointer captures the buffer bound at the time of the call.
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS && arrayBuffer != UNKNOWN) {
+            final int base = index * POINTER_FIELDS;
+            final int normalizedValue = normalized ? 1 : 0;
+            if (redundant(attribPointers[base + POINTER_BUFFER] == arrayBuffer
+                    && attribPointers[base + POINTER_SIZE] == size
+                    && attribPointers[base + POINTER_TYPE] == type
+                    && attribPointers[base + POINTER_NORMALIZED] == normalizedValue
+                    && attribPointers[base + POINTER_STRIDE] == stride
+                    && attribPointers[base + POINTER_OFFSET] == offset)) {
+                return;
+            }
+            attribPointers[base + POINTER_BUFFER] = arrayBuffer;
+            attribPointers[base + POINTER_SIZE] = size;
+            attribPointers[base + POINTER_TYPE] = type;
+            attribPointers[base + POINTER_NORMALIZED] = normalizedValue;
+            attribPointers[base + POINTER_STRIDE] = stride;
+            attribPointers[base + POINTER_OFFSET] = offset;
+        } else {
+            issuedCalls++;
+        }
+        gl.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        final int i = indexOfCap(cap);
+        if (i >= 0) {
+            if (redundant(caps[i] == 1)) {
+                return;
+            }
+            caps[i] = 1;
+        } else {
+            issuedCalls++;
+        }
+        gl.glEnable(cap);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        final int i = indexOfCap(cap);
+        if (i >= 0) {
+            if (redundant(caps[i] == 0)) {
+                return;
+            }
+            caps[i] = 0;
+        } else {
+            issuedCalls++;
+        }
+        gl.glDisable(cap);
+    }
+
+    private static int indexOfCap(int cap) {
+        for (int i = 0; i < CAPS.length; i++) {
+            if (CAPS[i] == cap) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (redundant(blendSrcFactor == sfactor && blendDstFactor == dfactor)) {
+            return;
+        }
+        blendSrcFactor = sfactor;
+        blendDstFactor = dfactor;
+        gl.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        final int value = flag ? 1 : 0;
+        if (redundant(depthMask == value)) {
+            return;
+        }
+        depthMask = value;
+        gl.glDepthMask(flag);
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        issuedCalls++;
+        // The name may be reused by the next program.
+        if (program == this.program) {
+            this.program = UNKNOWN;
+        }
+        gl.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        issuedCalls++;
+        // The names may be reused by the next textures.
+        for (int i = 0; i < n; i++) {
+            for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+                if (boundTextures2D[unit] == textures[offset + i]) {
+                    boundTextures2D[unit] = UNKNOWN;
+                }
+                if (boundTexturesCubeMap[unit] == textures[offset + i]) {
+                    boundTexturesCubeMap[unit] = UNKNOWN;
+                }
+            }
+        }
+        gl.glDeleteTextures(n, textures, offset);
+    }
+
+    // Passed on.
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        issuedCalls++;
+        gl.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        issuedCalls++;
+        gl.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        issuedCalls++;
+        gl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+        issuedCalls++;
+        gl.glCompressedTexImage2D(target, level, internalformat, width, height, border, imageSize, data);
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        issuedCalls++;
+        gl.glGenerateMipmap(target);
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        issuedCalls++;
+        gl.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        issuedCalls++;
+        gl.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+        issuedCalls++;
+        gl.glVertexAttrib4f(index, x, y, z, w);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        issuedCalls++;
+        gl.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        issuedCalls++;
+        gl.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        issuedCalls++;
+        gl.glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        issuedCalls++;
+        gl.glUniform3f(location, x, y, z);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        issuedCalls++;
+        gl.glUniform4f(location, x, y, z, w);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        issuedCalls++;
+        gl.glUniform4fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        issuedCalls++;
+        gl.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        issuedCalls++;
+        gl.glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        issuedCalls++;
+        gl.glClear(mask);
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        issuedCalls++;
+        return gl.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        issuedCalls++;
+        gl.glShaderSource(shader, string);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        issuedCalls++;
+        gl.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        issuedCalls++;
+        gl.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        issuedCalls++;
+        return gl.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        issuedCalls++;
+        gl.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        issuedCalls++;
+        return gl.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        issuedCalls++;
+        gl.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader) {
+        issuedCalls++;
+        gl.glDetachShader(program, shader);
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        issuedCalls++;
+        gl.glBindAttribLocation(program, index, name);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        issuedCalls++;
+        gl.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        issuedCalls++;
+        gl.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        issuedCalls++;
+        return gl.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat,
+                                   int binaryFormatOffset, Buffer binary) {
+        issuedCalls++;
+        gl.glGetProgramBinary(program, bufSize, length, lengthOffset, binaryFormat, binaryFormatOffset, binary);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        issuedCalls++;
+        gl.glProgramBinary(program, binaryFormat, binary, length);
+    }
+
+    @Override
+    public String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset) {
+        issuedCalls++;
+        return gl.glGetActiveUniform(program, index, size, sizeOffset, type, typeOffset);
+    }
+
+    @Override
+    public String glGetActiveAttrib(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset) {
+        issuedCalls++;
+        return gl.glGetActiveAttrib(program, index, size, sizeOffset, type, typeOffset);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        issuedCalls++;
+        return gl.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        issuedCalls++;
+        return gl.glGetAttribLocation(program, name);
+    }
+
+    /**
+     * @return calls passed on in the current frame.
+     */
+    public int getIssuedCalls() {
+        return issuedCalls;
+    }
+
+    /**
+     * @return calls dropped in the current frame.
+     */
+    public int getSuppressedCalls() {
+        return suppressedCalls;
+    }
+
+    public int getLastFrameIssuedCalls() {
+        return lastFrameIssuedCalls;
+    }
+
+    public int getLastFrameSuppressedCalls() {
+        return lastFrameSuppressedCalls;
+    }
+}
@@ -0,0 +1,87 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.nio.FloatBuffer;
+
+/**
+ * The bounding volumes of a mesh in model space: the axis-aligned bounding box and a bounding sphere around its center.
+ */
+public class Bounds {
+    /**
+     * The smallest x, y, z of all the vertices.
+     */
+    private final float[] min = new float[3];
+    /**
+     * The largest x, y, z of all the vertices.
+     */
+    private final float[] max = new float[3];
+    /**
+     * The center of the bounding sphere, which is the center of the box.
+     */
+    private final float[] center = new float[3];
+    private float radius;
+
+    /**
+     * Computes the bounds of the interleaved {@code vertices}.
+     *
+     * @param vertexData interleaved vertices, see {@link MeshIndexer} for the layout
+     * @param vertices   number of vertices
+     * @return the bounds
+     */
+    public static Bounds of(FloatBuffer vertexData, int vertices) {
+        final Bounds bounds = new Bounds();
+        if (vertices == 0) {
+            return bounds;
+        }
+
+        for (int j = 0; j < 3; j++) {
+            bounds.min[j] = Float.POSITIVE_INFINITY;
+            bounds.max[j] = Float.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < vertices; i++) {
+            final int offset = i * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET;
+            for (int j = 0; j < 3; j++) {
+                final float value = vertexData.get(offset + j);
+                bounds.min[j] = Math.min(bounds.min[j], value);
+                bounds.max[j] = Math.max(bounds.max[j], value);
+            }
+        }
+        for (int j = 0; j < 3; j++) {
+            bounds.center[j] = (bounds.min[j] + bounds.max[j]) / 2.f;
+        }
+
+        // The farthest vertex from the center, which is usually closer than the corners of the box.
+        float radiusSquared = 0.f;
+        for (int i = 0; i < vertices; i++) {
+            final int offset = i * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET;
+            final float dx = vertexData.get(offset) - bounds.center[0];
+            final float dy = vertexData.get(offset + 1) - bounds.center[1];
+            final float dz = vertexData.get(offset + 2) - bounds.center[2];
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+        bounds.radius = (float) Math.sqrt(radiusSquared);
+
+        return bounds;
+    }
+
+    public float[] getMin() {
+        return min;
+    }
+
+    public float[] getMax() {
+        return max;
+    }
+
+    /**
+     * @return the center of the bounding sphere in model space.
+     */
+    public float[] getCenter() {
+        return center;
+    }
+
+    /**
+     * @return the radius of the bounding sphere in model space.
+     */
+    public float getRadius() {
+        return radius;
+    }
+}
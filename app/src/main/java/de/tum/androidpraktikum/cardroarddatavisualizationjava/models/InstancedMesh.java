@@ -0,0 +1,305 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * A mesh replicated several times in one vertex and index buffer, so that many instances of it can be drawn at once
+ * without hardware instancing. Every vertex carries the number of its copy (the instance id) after the layout of
+ * {@link MeshIndexer}; the shader uses it to look up the per-instance data in uniform arrays.
+ * <p>
+ * The first n instances are drawn by drawing the first n copies of the indices. All the copies are addressed by 16-bit
+ * indices, so the number of instances is limited to {@link MeshFile#MAX_SHORT_INDEXED_VERTICES} vertices.
+ * <p>
+ * Every level of detail of the mesh is replicated on its own, one level after another in the index buffer. The vertices
+ * are either floats or quantized (see {@link QuantizedVertices#replicate(int)}), which keep the instance id in a
+ * short of their own.
+ */
+public class InstancedMesh {
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int BYTES_PER_SHORT = 2;
+    /**
+     * Number of floats per vertex: the layout of {@link MeshIndexer} and the instance id.
+     */
+    public static final int FLOATS_PER_VERTEX = MeshIndexer.FLOATS_PER_VERTEX + 1;
+    /**
+     * Offset of the instance id in a vertex.
+     */
+    public static final int INSTANCE_ID_OFFSET = MeshIndexer.FLOATS_PER_VERTEX;
+    /**
+     * Size of a vertex in bytes.
+     */
+    public static final int VERTEX_STRIDE = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    /**
+     * Vertex and index buffer handles.
+     */
+    private final int[] buffers = new int[2];
+    /**
+     * Number of indices of a single instance per level of detail.
+     */
+    private final int[] levelIndexCounts;
+    /**
+     * Position of the first index of the replicated level of detail.
+     */
+    private final int[] levelIndexOffsets;
+    private final int instances;
+    private final VertexFormat vertexFormat;
+
+    /**
+     * @param vertices           number of vertices of the mesh
+     * @param requestedInstances the instances wanted per draw
+     * @return how many copies of a mesh of {@code vertices} can be addressed by 16-bit indices, at most {@code requestedInstances}.
+     */
+    public static int getMaxInstances(int vertices, int requestedInstances) {
+        if (vertices == 0) {
+            return 0;
+        }
+        return Math.min(requestedInstances, MeshFile.MAX_SHORT_INDEXED_VERTICES / vertices);
+    }
+
+    /**
+     * Copies the interleaved {@code vertices} {@code instances} times, appending the instance id to every vertex.
+     *
+     * @param vertexData interleaved vertices, see {@link MeshIndexer} for the layout
+     * @param vertices   number of vertices
+     * @param instances
+     * @return the replicated vertices
+     */
+    public static FloatBuffer replicateVertices(FloatBuffer vertexData, int vertices, int instances) {
+        final FloatBuffer replicated = ByteBuffer.allocateDirect(vertices * instances * VERTEX_STRIDE)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        final float[] vertex = new float[MeshIndexer.FLOATS_PER_VERTEX];
+
+        for (int instance = 0; instance < instances; instance++) {
+            vertexData.position(0);
+            for (int i = 0; i < vertices; i++) {
+                vertexData.get(vertex);
+                replicated.put(vertex);
+                replicated.put(instance);
+            }
+        }
+        vertexData.position(0);
+        replicated.position(0);
+
+        return replicated;
+    }
+
+    /**
+     * Copies the {@code indices} {@code instances} times, shifting every copy to its copy of the vertices.
+     *
+     * @param indexData a {@link ShortBuffer} or an {@link IntBuffer}
+     * @param indices   number of indices
+     * @param vertices  number of vertices
+     * @param instances at most {@link #getMaxInstances(int, int)}
+     * @return the replicated 16-bit indices
+     */
+    public static ShortBuffer replicateIndices(Buffer indexData, int indices, int vertices, int instances) {
+        return replicateIndices(indexData, new int[]{indices}, vertices, instances);
+    }
+
+    /**
+     * Copies the indices of every level of detail {@code instances} times, shifting every copy to its copy of the
+     * vertices. The replicated levels follow each other.
+     *
+     * @param indexData        a {@link ShortBuffer} or an {@link IntBuffer} holding the levels one after another
+     * @param levelIndexCounts number of indices per level
+     * @param vertices         number of vertices
+     * @param instances        at most {@link #getMaxInstances(int, int)}
+     * @return the replicated 16-bit indices
+     */
+    public static ShortBuffer replicateIndices(Buffer indexData, int[] levelIndexCounts, int vertices, int instances) {
+        if (vertices * instances > MeshFile.MAX_SHORT_INDEXED_VERTICES) {
+            throw new RuntimeException(instances + " instances of " + vertices + " vertices can't be addressed by 16-bit indices.");
+        }
+
+        int indices = 0;
+        for (int levelIndexCount : levelIndexCounts) {
+            indices += levelIndexCount;
+        }
+        final ShortBuffer replicated = ByteBuffer.allocateDirect(indices * instances * BYTES_PER_SHORT)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+
+        int levelOffset = 0;
+        for (int levelIndexCount : levelIndexCounts) {
+            for (int instance = 0; instance < instances; instance++) {
+                final int base = instance * vertices;
+                for (int i = levelOffset; i < levelOffset + levelIndexCount; i++) {
+                    final int index = indexData instanceof ShortBuffer
+                            ? ((ShortBuffer) indexData).get(i) & 0xFFFF
+                            : ((IntBuffer) indexData).get(i);
+                    replicated.put((short) (base + index));
+                }
+            }
+            levelOffset += levelIndexCount;
+        }
+        replicated.position(0);
+
+        return replicated;
+    }
+
+    /**
+     * Uploads the replicated data into new buffer objects. The client-side buffers can be dropped afterwards.
+     *
+     * @param gl
+     * @param vertexData see {@link #replicateVertices(FloatBuffer, int, int)}
+     * @param indexData  see {@link #replicateIndices(Buffer, int, int, int)}
+     * @param indexCount number of indices of a single instance
+     * @param instances  number of copies in the data
+     */
+    public InstancedMesh(GLApi gl, FloatBuffer vertexData, ShortBuffer indexData, int indexCount, int instances) {
+        this(gl, vertexData, indexData, new int[]{indexCount}, instances);
+    }
+
+    /**
+     * Uploads the replicated data with several levels of detail into new buffer objects. The client-side buffers can
+     * be dropped afterwards.
+     *
+     * @param gl
+     * @param vertexData       see {@link #replicateVertices(FloatBuffer, int, int)}
+     * @param indexData        see {@link #replicateIndices(Buffer, int[], int, int)}
+     * @param levelIndexCounts number of indices of a single instance per level, starting with the full mesh
+     * @param instances        number of copies in the data
+     */
+    public InstancedMesh(GLApi gl, FloatBuffer vertexData, ShortBuffer indexData, int[] levelIndexCounts, int instances) {
+        this(gl, vertexData, vertexData.capacity() * BYTES_PER_FLOAT, VertexFormat.FLOAT, indexData, levelIndexCounts, instances);
+    }
+
+    /**
+     * Uploads the replicated quantized vertices and the replicated indices with several levels of detail into new buffer
+     * objects. The client-side buffers can be dropped afterwards.
+     *
+     * @param gl
+     * @param vertexData       see {@link QuantizedVertices#replicate(int)}
+     * @param vertexFormat     the format of the quantized vertices
+     * @param indexData        see {@link #replicateIndices(Buffer, int[], int, int)}
+     * @param levelIndexCounts number of indices of a single instance per level, starting with the full mesh
+     * @param instances        number of copies in the data
+     */
+    public InstancedMesh(GLApi gl, ByteBuffer vertexData, VertexFormat vertexFormat, ShortBuffer indexData, int[] levelIndexCounts,
+                         int instances) {
+        this(gl, vertexData, vertexData.capacity(), vertexFormat, indexData, levelIndexCounts, instances);
+    }
+
+    private InstancedMesh(GLApi gl, Buffer vertexData, int vertexBytes, VertexFormat vertexFormat, ShortBuffer indexData,
+                          int[] levelIndexCounts, int instances) {
+        this.vertexFormat = vertexFormat;
+        this.levelIndexCounts = levelIndexCounts.clone();
+        this.instances = instances;
+        levelIndexOffsets = new int[levelIndexCounts.length];
+        int indexCount = 0;
+        for (int level = 0; level < levelIndexCounts.length; level++) {
+            levelIndexOffsets[level] = indexCount;
+            indexCount += levelIndexCounts[level] * instances;
+        }
+
+        gl.glGenBuffers(2, buffers, 0);
+        if (buffers[0] == 0 || buffers[1] == 0) {
+            throw new RuntimeException("Error creating buffer objects.");
+        }
+
+        vertexData.position(0);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexBytes, vertexData, GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        indexData.position(0);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffers[1]);
+        gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount * BYTES_PER_SHORT, indexData, GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Binds the buffers and points the given attributes into the vertex buffer. A negative attribute location is
+     * skipped.
+     *
+     * @param gl
+     * @param positionHandle
+     * @param normalHandle
+     * @param texCoordinateHandle
+     * @param instanceIdHandle
+     */
+    public void bind(GLApi gl, int positionHandle, int normalHandle, int texCoordinateHandle, int instanceIdHandle) {
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffers[1]);
+
+        if (vertexFormat.isQuantized()) {
+            final int stride = QuantizedVertices.VERTEX_STRIDE;
+            Mesh.bindAttribute(gl, positionHandle, 3, GLES20.GL_UNSIGNED_SHORT, stride, QuantizedVertices.POSITION_OFFSET);
+            Mesh.bindAttribute(gl, normalHandle, 3, GLES20.GL_BYTE, stride, QuantizedVertices.NORMAL_OFFSET);
+            Mesh.bindAttribute(gl, texCoordinateHandle, 2, GLES20.GL_UNSIGNED_SHORT, stride, QuantizedVertices.TEXEL_OFFSET);
+            Mesh.bindAttribute(gl, instanceIdHandle, 1, GLES20.GL_UNSIGNED_SHORT, stride, QuantizedVertices.INSTANCE_ID_OFFSET);
+        } else {
+            Mesh.bindAttribute(gl, positionHandle, 3, GLES20.GL_FLOAT, VERTEX_STRIDE, MeshIndexer.POSITION_OFFSET * BYTES_PER_FLOAT);
+            Mesh.bindAttribute(gl, normalHandle, 3, GLES20.GL_FLOAT, VERTEX_STRIDE, MeshIndexer.NORMAL_OFFSET * BYTES_PER_FLOAT);
+            Mesh.bindAttribute(gl, texCoordinateHandle, 2, GLES20.GL_FLOAT, VERTEX_STRIDE, MeshIndexer.TEXEL_OFFSET * BYTES_PER_FLOAT);
+            Mesh.bindAttribute(gl, instanceIdHandle, 1, GLES20.GL_FLOAT, VERTEX_STRIDE, INSTANCE_ID_OFFSET * BYTES_PER_FLOAT);
+        }
+    }
+
+    /**
+     * Draws the first {@code count} instances. Expects the mesh to be bound.
+     *
+     * @param gl
+     * @param count at most {@link #getInstances()}
+     */
+    public void draw(GLApi gl, int count) {
+        draw(gl, count, 0);
+    }
+
+    /**
+     * Draws the first {@code count} instances at a level of detail. Expects the mesh to be bound.
+     *
+     * @param gl
+     * @param count at most {@link #getInstances()}
+     * @param level 0 for the full mesh, at most {@link #getLevels()} - 1
+     */
+    public void draw(GLApi gl, int count, int level) {
+        gl.glDrawElements(GLES20.GL_TRIANGLES, levelIndexCounts[level] * count, GLES20.GL_UNSIGNED_SHORT,
+                levelIndexOffsets[level] * BYTES_PER_SHORT);
+    }
+
+    /**
+     * Deletes the buffer objects.
+     *
+     * @param gl
+     */
+    public void release(GLApi gl) {
+        gl.glDeleteBuffers(2, buffers, 0);
+        buffers[0] = 0;
+        buffers[1] = 0;
+    }
+
+    /**
+     * @return how many instances can be drawn at once.
+     */
+    public int getInstances() {
+        return instances;
+    }
+
+    /**
+     * @return the number of levels of detail including the full mesh.
+     */
+    public int getLevels() {
+        return levelIndexCounts.length;
+    }
+
+    /**
+     * @return how the shader gets the attributes back.
+     */
+    public VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
+
+    public int getVertexBuffer() {
+        return buffers[0];
+    }
+}
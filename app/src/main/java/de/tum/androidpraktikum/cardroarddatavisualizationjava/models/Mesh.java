@@ -0,0 +1,214 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * A mesh resident on the GPU: the interleaved vertices (see {@link MeshIndexer} for the layout) in a vertex buffer
+ * object and the indices in an index buffer object. Once uploaded, draws only bind the buffers by offset instead of
+ * passing client-side buffers, which the driver would have to copy on every draw.
+ * <p>
+ * The index buffer may hold several levels of detail one after another, all indexing the same vertices. The vertices
+ * are either floats or quantized (see {@link QuantizedVertices}); {@link #getVertexFormat()} tells the shader which.
+ */
+public class Mesh {
+    private static final int BYTES_PER_FLOAT = 4;
+    /**
+     * Size of an interleaved vertex in bytes.
+     */
+    public static final int VERTEX_STRIDE = MeshIndexer.FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    /**
+     * Vertex and index buffer handles.
+     */
+    private final int[] buffers = new int[2];
+    /**
+     * Number of indices per level of detail.
+     */
+    private final int[] levelIndexCounts;
+    /**
+     * Position of the first index per level of detail.
+     */
+    private final int[] levelIndexOffsets;
+    private final int indexType;
+    private final VertexFormat vertexFormat;
+
+    /**
+     * Uploads the given data into new buffer objects. The client-side buffers can be dropped afterwards.
+     *
+     * @param gl
+     * @param vertexData  interleaved vertices
+     * @param indexData   {@code indexCount} indices of {@code indexType}
+     * @param indexType   {@link GLES20#GL_UNSIGNED_SHORT} or {@link GLES20#GL_UNSIGNED_INT}
+     * @param indexCount
+     */
+    public Mesh(GLApi gl, FloatBuffer vertexData, Buffer indexData, int indexType, int indexCount) {
+        this(gl, vertexData, indexData, indexType, new int[]{indexCount});
+    }
+
+    /**
+     * Uploads the given data with several levels of detail into new buffer objects. The client-side buffers can be
+     * dropped afterwards.
+     *
+     * @param gl
+     * @param vertexData       interleaved vertices
+     * @param indexData        the indices of all the levels one after another, of {@code indexType}
+     * @param indexType        {@link GLES20#GL_UNSIGNED_SHORT} or {@link GLES20#GL_UNSIGNED_INT}
+     * @param levelIndexCounts number of indices per level, starting with the full mesh
+     */
+    public Mesh(GLApi gl, FloatBuffer vertexData, Buffer indexData, int indexType, int[] levelIndexCounts) {
+        this(gl, vertexData, vertexData.capacity() * BYTES_PER_FLOAT, VertexFormat.FLOAT, indexData, indexType, levelIndexCounts);
+    }
+
+    /**
+     * Uploads the quantized vertices and the indices with several levels of detail into new buffer objects. The
+     * client-side buffers can be dropped afterwards.
+     *
+     * @param gl
+     * @param vertices         the quantized vertices
+     * @param indexData        the indices of all the levels one after another, of {@code indexType}
+     * @param indexType        {@link GLES20#GL_UNSIGNED_SHORT} or {@link GLES20#GL_UNSIGNED_INT}
+     * @param levelIndexCounts number of indices per level, starting with the full mesh
+     */
+    public Mesh(GLApi gl, QuantizedVertices vertices, Buffer indexData, int indexType, int[] levelIndexCounts) {
+        this(gl, vertices.getData(), vertices.getBytes(), vertices.getFormat(), indexData, indexType, levelIndexCounts);
+    }
+
+    private Mesh(GLApi gl, Buffer vertexData, int vertexBytes, VertexFormat vertexFormat, Buffer indexData, int indexType,
+                 int[] levelIndexCounts) {
+        this.indexType = indexType;
+        this.vertexFormat = vertexFormat;
+        this.levelIndexCounts = levelIndexCounts.clone();
+        levelIndexOffsets = new int[levelIndexCounts.length];
+        int indexCount = 0;
+        for (int level = 0; level < levelIndexCounts.length; level++) {
+            levelIndexOffsets[level] = indexCount;
+            indexCount += levelIndexCounts[level];
+        }
+
+        gl.glGenBuffers(2, buffers, 0);
+        if (buffers[0] == 0 || buffers[1] == 0) {
+            throw new RuntimeException("Error creating buffer objects.");
+        }
+
+        vertexData.position(0);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexBytes, vertexData, GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        indexData.position(0);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffers[1]);
+        gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount * getIndexSize(indexType), indexData, GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Binds the buffers and points the given attributes into the vertex buffer. A negative attribute location
+     * (an attribute the program doesn't use) is skipped.
+     *
+     * @param gl
+     * @param positionHandle
+     * @param normalHandle
+     * @param texCoordinateHandle
+     */
+    public void bind(GLApi gl, int positionHandle, int normalHandle, int texCoordinateHandle) {
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffers[1]);
+
+        if (vertexFormat.isQuantized()) {
+            bindAttribute(gl, positionHandle, 3, GLES20.GL_UNSIGNED_SHORT, QuantizedVertices.VERTEX_STRIDE, QuantizedVertices.POSITION_OFFSET);
+            bindAttribute(gl, normalHandle, 3, GLES20.GL_BYTE, QuantizedVertices.VERTEX_STRIDE, QuantizedVertices.NORMAL_OFFSET);
+            bindAttribute(gl, texCoordinateHandle, 2, GLES20.GL_UNSIGNED_SHORT, QuantizedVertices.VERTEX_STRIDE, QuantizedVertices.TEXEL_OFFSET);
+        } else {
+            bindAttribute(gl, positionHandle, 3, GLES20.GL_FLOAT, VERTEX_STRIDE, MeshIndexer.POSITION_OFFSET * BYTES_PER_FLOAT);
+            bindAttribute(gl, normalHandle, 3, GLES20.GL_FLOAT, VERTEX_STRIDE, MeshIndexer.NORMAL_OFFSET * BYTES_PER_FLOAT);
+            bindAttribute(gl, texCoordinateHandle, 2, GLES20.GL_FLOAT, VERTEX_STRIDE, MeshIndexer.TEXEL_OFFSET * BYTES_PER_FLOAT);
+        }
+    }
+
+    /**
+     * Points the attribute {@code handle} into the bound vertex buffer. The values are passed as they are, not
+     * normalized.
+     */
+    static void bindAttribute(GLApi gl, int handle, int size, int type, int stride, int byteOffset) {
+        if (handle < 0) {
+            return;
+        }
+        gl.glVertexAttribPointer(handle, size, type, false, stride, byteOffset);
+        gl.glEnableVertexAttribArray(handle);
+    }
+
+    /**
+     * Draws the full mesh. Expects the mesh to be bound.
+     *
+     * @param gl
+     */
+    public void draw(GLApi gl) {
+        draw(gl, 0);
+    }
+
+    /**
+     * Draws a level of detail. Expects the mesh to be bound.
+     *
+     * @param gl
+     * @param level 0 for the full mesh, at most {@link #getLevels()} - 1
+     */
+    public void draw(GLApi gl, int level) {
+        gl.glDrawElements(GLES20.GL_TRIANGLES, levelIndexCounts[level], indexType, levelIndexOffsets[level] * getIndexSize(indexType));
+    }
+
+    /**
+     * Deletes the buffer objects.
+     *
+     * @param gl
+     */
+    public void release(GLApi gl) {
+        gl.glDeleteBuffers(2, buffers, 0);
+        buffers[0] = 0;
+        buffers[1] = 0;
+    }
+
+    /**
+     * @return the handle of the vertex buffer, which also identifies the mesh.
+     */
+    public int getVertexBuffer() {
+        return buffers[0];
+    }
+
+    /**
+     * @return the number of indices of the full mesh.
+     */
+    public int getIndexCount() {
+        return levelIndexCounts[0];
+    }
+
+    /**
+     * @return the number of levels of detail including the full mesh.
+     */
+    public int getLevels() {
+        return levelIndexCounts.length;
+    }
+
+    public int getIndexCount(int level) {
+        return levelIndexCounts[level];
+    }
+
+    public int getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * @return how the shader gets the attributes back.
+     */
+    public VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
+
+    private static int getIndexSize(int indexType) {
+        return indexType == GLES20.GL_UNSIGNED_INT ? 4 : 2;
+    }
+}
@@ -0,0 +1,370 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Precompiled binary mesh. Holds a fixed size header with the counts and the bounds of the mesh followed by
+ * the interleaved vertices (see {@link MeshIndexer} for the layout) and the 16 or 32-bit indices. Everything is stored
+ * in the native byte order, so a cached file can be memory-mapped and handed to OpenGL without any parsing.
+ * <p>
+ * The indices of up to {@link #MAX_SIMPLIFIED_LEVELS} simplified levels of detail (see {@link MeshSimplifier}) follow
+ * the indices of the full mesh. They index the same vertices.
+ */
+public class MeshFile {
+    /**
+     * Extension of the cached mesh files.
+     */
+    public static final String EXTENSION = ".mesh";
+    /**
+     * 'MESH' read in the native byte order. A file written on a machine with another byte order won't match.
+     */
+    public static final int MAGIC = 0x4D455348;
+    /**
+     * Bump this whenever the layout changes, so that stale caches get rebuilt.
+     */
+    public static final int VERSION = 3;
+    /**
+     * Size of the header in bytes. Keeps the streams 16-byte aligned.
+     */
+    public static final int HEADER_SIZE = 80;
+    /**
+     * Largest number of vertices, which can be addressed with 16-bit indices.
+     */
+    public static final int MAX_SHORT_INDEXED_VERTICES = 1 << 16;
+    /**
+     * Largest number of simplified levels of detail besides the full mesh.
+     */
+    public static final int MAX_SIMPLIFIED_LEVELS = 3;
+
+    private static final int BYTES_PER_FLOAT = 4;
+
+    // Header offsets.
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_SOURCE_STAMP = 8;
+    private static final int OFFSET_VERTICES = 16;
+    private static final int OFFSET_INDICES = 20;
+    private static final int OFFSET_INDEX_SIZE = 24;
+    private static final int OFFSET_POSITIONS = 28;
+    private static final int OFFSET_TEXELS = 32;
+    private static final int OFFSET_NORMALS = 36;
+    private static final int OFFSET_FACES = 40;
+    private static final int OFFSET_HIGHEST = 44;
+    private static final int OFFSET_LOWEST = 56;
+    /**
+     * Number of indices per simplified level, 0 for the missing levels.
+     */
+    private static final int OFFSET_LEVEL_INDICES = 68;
+
+    /**
+     * Header and streams. Either a direct buffer or a read-only mapping of the cache file.
+     */
+    private final ByteBuffer data;
+
+    private final FloatBuffer vertexData;
+    /**
+     * Either a {@link ShortBuffer} or an {@link IntBuffer}, depending on the index size. Holds the indices of all the
+     * levels.
+     */
+    private final Buffer indexData;
+
+    private MeshFile(ByteBuffer data) {
+        this.data = data;
+
+        final int vertexBytes = getVertices() * MeshIndexer.FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+        vertexData = slice(HEADER_SIZE, vertexBytes).asFloatBuffer();
+
+        ByteBuffer indexBytes = slice(HEADER_SIZE + vertexBytes, getTotalIndices(data) * getIndexSize());
+        indexData = getIndexSize() == 2 ? indexBytes.asShortBuffer() : indexBytes.asIntBuffer();
+    }
+
+    /**
+     * Allocates an empty mesh to be filled by the OBJ loader.
+     *
+     * @param sourceStamp identifies the version of the source the mesh is built from
+     * @param vertices    number of (deduplicated) vertices
+     * @param indices     number of indices
+     * @param positions   number of positions in the source
+     * @param texels      number of texels in the source
+     * @param normals     number of normals in the source
+     * @param faces       number of faces in the source
+     * @return a writable mesh backed by a direct buffer
+     */
+    public static MeshFile allocate(long sourceStamp, int vertices, int indices, int positions, int texels, int normals, int faces) {
+        return allocate(sourceStamp, vertices, indices, positions, texels, normals, faces, new int[0]);
+    }
+
+    /**
+     * Allocates an empty mesh with simplified levels of detail to be filled by the OBJ loader.
+     *
+     * @param sourceStamp  identifies the version of the source the mesh is built from
+     * @param vertices     number of (deduplicated) vertices
+     * @param indices      number of indices of the full mesh
+     * @param positions    number of positions in the source
+     * @param texels       number of texels in the source
+     * @param normals      number of normals in the source
+     * @param faces        number of faces in the source
+     * @param levelIndices number of indices per simplified level, at most {@link #MAX_SIMPLIFIED_LEVELS} levels
+     * @return a writable mesh backed by a direct buffer
+     */
+    public static MeshFile allocate(long sourceStamp, int vertices, int indices, int positions, int texels, int normals, int faces,
+                                    int[] levelIndices) {
+        if (levelIndices.length > MAX_SIMPLIFIED_LEVELS) {
+            throw new RuntimeException("Too many levels of detail! At most " + MAX_SIMPLIFIED_LEVELS + " are supported.");
+        }
+        int totalIndices = indices;
+        for (int levelIndexCount : levelIndices) {
+            totalIndices += levelIndexCount;
+        }
+
+        final int indexSize = vertices <= MAX_SHORT_INDEXED_VERTICES ? 2 : 4;
+        ByteBuffer data = ByteBuffer.allocateDirect(getFileSize(vertices, totalIndices, indexSize)).order(ByteOrder.nativeOrder());
+        data.putInt(OFFSET_MAGIC, MAGIC);
+        data.putInt(OFFSET_VERSION, VERSION);
+        data.putLong(OFFSET_SOURCE_STAMP, sourceStamp);
+        data.putInt(OFFSET_VERTICES, vertices);
+        data.putInt(OFFSET_INDICES, indices);
+        data.putInt(OFFSET_INDEX_SIZE, indexSize);
+        data.putInt(OFFSET_POSITIONS, positions);
+        data.putInt(OFFSET_TEXELS, texels);
+        data.putInt(OFFSET_NORMALS, normals);
+        data.putInt(OFFSET_FACES, faces);
+        for (int level = 0; level < levelIndices.length; level++) {
+            data.putInt(OFFSET_LEVEL_INDICES + level * 4, levelIndices[level]);
+        }
+
+        return new MeshFile(data);
+    }
+
+    /**
+     * Maps a cached mesh into memory.
+     *
+     * @param file        the cache file
+     * @param sourceStamp expected version of the source
+     * @return the mapped mesh or null, if there is no valid cache for the given {@code sourceStamp}
+     * @throws IOException
+     */
+    public static MeshFile map(File file, long sourceStamp) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed.
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.nativeOrder());
+
+            if (data.getInt(OFFSET_MAGIC) != MAGIC
+                    || data.getInt(OFFSET_VERSION) != VERSION
+                    || data.getLong(OFFSET_SOURCE_STAMP) != sourceStamp
+                    || data.capacity() != getFileSize(data.getInt(OFFSET_VERTICES), getTotalIndices(data), data.getInt(OFFSET_INDEX_SIZE))) {
+                return null;
+            }
+
+            return new MeshFile(data);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes the mesh to the {@code file}. Writes to a temporary file first, so that a crash never leaves a
+     * half-written cache behind.
+     *
+     * @param file the cache file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outputStream = new FileOutputStream(tmpFile);
+        try {
+            ByteBuffer content = data.duplicate();
+            content.clear();
+            FileChannel channel = outputStream.getChannel();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Could not move " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * Stores the highest and the lowest (with respect to Y) vertices of the mesh.
+     */
+    public void setBounds(float[] highest, float[] lowest) {
+        for (int i = 0; i < 3; i++) {
+            data.putFloat(OFFSET_HIGHEST + i * BYTES_PER_FLOAT, highest[i]);
+            data.putFloat(OFFSET_LOWEST + i * BYTES_PER_FLOAT, lowest[i]);
+        }
+    }
+
+    public float[] getHighest() {
+        return readVector(OFFSET_HIGHEST);
+    }
+
+    public float[] getLowest() {
+        return readVector(OFFSET_LOWEST);
+    }
+
+    public int getVertices() {
+        return data.getInt(OFFSET_VERTICES);
+    }
+
+    public int getIndices() {
+        return data.getInt(OFFSET_INDICES);
+    }
+
+    /**
+     * @return the number of levels of detail including the full mesh.
+     */
+    public int getLevels() {
+        int levels = 1;
+        while (levels <= MAX_SIMPLIFIED_LEVELS && data.getInt(OFFSET_LEVEL_INDICES + (levels - 1) * 4) > 0) {
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * @param level 0 for the full mesh
+     * @return the number of indices of the {@code level}.
+     */
+    public int getLevelIndices(int level) {
+        return level == 0 ? getIndices() : data.getInt(OFFSET_LEVEL_INDICES + (level - 1) * 4);
+    }
+
+    /**
+     * @param level 0 for the full mesh
+     * @return the position of the first index of the {@code level} in the {@link #getIndexData()}.
+     */
+    public int getLevelIndexOffset(int level) {
+        int offset = 0;
+        for (int i = 0; i < level; i++) {
+            offset += getLevelIndices(i);
+        }
+        return offset;
+    }
+
+    /**
+     * @return size of an index in bytes (2 or 4).
+     */
+    public int getIndexSize() {
+        return data.getInt(OFFSET_INDEX_SIZE);
+    }
+
+    public int getPositionsCount() {
+        return data.getInt(OFFSET_POSITIONS);
+    }
+
+    public int getTexelsCount() {
+        return data.getInt(OFFSET_TEXELS);
+    }
+
+    public int getNormalsCount() {
+        return data.getInt(OFFSET_NORMALS);
+    }
+
+    public int getFacesCount() {
+        return data.getInt(OFFSET_FACES);
+    }
+
+    public FloatBuffer getVertexData() {
+        return vertexData;
+    }
+
+    /**
+     * @return a {@link ShortBuffer} if {@link #getIndexSize()} is 2, an {@link IntBuffer} otherwise. Holds the indices
+     * of all the levels, see {@link #getLevelIndexOffset(int)}.
+     */
+    public Buffer getIndexData() {
+        return indexData;
+    }
+
+    /**
+     * Fills the mesh with the output of the {@code meshIndexer}.
+     *
+     * @param meshIndexer
+     */
+    public void put(MeshIndexer meshIndexer) {
+        vertexData.put(meshIndexer.getVertices(), 0, meshIndexer.getVerticesCount() * MeshIndexer.FLOATS_PER_VERTEX).position(0);
+
+        final int[] indices = meshIndexer.getIndices();
+        final int indicesCount = meshIndexer.getIndicesCount();
+        if (indexData instanceof ShortBuffer) {
+            ShortBuffer shortIndexData = (ShortBuffer) indexData;
+            for (int i = 0; i < indicesCount; i++) {
+                shortIndexData.put(i, (short) indices[i]);
+            }
+        } else {
+            ((IntBuffer) indexData).put(indices, 0, indicesCount).position(0);
+        }
+    }
+
+    /**
+     * Fills the indices of a simplified {@code level}.
+     *
+     * @param level   1 for the first simplified level
+     * @param indices {@link #getLevelIndices(int)} indices into the vertices
+     */
+    public void putLevel(int level, int[] indices) {
+        final int offset = getLevelIndexOffset(level);
+        final int count = getLevelIndices(level);
+        if (indexData instanceof ShortBuffer) {
+            ShortBuffer shortIndexData = (ShortBuffer) indexData;
+            for (int i = 0; i < count; i++) {
+                shortIndexData.put(offset + i, (short) indices[i]);
+            }
+        } else {
+            IntBuffer intIndexData = (IntBuffer) indexData;
+            for (int i = 0; i < count; i++) {
+                intIndexData.put(offset + i, indices[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of indices of all the levels.
+     */
+    private static int getTotalIndices(ByteBuffer data) {
+        int indices = data.getInt(OFFSET_INDICES);
+        for (int level = 0; level < MAX_SIMPLIFIED_LEVELS; level++) {
+            indices += data.getInt(OFFSET_LEVEL_INDICES + level * 4);
+        }
+        return indices;
+    }
+
+    private static int getFileSize(int vertices, int indices, int indexSize) {
+        return HEADER_SIZE + vertices * MeshIndexer.FLOATS_PER_VERTEX * BYTES_PER_FLOAT + indices * indexSize;
+    }
+
+    private float[] readVector(int offset) {
+        return new float[]{
+                data.getFloat(offset),
+                data.getFloat(offset + BYTES_PER_FLOAT),
+                data.getFloat(offset + 2 * BYTES_PER_FLOAT)};
+    }
+
+    private ByteBuffer slice(int byteOffset, int bytes) {
+        ByteBuffer duplicate = data.duplicate();
+        duplicate.position(byteOffset);
+        duplicate.limit(byteOffset + bytes);
+        return duplicate.slice().order(ByteOrder.nativeOrder());
+    }
+}
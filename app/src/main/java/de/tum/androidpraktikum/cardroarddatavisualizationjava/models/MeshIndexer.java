@@ -0,0 +1,150 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.util.Arrays;
+
+/**
+ * Turns the faces parsed by the {@link ObjParser} into deduplicated, interleaved vertices and an index list.
+ * Two corners share a vertex if they reference the same position, texel and normal.
+ * <p>
+ * Vertex layout: position (XYZ), normal (XYZ), texel (UV).
+ */
+public class MeshIndexer {
+    /**
+     * Offset of the position in a vertex (in floats).
+     */
+    public static final int POSITION_OFFSET = 0;
+    /**
+     * Offset of the normal in a vertex (in floats).
+     */
+    public static final int NORMAL_OFFSET = 3;
+    /**
+     * Offset of the texel in a vertex (in floats).
+     */
+    public static final int TEXEL_OFFSET = 6;
+    /**
+     * Size of a vertex in floats.
+     */
+    public static final int FLOATS_PER_VERTEX = 8;
+
+    private float[] vertices = new float[0];
+    private int[] indices = new int[0];
+    private int verticesCount;
+    private int indicesCount;
+
+    /**
+     * The position, texel and normal index of every vertex.
+     */
+    private int[] keys = new int[0];
+    /**
+     * Open addressing hash table of vertex numbers + 1 (0 marks an empty slot).
+     */
+    private int[] table = new int[0];
+
+    /**
+     * Indexes the faces of the given {@code objParser}.
+     *
+     * @param objParser
+     */
+    public void index(ObjParser objParser) {
+        index(objParser.getFaces(), objParser.getFacesCount(), objParser.getPositions(), objParser.getTexels(), objParser.getNormals());
+    }
+
+    /**
+     * Indexes {@code facesCount} faces given as {@link ObjParser#INDICES_PER_FACE} zero-based indices each.
+     * A missing (negative) texel or normal index results in zeros.
+     */
+    public void index(int[] faces, int facesCount, float[] positions, float[] texels, float[] normals) {
+        final int corners = facesCount * 3;
+
+        // At most one vertex per corner.
+        if (indices.length < corners) {
+            indices = new int[corners];
+        }
+        if (keys.length < corners * 3) {
+            keys = new int[corners * 3];
+            vertices = new float[corners * FLOATS_PER_VERTEX];
+        }
+        // Keep the load factor at or below 0.5.
+        int tableSize = Integer.highestOneBit(Math.max(corners, 1)) << 2;
+        if (table.length < tableSize) {
+            table = new int[tableSize];
+        } else {
+            tableSize = table.length;
+            Arrays.fill(table, 0);
+        }
+        final int mask = tableSize - 1;
+
+        verticesCount = 0;
+        indicesCount = 0;
+
+        for (int i = 0; i < corners; i++) {
+            final int p = faces[i * 3];
+            final int t = faces[i * 3 + 1];
+            final int n = faces[i * 3 + 2];
+
+            int slot = hash(p, t, n) & mask;
+            int vertex;
+            while (true) {
+                vertex = table[slot] - 1;
+                if (vertex < 0) {
+                    // Unseen combination -> new vertex.
+                    vertex = addVertex(p, t, n, positions, texels, normals);
+                    table[slot] = vertex + 1;
+                    break;
+                }
+                if (keys[vertex * 3] == p && keys[vertex * 3 + 1] == t && keys[vertex * 3 + 2] == n) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            indices[indicesCount++] = vertex;
+        }
+    }
+
+    private int addVertex(int p, int t, int n, float[] positions, float[] texels, float[] normals) {
+        final int vertex = verticesCount++;
+        keys[vertex * 3] = p;
+        keys[vertex * 3 + 1] = t;
+        keys[vertex * 3 + 2] = n;
+
+        final int offset = vertex * FLOATS_PER_VERTEX;
+        for (int j = 0; j < 3; j++) {
+            vertices[offset + POSITION_OFFSET + j] = positions[p * 3 + j];
+            vertices[offset + NORMAL_OFFSET + j] = n < 0 ? 0.f : normals[n * 3 + j];
+        }
+        for (int j = 0; j < 2; j++) {
+            vertices[offset + TEXEL_OFFSET + j] = t < 0 ? 0.f : texels[t * 2 + j];
+        }
+
+        return vertex;
+    }
+
+    private static int hash(int p, int t, int n) {
+        int hash = p * 0x9E3779B1 + t * 0x85EBCA77 + n * 0xC2B2AE3D;
+        return hash ^ (hash >>> 15);
+    }
+
+    /**
+     * @return interleaved vertices, {@link #FLOATS_PER_VERTEX} floats each. Only the first
+     * {@code getVerticesCount() * FLOATS_PER_VERTEX} values are valid.
+     */
+    public float[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * @return three indices per triangle. Only the first {@code getIndicesCount()} values are valid.
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public int getVerticesCount() {
+        return verticesCount;
+    }
+
+    public int getIndicesCount() {
+        return indicesCount;
+    }
+}
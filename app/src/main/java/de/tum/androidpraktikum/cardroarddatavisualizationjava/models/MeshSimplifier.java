@@ -0,0 +1,537 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * Simplifies an indexed mesh by quadric error edge collapses (Garland and Heckbert). Every position accumulates the
+ * quadrics of the planes of its triangles; collapsing an edge moves one position onto the other, picking the edge,
+ * which moves the surface least.
+ * <p>
+ * Positions are only ever moved onto existing ones, so the simplified mesh indexes a subset of the original vertices:
+ * all the levels of detail share the vertex buffer and only differ in the indices. Vertices split at the seams of the
+ * texture or the normals (see {@link MeshIndexer}) are collapsed together by their position.
+ * <p>
+ * Meant to run once at import time, so it allocates freely.
+ */
+public class MeshSimplifier {
+    /**
+     * Weight of the planes keeping the boundary edges in place, relative to the planes of the triangles.
+     */
+    private static final double BOUNDARY_WEIGHT = 100.0;
+    /**
+     * A collapse must not turn any remaining triangle by more than about 78 degrees.
+     */
+    private static final double MIN_NORMAL_COS = 0.2;
+
+    private final float[] vertices;
+
+    /**
+     * The distinct position of every vertex.
+     */
+    private final int[] positionOfVertex;
+    /**
+     * x, y, z per distinct position.
+     */
+    private final double[] positions;
+    /**
+     * The vertices per distinct position.
+     */
+    private final int[][] verticesOfPosition;
+
+    /**
+     * The distinct positions of the corners per triangle, updated by the collapses.
+     */
+    private final int[] triangles;
+    /**
+     * The original vertices of the corners per triangle.
+     */
+    private final int[] corners;
+    private final boolean[] deadTriangles;
+    private int liveTriangles;
+
+    /**
+     * The symmetric 4x4 quadric per position: aa, ab, ac, ad, bb, bc, bd, cc, cd, dd.
+     */
+    private final double[] quadrics;
+    /**
+     * The triangles around every position. May hold dead triangles.
+     */
+    private final int[][] adjacency;
+    private final int[] adjacencySizes;
+    /**
+     * The position every position was collapsed into or -1.
+     */
+    private final int[] collapsedInto;
+    /**
+     * Bumped whenever the quadric of a position changes, so that the outdated collapses are skipped.
+     */
+    private final int[] versions;
+
+    private final PriorityQueue<Collapse> collapses = new PriorityQueue<>(64, new Comparator<Collapse>() {
+        @Override
+        public int compare(Collapse lhs, Collapse rhs) {
+            return Double.compare(lhs.cost, rhs.cost);
+        }
+    });
+
+    /**
+     * @param vertices      interleaved vertices, see {@link MeshIndexer} for the layout
+     * @param verticesCount number of vertices
+     * @param indices       three indices per triangle
+     * @param indicesCount  number of indices
+     */
+    public MeshSimplifier(float[] vertices, int verticesCount, int[] indices, int indicesCount) {
+        this.vertices = vertices;
+
+        // Weld the vertices by their position.
+        positionOfVertex = new int[verticesCount];
+        final int positionsCount = weld(verticesCount);
+        positions = new double[positionsCount * 3];
+        final int[] verticesPerPosition = new int[positionsCount];
+        for (int v = 0; v < verticesCount; v++) {
+            final int p = positionOfVertex[v];
+            for (int j = 0; j < 3; j++) {
+                positions[p * 3 + j] = vertices[v * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET + j];
+            }
+            verticesPerPosition[p]++;
+        }
+        verticesOfPosition = new int[positionsCount][];
+        for (int p = 0; p < positionsCount; p++) {
+            verticesOfPosition[p] = new int[verticesPerPosition[p]];
+            verticesPerPosition[p] = 0;
+        }
+        for (int v = 0; v < verticesCount; v++) {
+            final int p = positionOfVertex[v];
+            verticesOfPosition[p][verticesPerPosition[p]++] = v;
+        }
+
+        // Triangles.
+        final int trianglesCount = indicesCount / 3;
+        triangles = new int[trianglesCount * 3];
+        corners = new int[trianglesCount * 3];
+        deadTriangles = new boolean[trianglesCount];
+        for (int i = 0; i < trianglesCount * 3; i++) {
+            corners[i] = indices[i];
+            triangles[i] = positionOfVertex[indices[i]];
+        }
+        for (int t = 0; t < trianglesCount; t++) {
+            final int a = triangles[t * 3];
+            final int b = triangles[t * 3 + 1];
+            final int c = triangles[t * 3 + 2];
+            deadTriangles[t] = a == b || b == c || c == a;
+            if (!deadTriangles[t]) {
+                liveTriangles++;
+            }
+        }
+
+        quadrics = new double[positionsCount * 10];
+        adjacency = new int[positionsCount][];
+        adjacencySizes = new int[positionsCount];
+        collapsedInto = new int[positionsCount];
+        versions = new int[positionsCount];
+        Arrays.fill(collapsedInto, -1);
+        for (int p = 0; p < positionsCount; p++) {
+            adjacency[p] = new int[8];
+        }
+
+        initQuadrics();
+        for (int t = 0; t < trianglesCount; t++) {
+            if (deadTriangles[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                addAdjacent(triangles[t * 3 + k], t);
+            }
+            for (int k = 0; k < 3; k++) {
+                final int a = triangles[t * 3 + k];
+                final int b = triangles[t * 3 + (k + 1) % 3];
+                addCollapse(a, b);
+                addCollapse(b, a);
+            }
+        }
+    }
+
+    /**
+     * Fills the {@link #positionOfVertex}.
+     *
+     * @return the number of distinct positions.
+     */
+    private int weld(int verticesCount) {
+        final Integer[] order = new Integer[verticesCount];
+        for (int v = 0; v < verticesCount; v++) {
+            order[v] = v;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return comparePositions(lhs, rhs);
+            }
+        });
+
+        int positionsCount = 0;
+        for (int i = 0; i < verticesCount; i++) {
+            if (i > 0 && comparePositions(order[i - 1], order[i]) != 0) {
+                positionsCount++;
+            }
+            positionOfVertex[order[i]] = positionsCount;
+        }
+        return verticesCount == 0 ? 0 : positionsCount + 1;
+    }
+
+    private int comparePositions(int lhs, int rhs) {
+        for (int j = 0; j < 3; j++) {
+            final int result = Float.compare(vertices[lhs * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET + j],
+                    vertices[rhs * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET + j]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sums the planes of the triangles, weighted by their area, and the planes perpendicular to the boundary edges
+     * into the quadrics of their positions.
+     */
+    private void initQuadrics() {
+        // Number of triangles per edge, to find the boundary.
+        final HashMap<Long, Integer> edgeUses = new HashMap<>();
+        final int positionsCount = adjacency.length;
+        for (int t = 0; t < deadTriangles.length; t++) {
+            if (deadTriangles[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                final Long edge = getEdgeKey(triangles[t * 3 + k], triangles[t * 3 + (k + 1) % 3], positionsCount);
+                final Integer uses = edgeUses.get(edge);
+                edgeUses.put(edge, uses == null ? 1 : uses + 1);
+            }
+        }
+
+        final double[] normal = new double[3];
+        for (int t = 0; t < deadTriangles.length; t++) {
+            if (deadTriangles[t]) {
+                continue;
+            }
+            final int p0 = triangles[t * 3];
+            final double doubleArea = getNormal(p0, triangles[t * 3 + 1], triangles[t * 3 + 2], normal);
+            if (doubleArea == 0.0) {
+                continue;
+            }
+            final double d = -dot(normal, p0);
+            for (int k = 0; k < 3; k++) {
+                addPlane(triangles[t * 3 + k], normal[0], normal[1], normal[2], d, doubleArea / 2.0);
+            }
+
+            for (int k = 0; k < 3; k++) {
+                final int a = triangles[t * 3 + k];
+                final int b = triangles[t * 3 + (k + 1) % 3];
+                if (edgeUses.get(getEdgeKey(a, b, positionsCount)) != 1) {
+                    continue;
+                }
+                // The plane through the edge, perpendicular to the triangle.
+                final double ex = positions[b * 3] - positions[a * 3];
+                final double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+                final double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+                double mx = ey * normal[2] - ez * normal[1];
+                double my = ez * normal[0] - ex * normal[2];
+                double mz = ex * normal[1] - ey * normal[0];
+                final double length = Math.sqrt(mx * mx + my * my + mz * mz);
+                if (length == 0.0) {
+                    continue;
+                }
+                mx /= length;
+                my /= length;
+                mz /= length;
+                final double md = -(mx * positions[a * 3] + my * positions[a * 3 + 1] + mz * positions[a * 3 + 2]);
+                final double weight = BOUNDARY_WEIGHT * (ex * ex + ey * ey + ez * ez);
+                addPlane(a, mx, my, mz, md, weight);
+                addPlane(b, mx, my, mz, md, weight);
+            }
+        }
+    }
+
+    private static Long getEdgeKey(int a, int b, int positionsCount) {
+        return a < b ? (long) a * positionsCount + b : (long) b * positionsCount + a;
+    }
+
+    private void addPlane(int position, double a, double b, double c, double d, double weight) {
+        final int offset = position * 10;
+        quadrics[offset] += weight * a * a;
+        quadrics[offset + 1] += weight * a * b;
+        quadrics[offset + 2] += weight * a * c;
+        quadrics[offset + 3] += weight * a * d;
+        quadrics[offset + 4] += weight * b * b;
+        quadrics[offset + 5] += weight * b * c;
+        quadrics[offset + 6] += weight * b * d;
+        quadrics[offset + 7] += weight * c * c;
+        quadrics[offset + 8] += weight * c * d;
+        quadrics[offset + 9] += weight * d * d;
+    }
+
+    /**
+     * @return the error of moving {@code from} onto {@code to}: the sum of their quadrics at {@code to}.
+     */
+    private double getCost(int from, int to) {
+        final double x = positions[to * 3];
+        final double y = positions[to * 3 + 1];
+        final double z = positions[to * 3 + 2];
+        final int f = from * 10;
+        final int t = to * 10;
+        final double aa = quadrics[f] + quadrics[t];
+        final double ab = quadrics[f + 1] + quadrics[t + 1];
+        final double ac = quadrics[f + 2] + quadrics[t + 2];
+        final double ad = quadrics[f + 3] + quadrics[t + 3];
+        final double bb = quadrics[f + 4] + quadrics[t + 4];
+        final double bc = quadrics[f + 5] + quadrics[t + 5];
+        final double bd = quadrics[f + 6] + quadrics[t + 6];
+        final double cc = quadrics[f + 7] + quadrics[t + 7];
+        final double cd = quadrics[f + 8] + quadrics[t + 8];
+        final double dd = quadrics[f + 9] + quadrics[t + 9];
+        return aa * x * x + 2 * ab * x * y + 2 * ac * x * z + 2 * ad * x
+                + bb * y * y + 2 * bc * y * z + 2 * bd * y
+                + cc * z * z + 2 * cd * z
+                + dd;
+    }
+
+    private void addCollapse(int from, int to) {
+        collapses.add(new Collapse(getCost(from, to), from, to, versions[from], versions[to]));
+    }
+
+    private void addAdjacent(int position, int triangle) {
+        if (adjacencySizes[position] == adjacency[position].length) {
+            adjacency[position] = Arrays.copyOf(adjacency[position], adjacencySizes[position] * 2);
+        }
+        adjacency[position][adjacencySizes[position]++] = triangle;
+    }
+
+    /**
+     * Collapses edges until at most {@code targetIndices} indices are left or no edge can be collapsed anymore. Can be
+     * called repeatedly with decreasing targets to get a series of levels of detail.
+     *
+     * @param targetIndices the number of indices to aim for
+     * @return three indices into the original vertices per remaining triangle.
+     */
+    public int[] simplify(int targetIndices) {
+        while (liveTriangles * 3 > targetIndices && !collapses.isEmpty()) {
+            final Collapse collapse = collapses.poll();
+            if (collapsedInto[collapse.from] >= 0 || collapsedInto[collapse.to] >= 0
+                    || versions[collapse.from] != collapse.fromVersion || versions[collapse.to] != collapse.toVersion) {
+                continue;
+            }
+            if (!isValid(collapse.from, collapse.to)) {
+                continue;
+            }
+            apply(collapse.from, collapse.to);
+        }
+
+        return getIndices();
+    }
+
+    /**
+     * @return false, if moving {@code from} onto {@code to} would flip or squash any of the triangles around it.
+     */
+    private boolean isValid(int from, int to) {
+        final double[] before = new double[3];
+        final double[] after = new double[3];
+        for (int i = 0; i < adjacencySizes[from]; i++) {
+            final int t = adjacency[from][i];
+            if (deadTriangles[t] || contains(t, to)) {
+                continue;
+            }
+
+            final int a = triangles[t * 3];
+            final int b = triangles[t * 3 + 1];
+            final int c = triangles[t * 3 + 2];
+            final double beforeArea = getNormal(a, b, c, before);
+            final double afterArea = getNormal(a == from ? to : a, b == from ? to : b, c == from ? to : c, after);
+            if (beforeArea == 0.0) {
+                continue;
+            }
+            if (afterArea == 0.0 || before[0] * after[0] + before[1] * after[1] + before[2] * after[2] < MIN_NORMAL_COS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves {@code from} onto {@code to}: drops the triangles sharing the edge and hands the rest over to {@code to}.
+     */
+    private void apply(int from, int to) {
+        for (int i = 0; i < adjacencySizes[from]; i++) {
+            final int t = adjacency[from][i];
+            if (deadTriangles[t]) {
+                continue;
+            }
+            if (contains(t, to)) {
+                deadTriangles[t] = true;
+                liveTriangles--;
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                if (triangles[t * 3 + k] == from) {
+                    triangles[t * 3 + k] = to;
+                }
+            }
+            addAdjacent(to, t);
+        }
+        adjacencySizes[from] = 0;
+        collapsedInto[from] = to;
+
+        for (int i = 0; i < 10; i++) {
+            quadrics[to * 10 + i] += quadrics[from * 10 + i];
+        }
+        versions[to]++;
+
+        // The costs of all the edges around to have changed.
+        compactAdjacency(to);
+        for (int i = 0; i < adjacencySizes[to]; i++) {
+            final int t = adjacency[to][i];
+            for (int k = 0; k < 3; k++) {
+                final int neighbour = triangles[t * 3 + k];
+                if (neighbour != to) {
+                    addCollapse(to, neighbour);
+                    addCollapse(neighbour, to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the dead triangles from the adjacency of the {@code position}.
+     */
+    private void compactAdjacency(int position) {
+        int size = 0;
+        for (int i = 0; i < adjacencySizes[position]; i++) {
+            final int t = adjacency[position][i];
+            if (!deadTriangles[t]) {
+                adjacency[position][size++] = t;
+            }
+        }
+        adjacencySizes[position] = size;
+    }
+
+    private boolean contains(int triangle, int position) {
+        return triangles[triangle * 3] == position || triangles[triangle * 3 + 1] == position || triangles[triangle * 3 + 2] == position;
+    }
+
+    /**
+     * Stores the unit normal of the triangle in {@code result}.
+     *
+     * @return twice the area of the triangle.
+     */
+    private double getNormal(int a, int b, int c, double[] result) {
+        final double ux = positions[b * 3] - positions[a * 3];
+        final double uy = positions[b * 3 + 1] - positions[a * 3 + 1];
+        final double uz = positions[b * 3 + 2] - positions[a * 3 + 2];
+        final double vx = positions[c * 3] - positions[a * 3];
+        final double vy = positions[c * 3 + 1] - positions[a * 3 + 1];
+        final double vz = positions[c * 3 + 2] - positions[a * 3 + 2];
+        result[0] = uy * vz - uz * vy;
+        result[1] = uz * vx - ux * vz;
+        result[2] = ux * vy - uy * vx;
+        final double length = Math.sqrt(result[0] * result[0] + result[1] * result[1] + result[2] * result[2]);
+        if (length == 0.0) {
+            return 0.0;
+        }
+        result[0] /= length;
+        result[1] /= length;
+        result[2] /= length;
+        return length;
+    }
+
+    private double dot(double[] normal, int position) {
+        return normal[0] * positions[position * 3] + normal[1] * positions[position * 3 + 1] + normal[2] * positions[position * 3 + 2];
+    }
+
+    /**
+     * @return the remaining triangles as indices into the original vertices.
+     */
+    private int[] getIndices() {
+        final int[] indices = new int[liveTriangles * 3];
+        int size = 0;
+        for (int t = 0; t < deadTriangles.length; t++) {
+            if (deadTriangles[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                indices[size++] = getVertex(t, k);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * @param triangle
+     * @param corner   0, 1 or 2
+     * @return the vertex of the {@code corner}. If the corner has been moved, the vertex at its new position, whose
+     * normal and texel are closest to the ones of the other corners, so that the triangle stays on its side of a seam.
+     */
+    private int getVertex(int triangle, int corner) {
+        final int vertex = corners[triangle * 3 + corner];
+        final int position = triangles[triangle * 3 + corner];
+        if (positionOfVertex[vertex] == position) {
+            return vertex;
+        }
+
+        int best = -1;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int candidate : verticesOfPosition[position]) {
+            float distance = 0.f;
+            for (int k = 0; k < 3; k++) {
+                if (k != corner) {
+                    distance += getAttributeDistance(candidate, corners[triangle * 3 + k]);
+                }
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the squared distance of the normals and texels of the vertices.
+     */
+    private float getAttributeDistance(int lhs, int rhs) {
+        final int lhsOffset = lhs * MeshIndexer.FLOATS_PER_VERTEX;
+        final int rhsOffset = rhs * MeshIndexer.FLOATS_PER_VERTEX;
+        float distance = 0.f;
+        for (int j = MeshIndexer.NORMAL_OFFSET; j < MeshIndexer.FLOATS_PER_VERTEX; j++) {
+            final float d = vertices[lhsOffset + j] - vertices[rhsOffset + j];
+            distance += d * d;
+        }
+        return distance;
+    }
+
+    /**
+     * @return the number of triangles left.
+     */
+    public int getTriangles() {
+        return liveTriangles;
+    }
+
+    /**
+     * A candidate collapse of the position {@code from} onto the position {@code to}.
+     */
+    private static class Collapse {
+        final double cost;
+        final int from;
+        final int to;
+        final int fromVersion;
+        final int toVersion;
+
+        Collapse(double cost, int from, int to, int fromVersion, int toVersion) {
+            this.cost = cost;
+            this.from = from;
+            this.to = to;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+        }
+    }
+}
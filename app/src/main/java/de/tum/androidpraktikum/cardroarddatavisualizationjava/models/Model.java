@@ -1,265 +1,513 @@
 package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
 
 import android.content.Context;
+import android.opengl.GLES20;
 import android.util.Log;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Locale;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.AssetLoader;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.TextureAtlas;
 
 /**
  * Created by strelchenkovadym on 6/26/16.
  */
 public class Model {
     public static final String TAG = "Model";
+    /**
+     * Triangles of the simplified levels of detail relative to the full mesh.
+     */
+    private static final float[] LEVEL_RATIOS = {.5f, .25f, .125f};
+    /**
+     * Meshes with fewer triangles aren't simplified.
+     */
+    private static final int MIN_SIMPLIFIED_FACES = 64;
+    /**
+     * A level of detail must have at most this many of the triangles of the previous one to be worth keeping.
+     */
+    private static final float MAX_LEVEL_REDUCTION = .9f;
     // TODO: 1. finish with this class 2. finish texture stuff 3. height map 4. sound 5. cubemap
     protected String name;
 
-    protected float[] normals;
-    protected float[] texels;
-    protected float[] positions;
+    /**
+     * Interleaved vertices. See {@link MeshIndexer} for the layout.
+     */
+    protected FloatBuffer vertexData;
+    /**
+     * Three indices per triangle.
+     */
+    protected Buffer indexData;
+    /**
+     * {@link GLES20#GL_UNSIGNED_SHORT} or {@link GLES20#GL_UNSIGNED_INT}.
+     */
+    protected int indexType;
+    /**
+     * Number of indices per level of detail, starting with the full mesh.
+     */
+    private int[] levelIndexCounts;
 
     private float[] highest;
     private float[] lowest;
+    /**
+     * The bounding box and sphere in model space.
+     */
+    private Bounds bounds;
 
     private ModelInfo modelInfo;
 
-    public Model(Context appContext, int resId) {
-        try {
-            // Retrieve model info.
-            modelInfo = getObjInfo(appContext, resId);
-
-            // Initialize members.
-            normals = new float[modelInfo.vertices * 3];
-            positions = new float[modelInfo.vertices * 3];
-            texels = new float[modelInfo.vertices * 2];
+    /**
+     * The binary mesh backing the buffers.
+     */
+    private MeshFile meshFile;
+    /**
+     * The model uploaded to the GPU.
+     */
+    private Mesh mesh;
 
-            // Initiate containers for model data.
-            float[][] positions = new float[modelInfo.positions][3]; // XYZ
-            float[][] texels = new float[modelInfo.texels][2]; // u, v
-            float[][] normals = new float[modelInfo.normals][3]; // XYZ
-            int[][] faces = new int[modelInfo.faces][9]; // an entry of pointers (indices). nine integers, to describe the three vertices of a triangular face, where each vertex gets three indexes, one for its position (P), one for its texel (T) and one for its normal (N)
+    /**
+     * Whether {@link #quantizeVertices()} has been requested.
+     */
+    private boolean quantizationRequested;
+    /**
+     * The region of the texture atlas, which the texels are mapped to (see {@link #mapTexels(TextureAtlas.Region)}),
+     * null if the model has a texture of its own.
+     */
+    private TextureAtlas.Region texelRegion;
+    /**
+     * Whether the {@link #vertexData} holds the mapped texels already.
+     */
+    private boolean texelsMapped;
+    /**
+     * The vertices in the compact layout or null, if the model isn't quantized.
+     */
+    private QuantizedVertices quantizedVertices;
 
-            // Extract data from an OBJ specified by resId.
-            extractOBJData(appContext, resId, positions, texels, normals, faces);
+    /**
+     * Instances per draw requested by {@link #prepareInstances(int)}. 0 if the model isn't instanced.
+     */
+    private int requestedInstances;
+    /**
+     * The replicated vertices and indices, see {@link InstancedMesh}. The vertices are a {@link ByteBuffer}, if the
+     * model is quantized, a {@link FloatBuffer} otherwise.
+     */
+    private Buffer instancedVertexData;
+    private ShortBuffer instancedIndexData;
+    private int instances;
+    /**
+     * The replicated model uploaded to the GPU.
+     */
+    private InstancedMesh instancedMesh;
 
-            // Write model data into this.normals, this.texels and this.positions, as well as in this.highest and this.lowest.
-            writeModelData(faces, positions, texels, normals);
-        } catch (IOException e) {
-            // TODO: handle the exception.
-            Log.e(TAG, "Error reading model from resources!");
-        }
-    }
+    private final Context appContext;
+    private final int resId;
 
     /**
-     * Extracts info about the model (num of vertices, faces, texels, etc.).
+     * Loads the model from the precompiled binary mesh cache. Falls back to the OBJ specified by {@code resId}, if
+     * there's no valid cache yet, and writes the cache for the subsequent loads.
+     *
      * @param appContext
      * @param resId
-     * @return
-     * @throws IOException
      */
-    private ModelInfo getObjInfo(Context appContext, int resId) throws IOException {
-        modelInfo = new ModelInfo();
+    public Model(Context appContext, int resId) {
+        this.appContext = appContext;
+        this.resId = resId;
+        name = appContext.getResources().getResourceEntryName(resId);
 
-        //open OBJ file
-        BufferedReader objReader = new BufferedReader(new InputStreamReader(appContext.getResources().openRawResource(resId)));
-
-        //read OBJ file
-        String line;
-        String type;
-        while ((line = objReader.readLine()) != null) {
-            type = line.substring(0, 2); // first 2 char-s
-
-            if (type.equals("v ")) {
-                modelInfo.positions++;
-            } else if (type.equals("vt")) {
-                modelInfo.texels++;
-            } else if (type.equals("vn")) {
-                modelInfo.normals++;
-            } else if (type.equals("f ")) {
-                modelInfo.faces++;
-            }
-        }
-        //TODO: delete comment
-        //Even though a 3D model has shared vertex data, in this tutorial OpenGL ES will process all vertices individually instead of as indexed arrays. You already know that OpenGL ES draws triangles, so the total number of vertices will be the total number of faces times their three defining points
-        modelInfo.vertices = modelInfo.faces * 3;
+        load();
+    }
 
-        objReader.close();
+    /**
+     * Wraps an already built mesh, e.g. a generated one. The data can't be reloaded after the upload.
+     *
+     * @param name
+     * @param meshFile
+     */
+    public Model(String name, MeshFile meshFile) {
+        this.appContext = null;
+        this.resId = 0;
+        this.name = name;
 
-        return modelInfo;
+        this.meshFile = meshFile;
+        setMeshFile(meshFile);
     }
 
     /**
-     * Extracts model data.
+     * Uploads the model to the GPU and drops the client-side copies of the data. Reloads the data from the mesh cache,
+     * if it has been dropped by a previous upload (e.g. after the OpenGL context was lost).
+     *
+     * @param gl
      */
-    private void extractOBJData(Context appContext, int resId, float positions[][], float texels[][], float normals[][], int faces[][]) throws IOException {
-        // Counters
-        int p = 0;
-        int t = 0;
-        int n = 0;
-        int f = 0;
-
-        //open OBJ file
-        BufferedReader objReader = new BufferedReader(new InputStreamReader(appContext.getResources().openRawResource(resId)));
+    public void upload(GLApi gl) {
+        if (vertexData == null) {
+            load();
+        }
+        if (vertexData == null) {
+            Log.e(TAG, "No data to upload for " + name);
+            return;
+        }
 
-        //read OBJ file
-        String line;
-        String type;
-        String analyzedLine;
-        StringTokenizer spaceTokenizer;
-        while ((line = objReader.readLine()) != null) {
-            type = line.substring(0, 2); // first 2 char-s
+        // The mapped, the quantized and the replicated data have been dropped with the rest.
+        if (texelRegion != null && !texelsMapped) {
+            mapTexels(texelRegion);
+        }
+        if (quantizationRequested && quantizedVertices == null) {
+            quantizeVertices();
+        }
+        if (requestedInstances > 0 && instancedVertexData == null) {
+            prepareInstances(requestedInstances);
+        }
 
-            if (type.equals("v ")) {
-                analyzedLine = line.substring(2, line.length());
-                spaceTokenizer = new StringTokenizer(analyzedLine, " ");
+        if (quantizedVertices != null) {
+            mesh = new Mesh(gl, quantizedVertices, indexData, indexType, levelIndexCounts);
+        } else {
+            mesh = new Mesh(gl, vertexData, indexData, indexType, levelIndexCounts);
+        }
+        if (instancedVertexData instanceof ByteBuffer) {
+            instancedMesh = new InstancedMesh(gl, (ByteBuffer) instancedVertexData, quantizedVertices.getFormat(), instancedIndexData,
+                    levelIndexCounts, instances);
+        } else if (instancedVertexData != null) {
+            instancedMesh = new InstancedMesh(gl, (FloatBuffer) instancedVertexData, instancedIndexData, levelIndexCounts, instances);
+        }
+        releaseClientData();
+    }
 
-                for (int i = 0; i < 3; i++) {
-                    positions[p][i] = Float.parseFloat(spaceTokenizer.nextToken());
-                }
+    /**
+     * Replicates the model, so that up to {@code maxInstances} instances of it can be drawn at once. Fewer, if that
+     * many copies can't be addressed by 16-bit indices. Can be called off the GL thread; the copies are uploaded by
+     * {@link #upload(GLApi)}.
+     *
+     * @param maxInstances
+     */
+    public void prepareInstances(int maxInstances) {
+        requestedInstances = maxInstances;
+        if (vertexData == null) {
+            return;
+        }
 
-                p++;
-            } else if (type.equals("vt")) {
-                analyzedLine = line.substring(2, line.length());
-                spaceTokenizer = new StringTokenizer(analyzedLine, " ");
+        instances = InstancedMesh.getMaxInstances(modelInfo.vertices, maxInstances);
+        if (instances < 2) {
+            Log.w(TAG, name + " has too many vertices to be instanced.");
+            return;
+        }
+        instancedVertexData = quantizedVertices != null
+                ? quantizedVertices.replicate(instances)
+                : InstancedMesh.replicateVertices(vertexData, modelInfo.vertices, instances);
+        instancedIndexData = InstancedMesh.replicateIndices(indexData, levelIndexCounts, modelInfo.vertices, instances);
+    }
 
-                for (int i = 0; i < 2; i++) {
-                    texels[t][i] = Float.parseFloat(spaceTokenizer.nextToken());
-                }
+    /**
+     * Moves the texels of the model into the {@code region} of a texture atlas, so that it can be drawn with the atlas
+     * instead of its own texture. Tiles the model first, if its texture repeats (see {@link TexelTiler}). Can be
+     * called off the GL thread; the mapped vertices are uploaded by {@link #upload(GLApi)}.
+     *
+     * @param region
+     */
+    public void mapTexels(TextureAtlas.Region region) {
+        texelRegion = region;
+        if (vertexData == null) {
+            return;
+        }
 
-                t++;
-            } else if (type.equals("vn")) {
-                analyzedLine = line.substring(2, line.length());
-                spaceTokenizer = new StringTokenizer(analyzedLine, " ");
+        final FloatBuffer mapped;
+        if (TexelTiler.isRepeating(vertexData, modelInfo.vertices)) {
+            int indices = 0;
+            for (int levelIndexCount : levelIndexCounts) {
+                indices += levelIndexCount;
+            }
+            final TexelTiler texelTiler = new TexelTiler(vertexData, readIndices(indexData, indices), levelIndexCounts);
+            mapped = texelTiler.getVertexData();
+            levelIndexCounts = texelTiler.getLevelIndexCounts();
+            modelInfo.vertices = texelTiler.getVerticesCount();
+            modelInfo.indices = levelIndexCounts[0];
+            indexData = writeIndices(texelTiler.getIndices(), modelInfo.vertices);
+            indexType = modelInfo.vertices > MeshFile.MAX_SHORT_INDEXED_VERTICES ? GLES20.GL_UNSIGNED_INT : GLES20.GL_UNSIGNED_SHORT;
+        } else {
+            // The vertices may be a read-only mapping of the mesh cache.
+            mapped = ByteBuffer.allocateDirect(modelInfo.vertices * MeshIndexer.FLOATS_PER_VERTEX * 4)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            final FloatBuffer source = vertexData.duplicate();
+            source.clear();
+            source.limit(modelInfo.vertices * MeshIndexer.FLOATS_PER_VERTEX);
+            mapped.put(source).position(0);
+        }
 
-                for (int i = 0; i < 3; i++) {
-                    normals[n][i] = Float.parseFloat(spaceTokenizer.nextToken());
-                }
+        for (int vertex = 0; vertex < modelInfo.vertices; vertex++) {
+            final int s = vertex * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.TEXEL_OFFSET;
+            mapped.put(s, region.mapS(mapped.get(s)));
+            mapped.put(s + 1, region.mapT(mapped.get(s + 1)));
+        }
+        vertexData = mapped;
+        texelsMapped = true;
+
+        // Redo what has been derived from the old vertices.
+        if (quantizedVertices != null) {
+            quantizeVertices();
+        } else if (instancedVertexData != null) {
+            prepareInstances(requestedInstances);
+        }
+    }
 
-                n++;
-            } else if (type.equals("f ")) {
-                analyzedLine = line.substring(2, line.length());
-                spaceTokenizer = new StringTokenizer(analyzedLine, " ");
-                StringTokenizer dashTokenizer;
+    private static int[] readIndices(Buffer indexData, int indices) {
+        final int[] result = new int[indices];
+        for (int i = 0; i < indices; i++) {
+            result[i] = indexData instanceof ShortBuffer ? ((ShortBuffer) indexData).get(i) & 0xFFFF : ((IntBuffer) indexData).get(i);
+        }
+        return result;
+    }
 
-                for (int i = 0; i < 9; i += 3) {
-                    String space = spaceTokenizer.nextToken();
-                    dashTokenizer = new StringTokenizer(space, "/");
+    /**
+     * @return the {@code indices} as 16-bit indices, if they address at most
+     * {@link MeshFile#MAX_SHORT_INDEXED_VERTICES}, as 32-bit ones otherwise.
+     */
+    private static Buffer writeIndices(int[] indices, int vertices) {
+        if (vertices > MeshFile.MAX_SHORT_INDEXED_VERTICES) {
+            final IntBuffer indexData = ByteBuffer.allocateDirect(indices.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            indexData.put(indices).position(0);
+            return indexData;
+        }
+        final ShortBuffer indexData = ByteBuffer.allocateDirect(indices.length * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        for (int index : indices) {
+            indexData.put((short) index);
+        }
+        indexData.position(0);
+        return indexData;
+    }
 
-                    faces[f][i] = Integer.parseInt(dashTokenizer.nextToken());
-                    faces[f][i + 1] = Integer.parseInt(dashTokenizer.nextToken());
-                    faces[f][i + 2] = Integer.parseInt(dashTokenizer.nextToken());
+    /**
+     * Switches the model to the compact vertex layout of {@link QuantizedVertices}, which takes half of the memory and
+     * bandwidth of the floats. Can be called off the GL thread; the quantized vertices are uploaded by
+     * {@link #upload(GLApi)}. Logs the size and the error of the quantization.
+     */
+    public void quantizeVertices() {
+        quantizationRequested = true;
+        if (vertexData == null) {
+            return;
+        }
 
-                    /*if (faces[f][i] == 0 || faces[f][i + 1] == 0 || faces[f][i + 2] == 0) {
-                        System.out.println("Erroneous line: " + space);
-                        throw new RuntimeException("Erroneous line: " + space);
-                    }*/
-                }
+        quantizedVertices = QuantizedVertices.quantize(vertexData, modelInfo.vertices);
+        Log.i(TAG, String.format(Locale.US, "%s: vertices %d -> %d bytes (%.0f%%), max error: position %.5f (%.4f%% of the extent), "
+                        + "normal %.2f deg, texel %.6f", name, quantizedVertices.getFloatBytes(), quantizedVertices.getBytes(),
+                100.f * quantizedVertices.getBytes() / Math.max(quantizedVertices.getFloatBytes(), 1),
+                quantizedVertices.getMaxPositionError(), 100.f * quantizedVertices.getRelativePositionError(),
+                quantizedVertices.getMaxNormalError(), quantizedVertices.getMaxTexelError()));
 
-                f++;
-            }
+        // Replicate the quantized vertices instead.
+        if (instancedVertexData != null) {
+            prepareInstances(requestedInstances);
         }
+    }
 
-        objReader.close();
+    /**
+     * Drops the references to the client-side data, so that it can be garbage collected (or unmapped).
+     */
+    private void releaseClientData() {
+        vertexData = null;
+        indexData = null;
+        meshFile = null;
+        quantizedVertices = null;
+        instancedVertexData = null;
+        instancedIndexData = null;
     }
 
     /**
-     * Write the data from {@code faces}, {@code positions}, {@code texels} and {@code normals} into {@code this.positions}, {@code this.texels} and {@code this.normals}.
-     * @param faces
-     * @param positions
-     * @param texels
-     * @param normals
-     */
-    private void writeModelData(int faces[][], float positions[][], float texels[][], float normals[][]) {
-        // Write the highest and the lowest values.
-        highest = findHighestVertex(positions, modelInfo.positions);
-        lowest = findLowestVertex(positions, modelInfo.positions);
-
-        // Current index.
-        int index = 0;
-        // write positions
-        for (int i = 0; i < modelInfo.faces; i++) {
-            int vA = faces[i][0] - 1;
-            int vB = faces[i][3] - 1;
-            int vC = faces[i][6] - 1;
-
-            for (int j = 0; j < 3; j++) {
-                this.positions[index + j] = positions[vA][j];
-                this.positions[index + 3 + j] = positions[vB][j];
-                this.positions[index + 6 + j] = positions[vC][j];
+     * Loads the data from the mesh cache or the OBJ.
+     */
+    private void load() {
+        if (appContext == null) {
+            return;
+        }
+
+        final File cacheFile = new File(appContext.getCacheDir(), name + MeshFile.EXTENSION);
+        final long sourceStamp = AssetLoader.getSourceStamp(appContext);
+
+        try {
+            meshFile = MeshFile.map(cacheFile, sourceStamp);
+        } catch (IOException e) {
+            Log.w(TAG, "Error mapping the mesh cache " + cacheFile + ". Falling back to the OBJ.");
+        }
+
+        if (meshFile == null) {
+            loadObj(appContext, resId, sourceStamp);
+
+            if (meshFile != null) {
+                try {
+                    meshFile.write(cacheFile);
+                } catch (IOException e) {
+                    Log.w(TAG, "Error writing the mesh cache " + cacheFile);
+                }
             }
+        }
 
-            index += 9;
+        if (meshFile != null) {
+            setMeshFile(meshFile);
+            Log.i(TAG, String.format(Locale.US, "%s: %d corners -> %d vertices (dedup ratio %.2f), %d-bit indices, %d levels of detail",
+                    name, modelInfo.faces * 3, modelInfo.vertices, modelInfo.getDedupRatio(), meshFile.getIndexSize() * 8,
+                    levelIndexCounts.length));
         }
+    }
 
-        index = 0;
-        // write texels
-        for (int i = 0; i < modelInfo.faces; i++) {
-            int vtA = faces[i][1] - 1;
-            int vtB = faces[i][4] - 1;
-            int vtC = faces[i][7] - 1;
+    /**
+     * Parses the OBJ specified by {@code resId} into a new {@link MeshFile}.
+     */
+    private void loadObj(Context appContext, int resId, long sourceStamp) {
+        InputStream objInputStream = appContext.getResources().openRawResource(resId);
+        try {
+            ObjParser objParser = new ObjParser();
+            objParser.parse(objInputStream);
+
+            // Share the vertices between the faces.
+            MeshIndexer meshIndexer = new MeshIndexer();
+            meshIndexer.index(objParser);
+
+            // Simplify it for the distance.
+            final int[][] levels = buildLevels(meshIndexer);
+            final int[] levelIndices = new int[levels.length];
+            for (int level = 0; level < levels.length; level++) {
+                levelIndices[level] = levels[level].length;
+            }
 
-            for (int j = 0; j < 2; j++) {
-                this.texels[index + j] =  texels[vtA][j];
-                this.texels[index + 2 + j] =  texels[vtB][j];
-                this.texels[index + 4 + j] =  texels[vtC][j];
+            meshFile = MeshFile.allocate(sourceStamp, meshIndexer.getVerticesCount(), meshIndexer.getIndicesCount(),
+                    objParser.getPositionsCount(), objParser.getTexelsCount(), objParser.getNormalsCount(), objParser.getFacesCount(),
+                    levelIndices);
+            meshFile.put(meshIndexer);
+            for (int level = 0; level < levels.length; level++) {
+                meshFile.putLevel(level + 1, levels[level]);
             }
 
-            index += 6;
+            // Write the highest and the lowest values.
+            meshFile.setBounds(findHighestVertex(objParser.getPositions(), objParser.getPositionsCount()),
+                    findLowestVertex(objParser.getPositions(), objParser.getPositionsCount()));
+        } catch (IOException e) {
+            // TODO: handle the exception.
+            Log.e(TAG, "Error reading model from resources!");
+            meshFile = null;
+        } finally {
+            try {
+                objInputStream.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing the OBJ stream.");
+            }
         }
+    }
 
-        index = 0;
-        // write normals
-        for (int i = 0; i < modelInfo.faces; i++) {
-            int vnA = faces[i][2] - 1;
-            int vnB = faces[i][5] - 1;
-            int vnC = faces[i][8] - 1;
+    /**
+     * Simplifies the indexed mesh to the {@link #LEVEL_RATIOS} of its triangles. Stops at the first level, which
+     * isn't much simpler than the previous one.
+     *
+     * @param meshIndexer
+     * @return the indices per simplified level.
+     */
+    static int[][] buildLevels(MeshIndexer meshIndexer) {
+        final int faces = meshIndexer.getIndicesCount() / 3;
+        if (faces < MIN_SIMPLIFIED_FACES) {
+            return new int[0][];
+        }
 
-            for (int j = 0; j < 3; j++) {
-                this.normals[index + j] = normals[vnA][j];
-                this.normals[index + 3 + j] = normals[vnB][j];
-                this.normals[index + 6 + j] = normals[vnC][j];
+        final MeshSimplifier meshSimplifier = new MeshSimplifier(meshIndexer.getVertices(), meshIndexer.getVerticesCount(),
+                meshIndexer.getIndices(), meshIndexer.getIndicesCount());
+        final int[][] levels = new int[LEVEL_RATIOS.length][];
+        int levelCount = 0;
+        int previousIndices = meshIndexer.getIndicesCount();
+        for (float ratio : LEVEL_RATIOS) {
+            final int[] indices = meshSimplifier.simplify((int) (faces * ratio) * 3);
+            if (indices.length == 0 || indices.length > previousIndices * MAX_LEVEL_REDUCTION) {
+                break;
             }
+            levels[levelCount++] = indices;
+            previousIndices = indices.length;
+        }
 
-            index += 9;
+        final int[][] result = new int[levelCount][];
+        System.arraycopy(levels, 0, result, 0, levelCount);
+        return result;
+    }
+
+    /**
+     * Points the model data to the given {@code meshFile}.
+     */
+    private void setMeshFile(MeshFile meshFile) {
+        vertexData = meshFile.getVertexData();
+        texelsMapped = false;
+        indexData = meshFile.getIndexData();
+        indexType = meshFile.getIndexSize() == 2 ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
+        levelIndexCounts = new int[meshFile.getLevels()];
+        for (int level = 0; level < levelIndexCounts.length; level++) {
+            levelIndexCounts[level] = meshFile.getLevelIndices(level);
         }
+        highest = meshFile.getHighest();
+        lowest = meshFile.getLowest();
+        bounds = Bounds.of(vertexData, meshFile.getVertices());
+
+        modelInfo = new ModelInfo();
+        modelInfo.vertices = meshFile.getVertices();
+        modelInfo.indices = meshFile.getIndices();
+        modelInfo.positions = meshFile.getPositionsCount();
+        modelInfo.texels = meshFile.getTexelsCount();
+        modelInfo.normals = meshFile.getNormalsCount();
+        modelInfo.faces = meshFile.getFacesCount();
     }
 
-    float[] findLowestVertex(float positions[][], int positionsNum) {
-        float[] lowest = positions[0];
+    float[] findLowestVertex(float[] positions, int positionsNum) {
+        int lowest = 0;
 
         for (int i = 1; i < positionsNum; i++) {
-            if (positions[i][1] < lowest[1]) {
-                lowest = positions[i];
+            if (positions[i * 3 + 1] < positions[lowest * 3 + 1]) {
+                lowest = i;
             }
         }
 
-        return lowest;
+        return new float[]{positions[lowest * 3], positions[lowest * 3 + 1], positions[lowest * 3 + 2]};
     }
 
-    float[] findHighestVertex(float positions[][], int positionsNum) {
-        float[] highest = positions[0];
+    float[] findHighestVertex(float[] positions, int positionsNum) {
+        int highest = 0;
 
         for (int i = 1; i < positionsNum; i++) {
-            if (positions[i][1] > highest[1]) {
-                highest = positions[i];
+            if (positions[i * 3 + 1] > positions[highest * 3 + 1]) {
+                highest = i;
             }
         }
 
-        return highest;
+        return new float[]{positions[highest * 3], positions[highest * 3 + 1], positions[highest * 3 + 2]};
+    }
+
+    /**
+     * @return the uploaded mesh or null, if the model hasn't been uploaded yet.
+     */
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * @return the uploaded replicated mesh or null, if the model isn't instanced or hasn't been uploaded yet.
+     */
+    public InstancedMesh getInstancedMesh() {
+        return instancedMesh;
     }
 
-    public float[] getNormals() {
-        return normals;
+    /**
+     * @return the interleaved vertices or null, if they have been dropped after the upload.
+     */
+    public FloatBuffer getVertexData() {
+        return vertexData;
     }
 
-    public float[] getTexels() {
-        return texels;
+    public Buffer getIndexData() {
+        return indexData;
     }
 
-    public float[] getPositions() {
-        return positions;
+    public int getIndexType() {
+        return indexType;
     }
 
     public float[] getHighest() {
@@ -270,15 +518,34 @@ public class Model {
         return lowest;
     }
 
+    /**
+     * @return the number of levels of detail including the full mesh. Kept after the upload.
+     */
+    public int getLevels() {
+        return levelIndexCounts.length;
+    }
+
+    /**
+     * @return the bounding box and sphere in model space. Kept after the upload.
+     */
+    public Bounds getBounds() {
+        return bounds;
+    }
+
+    public String getName() {
+        return name;
+    }
+
     public ModelInfo getModelInfo() {
         return modelInfo;
     }
 
     /**
-     * Holds the number of vertices, positions, texels, normals, faces.
+     * Holds the number of vertices, indices, positions, texels, normals, faces.
      */
     public class ModelInfo {
         private int vertices;
+        private int indices;
         private int positions;
         private int texels;
         private int normals;
@@ -288,10 +555,17 @@ public class Model {
             return positions;
         }
 
+        /**
+         * @return number of distinct (position, texel, normal) combinations.
+         */
         public int getVertices() {
             return vertices;
         }
 
+        public int getIndices() {
+            return indices;
+        }
+
         public int getTexels() {
             return texels;
         }
@@ -303,5 +577,12 @@ public class Model {
         public int getFaces() {
             return faces;
         }
+
+        /**
+         * @return how many corners share a vertex on average.
+         */
+        public float getDedupRatio() {
+            return vertices == 0 ? 0.f : (float) indices / vertices;
+        }
     }
 }
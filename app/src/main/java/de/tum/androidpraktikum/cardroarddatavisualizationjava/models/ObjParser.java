@@ -0,0 +1,369 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Single-pass OBJ parser. Reads the raw bytes once and parses floats and {@code p/t/n} indices in place, without
+ * creating any {@code String}s. The data is stored in primitive arrays, which grow as needed.
+ * <p>
+ * Supports {@code v}, {@code vt}, {@code vn} and {@code f} lines. Faces may reference vertices as {@code p},
+ * {@code p/t}, {@code p//n} or {@code p/t/n}, with negative (relative) indices. Polygons are triangulated as fans.
+ * Everything else is skipped.
+ */
+public class ObjParser {
+    /**
+     * Number of ints stored per triangle: position, texel and normal index for each of the three corners.
+     */
+    public static final int INDICES_PER_FACE = 9;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_CORNERS = 64;
+
+    /**
+     * Exactly representable powers of ten.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * Longest mantissa (in digits), which is exactly representable as a double.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * The stream is read into it.
+     */
+    private byte[] buffer = new byte[INITIAL_CAPACITY * 16];
+    /**
+     * The bytes being parsed, only set while parsing.
+     */
+    private byte[] data;
+    private int length;
+    /**
+     * Read position in {@code data}.
+     */
+    private int pos;
+
+    private float[] positions = new float[INITIAL_CAPACITY * 3];
+    private float[] texels = new float[INITIAL_CAPACITY * 2];
+    private float[] normals = new float[INITIAL_CAPACITY * 3];
+    /**
+     * Zero-based indices, {@link #INDICES_PER_FACE} per face. A missing texel or normal is stored as -1.
+     */
+    private int[] faces = new int[INITIAL_CAPACITY * INDICES_PER_FACE];
+
+    private int positionsCount;
+    private int texelsCount;
+    private int normalsCount;
+    private int facesCount;
+
+    /**
+     * Corners of the polygon being parsed.
+     */
+    private int[] corners = new int[INITIAL_CORNERS * 3];
+
+    /**
+     * Reads the whole {@code inputStream} and parses it. Doesn't close the stream.
+     *
+     * @param inputStream
+     * @throws IOException
+     */
+    public void parse(InputStream inputStream) throws IOException {
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+
+        parse(buffer, length);
+    }
+
+    /**
+     * Parses the first {@code length} bytes of {@code data}. Resets the previously parsed data. The {@code data} isn't
+     * copied, so it mustn't be changed until this returns, but isn't kept either.
+     *
+     * @param data
+     * @param length
+     */
+    public void parse(byte[] data, int length) {
+        this.data = data;
+        this.length = length;
+        pos = 0;
+        positionsCount = 0;
+        texelsCount = 0;
+        normalsCount = 0;
+        facesCount = 0;
+
+        while (pos < length) {
+            skipBlanks();
+            if (pos + 1 < length) {
+                final byte first = data[pos];
+                final byte second = data[pos + 1];
+
+                if (first == 'v' && isBlank(second)) {
+                    pos += 2;
+                    positions = ensureCapacity(positions, (positionsCount + 1) * 3);
+                    readFloats(positions, positionsCount * 3, 3);
+                    positionsCount++;
+                } else if (first == 'v' && second == 't' && pos + 2 < length && isBlank(data[pos + 2])) {
+                    pos += 3;
+                    texels = ensureCapacity(texels, (texelsCount + 1) * 2);
+                    readFloats(texels, texelsCount * 2, 2);
+                    texelsCount++;
+                } else if (first == 'v' && second == 'n' && pos + 2 < length && isBlank(data[pos + 2])) {
+                    pos += 3;
+                    normals = ensureCapacity(normals, (normalsCount + 1) * 3);
+                    readFloats(normals, normalsCount * 3, 3);
+                    normalsCount++;
+                } else if (first == 'f' && isBlank(second)) {
+                    pos += 2;
+                    readFace();
+                }
+            }
+
+            skipLine();
+        }
+        this.data = null;
+    }
+
+    /**
+     * Reads the corners of a polygon and stores it as a triangle fan.
+     */
+    private void readFace() {
+        int cornersCount = 0;
+
+        while (true) {
+            skipBlanks();
+            if (pos >= length || isLineEnd(data[pos])) {
+                break;
+            }
+
+            final int start = pos;
+            final int index = readInt();
+            if (pos == start) {
+                // Not an index.
+                break;
+            }
+
+            corners = ensureCapacity(corners, (cornersCount + 1) * 3);
+            final int corner = cornersCount * 3;
+            corners[corner] = resolveIndex(index, positionsCount);
+            corners[corner + 1] = -1;
+            corners[corner + 2] = -1;
+
+            if (pos < length && data[pos] == '/') {
+                pos++;
+                if (pos < length && data[pos] != '/') {
+                    corners[corner + 1] = resolveIndex(readInt(), texelsCount);
+                }
+                if (pos < length && data[pos] == '/') {
+                    pos++;
+                    corners[corner + 2] = resolveIndex(readInt(), normalsCount);
+                }
+            }
+
+            cornersCount++;
+        }
+
+        for (int i = 2; i < cornersCount; i++) {
+            faces = ensureCapacity(faces, (facesCount + 1) * INDICES_PER_FACE);
+            final int face = facesCount * INDICES_PER_FACE;
+            System.arraycopy(corners, 0, faces, face, 3);
+            System.arraycopy(corners, (i - 1) * 3, faces, face + 3, 3);
+            System.arraycopy(corners, i * 3, faces, face + 6, 3);
+            facesCount++;
+        }
+    }
+
+    /**
+     * Converts a one-based (or a negative, relative) OBJ index into a zero-based one.
+     */
+    private static int resolveIndex(int index, int count) {
+        return index < 0 ? count + index : index - 1;
+    }
+
+    private void readFloats(float[] target, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            skipBlanks();
+            target[offset + i] = readFloat();
+        }
+    }
+
+    /**
+     * Parses a float at the current position. Mantissas of up to {@link #MAX_EXACT_DIGITS} digits with small
+     * exponents (all the OBJs we have) are converted exactly. Everything else falls back to {@link Float#parseFloat}.
+     */
+    private float readFloat() {
+        final int start = pos;
+        boolean negative = false;
+        if (pos < length && (data[pos] == '-' || data[pos] == '+')) {
+            negative = data[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+
+        while (pos < length && isDigit(data[pos])) {
+            if (mantissa != 0 || data[pos] != '0') {
+                digits++;
+            }
+            if (digits <= MAX_EXACT_DIGITS) {
+                mantissa = mantissa * 10 + (data[pos] - '0');
+            } else {
+                exponent++;
+            }
+            anyDigit = true;
+            pos++;
+        }
+
+        if (pos < length && data[pos] == '.') {
+            pos++;
+            while (pos < length && isDigit(data[pos])) {
+                if (mantissa != 0 || data[pos] != '0') {
+                    digits++;
+                }
+                if (digits <= MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (data[pos] - '0');
+                    exponent--;
+                }
+                anyDigit = true;
+                pos++;
+            }
+        }
+
+        if (pos < length && (data[pos] == 'e' || data[pos] == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < length && (data[pos] == '-' || data[pos] == '+')) {
+                negativeExponent = data[pos] == '-';
+                pos++;
+            }
+            int explicitExponent = 0;
+            while (pos < length && isDigit(data[pos])) {
+                if (explicitExponent < 10000) {
+                    explicitExponent = explicitExponent * 10 + (data[pos] - '0');
+                }
+                pos++;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (!anyDigit || digits > MAX_EXACT_DIGITS || exponent > 22 || exponent < -22
+                || (pos < length && !isBlank(data[pos]) && !isLineEnd(data[pos]))) {
+            // Rare or malformed input.
+            while (pos < length && !isBlank(data[pos]) && !isLineEnd(data[pos])) {
+                pos++;
+            }
+            try {
+                return Float.parseFloat(new String(data, start, pos - start, "US-ASCII"));
+            } catch (Exception e) {
+                return 0.f;
+            }
+        }
+
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return (float) (negative ? -value : value);
+    }
+
+    private int readInt() {
+        boolean negative = false;
+        if (pos < length && (data[pos] == '-' || data[pos] == '+')) {
+            negative = data[pos] == '-';
+            pos++;
+        }
+
+        int value = 0;
+        while (pos < length && isDigit(data[pos])) {
+            value = value * 10 + (data[pos] - '0');
+            pos++;
+        }
+
+        return negative ? -value : value;
+    }
+
+    private void skipBlanks() {
+        while (pos < length && isBlank(data[pos])) {
+            pos++;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < length && data[pos] != '\n') {
+            pos++;
+        }
+        pos++;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static float[] ensureCapacity(float[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    /**
+     * @return XYZ per position. Only the first {@code getPositionsCount() * 3} values are valid.
+     */
+    public float[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return UV per texel. Only the first {@code getTexelsCount() * 2} values are valid.
+     */
+    public float[] getTexels() {
+        return texels;
+    }
+
+    /**
+     * @return XYZ per normal. Only the first {@code getNormalsCount() * 3} values are valid.
+     */
+    public float[] getNormals() {
+        return normals;
+    }
+
+    /**
+     * @return {@link #INDICES_PER_FACE} zero-based indices per (triangulated) face. Only the first
+     * {@code getFacesCount() * INDICES_PER_FACE} values are valid.
+     */
+    public int[] getFaces() {
+        return faces;
+    }
+
+    public int getPositionsCount() {
+        return positionsCount;
+    }
+
+    public int getTexelsCount() {
+        return texelsCount;
+    }
+
+    public int getNormalsCount() {
+        return normalsCount;
+    }
+
+    public int getFacesCount() {
+        return facesCount;
+    }
+}
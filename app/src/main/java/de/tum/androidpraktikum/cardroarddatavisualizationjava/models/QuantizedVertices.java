@@ -0,0 +1,264 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * The vertices of {@link MeshIndexer} in a compact layout of {@link #VERTEX_STRIDE} bytes instead of 32:
+ * <ul>
+ * <li>the position as 3 unsigned shorts relative to the bounding box of the mesh, followed by an unsigned short, which is
+ * 0 or the instance id of a replicated copy (see {@link #replicate(int)}),</li>
+ * <li>the normal as 3 signed bytes (127 is 1) and a padding byte,</li>
+ * <li>the texel as 2 unsigned shorts relative to the texel range of the mesh.</li>
+ * </ul>
+ * Every attribute starts 4-byte aligned. The values are passed to the shader as they are (not normalized), the
+ * {@link VertexFormat} tells how to get the floats back. Records the largest error the quantization introduces.
+ */
+public class QuantizedVertices {
+    /**
+     * Size of a vertex in bytes.
+     */
+    public static final int VERTEX_STRIDE = 16;
+    /**
+     * Offset of the position in a vertex (in bytes).
+     */
+    public static final int POSITION_OFFSET = 0;
+    /**
+     * Offset of the instance id in a vertex (in bytes).
+     */
+    public static final int INSTANCE_ID_OFFSET = 6;
+    /**
+     * Offset of the normal in a vertex (in bytes).
+     */
+    public static final int NORMAL_OFFSET = 8;
+    /**
+     * Offset of the texel in a vertex (in bytes).
+     */
+    public static final int TEXEL_OFFSET = 12;
+
+    private static final int MAX_UNSIGNED_SHORT = 0xFFFF;
+    private static final int MAX_BYTE = 127;
+    private static final int BYTES_PER_SHORT = 2;
+
+    private final ByteBuffer data;
+    private final int vertices;
+    private final VertexFormat format;
+
+    /**
+     * Largest distance between a position and its dequantized position.
+     */
+    private float maxPositionError;
+    /**
+     * Largest angle between a normal and its dequantized normal in degrees.
+     */
+    private float maxNormalError;
+    /**
+     * Largest difference between a texel coordinate and its dequantized coordinate.
+     */
+    private float maxTexelError;
+    /**
+     * Length of the diagonal of the bounding box.
+     */
+    private final float extent;
+
+    private QuantizedVertices(ByteBuffer data, int vertices, VertexFormat format, float extent) {
+        this.data = data;
+        this.vertices = vertices;
+        this.format = format;
+        this.extent = extent;
+    }
+
+    /**
+     * Quantizes the interleaved vertices.
+     *
+     * @param vertexData interleaved vertices, see {@link MeshIndexer} for the layout
+     * @param vertices   number of vertices
+     * @return the quantized vertices in a direct buffer
+     */
+    public static QuantizedVertices quantize(FloatBuffer vertexData, int vertices) {
+        final float[] min = new float[MeshIndexer.FLOATS_PER_VERTEX];
+        final float[] max = new float[MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < MeshIndexer.FLOATS_PER_VERTEX; i++) {
+            min[i] = vertices == 0 ? 0.f : Float.MAX_VALUE;
+            max[i] = vertices == 0 ? 0.f : -Float.MAX_VALUE;
+        }
+        for (int vertex = 0; vertex < vertices; vertex++) {
+            for (int i = 0; i < MeshIndexer.FLOATS_PER_VERTEX; i++) {
+                final float value = vertexData.get(vertex * MeshIndexer.FLOATS_PER_VERTEX + i);
+                min[i] = Math.min(min[i], value);
+                max[i] = Math.max(max[i], value);
+            }
+        }
+
+        final float[] positionScale = new float[3];
+        final float[] positionOffset = new float[3];
+        for (int i = 0; i < 3; i++) {
+            positionScale[i] = (max[MeshIndexer.POSITION_OFFSET + i] - min[MeshIndexer.POSITION_OFFSET + i]) / MAX_UNSIGNED_SHORT;
+            positionOffset[i] = min[MeshIndexer.POSITION_OFFSET + i];
+        }
+        final float[] texelScale = new float[2];
+        final float[] texelOffset = new float[2];
+        for (int i = 0; i < 2; i++) {
+            texelScale[i] = (max[MeshIndexer.TEXEL_OFFSET + i] - min[MeshIndexer.TEXEL_OFFSET + i]) / MAX_UNSIGNED_SHORT;
+            texelOffset[i] = min[MeshIndexer.TEXEL_OFFSET + i];
+        }
+        final float extent = (float) Math.sqrt(square(positionScale[0] * MAX_UNSIGNED_SHORT)
+                + square(positionScale[1] * MAX_UNSIGNED_SHORT) + square(positionScale[2] * MAX_UNSIGNED_SHORT));
+
+        final ByteBuffer data = ByteBuffer.allocateDirect(vertices * VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+        final QuantizedVertices quantized = new QuantizedVertices(data, vertices,
+                new VertexFormat(true, positionScale, positionOffset, 1.f / MAX_BYTE, texelScale, texelOffset), extent);
+
+        for (int vertex = 0; vertex < vertices; vertex++) {
+            final int source = vertex * MeshIndexer.FLOATS_PER_VERTEX;
+            final int target = vertex * VERTEX_STRIDE;
+
+            float positionError = 0.f;
+            for (int i = 0; i < 3; i++) {
+                final float value = vertexData.get(source + MeshIndexer.POSITION_OFFSET + i);
+                final int q = quantize(value, positionOffset[i], positionScale[i]);
+                data.putShort(target + POSITION_OFFSET + i * BYTES_PER_SHORT, (short) q);
+                positionError += square(q * positionScale[i] + positionOffset[i] - value);
+            }
+            data.putShort(target + INSTANCE_ID_OFFSET, (short) 0);
+            quantized.maxPositionError = Math.max(quantized.maxPositionError, (float) Math.sqrt(positionError));
+
+            final float normalX = vertexData.get(source + MeshIndexer.NORMAL_OFFSET);
+            final float normalY = vertexData.get(source + MeshIndexer.NORMAL_OFFSET + 1);
+            final float normalZ = vertexData.get(source + MeshIndexer.NORMAL_OFFSET + 2);
+            final float normalLength = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+            final byte qNormalX = quantizeNormal(normalX, normalLength);
+            final byte qNormalY = quantizeNormal(normalY, normalLength);
+            final byte qNormalZ = quantizeNormal(normalZ, normalLength);
+            data.put(target + NORMAL_OFFSET, qNormalX);
+            data.put(target + NORMAL_OFFSET + 1, qNormalY);
+            data.put(target + NORMAL_OFFSET + 2, qNormalZ);
+            data.put(target + NORMAL_OFFSET + 3, (byte) 0);
+            // Vertices without a normal have no direction to lose.
+            if (normalLength > 0.f) {
+                final float qNormalLength = (float) Math.sqrt(qNormalX * qNormalX + qNormalY * qNormalY + qNormalZ * qNormalZ);
+                final float cos = (normalX * qNormalX + normalY * qNormalY + normalZ * qNormalZ) / (normalLength * qNormalLength);
+                quantized.maxNormalError = Math.max(quantized.maxNormalError,
+                        (float) Math.toDegrees(Math.acos(Math.min(cos, 1.f))));
+            }
+
+            for (int i = 0; i < 2; i++) {
+                final float value = vertexData.get(source + MeshIndexer.TEXEL_OFFSET + i);
+                final int q = quantize(value, texelOffset[i], texelScale[i]);
+                data.putShort(target + TEXEL_OFFSET + i * BYTES_PER_SHORT, (short) q);
+                quantized.maxTexelError = Math.max(quantized.maxTexelError, Math.abs(q * texelScale[i] + texelOffset[i] - value));
+            }
+        }
+
+        return quantized;
+    }
+
+    /**
+     * @return {@code value} in steps of {@code scale} above the {@code offset}, [0; 65535].
+     */
+    private static int quantize(float value, float offset, float scale) {
+        if (scale == 0.f) {
+            return 0;
+        }
+        return Math.max(0, Math.min(MAX_UNSIGNED_SHORT, Math.round((value - offset) / scale)));
+    }
+
+    /**
+     * @return the component of the normal scaled to a unit length in steps of 1/127.
+     */
+    private static byte quantizeNormal(float value, float length) {
+        if (length == 0.f) {
+            return 0;
+        }
+        return (byte) Math.max(-MAX_BYTE, Math.min(MAX_BYTE, Math.round(value / length * MAX_BYTE)));
+    }
+
+    private static float square(float x) {
+        return x * x;
+    }
+
+    /**
+     * Copies the vertices {@code instances} times, storing the number of the copy as the instance id of every vertex.
+     * See {@link InstancedMesh}.
+     *
+     * @param instances at most {@link InstancedMesh#getMaxInstances(int, int)}
+     * @return the replicated vertices
+     */
+    public ByteBuffer replicate(int instances) {
+        final ByteBuffer replicated = ByteBuffer.allocateDirect(vertices * instances * VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+        for (int instance = 0; instance < instances; instance++) {
+            final ByteBuffer copy = data.duplicate();
+            copy.clear();
+            replicated.put(copy);
+
+            final int first = instance * vertices;
+            for (int vertex = first; vertex < first + vertices; vertex++) {
+                replicated.putShort(vertex * VERTEX_STRIDE + INSTANCE_ID_OFFSET, (short) instance);
+            }
+        }
+        replicated.position(0);
+
+        return replicated;
+    }
+
+    /**
+     * @return the quantized vertices.
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public int getVertices() {
+        return vertices;
+    }
+
+    /**
+     * @return the dequantization of the vertices.
+     */
+    public VertexFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the size of the vertices in the float layout of {@link MeshIndexer} in bytes.
+     */
+    public int getFloatBytes() {
+        return vertices * MeshIndexer.FLOATS_PER_VERTEX * 4;
+    }
+
+    /**
+     * @return the size of the quantized vertices in bytes.
+     */
+    public int getBytes() {
+        return vertices * VERTEX_STRIDE;
+    }
+
+    /**
+     * @return the largest distance between a position and its dequantized position.
+     */
+    public float getMaxPositionError() {
+        return maxPositionError;
+    }
+
+    /**
+     * @return the {@link #getMaxPositionError()} relative to the diagonal of the bounding box.
+     */
+    public float getRelativePositionError() {
+        return extent == 0.f ? 0.f : maxPositionError / extent;
+    }
+
+    /**
+     * @return the largest angle between a normal and its dequantized normal in degrees.
+     */
+    public float getMaxNormalError() {
+        return maxNormalError;
+    }
+
+    /**
+     * @return the largest difference between a texel coordinate and its dequantized coordinate.
+     */
+    public float getMaxTexelError() {
+        return maxTexelError;
+    }
+}
@@ -0,0 +1,357 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.Reader;
+import java.util.HashMap;
+
+/**
+ * The brewery: which units there are, which mesh each of them uses and where it stands, plus the latest data of every
+ * unit. Loaded from a JSON description (see {@link #parse(Reader)}) or generated.
+ * <p>
+ * All the per-unit state lives in contiguous primitive arrays indexed by the unit number, which only grow. Units can be
+ * added and removed at runtime; removing moves the last unit into the gap. The scene is not thread-safe, it's meant to
+ * be changed on the GL thread.
+ */
+public class Scene {
+    /**
+     * Number of floats per position.
+     */
+    public static final int POSITION_SIZE = 3;
+    /**
+     * Number of floats per unit in the values: the temperature, the viscosity, the fill level and 0 before the latest
+     * retrieval, then the same since.
+     */
+    public static final int VALUE_SIZE = 8;
+
+    /**
+     * Names of the raw mesh resources, indexed by the mesh type.
+     */
+    private String[] meshNames = new String[4];
+    private int meshTypeCount;
+
+    private int size;
+    private final HashMap<String, Integer> unitNumbers = new HashMap<>();
+
+    // Layout.
+    private String[] ids;
+    private int[] meshTypes;
+    /**
+     * x, y, z in world space per unit.
+     */
+    private float[] positions;
+    /**
+     * Rotation around Y in degrees per unit.
+     */
+    private float[] yaws;
+    /**
+     * The level of detail drawn per unit.
+     */
+    private int[] lods;
+
+    // Data.
+    /**
+     * The temperature, the viscosity and the fill level [0; 1] before and since the latest retrieval per unit, animated
+     * between on the GPU.
+     */
+    private float[] values;
+    /**
+     * The latest data per unit, shown on request.
+     */
+    private Unit[] data;
+
+    /**
+     * @param capacity number of units to allocate the storage for
+     */
+    public Scene(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        ids = new String[capacity];
+        meshTypes = new int[capacity];
+        positions = new float[capacity * POSITION_SIZE];
+        yaws = new float[capacity];
+        lods = new int[capacity];
+        values = new float[capacity * VALUE_SIZE];
+        data = new Unit[capacity];
+    }
+
+    /**
+     * Doubles the capacity, keeping the units.
+     */
+    private void grow() {
+        final String[] oldIds = ids;
+        final int[] oldMeshTypes = meshTypes;
+        final float[] oldPositions = positions;
+        final float[] oldYaws = yaws;
+        final int[] oldLods = lods;
+        final float[] oldValues = values;
+        final Unit[] oldData = data;
+
+        allocate(ids.length * 2);
+
+        System.arraycopy(oldIds, 0, ids, 0, size);
+        System.arraycopy(oldMeshTypes, 0, meshTypes, 0, size);
+        System.arraycopy(oldPositions, 0, positions, 0, size * POSITION_SIZE);
+        System.arraycopy(oldYaws, 0, yaws, 0, size);
+        System.arraycopy(oldLods, 0, lods, 0, size);
+        System.arraycopy(oldValues, 0, values, 0, size * VALUE_SIZE);
+        System.arraycopy(oldData, 0, data, 0, size);
+    }
+
+    /**
+     * @param meshName name of the raw mesh resource
+     * @return the mesh type of the {@code meshName}, which is added, if it's new.
+     */
+    public int addMeshType(String meshName) {
+        final int existing = getMeshType(meshName);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (meshTypeCount == meshNames.length) {
+            final String[] oldMeshNames = meshNames;
+            meshNames = new String[meshTypeCount * 2];
+            System.arraycopy(oldMeshNames, 0, meshNames, 0, meshTypeCount);
+        }
+        meshNames[meshTypeCount] = meshName;
+        return meshTypeCount++;
+    }
+
+    /**
+     * @return the mesh type of the {@code meshName} or -1, if there's none.
+     */
+    public int getMeshType(String meshName) {
+        for (int i = 0; i < meshTypeCount; i++) {
+            if (meshNames[i].equals(meshName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a unit without data.
+     *
+     * @param id       the id of the unit in the retrieved data, e.g. "Unit1"
+     * @param meshType see {@link #addMeshType(String)}
+     * @param x        position in world space
+     * @param y
+     * @param z
+     * @param yaw      rotation around Y in degrees
+     * @return the number of the unit.
+     */
+    public int addUnit(String id, int meshType, float x, float y, float z, float yaw) {
+        if (unitNumbers.containsKey(id)) {
+            throw new RuntimeException("Unit " + id + " is already in the scene.");
+        }
+        if (meshType < 0 || meshType >= meshTypeCount) {
+            throw new RuntimeException("Unknown mesh type " + meshType + " of unit " + id + ".");
+        }
+        if (size == ids.length) {
+            grow();
+        }
+
+        final int unitNum = size++;
+        ids[unitNum] = id;
+        meshTypes[unitNum] = meshType;
+        positions[unitNum * POSITION_SIZE] = x;
+        positions[unitNum * POSITION_SIZE + 1] = y;
+        positions[unitNum * POSITION_SIZE + 2] = z;
+        yaws[unitNum] = yaw;
+        lods[unitNum] = 0;
+        for (int i = 0; i < VALUE_SIZE; i++) {
+            values[unitNum * VALUE_SIZE + i] = 0.f;
+        }
+        data[unitNum] = new Unit();
+        unitNumbers.put(id, unitNum);
+
+        return unitNum;
+    }
+
+    /**
+     * Removes the unit with the {@code id}. The last unit takes its number.
+     *
+     * @return whether there was such a unit.
+     */
+    public boolean removeUnit(String id) {
+        final Integer unitNum = unitNumbers.remove(id);
+        if (unitNum == null) {
+            return false;
+        }
+
+        final int last = --size;
+        if (unitNum != last) {
+            ids[unitNum] = ids[last];
+            meshTypes[unitNum] = meshTypes[last];
+            System.arraycopy(positions, last * POSITION_SIZE, positions, unitNum * POSITION_SIZE, POSITION_SIZE);
+            yaws[unitNum] = yaws[last];
+            lods[unitNum] = lods[last];
+            System.arraycopy(values, last * VALUE_SIZE, values, unitNum * VALUE_SIZE, VALUE_SIZE);
+            data[unitNum] = data[last];
+            unitNumbers.put(ids[unitNum], unitNum);
+        }
+        ids[last] = null;
+        data[last] = null;
+
+        return true;
+    }
+
+    /**
+     * @return the number of the unit with the {@code id} or -1, if there's none.
+     */
+    public int getUnitNum(String id) {
+        final Integer unitNum = unitNumbers.get(id);
+        return unitNum == null ? -1 : unitNum;
+    }
+
+    /**
+     * Parses a scene description:
+     * <pre>
+     * {
+     *   "meshes": ["aging_vessel", ...],
+     *   "units": [
+     *     { "id": "Unit1", "mesh": "aging_vessel", "position": [0, -5, -15], "yaw": 0 },
+     *     ...
+     *   ]
+     * }
+     * </pre>
+     * The meshes are the names of the raw resources. Listing them is optional, but fixes the order of the mesh types.
+     *
+     * @param reader
+     * @return the scene
+     */
+    public static Scene parse(Reader reader) {
+        final SceneJson sceneJson;
+        try {
+            sceneJson = new Gson().fromJson(reader, SceneJson.class);
+        } catch (JsonParseException e) {
+            throw new RuntimeException("Bad scene description: " + e.getMessage(), e);
+        }
+        if (sceneJson == null || sceneJson.units == null) {
+            throw new RuntimeException("Bad scene description! Expecting a list of units..");
+        }
+
+        final Scene scene = new Scene(sceneJson.units.length);
+        if (sceneJson.meshes != null) {
+            for (String meshName : sceneJson.meshes) {
+                scene.addMeshType(meshName);
+            }
+        }
+        for (UnitJson unit : sceneJson.units) {
+            if (unit.id == null || unit.mesh == null || unit.position == null || unit.position.length != POSITION_SIZE) {
+                throw new RuntimeException("Bad unit description! Expecting an id, a mesh and a position of 3 values..");
+            }
+            scene.addUnit(unit.id, scene.addMeshType(unit.mesh), unit.position[0], unit.position[1], unit.position[2], unit.yaw);
+        }
+
+        return scene;
+    }
+
+    /**
+     * Generates a square grid of {@code units} units, cycling through the {@code meshNames}, e.g. for benchmarks.
+     *
+     * @param units
+     * @param spacing   distance between the neighbouring units
+     * @param meshNames
+     * @return the scene
+     */
+    public static Scene createGrid(int units, float spacing, String... meshNames) {
+        final Scene scene = new Scene(units);
+        for (String meshName : meshNames) {
+            scene.addMeshType(meshName);
+        }
+
+        final int columns = (int) Math.ceil(Math.sqrt(units));
+        final float origin = -(columns - 1) * spacing / 2.f;
+        for (int i = 0; i < units; i++) {
+            scene.addUnit("Unit" + (i + 1), i % meshNames.length, origin + (i % columns) * spacing, -5.f,
+                    origin + (i / columns) * spacing, (i * 37) % 360);
+        }
+
+        return scene;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMeshTypeCount() {
+        return meshTypeCount;
+    }
+
+    public String getMeshName(int meshType) {
+        return meshNames[meshType];
+    }
+
+    public String getId(int unitNum) {
+        return ids[unitNum];
+    }
+
+    public int[] getMeshTypes() {
+        return meshTypes;
+    }
+
+    /**
+     * @return x, y, z per unit.
+     */
+    public float[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return the rotation around Y in degrees per unit.
+     */
+    public float[] getYaws() {
+        return yaws;
+    }
+
+    /**
+     * @return the level of detail drawn per unit.
+     */
+    public int[] getLods() {
+        return lods;
+    }
+
+    /**
+     * @return the temperature, the viscosity, the fill level [0; 1] and 0 before the latest retrieval, then the same
+     * since, {@link #VALUE_SIZE} values per unit.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    public Unit getData(int unitNum) {
+        return data[unitNum];
+    }
+
+    public void setData(int unitNum, Unit unit) {
+        data[unitNum] = unit;
+    }
+
+    /**
+     * The JSON scene description.
+     */
+    private static class SceneJson {
+        @SerializedName("meshes")
+        String[] meshes;
+        @SerializedName("units")
+        UnitJson[] units;
+    }
+
+    /**
+     * The JSON description of a unit.
+     */
+    private static class UnitJson {
+        @SerializedName("id")
+        String id;
+        @SerializedName("mesh")
+        String mesh;
+        @SerializedName("position")
+        float[] position;
+        @SerializedName("yaw")
+        float yaw;
+    }
+}
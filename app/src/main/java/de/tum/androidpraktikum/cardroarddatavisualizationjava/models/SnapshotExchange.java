@@ -0,0 +1,101 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the data of the units from the network threads to the GL thread through three buffers: the producers fill the
+ * back one, the GL thread reads the front one, and the middle one is swapped with either of them atomically. Neither
+ * side ever waits for the other and the newest complete snapshot wins: one, which wasn't acquired before the next one
+ * was published, is dropped.
+ * <p>
+ * The updates published may carry some of the units only. They are merged into the data of all the units, so that the
+ * snapshot acquired is complete and dropping one loses nothing.
+ */
+public class SnapshotExchange {
+    /**
+     * Set on the index of the middle buffer, while it holds a snapshot not acquired yet.
+     */
+    private static final int FRESH = 4;
+
+    private final TelemetrySnapshot[] buffers = new TelemetrySnapshot[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    /**
+     * Index of the buffer owned by the producers.
+     */
+    private int back = 0;
+    /**
+     * Index of the buffer owned by the GL thread.
+     */
+    private int front = 2;
+
+    /**
+     * The data of all the units published so far. Owned by the producers.
+     */
+    private final TelemetrySnapshot units;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private volatile long published;
+    private volatile long acquired;
+
+    /**
+     * @param capacity number of units to allocate the storage for
+     */
+    public SnapshotExchange(int capacity) {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new TelemetrySnapshot(capacity);
+        }
+        units = new TelemetrySnapshot(capacity);
+    }
+
+    /**
+     * Merges the {@code update} into the data of all the units and makes that the newest snapshot. The producers are
+     * serialized among themselves; the GL thread never takes the lock.
+     *
+     * @param update the data of some or all of the units, not kept
+     */
+    public synchronized void publish(TelemetrySnapshot update) {
+        for (int i = 0; i < update.size(); i++) {
+            final Integer slot = slots.get(update.getId(i));
+            if (slot == null) {
+                slots.put(update.getId(i), units.add(update, i));
+            } else {
+                units.set(slot, update, i);
+            }
+        }
+
+        buffers[back].set(units);
+        // The GL thread may be reading the front buffer, but never the middle one.
+        back = middle.getAndSet(back | FRESH) & ~FRESH;
+        published++;
+    }
+
+    /**
+     * Takes the newest snapshot. Called by the GL thread only, e.g. at the start of a frame.
+     *
+     * @return the data of all the units, valid until the next call, or null if nothing was published since the last one.
+     */
+    public TelemetrySnapshot acquire() {
+        if ((middle.get() & FRESH) == 0) {
+            return null;
+        }
+        front = middle.getAndSet(front) & ~FRESH;
+        acquired++;
+        return buffers[front];
+    }
+
+    /**
+     * @return the number of the snapshots published.
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return the number of the snapshots acquired, the others were dropped for newer ones.
+     */
+    public long getAcquired() {
+        return acquired;
+    }
+}
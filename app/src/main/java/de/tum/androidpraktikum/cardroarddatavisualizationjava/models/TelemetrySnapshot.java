@@ -0,0 +1,191 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+/**
+ * The data of the units retrieved at once, one slot per unit in the order of the payload. The fields of the
+ * {@link Unit} are kept in parallel arrays, which are reused by {@link #clear()} and only grow, so that decoding the
+ * data again doesn't allocate more than the strings.
+ */
+public class TelemetrySnapshot {
+    private int size;
+
+    /**
+     * The unit id per slot, e.g. Unit1.
+     */
+    private String[] ids;
+    private String[] names;
+    private int[] temperatures;
+    private int[] viscosities;
+    /**
+     * The fill level [0; 100] as retrieved.
+     */
+    private float[] levels;
+    private String[] stages;
+
+    /**
+     * @param capacity number of units to allocate the storage for
+     */
+    public TelemetrySnapshot(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        ids = new String[capacity];
+        names = new String[capacity];
+        temperatures = new int[capacity];
+        viscosities = new int[capacity];
+        levels = new float[capacity];
+        stages = new String[capacity];
+    }
+
+    /**
+     * Doubles the capacity, keeping the units.
+     */
+    private void grow() {
+        final String[] oldIds = ids;
+        final String[] oldNames = names;
+        final int[] oldTemperatures = temperatures;
+        final int[] oldViscosities = viscosities;
+        final float[] oldLevels = levels;
+        final String[] oldStages = stages;
+
+        allocate(ids.length * 2);
+
+        System.arraycopy(oldIds, 0, ids, 0, size);
+        System.arraycopy(oldNames, 0, names, 0, size);
+        System.arraycopy(oldTemperatures, 0, temperatures, 0, size);
+        System.arraycopy(oldViscosities, 0, viscosities, 0, size);
+        System.arraycopy(oldLevels, 0, levels, 0, size);
+        System.arraycopy(oldStages, 0, stages, 0, size);
+    }
+
+    /**
+     * Drops all the units, keeping the storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a unit without data.
+     *
+     * @param id the unit id
+     * @return the slot of the unit.
+     */
+    public int add(String id) {
+        if (size == ids.length) {
+            grow();
+        }
+        final int slot = size++;
+        ids[slot] = id;
+        names[slot] = null;
+        temperatures[slot] = 0;
+        viscosities[slot] = 0;
+        levels[slot] = 0.f;
+        stages[slot] = null;
+        return slot;
+    }
+
+    /**
+     * Adds a copy of a unit of another snapshot.
+     *
+     * @return the slot of the copy.
+     */
+    public int add(TelemetrySnapshot snapshot, int slot) {
+        final int copy = add(snapshot.ids[slot]);
+        set(copy, snapshot, slot);
+        return copy;
+    }
+
+    /**
+     * Replaces the unit of the {@code slot} with a copy of a unit of another snapshot.
+     */
+    public void set(int slot, TelemetrySnapshot snapshot, int otherSlot) {
+        ids[slot] = snapshot.ids[otherSlot];
+        names[slot] = snapshot.names[otherSlot];
+        temperatures[slot] = snapshot.temperatures[otherSlot];
+        viscosities[slot] = snapshot.viscosities[otherSlot];
+        levels[slot] = snapshot.levels[otherSlot];
+        stages[slot] = snapshot.stages[otherSlot];
+    }
+
+    /**
+     * Replaces all the units with copies of the ones of another snapshot.
+     */
+    public void set(TelemetrySnapshot snapshot) {
+        if (ids.length < snapshot.size) {
+            allocate(snapshot.ids.length);
+        }
+        size = snapshot.size;
+        System.arraycopy(snapshot.ids, 0, ids, 0, size);
+        System.arraycopy(snapshot.names, 0, names, 0, size);
+        System.arraycopy(snapshot.temperatures, 0, temperatures, 0, size);
+        System.arraycopy(snapshot.viscosities, 0, viscosities, 0, size);
+        System.arraycopy(snapshot.levels, 0, levels, 0, size);
+        System.arraycopy(snapshot.stages, 0, stages, 0, size);
+    }
+
+    /**
+     * Fills the {@code unit} with the data of the {@code slot}.
+     */
+    public void copyTo(int slot, Unit unit) {
+        unit.name = names[slot];
+        unit.temperature = temperatures[slot];
+        unit.viscosity = viscosities[slot];
+        unit.level = levels[slot];
+        unit.stage = stages[slot];
+    }
+
+    /**
+     * @return the number of units.
+     */
+    public int size() {
+        return size;
+    }
+
+    public String getId(int slot) {
+        return ids[slot];
+    }
+
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    public void setName(int slot, String name) {
+        names[slot] = name;
+    }
+
+    public int getTemperature(int slot) {
+        return temperatures[slot];
+    }
+
+    public void setTemperature(int slot, int temperature) {
+        temperatures[slot] = temperature;
+    }
+
+    public int getViscosity(int slot) {
+        return viscosities[slot];
+    }
+
+    public void setViscosity(int slot, int viscosity) {
+        viscosities[slot] = viscosity;
+    }
+
+    /**
+     * @return the fill level [0; 100] as retrieved.
+     */
+    public float getLevel(int slot) {
+        return levels[slot];
+    }
+
+    public void setLevel(int slot, float level) {
+        levels[slot] = level;
+    }
+
+    public String getStage(int slot) {
+        return stages[slot];
+    }
+
+    public void setStage(int slot, String stage) {
+        stages[slot] = stage;
+    }
+}
@@ -0,0 +1,276 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuts the triangles of a mesh, whose texture repeats, along the integer texel lines, and moves the texels of every
+ * piece into [0; 1]. The mesh looks the same with a repeated texture, but can also use a clamped one, e.g. a region
+ * of an atlas. The vertices on the cuts are interpolated from the corners of the cut triangle.
+ */
+public class TexelTiler {
+    /**
+     * Texels this far outside [0; 1] still count as inside.
+     */
+    private static final float TOLERANCE = 1e-4f;
+    /**
+     * Pieces with a smaller area in texel space are slivers of a corner touching a cut.
+     */
+    private static final float MIN_AREA = 1e-9f;
+    private static final int S = MeshIndexer.TEXEL_OFFSET;
+    private static final int T = MeshIndexer.TEXEL_OFFSET + 1;
+
+    private final List<float[]> vertices = new ArrayList<>();
+    /**
+     * Index of every vertex by its floats, to share the vertices between the pieces.
+     */
+    private final Map<FloatBuffer, Integer> vertexIndices = new HashMap<>();
+    private final List<Integer> indices = new ArrayList<>();
+    private final int[] levelIndexCounts;
+
+    /**
+     * Tiles the mesh, every level of detail on its own.
+     *
+     * @param vertexData       interleaved vertices, see {@link MeshIndexer} for the layout
+     * @param indices          the indices of all levels, one after another
+     * @param levelIndexCounts number of indices per level, starting with the full mesh
+     */
+    public TexelTiler(FloatBuffer vertexData, int[] indices, int[] levelIndexCounts) {
+        this.levelIndexCounts = new int[levelIndexCounts.length];
+
+        int offset = 0;
+        for (int level = 0; level < levelIndexCounts.length; level++) {
+            final int levelStart = this.indices.size();
+            for (int i = offset; i < offset + levelIndexCounts[level]; i += 3) {
+                tile(vertex(vertexData, indices[i]), vertex(vertexData, indices[i + 1]), vertex(vertexData, indices[i + 2]));
+            }
+            this.levelIndexCounts[level] = this.indices.size() - levelStart;
+            offset += levelIndexCounts[level];
+        }
+    }
+
+    /**
+     * @param vertexData interleaved vertices, see {@link MeshIndexer} for the layout
+     * @param vertices   number of vertices
+     * @return whether any texel of the mesh leaves [0; 1], i.e. the mesh has to be tiled for a clamped texture.
+     */
+    public static boolean isRepeating(FloatBuffer vertexData, int vertices) {
+        for (int vertex = 0; vertex < vertices; vertex++) {
+            for (int i = S; i <= T; i++) {
+                final float texel = vertexData.get(vertex * MeshIndexer.FLOATS_PER_VERTEX + i);
+                if (texel < -TOLERANCE || texel > 1.f + TOLERANCE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static float[] vertex(FloatBuffer vertexData, int index) {
+        final float[] vertex = new float[MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < vertex.length; i++) {
+            vertex[i] = vertexData.get(index * MeshIndexer.FLOATS_PER_VERTEX + i);
+        }
+        return vertex;
+    }
+
+    /**
+     * Cuts the triangle into the cells of the texel grid and adds every piece as a fan.
+     */
+    private void tile(float[] a, float[] b, float[] c) {
+        final List<float[]> triangle = new ArrayList<>(3);
+        triangle.add(a);
+        triangle.add(b);
+        triangle.add(c);
+        // Triangles without an extent in texel space (e.g. ones without texels) have nothing to cut.
+        final boolean flat = texelArea(triangle) < MIN_AREA;
+        final int firstColumn = firstCell(triangle, S);
+        final int lastColumn = flat ? firstColumn : lastCell(triangle, S, firstColumn);
+        final int firstRow = firstCell(triangle, T);
+        final int lastRow = flat ? firstRow : lastCell(triangle, T, firstRow);
+
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            final List<float[]> strip = flat ? triangle : clip(clip(triangle, S, column, true), S, column + 1, false);
+            for (int row = firstRow; row <= lastRow; row++) {
+                final List<float[]> piece = flat ? strip : clip(clip(strip, T, row, true), T, row + 1, false);
+                if (piece.size() < 3 || !flat && texelArea(piece) < MIN_AREA) {
+                    continue;
+                }
+
+                final int first = add(piece.get(0), column, row);
+                for (int i = 1; i < piece.size() - 1; i++) {
+                    final int second = add(piece.get(i), column, row);
+                    final int third = add(piece.get(i + 1), column, row);
+                    // A cut through a corner of the piece repeats the corner.
+                    if (first == second || second == third || third == first) {
+                        continue;
+                    }
+                    indices.add(first);
+                    indices.add(second);
+                    indices.add(third);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first cell of the texel grid along the {@code axis} touched by the {@code polygon}.
+     */
+    private static int firstCell(List<float[]> polygon, int axis) {
+        float min = Float.POSITIVE_INFINITY;
+        for (float[] vertex : polygon) {
+            min = Math.min(min, vertex[axis]);
+        }
+        return (int) Math.floor(min + TOLERANCE);
+    }
+
+    /**
+     * @return the last cell of the texel grid along the {@code axis} touched by the {@code polygon}. A texel on a
+     * grid line belongs to the cell before it.
+     */
+    private static int lastCell(List<float[]> polygon, int axis, int firstCell) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (float[] vertex : polygon) {
+            max = Math.max(max, vertex[axis]);
+        }
+        return Math.max(firstCell, (int) Math.ceil(max - TOLERANCE) - 1);
+    }
+
+    /**
+     * Clips the convex {@code polygon} against a grid line (Sutherland-Hodgman).
+     *
+     * @param axis  {@link #S} or {@link #T}
+     * @param line  the grid line
+     * @param above whether to keep the part above the line, otherwise the part below it
+     * @return the clipped polygon.
+     */
+    private static List<float[]> clip(List<float[]> polygon, int axis, float line, boolean above) {
+        final List<float[]> clipped = new ArrayList<>(polygon.size() + 1);
+        for (int i = 0; i < polygon.size(); i++) {
+            final float[] current = polygon.get(i);
+            final float[] next = polygon.get((i + 1) % polygon.size());
+            final boolean currentInside = above ? current[axis] >= line : current[axis] <= line;
+            final boolean nextInside = above ? next[axis] >= line : next[axis] <= line;
+            if (currentInside) {
+                clipped.add(current);
+            }
+            if (currentInside != nextInside) {
+                clipped.add(intersect(current, next, axis, line));
+            }
+        }
+        return clipped;
+    }
+
+    /**
+     * @return the vertex on the edge from {@code a} to {@code b}, which lies on the grid line.
+     */
+    private static float[] intersect(float[] a, float[] b, int axis, float line) {
+        // The same edge of the neighbouring triangle runs the other way round. Interpolating from the same end gives
+        // the same floats, so that the vertex is shared.
+        if (compare(a, b) > 0) {
+            final float[] swap = a;
+            a = b;
+            b = swap;
+        }
+
+        final float f = (line - a[axis]) / (b[axis] - a[axis]);
+        final float[] vertex = new float[MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < vertex.length; i++) {
+            vertex[i] = a[i] + (b[i] - a[i]) * f;
+        }
+        vertex[axis] = line;
+
+        // Keep the normal a unit vector.
+        final int n = MeshIndexer.NORMAL_OFFSET;
+        final float length = (float) Math.sqrt(vertex[n] * vertex[n] + vertex[n + 1] * vertex[n + 1] + vertex[n + 2] * vertex[n + 2]);
+        if (length > 0.f) {
+            vertex[n] /= length;
+            vertex[n + 1] /= length;
+            vertex[n + 2] /= length;
+        }
+        return vertex;
+    }
+
+    private static int compare(float[] a, float[] b) {
+        for (int i = 0; i < a.length; i++) {
+            final int result = Float.compare(a[i], b[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the area of the {@code polygon} in texel space.
+     */
+    private static float texelArea(List<float[]> polygon) {
+        float area = 0.f;
+        for (int i = 0; i < polygon.size(); i++) {
+            final float[] current = polygon.get(i);
+            final float[] next = polygon.get((i + 1) % polygon.size());
+            area += current[S] * next[T] - next[S] * current[T];
+        }
+        return Math.abs(area) / 2.f;
+    }
+
+    /**
+     * Adds the {@code vertex} moved from the cell ({@code column}, {@code row}) to [0; 1], unless it exists already.
+     *
+     * @return the index of the vertex.
+     */
+    private int add(float[] vertex, int column, int row) {
+        final float[] moved = vertex.clone();
+        moved[S] -= column;
+        moved[T] -= row;
+
+        final FloatBuffer key = FloatBuffer.wrap(moved);
+        Integer index = vertexIndices.get(key);
+        if (index == null) {
+            index = vertices.size();
+            vertices.add(moved);
+            vertexIndices.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the tiled vertices in a direct buffer, see {@link MeshIndexer} for the layout.
+     */
+    public FloatBuffer getVertexData() {
+        final FloatBuffer vertexData = ByteBuffer.allocateDirect(vertices.size() * MeshIndexer.FLOATS_PER_VERTEX * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (float[] vertex : vertices) {
+            vertexData.put(vertex);
+        }
+        vertexData.position(0);
+        return vertexData;
+    }
+
+    public int getVerticesCount() {
+        return vertices.size();
+    }
+
+    /**
+     * @return the indices of all levels, one after another.
+     */
+    public int[] getIndices() {
+        final int[] result = new int[indices.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indices.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of indices per level, starting with the full mesh.
+     */
+    public int[] getLevelIndexCounts() {
+        return levelIndexCounts.clone();
+    }
+}
@@ -0,0 +1,70 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+/**
+ * How the vertex shader gets the attributes of a mesh back: either they are floats already ({@link #FLOAT}) or they
+ * are quantized (see {@link QuantizedVertices}) and have to be scaled and offset.
+ * <pre>
+ * position = a_Position * positionScale + positionOffset
+ * normal   = a_Normal * normalScale
+ * texel    = a_TexCoordinate * texelScale + texelOffset
+ * </pre>
+ */
+public final class VertexFormat {
+    /**
+     * The float layout of {@link MeshIndexer}, which needs no dequantization.
+     */
+    public static final VertexFormat FLOAT = new VertexFormat(false, new float[]{1.f, 1.f, 1.f}, new float[3], 1.f,
+            new float[]{1.f, 1.f}, new float[2]);
+
+    private final boolean quantized;
+    private final float[] positionScale;
+    private final float[] positionOffset;
+    private final float normalScale;
+    private final float[] texelScale;
+    private final float[] texelOffset;
+
+    VertexFormat(boolean quantized, float[] positionScale, float[] positionOffset, float normalScale, float[] texelScale, float[] texelOffset) {
+        this.quantized = quantized;
+        this.positionScale = positionScale;
+        this.positionOffset = positionOffset;
+        this.normalScale = normalScale;
+        this.texelScale = texelScale;
+        this.texelOffset = texelOffset;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    /**
+     * @return x, y, z. Don't modify.
+     */
+    public float[] getPositionScale() {
+        return positionScale;
+    }
+
+    /**
+     * @return x, y, z. Don't modify.
+     */
+    public float[] getPositionOffset() {
+        return positionOffset;
+    }
+
+    public float getNormalScale() {
+        return normalScale;
+    }
+
+    /**
+     * @return u, v. Don't modify.
+     */
+    public float[] getTexelScale() {
+        return texelScale;
+    }
+
+    /**
+     * @return u, v. Don't modify.
+     */
+    public float[] getTexelOffset() {
+        return texelOffset;
+    }
+}
@@ -0,0 +1,69 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter: the delay before the n-th retry is drawn from [cap / 2; cap], where the cap doubles
+ * with every failure up to a maximum. The jitter keeps the clients of a hall from retrying in lockstep, once the server
+ * is back.
+ */
+public class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private final Random random;
+    /**
+     * Failures since the last success.
+     */
+    private int failures;
+
+    /**
+     * @param initialMillis the cap of the first delay
+     * @param maxMillis     the cap of all the delays
+     */
+    public Backoff(long initialMillis, long maxMillis) {
+        this(initialMillis, maxMillis, new Random());
+    }
+
+    /**
+     * @param initialMillis the cap of the first delay
+     * @param maxMillis     the cap of all the delays
+     * @param random        draws the jitter
+     */
+    public Backoff(long initialMillis, long maxMillis, Random random) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new RuntimeException("Bad backoff " + initialMillis + ".." + maxMillis + "! Expecting 0 < initial <= max..");
+        }
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    /**
+     * Counts a failure.
+     *
+     * @return milliseconds to wait before the next attempt.
+     */
+    public long nextDelayMillis() {
+        long cap = initialMillis;
+        for (int i = 0; i < failures && cap < maxMillis; i++) {
+            cap = cap > maxMillis / 2 ? maxMillis : cap * 2;
+        }
+        failures++;
+        final long half = cap / 2;
+        return half + (long) (random.nextDouble() * (cap - half + 1));
+    }
+
+    /**
+     * Starts over after a success.
+     */
+    public void reset() {
+        failures = 0;
+    }
+
+    /**
+     * @return the failures since the last success.
+     */
+    public int getFailures() {
+        return failures;
+    }
+}
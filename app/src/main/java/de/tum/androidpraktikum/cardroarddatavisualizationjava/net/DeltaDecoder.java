@@ -0,0 +1,150 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+import static de.tum.androidpraktikum.cardroarddatavisualizationjava.net.DeltaFormat.*;
+
+/**
+ * The client side of the {@link DeltaFormat}: applies the frames of a {@link DeltaEncoder} to the data of the units it
+ * holds. The {@link #getSequence() sequence} is the one to acknowledge with the next request. A delta only applies to
+ * the sequence it was encoded for, so if a frame can't be decoded, the decoder starts over and waits for a keyframe.
+ */
+public class DeltaDecoder {
+    private long sequence;
+
+    /**
+     * The data of all the units received so far.
+     */
+    private final TelemetrySnapshot units = new TelemetrySnapshot(16);
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+
+    /**
+     * Applies a frame.
+     *
+     * @param frame   read up to the end of the frame, not closed
+     * @param changed receives all the data of the units, which changed
+     * @return whether the frame was a keyframe.
+     * @throws IOException if the {@code frame} can't be read, isn't a frame or doesn't apply to the sequence
+     */
+    public boolean decode(InputStream frame, TelemetrySnapshot changed) throws IOException {
+        try {
+            return read(frame, changed);
+        } catch (IOException e) {
+            // Part of the frame may have been applied.
+            reset();
+            throw e;
+        }
+    }
+
+    private boolean read(InputStream in, TelemetrySnapshot changed) throws IOException {
+        final int version = readByte(in);
+        if (version != VERSION) {
+            throw new IOException("Bad version " + version + "! Expecting " + VERSION + ".");
+        }
+        final int type = readByte(in);
+        final long base = readVarint(in);
+        final long frameSequence = readVarint(in);
+        if (type == KEYFRAME) {
+            reset();
+        } else if (type != DELTA) {
+            throw new IOException("Bad frame type " + type + "! Expecting " + KEYFRAME + " or " + DELTA + ".");
+        } else if (base != sequence) {
+            throw new IOException("Bad base sequence " + base + "! Expecting " + sequence + ".");
+        }
+
+        final long firstString = readVarint(in);
+        if (firstString != dictionary.size()) {
+            throw new IOException("Bad dictionary index " + firstString + "! Expecting " + dictionary.size() + ".");
+        }
+        final long strings = readVarint(in);
+        for (long i = 0; i < strings; i++) {
+            dictionary.add(readString(in));
+        }
+
+        changed.clear();
+        final long changedUnits = readVarint(in);
+        for (long i = 0; i < changedUnits; i++) {
+            final String id = getString(readVarint(in));
+            if (id == null) {
+                throw new IOException("Bad unit id! Expecting a string.");
+            }
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = units.add(id);
+                slots.put(id, slot);
+            }
+            readUnit(in, slot);
+            changed.add(units, slot);
+        }
+
+        sequence = frameSequence;
+        return type == KEYFRAME;
+    }
+
+    private void readUnit(InputStream in, int slot) throws IOException {
+        final int fields = readByte(in);
+        if ((fields & ~ALL_FIELDS) != 0) {
+            throw new IOException("Bad fields " + fields + "! Expecting at most " + ALL_FIELDS + ".");
+        }
+        if ((fields & NAME) != 0) {
+            units.setName(slot, getString(readVarint(in) - 1));
+        }
+        if ((fields & TEMPERATURE) != 0) {
+            units.setTemperature(slot, readZigzag(in));
+        }
+        if ((fields & VISCOSITY) != 0) {
+            units.setViscosity(slot, readZigzag(in));
+        }
+        if ((fields & LEVEL) != 0) {
+            units.setLevel(slot, readZigzag(in) / LEVEL_SCALE);
+        }
+        if ((fields & STAGE) != 0) {
+            units.setStage(slot, getString(readVarint(in) - 1));
+        }
+    }
+
+    /**
+     * @return the string at the {@code index} of the dictionary, null for -1.
+     */
+    private String getString(long index) throws IOException {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= dictionary.size()) {
+            throw new IOException("Bad string index " + index + "! Expecting [0; " + dictionary.size() + ").");
+        }
+        return dictionary.get((int) index);
+    }
+
+    /**
+     * Drops all the units, so that the next frame has to be a keyframe.
+     */
+    public void reset() {
+        sequence = 0;
+        units.clear();
+        slots.clear();
+        dictionary.clear();
+    }
+
+    /**
+     * @return the sequence of the latest frame, 0 if there was none.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the data of all the units. Not to be modified.
+     */
+    public TelemetrySnapshot getUnits() {
+        return units;
+    }
+}
@@ -0,0 +1,234 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+import static de.tum.androidpraktikum.cardroarddatavisualizationjava.net.DeltaFormat.*;
+
+/**
+ * The server side of the {@link DeltaFormat}: keeps the latest data of every unit and the sequence each field last
+ * changed at, so that a client, which acknowledged a sequence, gets only the units and the fields, which changed since.
+ * <p>
+ * The strings, i.e. the unit ids, names and stages, are sent once and referred to by their index in a dictionary, which
+ * grows with the sequence. A client gets a keyframe of all the units and the whole dictionary, if it has none yet, if it
+ * is ahead of the encoder, e.g. after a restart of the server, or if a multiple of the keyframe interval passed since
+ * its sequence.
+ */
+public class DeltaEncoder {
+    private final int keyframeInterval;
+    private long sequence;
+
+    /**
+     * The latest data of the units.
+     */
+    private final TelemetrySnapshot units = new TelemetrySnapshot(16);
+    private final Map<String, Integer> slots = new HashMap<>();
+    /**
+     * The sequence each field of a unit last changed at, {@link DeltaFormat#FIELDS} per slot.
+     */
+    private long[] changes = new long[16 * FIELDS];
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndices = new HashMap<>();
+    /**
+     * The sequence each string was added at, ascending.
+     */
+    private long[] dictionarySequences = new long[16];
+
+    /**
+     * @param keyframeInterval number of sequences, after which every client gets a keyframe again
+     */
+    public DeltaEncoder(int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Bad keyframe interval " + keyframeInterval + "! Expecting at least 1.");
+        }
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Merges the data of the units into the latest one. Units not in the {@code row} keep their data.
+     *
+     * @param row the data of some or all of the units
+     * @return the sequence of the update.
+     */
+    public long update(TelemetrySnapshot row) {
+        sequence++;
+        for (int i = 0; i < row.size(); i++) {
+            final String id = row.getId(i);
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = units.add(id);
+                slots.put(id, slot);
+                addString(id);
+                if (changes.length < units.size() * FIELDS) {
+                    final long[] oldChanges = changes;
+                    changes = new long[oldChanges.length * 2];
+                    System.arraycopy(oldChanges, 0, changes, 0, oldChanges.length);
+                }
+                // All the fields are new.
+                for (int field = 0; field < FIELDS; field++) {
+                    changes[slot * FIELDS + field] = sequence;
+                }
+            }
+            updateUnit(row, i, slot);
+        }
+        return sequence;
+    }
+
+    private void updateUnit(TelemetrySnapshot row, int i, int slot) {
+        final int offset = slot * FIELDS;
+        if (!equal(units.getName(slot), row.getName(i))) {
+            units.setName(slot, row.getName(i));
+            addString(row.getName(i));
+            changes[offset] = sequence;
+        }
+        if (units.getTemperature(slot) != row.getTemperature(i)) {
+            units.setTemperature(slot, row.getTemperature(i));
+            changes[offset + 1] = sequence;
+        }
+        if (units.getViscosity(slot) != row.getViscosity(i)) {
+            units.setViscosity(slot, row.getViscosity(i));
+            changes[offset + 2] = sequence;
+        }
+        if (quantizeLevel(units.getLevel(slot)) != quantizeLevel(row.getLevel(i))) {
+            units.setLevel(slot, row.getLevel(i));
+            changes[offset + 3] = sequence;
+        }
+        if (!equal(units.getStage(slot), row.getStage(i))) {
+            units.setStage(slot, row.getStage(i));
+            addString(row.getStage(i));
+            changes[offset + 4] = sequence;
+        }
+    }
+
+    private void addString(String string) {
+        if (string == null || dictionaryIndices.containsKey(string)) {
+            return;
+        }
+        if (dictionary.size() == dictionarySequences.length) {
+            final long[] oldSequences = dictionarySequences;
+            dictionarySequences = new long[oldSequences.length * 2];
+            System.arraycopy(oldSequences, 0, dictionarySequences, 0, oldSequences.length);
+        }
+        dictionarySequences[dictionary.size()] = sequence;
+        dictionaryIndices.put(string, dictionary.size());
+        dictionary.add(string);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @param since the sequence acknowledged by the client, 0 if it has none
+     * @return whether the client gets a keyframe.
+     */
+    public boolean isKeyframe(long since) {
+        return since <= 0 || since > sequence || since < sequence - sequence % keyframeInterval;
+    }
+
+    /**
+     * Encodes the frame, which brings a client from {@code since} to the latest sequence.
+     *
+     * @param since the sequence acknowledged by the client, 0 if it has none
+     * @return the frame, a delta or a keyframe.
+     */
+    public byte[] encode(long since) {
+        final boolean keyframe = isKeyframe(since);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            out.write(VERSION);
+            out.write(keyframe ? KEYFRAME : DELTA);
+            writeVarint(out, keyframe ? 0 : since);
+            writeVarint(out, sequence);
+
+            // The strings the client doesn't know yet.
+            int firstString = dictionary.size();
+            if (keyframe) {
+                firstString = 0;
+            } else {
+                while (firstString > 0 && dictionarySequences[firstString - 1] > since) {
+                    firstString--;
+                }
+            }
+            writeVarint(out, firstString);
+            writeVarint(out, dictionary.size() - firstString);
+            for (int i = firstString; i < dictionary.size(); i++) {
+                writeString(out, dictionary.get(i));
+            }
+
+            final long changedSince = keyframe ? -1 : since;
+            int changedUnits = 0;
+            for (int slot = 0; slot < units.size(); slot++) {
+                if (getChangedFields(slot, changedSince) != 0) {
+                    changedUnits++;
+                }
+            }
+            writeVarint(out, changedUnits);
+            for (int slot = 0; slot < units.size(); slot++) {
+                final int fields = getChangedFields(slot, changedSince);
+                if (fields != 0) {
+                    writeUnit(out, slot, fields);
+                }
+            }
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream.
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private int getChangedFields(int slot, long since) {
+        int fields = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            if (changes[slot * FIELDS + field] > since) {
+                fields |= 1 << field;
+            }
+        }
+        return fields;
+    }
+
+    private void writeUnit(ByteArrayOutputStream out, int slot, int fields) throws IOException {
+        writeVarint(out, dictionaryIndices.get(units.getId(slot)));
+        out.write(fields);
+        if ((fields & NAME) != 0) {
+            writeStringIndex(out, units.getName(slot));
+        }
+        if ((fields & TEMPERATURE) != 0) {
+            writeZigzag(out, units.getTemperature(slot));
+        }
+        if ((fields & VISCOSITY) != 0) {
+            writeZigzag(out, units.getViscosity(slot));
+        }
+        if ((fields & LEVEL) != 0) {
+            writeZigzag(out, quantizeLevel(units.getLevel(slot)));
+        }
+        if ((fields & STAGE) != 0) {
+            writeStringIndex(out, units.getStage(slot));
+        }
+    }
+
+    private void writeStringIndex(ByteArrayOutputStream out, String string) throws IOException {
+        writeVarint(out, string == null ? 0 : dictionaryIndices.get(string) + 1);
+    }
+
+    /**
+     * @return the sequence of the latest update.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the number of strings in the dictionary.
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+}
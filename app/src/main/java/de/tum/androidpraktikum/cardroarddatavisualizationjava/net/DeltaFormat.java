@@ -0,0 +1,123 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The binary wire format of the unit deltas, shared by the {@link DeltaEncoder} and the {@link DeltaDecoder}. A frame
+ * is:
+ * <pre>
+ * byte    VERSION
+ * byte    KEYFRAME or DELTA
+ * varint  base sequence, the one of the client the frame applies to, 0 for a keyframe
+ * varint  sequence the frame brings the client to
+ * varint  index of the first string added to the dictionary, 0 for a keyframe
+ * varint  number of the strings added, each a varint length and that many bytes of UTF-8
+ * varint  number of the units
+ * per unit:
+ *   varint  dictionary index of the unit id
+ *   byte    the fields that follow, a bit per field in the order of the bits
+ *   varint  NAME and STAGE: dictionary index + 1, 0 for none
+ *   zigzag  TEMPERATURE, VISCOSITY and LEVEL, the latter in 1 / LEVEL_SCALE
+ * </pre>
+ * A varint stores 7 bits per byte, the lowest first, with the highest bit set on all the bytes but the last one.
+ * Zigzag maps signed to unsigned values, so that small negative ones stay short.
+ */
+final class DeltaFormat {
+    static final int VERSION = 1;
+    static final String CONTENT_TYPE = "application/x-unit-deltas";
+
+    // Types of the frames.
+    static final int KEYFRAME = 1;
+    static final int DELTA = 2;
+
+    // Bits of the fields.
+    static final int NAME = 1;
+    static final int TEMPERATURE = 1 << 1;
+    static final int VISCOSITY = 1 << 2;
+    static final int LEVEL = 1 << 3;
+    static final int STAGE = 1 << 4;
+    static final int ALL_FIELDS = NAME | TEMPERATURE | VISCOSITY | LEVEL | STAGE;
+    static final int FIELDS = 5;
+
+    /**
+     * The fill level is sent in hundredths of a percent.
+     */
+    static final float LEVEL_SCALE = 100.f;
+    /**
+     * Bound of the strings, so that a corrupt length doesn't allocate the memory away.
+     */
+    static final int MAX_STRING_BYTES = 1 << 16;
+
+    private DeltaFormat() {
+    }
+
+    static int quantizeLevel(float level) {
+        return Math.round(level * LEVEL_SCALE);
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated frame!");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad varint! Expecting at most 10 bytes.");
+    }
+
+    static void writeZigzag(OutputStream out, int value) throws IOException {
+        writeVarint(out, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    static int readZigzag(InputStream in) throws IOException {
+        final int value = (int) readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int readByte(InputStream in) throws IOException {
+        final int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Truncated frame!");
+        }
+        return b;
+    }
+
+    static void writeString(OutputStream out, String string) throws IOException {
+        final byte[] bytes = string.getBytes("UTF-8");
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(InputStream in) throws IOException {
+        final long length = readVarint(in);
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("Bad string of " + length + " bytes! Expecting at most " + MAX_STRING_BYTES + ".");
+        }
+        final byte[] bytes = new byte[(int) length];
+        int read = 0;
+        while (read < bytes.length) {
+            final int n = in.read(bytes, read, bytes.length - read);
+            if (n == -1) {
+                throw new EOFException("Truncated frame!");
+            }
+            read += n;
+        }
+        return new String(bytes, "UTF-8");
+    }
+}
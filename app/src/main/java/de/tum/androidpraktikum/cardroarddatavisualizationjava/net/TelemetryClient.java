@@ -0,0 +1,284 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Polls the telemetry of the units from a single URL. Reused for every poll, so that:
+ * <ul>
+ * <li>the connection is kept alive: every response is read to its end and the stream closed, which hands the
+ * connection back to the pool of {@link HttpURLConnection};</li>
+ * <li>the requests are conditional: the ETag and the Last-Modified date of the last response are sent back, so that
+ * unchanged data costs a 304 without a body;</li>
+ * <li>the body is gzip compressed, if the server supports it;</li>
+ * <li>failures are retried after an exponential backoff with jitter, see {@link #getRetryDelayMillis()}.</li>
+ * </ul>
+ * Blocks, so it's used off the UI thread. Not thread-safe.
+ */
+public class TelemetryClient {
+    public static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    public static final int READ_TIMEOUT_MILLIS = 10000;
+    /**
+     * The cap of the first and of all the retry delays.
+     */
+    public static final long INITIAL_RETRY_DELAY_MILLIS = 1000;
+    public static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    /**
+     * Reads a body, e.g. decodes it while it's received.
+     */
+    public interface BodyReader {
+        /**
+         * @param body the decompressed body. Needn't be read to its end.
+         */
+        void read(Reader body) throws IOException;
+    }
+
+    private final URL url;
+    private final Backoff backoff;
+
+    /**
+     * Validators of the last response with a body, null if the server sent none.
+     */
+    private String eTag;
+    private String lastModified;
+    /**
+     * Milliseconds to wait after the last failure, 0 after a success.
+     */
+    private long retryDelayMillis;
+
+    // Statistics.
+    private int requests;
+    private int notModifiedResponses;
+    private int failures;
+    /**
+     * Body bytes as transferred, i.e. compressed.
+     */
+    private long bytesReceived;
+    /**
+     * Body bytes after decompression.
+     */
+    private long bytesDecoded;
+
+    /**
+     * @param url the URL of the latest row
+     */
+    public TelemetryClient(URL url) {
+        this(url, new Backoff(INITIAL_RETRY_DELAY_MILLIS, MAX_RETRY_DELAY_MILLIS));
+    }
+
+    /**
+     * @param url     the URL of the latest row
+     * @param backoff the delays after failures
+     */
+    public TelemetryClient(URL url, Backoff backoff) {
+        this.url = url;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Requests the latest row.
+     *
+     * @return the body or null, if it didn't change since the last call.
+     * @throws IOException if the request failed. {@link #getRetryDelayMillis()} tells when to try again.
+     */
+    public String fetch() throws IOException {
+        final StringBuilder body = new StringBuilder();
+        final boolean changed = fetch(new BodyReader() {
+            @Override
+            public void read(Reader reader) throws IOException {
+                final char[] buffer = new char[4096];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    body.append(buffer, 0, read);
+                }
+            }
+        });
+        return changed ? body.toString() : null;
+    }
+
+    /**
+     * Requests the latest row and passes the body to the {@code bodyReader}, while it's received.
+     *
+     * @return false, if the row didn't change since the last call and the {@code bodyReader} wasn't called.
+     * @throws IOException if the request or the {@code bodyReader} failed. {@link #getRetryDelayMillis()} tells when to
+     *                     try again.
+     */
+    public boolean fetch(BodyReader bodyReader) throws IOException {
+        requests++;
+        try {
+            final boolean changed = request(bodyReader);
+            backoff.reset();
+            retryDelayMillis = 0;
+            return changed;
+        } catch (IOException e) {
+            failures++;
+            retryDelayMillis = backoff.nextDelayMillis();
+            throw e;
+        }
+    }
+
+    private boolean request(BodyReader bodyReader) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        // Set explicitly, the body is decompressed below. Android only adds it, if it isn't set.
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (eTag != null) {
+            connection.setRequestProperty("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        final int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModifiedResponses++;
+            drain(connection.getInputStream());
+            return false;
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            // Read the error, so that the connection is kept alive nonetheless.
+            drain(connection.getErrorStream());
+            throw new IOException("Unexpected response " + status + " from " + url + ".");
+        }
+
+        read(connection.getInputStream(), "gzip".equalsIgnoreCase(connection.getContentEncoding()), bodyReader);
+        // Only once the body was read, so that a failed read is repeated with the full body.
+        eTag = connection.getHeaderField("ETag");
+        lastModified = connection.getHeaderField("Last-Modified");
+        return true;
+    }
+
+    /**
+     * Passes the {@code stream} to the {@code bodyReader} as UTF-8, reads the rest and closes it.
+     */
+    private void read(InputStream stream, boolean gzip, BodyReader bodyReader) throws IOException {
+        final CountingInputStream counted = new CountingInputStream(stream);
+        final CountingInputStream decoded = new CountingInputStream(gzip ? new GZIPInputStream(counted) : counted);
+        final Reader reader = new InputStreamReader(decoded, "UTF-8");
+        try {
+            bodyReader.read(reader);
+            // Read whatever the body reader left. GZIPInputStream stops at the trailer, so also whatever the server
+            // sent after it.
+            final byte[] buffer = new byte[1024];
+            while (decoded.read(buffer) != -1) {
+                // Skip.
+            }
+            while (counted.read(buffer) != -1) {
+                // Skip.
+            }
+        } finally {
+            bytesReceived += counted.getCount();
+            bytesDecoded += decoded.getCount();
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the {@code stream} to its end and closes it.
+     */
+    private void drain(InputStream stream) throws IOException {
+        if (stream == null) {
+            return;
+        }
+        final CountingInputStream counted = new CountingInputStream(stream);
+        try {
+            final byte[] buffer = new byte[1024];
+            while (counted.read(buffer) != -1) {
+                // Skip.
+            }
+        } finally {
+            bytesReceived += counted.getCount();
+            counted.close();
+        }
+    }
+
+    /**
+     * Forgets the validators, so that the next request gets the full body.
+     */
+    public void reset() {
+        eTag = null;
+        lastModified = null;
+    }
+
+    /**
+     * @return milliseconds to wait before the next request after the last one failed, 0 if it succeeded.
+     */
+    public long getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getNotModifiedResponses() {
+        return notModifiedResponses;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the body bytes received so far, as transferred.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return the body bytes received so far, decompressed.
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded;
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
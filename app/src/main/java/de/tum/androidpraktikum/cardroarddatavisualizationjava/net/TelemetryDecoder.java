@@ -0,0 +1,88 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+/**
+ * Decodes a row of units in a single pass, while it's read, straight into a {@link TelemetrySnapshot}. Expects
+ * {@code [ { "id" : ..., "Unit1" : { ... }, ..., "UnitN" : { ... } } ]} or the object alone: every member, which is an
+ * object, is a unit, keyed by its unit id. Takes the fields of a
+ * {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Unit} and skips the others, without reflection
+ * and without building a tree of the payload.
+ */
+public class TelemetryDecoder {
+    // Fields of a unit, as serialized.
+    private static final String NAME = "Name";
+    private static final String TEMPERATURE = "Temp";
+    private static final String VISCOSITY = "Visco";
+    private static final String LEVEL = "Level";
+    private static final String STAGE = "Stage";
+
+    /**
+     * Replaces the units of the {@code snapshot} with the ones in the {@code json}.
+     *
+     * @param json     read up to the end of the row, not closed
+     * @param snapshot receives the units in the order of the row
+     * @throws IOException if the {@code json} can't be read or isn't a row of units
+     */
+    public void decode(Reader json, TelemetrySnapshot snapshot) throws IOException {
+        snapshot.clear();
+        final JsonReader reader = new JsonReader(json);
+        try {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readRow(reader, snapshot);
+                }
+                reader.endArray();
+            } else {
+                readRow(reader, snapshot);
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Thrown for unexpected tokens.
+            throw new IOException("Bad row of units! " + e.getMessage(), e);
+        }
+    }
+
+    private static void readRow(JsonReader reader, TelemetrySnapshot snapshot) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readUnit(reader, snapshot, snapshot.add(key));
+            } else {
+                // E.g. the id of the row.
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readUnit(JsonReader reader, TelemetrySnapshot snapshot, int slot) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (field.equals(TEMPERATURE)) {
+                snapshot.setTemperature(slot, (int) reader.nextDouble());
+            } else if (field.equals(LEVEL)) {
+                snapshot.setLevel(slot, (float) reader.nextDouble());
+            } else if (field.equals(VISCOSITY)) {
+                snapshot.setViscosity(slot, (int) reader.nextDouble());
+            } else if (field.equals(NAME)) {
+                snapshot.setName(slot, reader.nextString());
+            } else if (field.equals(STAGE)) {
+                snapshot.setStage(slot, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+}
@@ -0,0 +1,373 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Receives the updates of the units, as the server pushes them, instead of polling the latest row. Every update is a
+ * row holding the units, which changed, numbered by a sequence.
+ * <p>
+ * The updates are streamed as server-sent events. If the server doesn't stream, they're long-polled instead: every
+ * request waits at the server until there are updates after the sequence and the next one is sent right after. Both
+ * resume from the last sequence received after a reconnect, so that no update is lost or delivered twice. Failures are
+ * retried after a {@link Backoff}.
+ * <p>
+ * Runs on its own thread, which calls the {@link Listener}.
+ */
+public class TelemetryStream {
+    public static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    /**
+     * The server sends a comment every few seconds, so that a dead connection is noticed.
+     */
+    public static final int STREAM_READ_TIMEOUT_MILLIS = 45000;
+    /**
+     * Longer than the server holds a long poll.
+     */
+    public static final int LONG_POLL_READ_TIMEOUT_MILLIS = 90000;
+    /**
+     * Milliseconds to wait before reconnecting a stream, which the server ended, unless it sets another delay.
+     */
+    public static final long DEFAULT_RECONNECT_DELAY_MILLIS = 1000;
+    /**
+     * How long {@link #stop()} waits for the thread. A connect in progress isn't always aborted by a disconnect, so the
+     * thread may end later, without calling the listener anymore.
+     */
+    public static final long STOP_TIMEOUT_MILLIS = 500;
+
+    public interface Listener {
+        /**
+         * @param sequence the number of the update
+         * @param data     the row of the units, which changed
+         */
+        void onUpdate(long sequence, String data);
+
+        /**
+         * The server supports neither streaming nor long polling. The stream stops.
+         */
+        void onUnsupported();
+    }
+
+    private final URL eventsUrl;
+    private final URL updatesUrl;
+    private final Listener listener;
+    private final Backoff backoff;
+
+    private volatile boolean running;
+    private volatile boolean longPolling;
+    /**
+     * The thread receiving, null while stopped. A thread, which is no longer this one, ends.
+     */
+    private volatile Thread thread;
+    /**
+     * The connection being read, disconnected to stop.
+     */
+    private volatile HttpURLConnection connection;
+
+    /**
+     * The sequence of the last update received, -1 before the first one.
+     */
+    private volatile long sequence = -1;
+    private volatile long reconnectDelayMillis = DEFAULT_RECONNECT_DELAY_MILLIS;
+
+    // Statistics.
+    private volatile int connections;
+    private volatile int failures;
+
+    /**
+     * @param eventsUrl  streams the updates as server-sent events
+     * @param updatesUrl long-polls the updates after the sequence in the query parameter {@code since}
+     * @param listener
+     */
+    public TelemetryStream(URL eventsUrl, URL updatesUrl, Listener listener) {
+        this(eventsUrl, updatesUrl, listener,
+                new Backoff(TelemetryClient.INITIAL_RETRY_DELAY_MILLIS, TelemetryClient.MAX_RETRY_DELAY_MILLIS));
+    }
+
+    /**
+     * @param eventsUrl  streams the updates as server-sent events
+     * @param updatesUrl long-polls the updates after the sequence in the query parameter {@code since}
+     * @param listener
+     * @param backoff    the delays after failures
+     */
+    public TelemetryStream(URL eventsUrl, URL updatesUrl, Listener listener, Backoff backoff) {
+        this.eventsUrl = eventsUrl;
+        this.updatesUrl = updatesUrl;
+        this.listener = listener;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Connects on a new thread. Does nothing, if it's running.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "TelemetryStream");
+        thread.start();
+    }
+
+    /**
+     * Disconnects and waits for the thread to end, at most {@link #STOP_TIMEOUT_MILLIS}, so that it may be called on
+     * the UI thread. The next {@link #start()} resumes from the last sequence.
+     */
+    public void stop() {
+        final Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = this.thread;
+            this.thread = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        final HttpURLConnection connection = this.connection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void receive() {
+        while (isCurrentThread()) {
+            final boolean ended;
+            try {
+                ended = longPolling ? longPoll() : stream();
+                backoff.reset();
+            } catch (IOException | RuntimeException e) {
+                // E.g. HttpURLConnection throws a NullPointerException, if it's disconnected while connecting.
+                if (!isCurrentThread()) {
+                    return;
+                }
+                failures++;
+                sleep(backoff.nextDelayMillis());
+                continue;
+            }
+            if (ended) {
+                sleep(reconnectDelayMillis);
+            }
+        }
+    }
+
+    /**
+     * Reads the event stream until the server ends it.
+     *
+     * @return whether the server ended the stream, false if it doesn't stream and the updates are long-polled from now.
+     */
+    private boolean stream() throws IOException {
+        final HttpURLConnection connection = open(eventsUrl, STREAM_READ_TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept", "text/event-stream");
+        if (sequence >= 0) {
+            connection.setRequestProperty("Last-Event-ID", Long.toString(sequence));
+        }
+
+        final int status = connection.getResponseCode();
+        final String contentType = connection.getContentType();
+        if (status == HttpURLConnection.HTTP_OK && contentType != null && contentType.startsWith("text/event-stream")) {
+            readEvents(connection.getInputStream());
+            return true;
+        }
+        drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        if (status >= 500) {
+            throw new IOException("Unexpected response " + status + " from " + eventsUrl + ".");
+        }
+        // Some other answer than a stream, e.g. a 404.
+        longPolling = true;
+        return false;
+    }
+
+    /**
+     * Waits for the updates after the last sequence.
+     *
+     * @return whether nothing new came without the server holding the request for at least the reconnect delay, e.g. as
+     * a proxy answers right away, so that the next poll waits. Otherwise it's sent right away.
+     */
+    private boolean longPoll() throws IOException {
+        final URL url = new URL(updatesUrl + (updatesUrl.getQuery() == null ? "?" : "&") + "since=" + sequence);
+        final long start = System.nanoTime();
+        final HttpURLConnection connection = open(url, LONG_POLL_READ_TIMEOUT_MILLIS);
+        final int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_NO_CONTENT) {
+            final int events;
+            if (status == HttpURLConnection.HTTP_OK) {
+                events = readEvents(connection.getInputStream());
+            } else {
+                // Nothing new in time.
+                drain(connection.getInputStream());
+                events = 0;
+            }
+            return events == 0 && (System.nanoTime() - start) / 1000000 < reconnectDelayMillis;
+        }
+        drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        // Any client error, e.g. a 404 or a 405: the server doesn't long poll either.
+        if (status >= 400 && status < 500) {
+            synchronized (this) {
+                if (!isCurrentThread()) {
+                    return false;
+                }
+                running = false;
+                thread = null;
+            }
+            listener.onUnsupported();
+            return false;
+        }
+        throw new IOException("Unexpected response " + status + " from " + url + ".");
+    }
+
+    private HttpURLConnection open(URL url, int readTimeoutMillis) throws IOException {
+        if (!isCurrentThread()) {
+            throw new IOException("Stopped!");
+        }
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setUseCaches(false);
+        this.connection = connection;
+        connections++;
+        return connection;
+    }
+
+    /**
+     * Parses the server-sent events in the {@code stream} until it ends and passes their data to the listener. Knows
+     * the fields id, data and retry, ignores the comments and the other fields.
+     *
+     * @return the number of the events passed.
+     */
+    private int readEvents(InputStream stream) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        int events = 0;
+        try {
+            final StringBuilder data = new StringBuilder();
+            long id = -1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    // Dispatch the event.
+                    if (!isCurrentThread()) {
+                        // Stopped, while the connection was read.
+                        return events;
+                    }
+                    if (data.length() > 0) {
+                        if (id >= 0) {
+                            sequence = id;
+                        }
+                        listener.onUpdate(sequence, data.toString());
+                        events++;
+                    }
+                    data.setLength(0);
+                    id = -1;
+                    continue;
+                }
+                if (line.startsWith(":")) {
+                    // A comment to keep the connection alive.
+                    continue;
+                }
+
+                final int colon = line.indexOf(':');
+                final String field = colon < 0 ? line : line.substring(0, colon);
+                String value = colon < 0 ? "" : line.substring(colon + 1);
+                if (value.startsWith(" ")) {
+                    value = value.substring(1);
+                }
+                if (field.equals("data")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                } else if (field.equals("id")) {
+                    id = parseLong(value, id);
+                } else if (field.equals("retry")) {
+                    reconnectDelayMillis = parseLong(value, reconnectDelayMillis);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    private static long parseLong(String value, long fallback) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Reads the {@code stream} to its end and closes it, so that the connection is kept alive.
+     */
+    private static void drain(InputStream stream) throws IOException {
+        if (stream == null) {
+            return;
+        }
+        try {
+            final byte[] buffer = new byte[1024];
+            while (stream.read(buffer) != -1) {
+                // Skip.
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private boolean isCurrentThread() {
+        return thread == Thread.currentThread();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // Stopped.
+        }
+    }
+
+    /**
+     * Long-polls the updates from now on instead of streaming them.
+     */
+    public void setLongPolling(boolean longPolling) {
+        this.longPolling = longPolling;
+    }
+
+    public boolean isLongPolling() {
+        return longPolling;
+    }
+
+    /**
+     * @return the sequence of the last update received, -1 before the first one.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the number of connections opened so far.
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+}
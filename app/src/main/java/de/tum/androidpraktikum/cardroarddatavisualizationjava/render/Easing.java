@@ -0,0 +1,57 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+/**
+ * An easing curve of the animations: maps the elapsed part of an animation [0; 1] to the part of the way done. The
+ * curve is a cubic polynomial {@code a t + b t^2 + c t^3}, so that the shaders evaluate any of them from three
+ * coefficients, without a variant per curve.
+ */
+public class Easing {
+    /**
+     * Constant speed.
+     */
+    public static final Easing LINEAR = new Easing(1.f, 0.f, 0.f);
+    /**
+     * Starts slow, ends fast.
+     */
+    public static final Easing EASE_IN = new Easing(0.f, 0.f, 1.f);
+    /**
+     * Starts fast, ends slow.
+     */
+    public static final Easing EASE_OUT = new Easing(3.f, -3.f, 1.f);
+    /**
+     * Starts and ends slow (smoothstep).
+     */
+    public static final Easing EASE_IN_OUT = new Easing(0.f, 3.f, -2.f);
+
+    /**
+     * The coefficients of t, t^2 and t^3.
+     */
+    private final float[] coefficients;
+
+    /**
+     * The coefficients should add up to 1, so that the curve ends where the animation does.
+     *
+     * @param a coefficient of t
+     * @param b coefficient of t^2
+     * @param c coefficient of t^3
+     */
+    public Easing(float a, float b, float c) {
+        coefficients = new float[]{a, b, c};
+    }
+
+    /**
+     * @param t the elapsed part of the animation, clamped to [0; 1]
+     * @return the part of the way done.
+     */
+    public float apply(float t) {
+        final float clamped = Math.max(0.f, Math.min(t, 1.f));
+        return ((coefficients[2] * clamped + coefficients[1]) * clamped + coefficients[0]) * clamped;
+    }
+
+    /**
+     * @return the coefficients of t, t^2 and t^3. Not to be modified.
+     */
+    public float[] getCoefficients() {
+        return coefficients;
+    }
+}
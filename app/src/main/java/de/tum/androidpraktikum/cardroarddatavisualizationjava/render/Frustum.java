@@ -0,0 +1,52 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+/**
+ * The six clipping planes of a view-projection matrix, for telling whether a bounding sphere can be visible. The planes
+ * are extracted from the rows of the matrix (Gribb and Hartmann) and point inwards.
+ */
+public class Frustum {
+    private static final int PLANES = 6;
+
+    /**
+     * a, b, c, d per plane, with the normal (a, b, c) normalized: a * x + b * y + c * z + d is the signed distance of
+     * the point (x, y, z) to the plane.
+     */
+    private final float[] planes = new float[PLANES * 4];
+
+    /**
+     * @param viewProjection transforms world space to clip space
+     */
+    public void set(float[] viewProjection) {
+        final float[] m = viewProjection;
+        // Left, right, bottom, top, near, far: the 4th row plus or minus the 1st, 2nd and 3rd row.
+        for (int row = 0; row < 3; row++) {
+            setPlane(row * 2, m[3] + m[row], m[7] + m[4 + row], m[11] + m[8 + row], m[15] + m[12 + row]);
+            setPlane(row * 2 + 1, m[3] - m[row], m[7] - m[4 + row], m[11] - m[8 + row], m[15] - m[12 + row]);
+        }
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        final float length = Matrices.length(a, b, c);
+        final int offset = plane * 4;
+        planes[offset] = a / length;
+        planes[offset + 1] = b / length;
+        planes[offset + 2] = c / length;
+        planes[offset + 3] = d / length;
+    }
+
+    /**
+     * @param x      center of the sphere in world space
+     * @param y
+     * @param z
+     * @param radius
+     * @return false, if the sphere is entirely outside of the frustum. True, if it may be visible.
+     */
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int offset = 0; offset < PLANES * 4; offset += 4) {
+            if (planes[offset] * x + planes[offset + 1] * y + planes[offset + 2] * z + planes[offset + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
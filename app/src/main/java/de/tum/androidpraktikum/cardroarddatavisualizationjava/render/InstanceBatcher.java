@@ -0,0 +1,305 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Bounds;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.InstancedMesh;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.InstancedModelShaderProgram;
+
+/**
+ * Collects the instances of the frame per model and level of detail and draws them in batches of as many instances as the
+ * {@link InstancedMesh} and the {@link InstancedModelShaderProgram} allow. So the number of draws depends on the number
+ * of distinct models, not on the number of instances.
+ * <p>
+ * The instances are kept in contiguous arrays per model, which are reused between the frames and only grow. Every eye
+ * culls them against its frustum and draws the visible ones only.
+ */
+public class InstanceBatcher {
+    private static final int FLOATS_PER_INSTANCE = InstancedModelShaderProgram.FLOATS_PER_INSTANCE;
+    private static final int VALUE_FLOATS_PER_INSTANCE = InstancedModelShaderProgram.VALUE_FLOATS_PER_INSTANCE;
+
+    /**
+     * The distinct models of the frame.
+     */
+    private Model[] models = new Model[4];
+    /**
+     * The level of detail per model.
+     */
+    private int[] lods = new int[4];
+    private int modelCount;
+    /**
+     * Per model: x, y, z and the rotation around Y in radians per instance.
+     */
+    private float[][] transforms = new float[4][];
+    /**
+     * Per model: the temperature, the viscosity and the fill level before and since the last data update per instance.
+     */
+    private float[][] values = new float[4][];
+    /**
+     * Per model: the number of instances.
+     */
+    private int[] instanceCounts = new int[4];
+
+    /**
+     * The visible instances of the model being drawn.
+     */
+    private float[] visibleTransforms = new float[InstancedModelShaderProgram.MAX_INSTANCES * FLOATS_PER_INSTANCE];
+    private float[] visibleValues = new float[InstancedModelShaderProgram.MAX_INSTANCES * VALUE_FLOATS_PER_INSTANCE];
+    /**
+     * Instances drawn and culled by the last {@link #draw}.
+     */
+    private int drawnCount;
+    private int culledCount;
+
+    /**
+     * Drops all the instances.
+     */
+    public void clear() {
+        for (int i = 0; i < modelCount; i++) {
+            models[i] = null;
+            instanceCounts[i] = 0;
+        }
+        modelCount = 0;
+    }
+
+    /**
+     * Adds an instance of an instanced {@code model}.
+     *
+     * @param model       a model with an {@link InstancedMesh}
+     * @param x           position in world space
+     * @param y
+     * @param z
+     * @param yaw         rotation around Y in radians
+     * @param values      holds the temperature, the viscosity, the fill level [0; 1] and 0 before the last data update, then
+     *                    the same since
+     * @param valueOffset offset of the 8 values in {@code values}
+     */
+    public void add(Model model, float x, float y, float z, float yaw, float[] values, int valueOffset) {
+        add(model, 0, x, y, z, yaw, values, valueOffset);
+    }
+
+    /**
+     * Adds an instance of a level of detail of an instanced {@code model}.
+     *
+     * @param model       a model with an {@link InstancedMesh}
+     * @param lod         the level of detail, 0 for the full mesh
+     * @param x           position in world space
+     * @param y
+     * @param z
+     * @param yaw         rotation around Y in radians
+     * @param values      holds the temperature, the viscosity, the fill level [0; 1] and 0 before the last data update, then
+     *                    the same since
+     * @param valueOffset offset of the 8 values in {@code values}
+     */
+    public void add(Model model, int lod, float x, float y, float z, float yaw, float[] values, int valueOffset) {
+        final int slot = getSlot(model, lod);
+        final int instance = instanceCounts[slot]++;
+        if (transforms[slot].length < (instance + 1) * FLOATS_PER_INSTANCE) {
+            grow(slot);
+        }
+
+        final int offset = instance * FLOATS_PER_INSTANCE;
+        final float[] slotTransforms = transforms[slot];
+        slotTransforms[offset] = x;
+        slotTransforms[offset + 1] = y;
+        slotTransforms[offset + 2] = z;
+        slotTransforms[offset + 3] = yaw;
+        System.arraycopy(values, valueOffset, this.values[slot], instance * VALUE_FLOATS_PER_INSTANCE, VALUE_FLOATS_PER_INSTANCE);
+    }
+
+    /**
+     * @return the slot of the {@code model} at the {@code lod}, which is added, if it's new in this frame.
+     */
+    private int getSlot(Model model, int lod) {
+        // There are only a handful of distinct models.
+        for (int i = 0; i < modelCount; i++) {
+            if (models[i] == model && lods[i] == lod) {
+                return i;
+            }
+        }
+
+        if (modelCount == models.length) {
+            final int capacity = modelCount * 2;
+            final Model[] oldModels = models;
+            final int[] oldLods = lods;
+            final float[][] oldTransforms = transforms;
+            final float[][] oldValues = values;
+            final int[] oldInstanceCounts = instanceCounts;
+            models = new Model[capacity];
+            lods = new int[capacity];
+            transforms = new float[capacity][];
+            values = new float[capacity][];
+            instanceCounts = new int[capacity];
+            System.arraycopy(oldModels, 0, models, 0, modelCount);
+            System.arraycopy(oldLods, 0, lods, 0, modelCount);
+            System.arraycopy(oldTransforms, 0, transforms, 0, modelCount);
+            System.arraycopy(oldValues, 0, values, 0, modelCount);
+            System.arraycopy(oldInstanceCounts, 0, instanceCounts, 0, modelCount);
+        }
+
+        final int slot = modelCount++;
+        models[slot] = model;
+        lods[slot] = lod;
+        instanceCounts[slot] = 0;
+        if (transforms[slot] == null) {
+            transforms[slot] = new float[InstancedModelShaderProgram.MAX_INSTANCES * FLOATS_PER_INSTANCE];
+            values[slot] = new float[InstancedModelShaderProgram.MAX_INSTANCES * VALUE_FLOATS_PER_INSTANCE];
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of the {@code slot}, keeping the instances.
+     */
+    private void grow(int slot) {
+        final float[] oldTransforms = transforms[slot];
+        final float[] oldValues = values[slot];
+        transforms[slot] = new float[oldTransforms.length * 2];
+        values[slot] = new float[oldValues.length * 2];
+        System.arraycopy(oldTransforms, 0, transforms[slot], 0, oldTransforms.length);
+        System.arraycopy(oldValues, 0, values[slot], 0, oldValues.length);
+    }
+
+    /**
+     * Draws all the instances. Expects the {@code program} to be in use with the matrices, the light, the texture and
+     * the animation set.
+     *
+     * @param gl
+     * @param program
+     * @return the number of draw calls issued.
+     */
+    public int draw(GLApi gl, InstancedModelShaderProgram program) {
+        return draw(gl, program, null);
+    }
+
+    /**
+     * Draws the instances, which may be visible in the {@code frustum}. Expects the {@code program} to be in use with
+     * the matrices, the light, the texture and the animation set.
+     *
+     * @param gl
+     * @param program
+     * @param frustum the frustum of the eye or null to draw all the instances
+     * @return the number of draw calls issued.
+     */
+    public int draw(GLApi gl, InstancedModelShaderProgram program, Frustum frustum) {
+        int drawCalls = 0;
+        drawnCount = 0;
+        culledCount = 0;
+
+        for (int slot = 0; slot < modelCount; slot++) {
+            final Model model = models[slot];
+            final float[] slotTransforms;
+            final float[] slotValues;
+            final int instanceCount;
+            if (frustum == null) {
+                slotTransforms = transforms[slot];
+                slotValues = values[slot];
+                instanceCount = instanceCounts[slot];
+            } else {
+                instanceCount = cull(slot, frustum);
+                slotTransforms = visibleTransforms;
+                slotValues = visibleValues;
+                culledCount += instanceCounts[slot] - instanceCount;
+            }
+            drawnCount += instanceCount;
+            if (instanceCount == 0) {
+                continue;
+            }
+
+            final InstancedMesh mesh = model.getInstancedMesh();
+            final int batchSize = Math.min(mesh.getInstances(), InstancedModelShaderProgram.MAX_INSTANCES);
+
+            mesh.bind(gl, program.getPositionAttributeLocation(), program.getNormalAttributeLocation(),
+                    program.getTexCoordinateAttributeLocation(), program.getInstanceIdAttributeLocation());
+            program.setVertexFormat(mesh.getVertexFormat());
+            program.setBounds(model.getLowest()[1], model.getHighest()[1]);
+
+            for (int first = 0; first < instanceCount; first += batchSize) {
+                final int count = Math.min(batchSize, instanceCount - first);
+                program.setInstances(slotTransforms, slotValues, first, count);
+                mesh.draw(gl, count, lods[slot]);
+                drawCalls++;
+            }
+        }
+
+        return drawCalls;
+    }
+
+    /**
+     * Copies the instances of the {@code slot}, which may be visible in the {@code frustum}, to the
+     * {@link #visibleTransforms} and {@link #visibleValues}.
+     *
+     * @return the number of visible instances.
+     */
+    private int cull(int slot, Frustum frustum) {
+        if (visibleTransforms.length < transforms[slot].length) {
+            visibleTransforms = new float[transforms[slot].length];
+            visibleValues = new float[values[slot].length];
+        }
+
+        final Bounds bounds = models[slot].getBounds();
+        final float centerX = bounds.getCenter()[0];
+        final float centerY = bounds.getCenter()[1];
+        final float centerZ = bounds.getCenter()[2];
+        final float radius = bounds.getRadius();
+        final float[] slotTransforms = transforms[slot];
+
+        int visible = 0;
+        for (int instance = 0; instance < instanceCounts[slot]; instance++) {
+            final int offset = instance * FLOATS_PER_INSTANCE;
+            // The center of the sphere rotated around Y like the instance.
+            final float yaw = slotTransforms[offset + 3];
+            final float sin = (float) Math.sin(yaw);
+            final float cos = (float) Math.cos(yaw);
+            final float x = slotTransforms[offset] + cos * centerX + sin * centerZ;
+            final float y = slotTransforms[offset + 1] + centerY;
+            final float z = slotTransforms[offset + 2] - sin * centerX + cos * centerZ;
+            if (!frustum.intersectsSphere(x, y, z, radius)) {
+                continue;
+            }
+
+            System.arraycopy(slotTransforms, offset, visibleTransforms, visible * FLOATS_PER_INSTANCE, FLOATS_PER_INSTANCE);
+            System.arraycopy(values[slot], instance * VALUE_FLOATS_PER_INSTANCE, visibleValues, visible * VALUE_FLOATS_PER_INSTANCE,
+                    VALUE_FLOATS_PER_INSTANCE);
+            visible++;
+        }
+        return visible;
+    }
+
+    /**
+     * @return the number of instances of the frame.
+     */
+    public int size() {
+        int size = 0;
+        for (int slot = 0; slot < modelCount; slot++) {
+            size += instanceCounts[slot];
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of instances drawn by the last {@link #draw}.
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * @return the number of instances culled by the last {@link #draw}.
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * @return the number of draw calls {@link #draw} issues for the current instances without culling.
+     */
+    public int getDrawCount() {
+        int drawCount = 0;
+        for (int slot = 0; slot < modelCount; slot++) {
+            final int batchSize = Math.min(models[slot].getInstancedMesh().getInstances(), InstancedModelShaderProgram.MAX_INSTANCES);
+            drawCount += (instanceCounts[slot] + batchSize - 1) / batchSize;
+        }
+        return drawCount;
+    }
+}
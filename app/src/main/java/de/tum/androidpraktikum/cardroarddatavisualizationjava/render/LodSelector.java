@@ -0,0 +1,73 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+/**
+ * Picks the level of detail of a model from its projected size: the radius of its bounding sphere over the distance,
+ * relative to half of the field of view. A level switches only once the size is clearly past the threshold, so that
+ * a model at the threshold doesn't keep popping between two levels.
+ */
+public class LodSelector {
+    /**
+     * Projected sizes below which the next coarser level is used: level 1 below the first one, level 2 below the
+     * second one and so on.
+     */
+    private final float[] thresholds;
+    /**
+     * How far past a threshold the size has to be, relative to the threshold, e.g. .15 for 15%.
+     */
+    private final float hysteresis;
+    /**
+     * Tangent of half of the vertical field of view.
+     */
+    private final float tanHalfFov;
+
+    /**
+     * @param thresholds projected sizes, in decreasing order, below which the next coarser level is used
+     * @param hysteresis how far past a threshold the size has to be for a switch, relative to the threshold
+     * @param fovDegrees the vertical field of view
+     */
+    public LodSelector(float[] thresholds, float hysteresis, float fovDegrees) {
+        for (int i = 1; i < thresholds.length; i++) {
+            if (thresholds[i] >= thresholds[i - 1]) {
+                throw new RuntimeException("Bad level of detail thresholds! Expecting decreasing sizes..");
+            }
+        }
+        this.thresholds = thresholds.clone();
+        this.hysteresis = hysteresis;
+        tanHalfFov = (float) Math.tan(Math.toRadians(fovDegrees) / 2.0);
+    }
+
+    /**
+     * @param radius   of the bounding sphere
+     * @param distance from the camera to the center of the sphere
+     * @return the radius of the sphere as seen from the camera, relative to half of the field of view.
+     */
+    public float getProjectedSize(float radius, float distance) {
+        if (distance <= radius) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return radius / (distance * tanHalfFov);
+    }
+
+    /**
+     * @param currentLevel the level used so far
+     * @param radius       of the bounding sphere
+     * @param distance     from the camera to the center of the sphere
+     * @param levels       number of levels of the model
+     * @return the level to use, between 0 and {@code levels} - 1.
+     */
+    public int select(int currentLevel, float radius, float distance, int levels) {
+        final float size = getProjectedSize(radius, distance);
+        final int coarsest = Math.min(levels - 1, thresholds.length);
+
+        int level = Math.max(0, Math.min(currentLevel, coarsest));
+        // Coarser, while clearly below the threshold of the next level.
+        while (level < coarsest && size < thresholds[level] * (1.f - hysteresis)) {
+            level++;
+        }
+        // Finer, while clearly above the threshold of the current level.
+        while (level > 0 && size > thresholds[level - 1] * (1.f + hysteresis)) {
+            level--;
+        }
+        return level;
+    }
+}
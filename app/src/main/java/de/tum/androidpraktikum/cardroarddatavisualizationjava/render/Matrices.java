@@ -0,0 +1,176 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+/**
+ * The part of {@link android.opengl.Matrix} the scene needs, in plain Java, so that the frame logic runs on the JVM.
+ * Same conventions: column-major 4x4 matrices stored at an offset, angles in degrees. Nothing is allocated.
+ */
+public final class Matrices {
+    private Matrices() {
+    }
+
+    public static void setIdentityM(float[] m, int offset) {
+        for (int i = 0; i < 16; i++) {
+            m[offset + i] = (i % 5 == 0) ? 1.f : 0.f;
+        }
+    }
+
+    /**
+     * result = lhs * rhs. {@code result} may be the same matrix as {@code rhs}, but not as {@code lhs}.
+     */
+    public static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+        for (int j = 0; j < 4; j++) {
+            final float b0 = rhs[rhsOffset + j * 4];
+            final float b1 = rhs[rhsOffset + j * 4 + 1];
+            final float b2 = rhs[rhsOffset + j * 4 + 2];
+            final float b3 = rhs[rhsOffset + j * 4 + 3];
+            for (int i = 0; i < 4; i++) {
+                result[resultOffset + j * 4 + i] = lhs[lhsOffset + i] * b0
+                        + lhs[lhsOffset + 4 + i] * b1
+                        + lhs[lhsOffset + 8 + i] * b2
+                        + lhs[lhsOffset + 12 + i] * b3;
+            }
+        }
+    }
+
+    /**
+     * resultVec = lhsMat * rhsVec. {@code resultVec} may be the same vector as {@code rhsVec}.
+     */
+    public static void multiplyMV(float[] resultVec, int resultVecOffset, float[] lhsMat, int lhsMatOffset, float[] rhsVec, int rhsVecOffset) {
+        final float x = rhsVec[rhsVecOffset];
+        final float y = rhsVec[rhsVecOffset + 1];
+        final float z = rhsVec[rhsVecOffset + 2];
+        final float w = rhsVec[rhsVecOffset + 3];
+        for (int i = 0; i < 4; i++) {
+            resultVec[resultVecOffset + i] = lhsMat[lhsMatOffset + i] * x
+                    + lhsMat[lhsMatOffset + 4 + i] * y
+                    + lhsMat[lhsMatOffset + 8 + i] * z
+                    + lhsMat[lhsMatOffset + 12 + i] * w;
+        }
+    }
+
+    /**
+     * Translates {@code m} in place by x, y and z.
+     */
+    public static void translateM(float[] m, int offset, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            m[offset + 12 + i] += m[offset + i] * x + m[offset + 4 + i] * y + m[offset + 8 + i] * z;
+        }
+    }
+
+    /**
+     * Scales {@code m} in place by x, y and z.
+     */
+    public static void scaleM(float[] m, int offset, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            m[offset + i] *= x;
+            m[offset + 4 + i] *= y;
+            m[offset + 8 + i] *= z;
+        }
+    }
+
+    /**
+     * Rotates {@code m} in place by angle {@code a} (in degrees) around the axis (x, y, z).
+     */
+    public static void rotateM(float[] m, int offset, float a, float x, float y, float z) {
+        final float length = length(x, y, z);
+        if (length != 1.f) {
+            x /= length;
+            y /= length;
+            z /= length;
+        }
+        final double radians = Math.toRadians(a);
+        final float s = (float) Math.sin(radians);
+        final float c = (float) Math.cos(radians);
+        final float nc = 1.f - c;
+
+        // The rotation matrix by rows.
+        final float r00 = x * x * nc + c;
+        final float r01 = x * y * nc - z * s;
+        final float r02 = z * x * nc + y * s;
+        final float r10 = x * y * nc + z * s;
+        final float r11 = y * y * nc + c;
+        final float r12 = y * z * nc - x * s;
+        final float r20 = z * x * nc - y * s;
+        final float r21 = y * z * nc + x * s;
+        final float r22 = z * z * nc + c;
+
+        // m = m * rotation. Only the first three columns change.
+        for (int i = 0; i < 4; i++) {
+            final float c0 = m[offset + i];
+            final float c1 = m[offset + 4 + i];
+            final float c2 = m[offset + 8 + i];
+            m[offset + i] = c0 * r00 + c1 * r10 + c2 * r20;
+            m[offset + 4 + i] = c0 * r01 + c1 * r11 + c2 * r21;
+            m[offset + 8 + i] = c0 * r02 + c1 * r12 + c2 * r22;
+        }
+    }
+
+    /**
+     * Defines a viewing transformation in terms of an eye point, a center of view, and an up vector.
+     */
+    public static void setLookAtM(float[] rm, int offset, float eyeX, float eyeY, float eyeZ,
+                                  float centerX, float centerY, float centerZ, float upX, float upY, float upZ) {
+        // Forward.
+        float fx = centerX - eyeX;
+        float fy = centerY - eyeY;
+        float fz = centerZ - eyeZ;
+        final float rlf = 1.f / length(fx, fy, fz);
+        fx *= rlf;
+        fy *= rlf;
+        fz *= rlf;
+
+        // Side = forward x up.
+        float sx = fy * upZ - fz * upY;
+        float sy = fz * upX - fx * upZ;
+        float sz = fx * upY - fy * upX;
+        final float rls = 1.f / length(sx, sy, sz);
+        sx *= rls;
+        sy *= rls;
+        sz *= rls;
+
+        // Recompute up = side x forward.
+        final float ux = sy * fz - sz * fy;
+        final float uy = sz * fx - sx * fz;
+        final float uz = sx * fy - sy * fx;
+
+        rm[offset] = sx;
+        rm[offset + 1] = ux;
+        rm[offset + 2] = -fx;
+        rm[offset + 3] = 0.f;
+        rm[offset + 4] = sy;
+        rm[offset + 5] = uy;
+        rm[offset + 6] = -fy;
+        rm[offset + 7] = 0.f;
+        rm[offset + 8] = sz;
+        rm[offset + 9] = uz;
+        rm[offset + 10] = -fz;
+        rm[offset + 11] = 0.f;
+        rm[offset + 12] = 0.f;
+        rm[offset + 13] = 0.f;
+        rm[offset + 14] = 0.f;
+        rm[offset + 15] = 1.f;
+
+        translateM(rm, offset, -eyeX, -eyeY, -eyeZ);
+    }
+
+    /**
+     * Defines a projection matrix in terms of a field of view angle (in degrees), an aspect ratio, and the Z clip planes.
+     */
+    public static void perspectiveM(float[] m, int offset, float fovy, float aspect, float zNear, float zFar) {
+        final float f = 1.f / (float) Math.tan(Math.toRadians(fovy) / 2.0);
+        final float rangeReciprocal = 1.f / (zNear - zFar);
+
+        for (int i = 0; i < 16; i++) {
+            m[offset + i] = 0.f;
+        }
+        m[offset] = f / aspect;
+        m[offset + 5] = f;
+        m[offset + 10] = (zFar + zNear) * rangeReciprocal;
+        m[offset + 11] = -1.f;
+        m[offset + 14] = 2.f * zFar * zNear * rangeReciprocal;
+    }
+
+    public static float length(float x, float y, float z) {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+}
@@ -0,0 +1,81 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+/**
+ * The measurement of the units, which the colormap shows, and the range mapped onto the colormap. Every unit keeps all
+ * of its measurements (see {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Scene#getValues()}), so
+ * that the shaders pick one by its component and switching the metric is a uniform change.
+ */
+public class Metric {
+    // Components of the values of a unit.
+    public static final int TEMPERATURE_COMPONENT = 0;
+    public static final int VISCOSITY_COMPONENT = 1;
+    public static final int LEVEL_COMPONENT = 2;
+
+    /**
+     * Temperature in degrees Celsius.
+     */
+    public static final Metric TEMPERATURE = new Metric("temperature", TEMPERATURE_COMPONENT, 0.f, 100.f);
+    /**
+     * Viscosity as retrieved.
+     */
+    public static final Metric VISCOSITY = new Metric("viscosity", VISCOSITY_COMPONENT, 0.f, 100.f);
+    /**
+     * The fill level [0; 1].
+     */
+    public static final Metric LEVEL = new Metric("level", LEVEL_COMPONENT, 0.f, 1.f);
+
+    private final String name;
+    private final int component;
+    private final float min;
+    private final float max;
+
+    /**
+     * @param name
+     * @param component which of the values of a unit, e.g. {@link #TEMPERATURE_COMPONENT}
+     * @param min       the value at the start of the colormap
+     * @param max       the value at the end of the colormap
+     */
+    public Metric(String name, int component, float min, float max) {
+        if (component < 0 || component > LEVEL_COMPONENT) {
+            throw new RuntimeException("Unknown component " + component + " of the metric " + name + ".");
+        }
+        if (!(max > min)) {
+            throw new RuntimeException("Bad range of the metric " + name + "! Expecting min < max..");
+        }
+        this.name = name;
+        this.component = component;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return the same metric mapping [{@code min}; {@code max}] onto the colormap.
+     */
+    public Metric withRange(float min, float max) {
+        return new Metric(name, component, min, max);
+    }
+
+    /**
+     * @param value a value of the metric
+     * @return the {@code value} mapped to [0; 1], clamped. The shaders do the same.
+     */
+    public float normalize(float value) {
+        return Math.max(0.f, Math.min((value - min) / (max - min), 1.f));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getComponent() {
+        return component;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,350 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Bounds;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ShaderProgram;
+
+/**
+ * The draws of a frame. Filled once per frame, sorted and then replayed for every eye.
+ * <p>
+ * Every item gets a 64-bit sort key: program, texture and mesh in the high bits, so that the items sharing state
+ * end up next to each other, then the quantized depth, so that the items of a group are drawn front-to-back for the
+ * early depth test, and the number of the item in the low bits. The queue keeps its storage between the frames, so it
+ * only allocates, when it grows.
+ * <p>
+ * The bounding sphere of every item is moved to world space once, when it's added, so that each eye can cull the
+ * items against its frustum.
+ */
+public class RenderQueue {
+    // Key layout (from the most significant bit): 0 | program | texture | mesh | depth | item.
+    private static final int ITEM_BITS = 16;
+    private static final int DEPTH_BITS = 22;
+    private static final int MESH_BITS = 10;
+    private static final int TEXTURE_BITS = 9;
+    private static final int PROGRAM_BITS = 6;
+
+    private static final int DEPTH_SHIFT = ITEM_BITS;
+    private static final int MESH_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int TEXTURE_SHIFT = MESH_SHIFT + MESH_BITS;
+    private static final int PROGRAM_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+
+    /**
+     * Largest number of items per frame.
+     */
+    public static final int MAX_ITEMS = 1 << ITEM_BITS;
+    private static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+
+    /**
+     * Below this size, a partition is sorted by insertion.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    /**
+     * Number of floats per item in the {@link #getValues()}.
+     */
+    private static final int VALUE_SIZE = 8;
+
+    /**
+     * Depth mapped to the largest key. Farther items are sorted as if they were at this depth.
+     */
+    private final float maxDepth;
+
+    private int size;
+    private long[] keys;
+    private ShaderProgram[] programs;
+    private int[] textures;
+    private Model[] models;
+    private float[] modelMatrices;
+    private int[] lods;
+    /**
+     * The values the program animates between per item, see {@link #getValues()}.
+     */
+    private float[] values;
+    /**
+     * The bounding sphere in world space per item: x, y, z and the radius.
+     */
+    private float[] spheres;
+
+    /**
+     * @param maxDepth the farthest depth to be told apart, e.g. the far clipping plane
+     */
+    public RenderQueue(float maxDepth) {
+        this.maxDepth = maxDepth;
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        programs = new ShaderProgram[capacity];
+        textures = new int[capacity];
+        models = new Model[capacity];
+        modelMatrices = new float[capacity * 16];
+        lods = new int[capacity];
+        values = new float[capacity * VALUE_SIZE];
+        spheres = new float[capacity * 4];
+    }
+
+    /**
+     * Doubles the capacity, keeping the items.
+     */
+    private void grow() {
+        final long[] oldKeys = keys;
+        final ShaderProgram[] oldPrograms = programs;
+        final int[] oldTextures = textures;
+        final Model[] oldModels = models;
+        final float[] oldModelMatrices = modelMatrices;
+        final int[] oldLods = lods;
+        final float[] oldValues = values;
+        final float[] oldSpheres = spheres;
+
+        allocate(Math.min(keys.length * 2, MAX_ITEMS));
+
+        System.arraycopy(oldKeys, 0, keys, 0, size);
+        System.arraycopy(oldPrograms, 0, programs, 0, size);
+        System.arraycopy(oldTextures, 0, textures, 0, size);
+        System.arraycopy(oldModels, 0, models, 0, size);
+        System.arraycopy(oldModelMatrices, 0, modelMatrices, 0, size * 16);
+        System.arraycopy(oldLods, 0, lods, 0, size);
+        System.arraycopy(oldValues, 0, values, 0, size * VALUE_SIZE);
+        System.arraycopy(oldSpheres, 0, spheres, 0, size * 4);
+    }
+
+    /**
+     * Drops all the items.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            programs[i] = null;
+            models[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Adds a draw of an uploaded {@code model}, whose color doesn't change.
+     *
+     * @param program     the program to draw with
+     * @param texture     the texture handle
+     * @param model       the model to draw
+     * @param modelMatrix copied into the queue
+     * @param depth       distance to the camera, used to sort front-to-back
+     * @param color       RGBA, copied into the queue
+     */
+    public void add(ShaderProgram program, int texture, Model model, float[] modelMatrix, float depth, float[] color) {
+        final int offset = add(program, texture, model, 0, modelMatrix, depth) * VALUE_SIZE;
+        System.arraycopy(color, 0, values, offset, 4);
+        System.arraycopy(color, 0, values, offset + 4, 4);
+    }
+
+    /**
+     * Adds a draw of a level of detail of an uploaded {@code model}, whose values are animated since the last data
+     * update.
+     *
+     * @param program     the program to draw with
+     * @param texture     the texture handle
+     * @param model       the model to draw
+     * @param lod         the level of detail of the model, 0 for the full mesh
+     * @param modelMatrix copied into the queue
+     * @param depth       distance to the camera, used to sort front-to-back
+     * @param values      holds the temperature, the viscosity, the fill level [0; 1] and 0 before the last data update,
+     *                    then the same since. Copied into the queue.
+     * @param valueOffset offset of the 8 values in {@code values}
+     */
+    public void add(ShaderProgram program, int texture, Model model, int lod, float[] modelMatrix, float depth,
+                    float[] values, int valueOffset) {
+        final int item = add(program, texture, model, lod, modelMatrix, depth);
+        System.arraycopy(values, valueOffset, this.values, item * VALUE_SIZE, VALUE_SIZE);
+    }
+
+    /**
+     * Adds an item without the values.
+     *
+     * @return the number of the item.
+     */
+    private int add(ShaderProgram program, int texture, Model model, int lod, float[] modelMatrix, float depth) {
+        if (size == MAX_ITEMS) {
+            throw new RuntimeException("Too many items in the render queue! At most " + MAX_ITEMS + " are supported.");
+        }
+        if (size == keys.length) {
+            grow();
+        }
+
+        final int item = size++;
+        programs[item] = program;
+        textures[item] = texture;
+        models[item] = model;
+        System.arraycopy(modelMatrix, 0, modelMatrices, item * 16, 16);
+        lods[item] = lod;
+        transformSphere(model.getBounds(), modelMatrix, item * 4);
+
+        // Only the grouping depends on the ids, so it's fine to wrap them around.
+        final long programId = program.getProgramHandle() & ((1 << PROGRAM_BITS) - 1);
+        final long textureId = texture & ((1 << TEXTURE_BITS) - 1);
+        final long meshId = model.getMesh().getVertexBuffer() & ((1 << MESH_BITS) - 1);
+        keys[item] = programId << PROGRAM_SHIFT
+                | textureId << TEXTURE_SHIFT
+                | meshId << MESH_SHIFT
+                | (long) quantizeDepth(depth) << DEPTH_SHIFT
+                | item;
+        return item;
+    }
+
+    /**
+     * Moves the bounding sphere to world space. The radius grows with the largest scale of the {@code modelMatrix}.
+     */
+    private void transformSphere(Bounds bounds, float[] m, int offset) {
+        final float[] center = bounds.getCenter();
+        final float x = center[0];
+        final float y = center[1];
+        final float z = center[2];
+        spheres[offset] = m[0] * x + m[4] * y + m[8] * z + m[12];
+        spheres[offset + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+        spheres[offset + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+
+        final float scaleX = m[0] * m[0] + m[1] * m[1] + m[2] * m[2];
+        final float scaleY = m[4] * m[4] + m[5] * m[5] + m[6] * m[6];
+        final float scaleZ = m[8] * m[8] + m[9] * m[9] + m[10] * m[10];
+        spheres[offset + 3] = bounds.getRadius() * (float) Math.sqrt(Math.max(scaleX, Math.max(scaleY, scaleZ)));
+    }
+
+    private int quantizeDepth(float depth) {
+        if (!(depth > 0.f)) {
+            return 0;
+        }
+        if (depth >= maxDepth) {
+            return MAX_DEPTH;
+        }
+        return (int) (depth / maxDepth * MAX_DEPTH);
+    }
+
+    /**
+     * Sorts the items by their keys. Nothing is allocated, unlike with {@link java.util.Arrays#sort(long[])}, which may
+     * allocate a work array for larger inputs.
+     */
+    public void sort() {
+        sort(keys, 0, size - 1);
+    }
+
+    /**
+     * Sorts {@code a[low..high]} with quicksort, finishing small partitions with insertion sort. Recurses into the
+     * smaller partition only, so the stack stays logarithmic.
+     */
+    private static void sort(long[] a, int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            // Median of three as the pivot.
+            final int middle = (low + high) >>> 1;
+            if (a[middle] < a[low]) {
+                swap(a, middle, low);
+            }
+            if (a[high] < a[low]) {
+                swap(a, high, low);
+            }
+            if (a[high] < a[middle]) {
+                swap(a, high, middle);
+            }
+            final long pivot = a[middle];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+
+            if (j - low < high - i) {
+                sort(a, low, j);
+                low = i;
+            } else {
+                sort(a, i, high);
+                high = j;
+            }
+        }
+
+        for (int i = low + 1; i <= high; i++) {
+            final long key = a[i];
+            int j = i - 1;
+            while (j >= low && a[j] > key) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = key;
+        }
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        final long tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param position position in the sorted queue
+     * @return the number of the item at the {@code position}, to be passed to the getters.
+     */
+    public int getItem(int position) {
+        return (int) (keys[position] & (MAX_ITEMS - 1));
+    }
+
+    public ShaderProgram getProgram(int item) {
+        return programs[item];
+    }
+
+    public int getTexture(int item) {
+        return textures[item];
+    }
+
+    public Model getModel(int item) {
+        return models[item];
+    }
+
+    /**
+     * @return the array holding the model matrix of the {@code item} at {@link #getModelMatrixOffset(int)}.
+     */
+    public float[] getModelMatrices() {
+        return modelMatrices;
+    }
+
+    public int getModelMatrixOffset(int item) {
+        return item * 16;
+    }
+
+    /**
+     * @return the level of detail of the model of the {@code item}.
+     */
+    public int getLod(int item) {
+        return lods[item];
+    }
+
+    /**
+     * @return the array holding the values of the {@code item} at {@link #getValueOffset(int)}: the temperature, the
+     * viscosity, the fill level and 0 before the last data update, then the same since. An item, whose color doesn't
+     * change, holds its color twice instead.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    public int getValueOffset(int item) {
+        return item * VALUE_SIZE;
+    }
+
+    /**
+     * @param frustum the frustum of an eye
+     * @param item
+     * @return whether the bounding sphere of the {@code item} may be visible in the {@code frustum}.
+     */
+    public boolean isVisible(Frustum frustum, int item) {
+        final int offset = item * 4;
+        return frustum.intersectsSphere(spheres[offset], spheres[offset + 1], spheres[offset + 2], spheres[offset + 3]);
+    }
+}
@@ -0,0 +1,797 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Bounds;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Mesh;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Scene;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Unit;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.InstancedModelShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ModelShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ModelShaderVariants;
+
+import android.opengl.GLES20;
+
+/**
+ * Animates and draws the brewery: the units of the {@link Scene}, the floor and the walls. Plain Java on top of
+ * {@link GLApi}, so that a frame can run on the JVM.
+ * <p>
+ * {@link #newFrame(long)} and {@link #drawEye(float[], float[])} don't allocate: all the matrices, colors and the
+ * {@link RenderQueue} are allocated once and reused in every frame. They only grow with the scene.
+ * <p>
+ * Every eye culls the units, the floor and the walls against its frustum by their bounding spheres, so that the ones
+ * behind the viewer aren't submitted. The units far away are drawn at a simplified level of detail, picked once per
+ * frame by the {@link LodSelector}.
+ * <p>
+ * The values of a unit are animated on the GPU: every data update stores the values shown at that moment and the new
+ * ones, and the shaders blend them by the time since the update along the {@link Easing} curve. So a frame only passes
+ * the time, no matter how many units there are.
+ * <p>
+ * The shaders color a unit by looking the value of the {@link Metric} up in a colormap texture (see
+ * {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.ColormapTexture}). Switching the metric or the
+ * colormap only changes the uniforms.
+ */
+public class SceneRenderer {
+    /**
+     * Seconds the values take to reach the ones of a data update.
+     */
+    public static final float DEFAULT_ANIMATION_DURATION = 1.f;
+    /**
+     * Texture unit of the colormap texture. The unit 0 holds the texture of the model.
+     */
+    private static final int COLORMAP_TEXTURE_UNIT = 1;
+    /**
+     * Color of the floor and the walls: the dark gray, which the fill level of 0 gave them.
+     */
+    private static final float[] FLOOR_COLOR = new float[]{.5f, .5f, .5f, 1.f};
+    /**
+     * Projected sizes, below which the units are drawn at the next coarser level of detail.
+     */
+    private static final float[] LOD_THRESHOLDS = {.25f, .12f, .06f};
+    private static final float LOD_HYSTERESIS = .15f;
+    /**
+     * Vertical field of view of a Cardboard eye, roughly.
+     */
+    private static final float FOV_DEGREES = 90.f;
+
+    private final GLApi gl;
+
+    /**
+     * The units to draw.
+     */
+    private Scene scene = new Scene(0);
+
+    /**
+     * Seconds an animation takes.
+     */
+    private float animationDuration = DEFAULT_ANIMATION_DURATION;
+    private Easing easing = Easing.EASE_IN_OUT;
+    /**
+     * Incremented with every update of the data of the units.
+     */
+    private int dataVersion;
+    /**
+     * The time of the last data update.
+     */
+    private long animationStartMillis;
+    /**
+     * Seconds since the last data update in the current frame.
+     */
+    private float animationTime;
+
+    /**
+     * The metric the units are colored by.
+     */
+    private Metric metric = Metric.TEMPERATURE;
+    /**
+     * Handle to the colormap texture, 0 until it's set.
+     */
+    private int colormapTextureHandle;
+    /**
+     * The V coordinate of the colormap in the colormap texture.
+     */
+    private float colormapRow = .5f;
+
+    /**
+     * Storage for brewery breweryModels, indexed by the mesh type of the {@link #scene}.
+     */
+    private Model[] breweryModels = new Model[0];
+    /**
+     * Storage for the floor model.
+     */
+    private Model floorModel;
+    /**
+     * Handle to the texture data of brewery breweryModels.
+     */
+    private int breweryModelsTextureDataHandle;
+    /**
+     * Handle to the floor texture data.
+     */
+    private int floorTilesTextureDataHandle;
+
+    /**
+     * Draw the units on their own, the floor and the walls. Every item takes the cheapest variant, see
+     * {@link #getVariant(Model, int, boolean)}.
+     */
+    private ModelShaderVariants modelShaderVariants;
+    /**
+     * Draws the units in batches, if set.
+     */
+    private InstancedModelShaderProgram instancedModelShaderProgram;
+    /**
+     * Picks the levels of detail of the units.
+     */
+    private LodSelector lodSelector = new LodSelector(LOD_THRESHOLDS, LOD_HYSTERESIS, FOV_DEGREES);
+
+    /**
+     * Store the model matrix. This matrix is used to move breweryModels from object space (where each model can be thought
+     * of being located at the center of the universe) to world space. Holds the matrix of a unit, while it's added to
+     * the {@link #renderQueue}.
+     */
+    private final float[] modelMatrix = new float[16];
+    /**
+     * Model matrices of the floor and the four walls.
+     */
+    private final float[][] floorModelMatrices = new float[5][16];
+    /**
+     * Store the view matrix. This can be thought of as our camera. This matrix transforms world space to eye space;
+     * it positions things relative to our eye.
+     */
+    private final float[] viewMatrix = new float[16];
+    /**
+     * The view matrix of the eye drawn last.
+     */
+    private final float[] eyeViewMatrix = new float[16];
+    /**
+     * Allocate storage for the head view combined with the camera.
+     */
+    private final float[] headViewMatrix = new float[16];
+    /**
+     * Allocate storage for the modelview matrix.
+     */
+    private final float[] mvMatrix = new float[16];
+    /**
+     * Allocate storage for the final combined matrix. This will be passed into the shader program.
+     */
+    private final float[] mvpMatrix = new float[16];
+    /**
+     * The view-projection matrix of the eye drawn last.
+     */
+    private final float[] viewProjectionMatrix = new float[16];
+    /**
+     * The frustum of the eye drawn last, in world space.
+     */
+    private final Frustum frustum = new Frustum();
+    /**
+     * Stores a copy of the model matrix specifically for the light position.
+     */
+    private final float[] lightModelMatrix = new float[16];
+
+    /**
+     * Used to hold a light centered on the origin in model space. We need a 4th coordinate so we can get translations to work when
+     * we multiply this by our transformation matrices.
+     */
+    private final float[] lightPosInModelSpace = new float[]{0.0f, 0.0f, 0.0f, 1.0f};
+    /**
+     * Used to hold the current position of the light in world space (after transformation via model matrix).
+     */
+    private final float[] lightPosInWorldSpace = new float[4];
+    /**
+     * Used to hold the transformed position of the light in eye space (after transformation via modelview matrix)
+     */
+    private final float[] lightPosInEyeSpace = new float[4];
+
+    /**
+     * The draws of the current frame, sorted by state and depth.
+     */
+    private final RenderQueue renderQueue;
+    /**
+     * The units of the current frame, which are drawn instanced.
+     */
+    private final InstanceBatcher instanceBatcher = new InstanceBatcher();
+
+    // Counters of the current frame, over both eyes.
+    private int drawnCount;
+    private int culledCount;
+    /**
+     * The draw calls issued for the eye drawn last.
+     */
+    private int eyeDrawCalls;
+
+    /**
+     * @param gl
+     * @param far the far clipping plane
+     */
+    public SceneRenderer(GLApi gl, float far) {
+        this.gl = gl;
+        renderQueue = new RenderQueue(far);
+
+        // Position the eye in front of the origin.
+        final float eyeX = 0.0f;
+        final float eyeY = 0.0f;
+        final float eyeZ = -0.5f;
+
+        // We are looking toward the distance.
+        final float lookX = 0.0f;
+        final float lookY = 0.0f;
+        final float lookZ = -5.0f;
+
+        // Set our up vector. This is where our head would be pointing were we holding the camera.
+        final float upX = 0.0f;
+        final float upY = 1.0f;
+        final float upZ = 0.0f;
+
+        // Set the view matrix. This matrix can be said to represent the camera position.
+        Matrices.setLookAtM(viewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
+
+        // The floor and the walls don't move.
+        initFloorModelMatrices();
+    }
+
+    /**
+     * Places the floor and the four walls.
+     */
+    private void initFloorModelMatrices() {
+        // Floor.
+        // TODO: scale dat bitch
+        Matrices.setIdentityM(floorModelMatrices[0], 0);
+        Matrices.translateM(floorModelMatrices[0], 0, 0.f, -5.f, 0.f);
+        Matrices.scaleM(floorModelMatrices[0], 0, 2.f, 2.f, 2.f);
+
+        // Walls.
+        for (int i = 0; i < 4; i++) {
+            final float[] wallModelMatrix = floorModelMatrices[i + 1];
+            Matrices.setIdentityM(wallModelMatrix, 0);
+            Matrices.translateM(wallModelMatrix, 0, 20.f * (-1 + (i % 2) * 2) * (1 - i / 2), -25.f, 20.f * (-1 + (i % 2) * 2) * (i / 2));
+            Matrices.rotateM(wallModelMatrix, 0, 90.f, 1.f * (i / 2), 0.f, 1.f * (1 - i / 2));
+        }
+    }
+
+    /**
+     * Forgets the models, e.g. after the OpenGL context is lost.
+     */
+    public void reset() {
+        for (int meshType = 0; meshType < breweryModels.length; meshType++) {
+            breweryModels[meshType] = null;
+        }
+        floorModel = null;
+        renderQueue.clear();
+        instanceBatcher.clear();
+    }
+
+    /**
+     * Animates the units and collects the draws of the frame.
+     *
+     * @param uptimeMillis the current time
+     */
+    public void newFrame(long uptimeMillis) {
+        // Do a complete rotation every 10 seconds.
+        long time = uptimeMillis % 10000L;
+        float angleInDegrees = (360.0f / 10000.0f) * ((int) time);
+
+        // Calculate position of the light. Rotate and then push into the distance.
+        Matrices.setIdentityM(lightModelMatrix, 0);
+        Matrices.translateM(lightModelMatrix, 0, -5.0f, 10.0f, 0.0f);
+
+        Matrices.multiplyMV(lightPosInWorldSpace, 0, lightModelMatrix, 0, lightPosInModelSpace, 0);
+
+        // The shaders animate the values from it.
+        animationTime = (uptimeMillis - animationStartMillis) / 1000.f;
+
+        // Collect the draws of this frame. Both eyes replay them.
+        fillRenderQueue(angleInDegrees);
+        drawnCount = 0;
+        culledCount = 0;
+        eyeDrawCalls = 0;
+    }
+
+    /**
+     * Fills the {@link #renderQueue} with the units, the floor and the walls, which are loaded, and sorts it. The units,
+     * which can be drawn instanced, go to the {@link #instanceBatcher} instead.
+     *
+     * @param angleInDegrees rotation of all the units around their Y axis
+     */
+    private void fillRenderQueue(float angleInDegrees) {
+        renderQueue.clear();
+        instanceBatcher.clear();
+
+        final int units = scene.size();
+        final int[] meshTypes = scene.getMeshTypes();
+        final float[] positions = scene.getPositions();
+        final float[] yaws = scene.getYaws();
+        final int[] lods = scene.getLods();
+        final float[] values = scene.getValues();
+
+        for (int i = 0; i < units; i++) {
+            // Skip the units, whose models are not loaded yet.
+            final Model model = meshTypes[i] < breweryModels.length ? breweryModels[meshTypes[i]] : null;
+            if (model == null || model.getMesh() == null) {
+                continue;
+            }
+
+            final float x = positions[i * Scene.POSITION_SIZE];
+            final float y = positions[i * Scene.POSITION_SIZE + 1];
+            final float z = positions[i * Scene.POSITION_SIZE + 2];
+            lods[i] = selectLod(model, lods[i], x, y, z);
+            // Rotate the breweryModels.
+            final float yaw = yaws[i] + angleInDegrees;
+            if (instancedModelShaderProgram != null && model.getInstancedMesh() != null) {
+                instanceBatcher.add(model, lods[i], x, y, z, (float) Math.toRadians(yaw), values, i * Scene.VALUE_SIZE);
+                continue;
+            }
+
+            Matrices.setIdentityM(modelMatrix, 0);
+            Matrices.translateM(modelMatrix, 0, x, y, z);
+            Matrices.rotateM(modelMatrix, 0, yaw, 0.0f, 1.0f, 0.0f);
+            renderQueue.add(modelShaderVariants.get(getVariant(model, lods[i], true)), breweryModelsTextureDataHandle, model, lods[i],
+                    modelMatrix, getViewDepth(modelMatrix), values, i * Scene.VALUE_SIZE);
+        }
+
+        // Floor and walls, once loaded.
+        if (floorModel != null && floorModel.getMesh() != null) {
+            final ModelShaderProgram floorProgram = modelShaderVariants.get(getVariant(floorModel, 0, false));
+            for (float[] floorModelMatrix : floorModelMatrices) {
+                renderQueue.add(floorProgram, floorTilesTextureDataHandle, floorModel, floorModelMatrix, getViewDepth(floorModelMatrix),
+                        FLOOR_COLOR);
+            }
+        }
+
+        // Group by state, front-to-back within a group.
+        renderQueue.sort();
+    }
+
+    /**
+     * @param model  an uploaded model
+     * @param lod    the level of detail the model is drawn at
+     * @param filled whether the model is colored up to its fill level
+     * @return the cheapest variant of the {@link ModelShaderProgram}, which draws the {@code model} correctly.
+     */
+    private static int getVariant(Model model, int lod, boolean filled) {
+        int variant = filled ? ModelShaderProgram.FILL_LEVEL : 0;
+        if (model.getMesh().getVertexFormat().isQuantized()) {
+            variant |= ModelShaderProgram.QUANTIZED;
+        }
+        // The simplified levels are only picked for units, which are small on the screen.
+        if (lod > 0) {
+            variant |= ModelShaderProgram.VERTEX_LIGHTING;
+        }
+        return variant;
+    }
+
+    /**
+     * Picks the level of detail of a unit from the size of its bounding sphere as seen from the camera. The unit spins
+     * around its axis, so the sphere is widened to the one around the axis, which doesn't depend on the rotation.
+     *
+     * @param model      the model of the unit
+     * @param currentLod the level of detail of the unit so far
+     * @param x          position of the unit in world space
+     * @param y
+     * @param z
+     * @return the level of detail.
+     */
+    private int selectLod(Model model, int currentLod, float x, float y, float z) {
+        if (model.getLevels() == 1) {
+            return 0;
+        }
+
+        final Bounds bounds = model.getBounds();
+        final float[] center = bounds.getCenter();
+        final float radius = bounds.getRadius() + (float) Math.sqrt(center[0] * center[0] + center[2] * center[2]);
+        final float centerY = y + center[1];
+        // The center in eye space.
+        final float[] v = viewMatrix;
+        final float eyeX = v[0] * x + v[4] * centerY + v[8] * z + v[12];
+        final float eyeY = v[1] * x + v[5] * centerY + v[9] * z + v[13];
+        final float eyeZ = v[2] * x + v[6] * centerY + v[10] * z + v[14];
+
+        return lodSelector.select(currentLod, radius, Matrices.length(eyeX, eyeY, eyeZ), model.getLevels());
+    }
+
+    /**
+     * @return the distance of the origin of the model to the camera along the view direction.
+     */
+    private float getViewDepth(float[] modelMatrix) {
+        // Z of the translation in eye space, negated since the camera looks down -Z.
+        return -(viewMatrix[2] * modelMatrix[12] + viewMatrix[6] * modelMatrix[13] + viewMatrix[10] * modelMatrix[14] + viewMatrix[14]);
+    }
+
+    /**
+     * Draws the collected items for an eye, which may be visible in its frustum.
+     *
+     * @param eyeView       the view matrix of the eye relative to the head
+     * @param eyeProjection the projection matrix of the eye
+     */
+    public void drawEye(float[] eyeView, float[] eyeProjection) {
+        // Apply the eye transformation to the camera.
+        Matrices.multiplyMM(eyeViewMatrix, 0, eyeView, 0, viewMatrix, 0);
+        Matrices.multiplyMV(lightPosInEyeSpace, 0, eyeViewMatrix, 0, lightPosInWorldSpace, 0);
+        Matrices.multiplyMM(viewProjectionMatrix, 0, eyeProjection, 0, eyeViewMatrix, 0);
+        frustum.set(viewProjectionMatrix);
+        eyeDrawCalls = 0;
+
+        // The units look their colors up in the colormap. The unit 0 is rebound per texture.
+        gl.glActiveTexture(GLES20.GL_TEXTURE0 + COLORMAP_TEXTURE_UNIT);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, colormapTextureHandle);
+
+        if (instanceBatcher.size() > 0) {
+            drawInstances(eyeProjection);
+        }
+
+        if (renderQueue.size() == 0) {
+            return;
+        }
+
+        // Draw the units, the floor and the walls in the order of the render queue.
+        for (int position = 0; position < renderQueue.size(); position++) {
+            final int item = renderQueue.getItem(position);
+            if (!renderQueue.isVisible(frustum, item)) {
+                culledCount++;
+                continue;
+            }
+            drawnCount++;
+            eyeDrawCalls++;
+            // Switching to the program already in use is dropped by the state cache.
+            final ModelShaderProgram program = (ModelShaderProgram) renderQueue.getProgram(item);
+            program.useProgram();
+            // Pass in the light position in eye space, the animation and the colormap. Only uploaded once per program
+            // and eye.
+            program.setLightPosition(lightPosInEyeSpace);
+            program.setAnimation(animationTime, animationDuration, easing.getCoefficients());
+            program.setMetric(metric.getComponent(), metric.getMin(), metric.getMax());
+            program.setColormap(COLORMAP_TEXTURE_UNIT, colormapRow);
+            drawModel(program, renderQueue.getModelMatrices(), renderQueue.getModelMatrixOffset(item), eyeViewMatrix, eyeProjection, // matrices
+                    renderQueue.getModel(item), renderQueue.getLod(item), // model
+                    renderQueue.getValues(), renderQueue.getValueOffset(item),
+                    renderQueue.getTexture(item)); // textures
+        }
+    }
+
+    /**
+     * Draws the instanced units with a few draws per model.
+     *
+     * @param eyeProjectionMatrix
+     */
+    private void drawInstances(float[] eyeProjectionMatrix) {
+        instancedModelShaderProgram.useProgram();
+        instancedModelShaderProgram.setMatrices(eyeViewMatrix, eyeProjectionMatrix);
+        instancedModelShaderProgram.setLightPosition(lightPosInEyeSpace);
+        instancedModelShaderProgram.setAnimation(animationTime, animationDuration, easing.getCoefficients());
+        instancedModelShaderProgram.setMetric(metric.getComponent(), metric.getMin(), metric.getMax());
+        instancedModelShaderProgram.setColormap(COLORMAP_TEXTURE_UNIT, colormapRow);
+
+        // All the units share the texture.
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, breweryModelsTextureDataHandle);
+        instancedModelShaderProgram.setTextureUnit(0);
+
+        eyeDrawCalls += instanceBatcher.draw(gl, instancedModelShaderProgram, frustum);
+        drawnCount += instanceBatcher.getDrawnCount();
+        culledCount += instanceBatcher.getCulledCount();
+    }
+
+    /**
+     * Draws an indexed {@code model} and a float array containing its values.
+     * Preserves the lowest and the highest Y values of the model.
+     *
+     * @param modelShaderProgram  the program in use
+     * @param modelMatrices       holds the model matrix to apply
+     * @param modelMatrixOffset   offset of the model matrix in {@code modelMatrices}
+     * @param eyeViewMatrix
+     * @param eyeProjectionMatrix
+     * @param model
+     * @param lod                 the level of detail of the {@code model}
+     * @param values              holds the values before the last data update, then the same since. The color
+     *                            twice for the variants without a fill level.
+     * @param valueOffset         offset of the 8 values in {@code values}
+     */
+    private void drawModel(ModelShaderProgram modelShaderProgram, float[] modelMatrices, int modelMatrixOffset,
+                           float[] eyeViewMatrix, float[] eyeProjectionMatrix, Model model, int lod, float[] values, int valueOffset, int textureDataHandle) {
+        // Check the given value array
+        if (values == null || values.length < valueOffset + 8) {
+            throw new RuntimeException("Bad value array format! Expecting 8 values..");
+        }
+
+        // Pass attributes and stuff to the shader program
+        //
+
+        final Mesh mesh = model.getMesh();
+        if (mesh == null) {
+            return;
+        }
+
+        // Pass in the position, normal and texture information. All of them live in the vertex buffer of the mesh.
+        mesh.bind(gl, modelShaderProgram.getPositionAttributeLocation(), modelShaderProgram.getNormalAttributeLocation(),
+                modelShaderProgram.getTexCoordinateAttributeLocation());
+        modelShaderProgram.setVertexFormat(mesh.getVertexFormat());
+
+        // Pass in the texture itself (sampler).
+        // Set the active texture unit to texture unit 0.
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        // Bind the texture to this unit.
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureDataHandle);
+        // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
+        modelShaderProgram.setTextureUnit(0);
+
+        // Attributes.
+        //
+        // Pass in the color for the variants without a fill level. The others don't read it, so it's stripped: -1.
+        final int colorHandle = modelShaderProgram.getColorAttributeLocation();
+        if (colorHandle >= 0) {
+            gl.glVertexAttrib4f(colorHandle, values[valueOffset + 4], values[valueOffset + 5], values[valueOffset + 6], 1.f);
+            gl.glDisableVertexAttribArray(colorHandle);
+        }
+
+        // Projection matrix construction
+        //
+        // This multiplies the view matrix by the model matrix, and stores the result in the MV matrix
+        // (which contains model * view).
+        Matrices.multiplyMM(mvMatrix, 0, eyeViewMatrix, 0, modelMatrices, modelMatrixOffset);
+
+        // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
+        // (which contains model * view * projection).
+        Matrices.multiplyMM(mvpMatrix, 0, eyeProjectionMatrix, 0, mvMatrix, 0);
+
+        // Pass in the modelview and the combined matrix.
+        modelShaderProgram.setMatrices(mvMatrix, mvpMatrix);
+
+        // Pass in the highest and the lowest vertices
+        modelShaderProgram.setBounds(model.getLowest()[1], model.getHighest()[1]);
+        // The values the shader animates between.
+        modelShaderProgram.setValues(values, valueOffset);
+
+        // Draw the model.
+        mesh.draw(gl, lod);
+    }
+
+    /**
+     * Updates the data of the units in the {@code snapshot}. Units, which are not in the scene, are ignored. Restarts
+     * the animations: every unit starts from the values it shows at {@code uptimeMillis} and the updated ones head for
+     * their new values. Doesn't allocate: the data is copied into the units of the scene.
+     *
+     * @param snapshot     the data of the updated units
+     * @param uptimeMillis the current time, the same clock as the one of {@link #newFrame(long)}
+     */
+    public void updateModelData(TelemetrySnapshot snapshot, long uptimeMillis) {
+        restartAnimations(uptimeMillis);
+        dataVersion++;
+
+        for (int slot = 0; slot < snapshot.size(); slot++) {
+            final int unitNum = scene.getUnitNum(snapshot.getId(slot));
+            if (unitNum < 0) {
+                continue;
+            }
+
+            final Unit unit = scene.getData(unitNum);
+            snapshot.copyTo(slot, unit);
+            // Remap the level to [0, 1] range
+            unit.level /= 100;
+            setTargetValues(unitNum, unit);
+        }
+    }
+
+    /**
+     * Every unit starts from the values it shows at {@code uptimeMillis}.
+     */
+    private void restartAnimations(long uptimeMillis) {
+        final float[] values = scene.getValues();
+
+        // The values shown right now, the same as the shaders blend them.
+        final float progress = easing.apply((uptimeMillis - animationStartMillis) / 1000.f / animationDuration);
+        for (int unitNum = 0; unitNum < scene.size(); unitNum++) {
+            final int offset = unitNum * Scene.VALUE_SIZE;
+            for (int i = offset; i < offset + 4; i++) {
+                values[i] += (values[i + 4] - values[i]) * progress;
+            }
+        }
+        animationStartMillis = uptimeMillis;
+    }
+
+    /**
+     * Lets the unit head for the values of the {@code unit}.
+     *
+     * @param unitNum
+     * @param unit    the latest data, the level in [0; 1]
+     */
+    private void setTargetValues(int unitNum, Unit unit) {
+        final float[] values = scene.getValues();
+        final int offset = unitNum * Scene.VALUE_SIZE + 4;
+        values[offset] = unit.temperature;
+        values[offset + 1] = unit.viscosity;
+        values[offset + 2] = unit.level;
+        values[offset + 3] = 0.f;
+    }
+
+    /**
+     * Draws everything, which isn't instanced, with the {@code modelShaderProgram}. It has to take every kind of
+     * model, e.g. {@link ModelShaderProgram#FILL_LEVEL} and {@link ModelShaderProgram#QUANTIZED}.
+     */
+    public void setModelShaderProgram(ModelShaderProgram modelShaderProgram) {
+        setModelShaderVariants(new ModelShaderVariants(modelShaderProgram));
+    }
+
+    /**
+     * @param modelShaderVariants draw the items, which aren't instanced, each with the variant it needs
+     */
+    public void setModelShaderVariants(ModelShaderVariants modelShaderVariants) {
+        this.modelShaderVariants = modelShaderVariants;
+    }
+
+    /**
+     * @param duration seconds the values take to reach the ones of a data update
+     * @param easing   the curve they take
+     */
+    public void setAnimation(float duration, Easing easing) {
+        if (!(duration > 0.f)) {
+            throw new RuntimeException("Bad animation duration " + duration + "! Expecting a positive number of seconds..");
+        }
+        animationDuration = duration;
+        this.easing = easing;
+    }
+
+    /**
+     * @param metric the metric the units are colored by and the range of its values mapped onto the colormap
+     */
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * @param textureHandle the colormap texture
+     * @param row           the V coordinate of the colormap to use in it, see
+     *                      {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.textures.ColormapTexture#getRow}
+     */
+    public void setColormap(int textureHandle, float row) {
+        colormapTextureHandle = textureHandle;
+        colormapRow = row;
+    }
+
+    /**
+     * @param instancedModelShaderProgram draws the instanced units in batches. Null to draw every unit on its own.
+     */
+    public void setInstancedModelShaderProgram(InstancedModelShaderProgram instancedModelShaderProgram) {
+        this.instancedModelShaderProgram = instancedModelShaderProgram;
+    }
+
+    /**
+     * Replaces the scene. The models have to be set again for the mesh types of the new scene.
+     *
+     * @param scene
+     */
+    public void setScene(Scene scene) {
+        this.scene = scene;
+        breweryModels = new Model[scene.getMeshTypeCount()];
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * @param meshType see {@link Scene#addMeshType(String)}
+     * @param model
+     */
+    public void setBreweryModel(int meshType, Model model) {
+        if (meshType >= breweryModels.length) {
+            // Mesh types added to the scene since.
+            final Model[] oldBreweryModels = breweryModels;
+            breweryModels = new Model[scene.getMeshTypeCount()];
+            System.arraycopy(oldBreweryModels, 0, breweryModels, 0, oldBreweryModels.length);
+        }
+        breweryModels[meshType] = model;
+    }
+
+    /**
+     * @param lodSelector picks the levels of detail of the units
+     */
+    public void setLodSelector(LodSelector lodSelector) {
+        this.lodSelector = lodSelector;
+    }
+
+    public void setFloorModel(Model floorModel) {
+        this.floorModel = floorModel;
+    }
+
+    public void setBreweryModelsTexture(int textureDataHandle) {
+        breweryModelsTextureDataHandle = textureDataHandle;
+    }
+
+    public void setFloorTexture(int textureDataHandle) {
+        floorTilesTextureDataHandle = textureDataHandle;
+    }
+
+    /**
+     * @return the camera, which transforms world space to eye space.
+     */
+    public float[] getViewMatrix() {
+        return viewMatrix;
+    }
+
+    /**
+     * @return the view matrix of the eye drawn last, including the camera.
+     */
+    public float[] getEyeViewMatrix() {
+        return eyeViewMatrix;
+    }
+
+    /**
+     * @return the light position in world space.
+     */
+    public float[] getLightPosInWorldSpace() {
+        return lightPosInWorldSpace;
+    }
+
+    /**
+     * @return a number, which changes with every update of the data of the units.
+     */
+    public int getDataVersion() {
+        return dataVersion;
+    }
+
+    public Unit getUnitData(int unitNum) {
+        return scene.getData(unitNum);
+    }
+
+    /**
+     * Determines the unit the user is looking at: the one closest to the center of the view.
+     *
+     * @param headView the head view matrix
+     * @return the number of the unit or -1, if there's none in front of the user.
+     */
+    public int findUnitInView(float[] headView) {
+        // World space to head space.
+        Matrices.multiplyMM(headViewMatrix, 0, headView, 0, viewMatrix, 0);
+        final float[] m = headViewMatrix;
+
+        // The head in world space: the translation rotated back.
+        final float headX = -(m[0] * m[12] + m[1] * m[13] + m[2] * m[14]);
+        final float headY = -(m[4] * m[12] + m[5] * m[13] + m[6] * m[14]);
+        final float headZ = -(m[8] * m[12] + m[9] * m[13] + m[10] * m[14]);
+        // The direction of the view (-Z in head space) in world space.
+        final float viewX = -m[2];
+        final float viewY = -m[6];
+        final float viewZ = -m[10];
+
+        final float[] positions = scene.getPositions();
+        int closest = -1;
+        float closestCos = 0.f;
+        for (int i = 0; i < scene.size(); i++) {
+            final float dx = positions[i * Scene.POSITION_SIZE] - headX;
+            final float dy = positions[i * Scene.POSITION_SIZE + 1] - headY;
+            final float dz = positions[i * Scene.POSITION_SIZE + 2] - headZ;
+            final float length = Matrices.length(dx, dy, dz);
+            if (length == 0.f) {
+                continue;
+            }
+            // Cosine of the angle between the view and the unit.
+            final float cos = (dx * viewX + dy * viewY + dz * viewZ) / length;
+            if (cos > closestCos) {
+                closestCos = cos;
+                closest = i;
+            }
+        }
+
+        return closest;
+    }
+
+    /**
+     * @return the draw calls issued for the eye drawn last.
+     */
+    public int getDrawCount() {
+        return eyeDrawCalls;
+    }
+
+    /**
+     * @return the units, floors and walls drawn in the current frame, summed over the eyes.
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * @return the units, floors and walls culled in the current frame, summed over the eyes.
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+}
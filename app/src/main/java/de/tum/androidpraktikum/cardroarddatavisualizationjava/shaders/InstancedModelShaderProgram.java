@@ -0,0 +1,239 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.VertexFormat;
+
+/**
+ * The per-fragment lighting of the {@link ModelShaderProgram} for up to {@link #MAX_INSTANCES} instances of an
+ * {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.models.InstancedMesh} per draw. Every instance is
+ * described by three vec4s: the position in world space and the rotation around Y in radians, the values (temperature,
+ * viscosity and fill level) before the last data update and the same since. The shader animates between the two, see
+ * {@link #setAnimation(float, float, float[])}, and colors the instance with the colormap.
+ */
+public class InstancedModelShaderProgram extends ShaderProgram {
+    /**
+     * Instances per draw. OpenGL ES 2.0 guarantees 128 vertex uniform vectors: 3 per instance and 32 for the rest
+     * (20 in use: the matrices, the bounds, the dequantization, the animation and the metric).
+     */
+    public static final int MAX_INSTANCES = 32;
+    /**
+     * Number of floats describing an instance in the transforms passed to {@link #setInstances}.
+     */
+    public static final int FLOATS_PER_INSTANCE = 4;
+    /**
+     * Number of floats describing an instance in the values passed to {@link #setInstances}.
+     */
+    public static final int VALUE_FLOATS_PER_INSTANCE = 8;
+
+    // Uniform constants
+    protected static final String U_VIEW_MATRIX = "u_ViewMatrix";
+    protected static final String U_PROJECTION_MATRIX = "u_ProjectionMatrix";
+    protected static final String U_TEXTURE = "u_Texture";
+    protected static final String U_LIGHT_POS = "u_LightPos";
+    protected static final String U_HIGHEST_Y = "u_HighestY";
+    protected static final String U_LOWEST_Y = "u_LowestY";
+    protected static final String U_TRANSFORMS = "u_Transforms";
+    protected static final String U_VALUES = "u_Values";
+    protected static final String U_TIME = "u_Time";
+    protected static final String U_ANIMATION_DURATION = "u_AnimationDuration";
+    protected static final String U_EASING = "u_Easing";
+    protected static final String U_METRIC = "u_Metric";
+    protected static final String U_METRIC_RANGE = "u_MetricRange";
+    protected static final String U_COLORMAP = "u_Colormap";
+    protected static final String U_COLORMAP_ROW = "u_ColormapRow";
+    protected static final String U_POSITION_SCALE = "u_PositionScale";
+    protected static final String U_POSITION_OFFSET = "u_PositionOffset";
+    protected static final String U_NORMAL_SCALE = "u_NormalScale";
+    protected static final String U_TEXEL_SCALE = "u_TexelScale";
+    protected static final String U_TEXEL_OFFSET = "u_TexelOffset";
+
+    // Attribute constants
+    protected static final String A_NORMAL = "a_Normal";
+    protected static final String A_TEX_COORDINATE = "a_TexCoordinate";
+    protected static final String A_INSTANCE_ID = "a_InstanceId";
+
+    private final Uniform uViewMatrix;
+    private final Uniform uProjectionMatrix;
+    private final Uniform uTexture;
+    private final Uniform uLightPos;
+    private final Uniform uHighestY;
+    private final Uniform uLowestY;
+    private final Uniform uTransforms;
+    private final Uniform uValues;
+    private final Uniform uTime;
+    private final Uniform uAnimationDuration;
+    private final Uniform uEasing;
+    private final Uniform uMetric;
+    private final Uniform uMetricRange;
+    private final Uniform uColormap;
+    private final Uniform uColormapRow;
+    private final Uniform uPositionScale;
+    private final Uniform uPositionOffset;
+    private final Uniform uNormalScale;
+    private final Uniform uTexelScale;
+    private final Uniform uTexelOffset;
+
+    private final int aPositionLocation;
+    private final int aNormalLocation;
+    private final int aTexCoordinateLocation;
+    private final int aInstanceIdLocation;
+
+    /**
+     * Takes float and quantized vertices alike: the float layout dequantizes with the identity.
+     *
+     * @param programCache may be null to always compile
+     */
+    public InstancedModelShaderProgram(ShaderLibrary shaderLibrary, GLApi gl, ProgramCache programCache) {
+        this(gl, programCache, shaderLibrary.preprocess("instanced_vert", "MAX_INSTANCES " + MAX_INSTANCES, "QUANTIZED"),
+                shaderLibrary.preprocess("frag", "FILL_LEVEL"));
+    }
+
+    /**
+     * @param vertexSource   preprocessed source of the vertex shader, which defines {@code MAX_INSTANCES}
+     * @param fragmentSource preprocessed source of the fragment shader
+     */
+    public InstancedModelShaderProgram(GLApi gl, String vertexSource, String fragmentSource) {
+        this(gl, null, vertexSource, fragmentSource);
+    }
+
+    /**
+     * @param programCache   may be null to always compile
+     * @param vertexSource   preprocessed source of the vertex shader, which defines {@code MAX_INSTANCES}
+     * @param fragmentSource preprocessed source of the fragment shader
+     */
+    public InstancedModelShaderProgram(GLApi gl, ProgramCache programCache, String vertexSource, String fragmentSource) {
+        super(gl, programCache, vertexSource, fragmentSource,
+                A_POSITION, A_NORMAL, A_TEX_COORDINATE, A_INSTANCE_ID);
+
+        uViewMatrix = getUniform(U_VIEW_MATRIX);
+        uProjectionMatrix = getUniform(U_PROJECTION_MATRIX);
+        uTexture = getUniform(U_TEXTURE);
+        uLightPos = getUniform(U_LIGHT_POS);
+        uHighestY = getUniform(U_HIGHEST_Y);
+        uLowestY = getUniform(U_LOWEST_Y);
+        uTransforms = getUniform(U_TRANSFORMS);
+        uValues = getUniform(U_VALUES);
+        uTime = getUniform(U_TIME);
+        uAnimationDuration = getUniform(U_ANIMATION_DURATION);
+        uEasing = getUniform(U_EASING);
+        uMetric = getUniform(U_METRIC);
+        uMetricRange = getUniform(U_METRIC_RANGE);
+        uColormap = getUniform(U_COLORMAP);
+        uColormapRow = getUniform(U_COLORMAP_ROW);
+        uPositionScale = getUniform(U_POSITION_SCALE);
+        uPositionOffset = getUniform(U_POSITION_OFFSET);
+        uNormalScale = getUniform(U_NORMAL_SCALE);
+        uTexelScale = getUniform(U_TEXEL_SCALE);
+        uTexelOffset = getUniform(U_TEXEL_OFFSET);
+
+        aPositionLocation = getAttributeLocation(A_POSITION);
+        aNormalLocation = getAttributeLocation(A_NORMAL);
+        aTexCoordinateLocation = getAttributeLocation(A_TEX_COORDINATE);
+        aInstanceIdLocation = getAttributeLocation(A_INSTANCE_ID);
+    }
+
+    /**
+     * @param viewMatrix       transforms world space to eye space
+     * @param projectionMatrix transforms eye space to clip space
+     */
+    public void setMatrices(float[] viewMatrix, float[] projectionMatrix) {
+        uViewMatrix.setMatrix4(viewMatrix, 0);
+        uProjectionMatrix.setMatrix4(projectionMatrix, 0);
+    }
+
+    /**
+     * @param textureUnit the texture unit the texture is bound to
+     */
+    public void setTextureUnit(int textureUnit) {
+        uTexture.set(textureUnit);
+    }
+
+    /**
+     * @param lightPosInEyeSpace the position of the light in eye space
+     */
+    public void setLightPosition(float[] lightPosInEyeSpace) {
+        uLightPos.set(lightPosInEyeSpace[0], lightPosInEyeSpace[1], lightPosInEyeSpace[2]);
+    }
+
+    /**
+     * @param lowestY  the lowest Y coordinate of the model
+     * @param highestY the highest Y coordinate of the model
+     */
+    public void setBounds(float lowestY, float highestY) {
+        uLowestY.set(lowestY);
+        uHighestY.set(highestY);
+    }
+
+    /**
+     * @param time     seconds since the last data update
+     * @param duration seconds an animation takes
+     * @param easing   the coefficients of t, t^2 and t^3 of the easing curve
+     */
+    public void setAnimation(float time, float duration, float[] easing) {
+        uTime.set(time);
+        uAnimationDuration.set(duration);
+        uEasing.set(easing[0], easing[1], easing[2]);
+    }
+
+    /**
+     * @param component which of the values is shown, e.g. the temperature
+     * @param min       the value at the start of the colormap
+     * @param max       the value at the end of the colormap
+     */
+    public void setMetric(int component, float min, float max) {
+        uMetric.set(component == 0 ? 1.f : 0.f, component == 1 ? 1.f : 0.f, component == 2 ? 1.f : 0.f,
+                component == 3 ? 1.f : 0.f);
+        uMetricRange.set(min, max);
+    }
+
+    /**
+     * @param textureUnit the texture unit the colormap texture is bound to
+     * @param row         the V coordinate of the row of the colormap
+     */
+    public void setColormap(int textureUnit, float row) {
+        uColormap.set(textureUnit);
+        uColormapRow.set(row);
+    }
+
+    /**
+     * @param transforms x, y, z and the rotation around Y in radians per instance
+     * @param values     the temperature, the viscosity, the fill level and 0 before the last data update, then the same
+     *                   since, per instance
+     * @param first      the first instance in both arrays
+     * @param count      number of instances, at most {@link #MAX_INSTANCES}
+     */
+    public void setInstances(float[] transforms, float[] values, int first, int count) {
+        uTransforms.setVector4Array(transforms, first * FLOATS_PER_INSTANCE, count);
+        uValues.setVector4Array(values, first * VALUE_FLOATS_PER_INSTANCE, count * 2);
+    }
+
+    /**
+     * @param vertexFormat how to get the attributes of the mesh back, see
+     *                     {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.models.QuantizedVertices}
+     */
+    public void setVertexFormat(VertexFormat vertexFormat) {
+        final float[] positionScale = vertexFormat.getPositionScale();
+        final float[] positionOffset = vertexFormat.getPositionOffset();
+        uPositionScale.set(positionScale[0], positionScale[1], positionScale[2]);
+        uPositionOffset.set(positionOffset[0], positionOffset[1], positionOffset[2]);
+        uNormalScale.set(vertexFormat.getNormalScale());
+        uTexelScale.set(vertexFormat.getTexelScale()[0], vertexFormat.getTexelScale()[1]);
+        uTexelOffset.set(vertexFormat.getTexelOffset()[0], vertexFormat.getTexelOffset()[1]);
+    }
+
+    public int getPositionAttributeLocation() {
+        return aPositionLocation;
+    }
+
+    public int getNormalAttributeLocation() {
+        return aNormalLocation;
+    }
+
+    public int getTexCoordinateAttributeLocation() {
+        return aTexCoordinateLocation;
+    }
+
+    public int getInstanceIdAttributeLocation() {
+        return aInstanceIdLocation;
+    }
+}
@@ -0,0 +1,272 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.VertexFormat;
+
+/**
+ * Lighting program for the textured models. The parts it needs are picked at compile time, see the variant bits:
+ * {@link #FILL_LEVEL} colors a model below its fill level, {@link #QUANTIZED} takes quantized vertices (see
+ * {@link #setVertexFormat(VertexFormat)}) and {@link #VERTEX_LIGHTING} lights the vertices instead of the fragments.
+ * The uniforms of the parts left out are inactive and ignore their values.
+ */
+public class ModelShaderProgram extends ShaderProgram {
+    /**
+     * Variant bit: colors the model with the colormap below the fill level and dark gray above it, both animated
+     * since the last data update (see {@link #setValues(float[], int)}). Without it, the color is used as it is.
+     */
+    public static final int FILL_LEVEL = 1;
+    /**
+     * Variant bit: dequantizes the attributes. Without it, the mesh must have float vertices.
+     */
+    public static final int QUANTIZED = 2;
+    /**
+     * Variant bit: lights the vertices. Looks the same as the per-fragment lighting on models, whose triangles are
+     * small on the screen.
+     */
+    public static final int VERTEX_LIGHTING = 4;
+    /**
+     * Number of variants.
+     */
+    public static final int VARIANTS = 8;
+
+    // Uniform constants
+    protected static final String U_MVP_MATRIX = "u_MVPMatrix";
+    protected static final String U_MV_MATRIX = "u_MVMatrix";
+    protected static final String U_TEXTURE = "u_Texture";
+    protected static final String U_LIGHT_POS = "u_LightPos";
+    protected static final String U_HIGHEST_Y = "u_HighestY";
+    protected static final String U_LOWEST_Y = "u_LowestY";
+    protected static final String U_FROM_VALUES = "u_FromValues";
+    protected static final String U_TO_VALUES = "u_ToValues";
+    protected static final String U_TIME = "u_Time";
+    protected static final String U_ANIMATION_DURATION = "u_AnimationDuration";
+    protected static final String U_EASING = "u_Easing";
+    protected static final String U_METRIC = "u_Metric";
+    protected static final String U_METRIC_RANGE = "u_MetricRange";
+    protected static final String U_COLORMAP = "u_Colormap";
+    protected static final String U_COLORMAP_ROW = "u_ColormapRow";
+    protected static final String U_POSITION_SCALE = "u_PositionScale";
+    protected static final String U_POSITION_OFFSET = "u_PositionOffset";
+    protected static final String U_NORMAL_SCALE = "u_NormalScale";
+    protected static final String U_TEXEL_SCALE = "u_TexelScale";
+    protected static final String U_TEXEL_OFFSET = "u_TexelOffset";
+
+    // Attribute constants
+    protected static final String A_NORMAL = "a_Normal";
+    protected static final String A_TEX_COORDINATE = "a_TexCoordinate";
+
+    private final int variant;
+
+    private final Uniform uMVPMatrix;
+    private final Uniform uMVMatrix;
+    private final Uniform uTexture;
+    private final Uniform uLightPos;
+    private final Uniform uHighestY;
+    private final Uniform uLowestY;
+    private final Uniform uFromValues;
+    private final Uniform uToValues;
+    private final Uniform uTime;
+    private final Uniform uAnimationDuration;
+    private final Uniform uEasing;
+    private final Uniform uMetric;
+    private final Uniform uMetricRange;
+    private final Uniform uColormap;
+    private final Uniform uColormapRow;
+    private final Uniform uPositionScale;
+    private final Uniform uPositionOffset;
+    private final Uniform uNormalScale;
+    private final Uniform uTexelScale;
+    private final Uniform uTexelOffset;
+
+    private final int aPositionLocation;
+    private final int aColorLocation;
+    private final int aNormalLocation;
+    private final int aTexCoordinateLocation;
+
+    /**
+     * @param programCache may be null to always compile
+     * @param variant      the variant bits
+     */
+    public ModelShaderProgram(ShaderLibrary shaderLibrary, GLApi gl, ProgramCache programCache, int variant) {
+        this(gl, programCache, shaderLibrary.preprocess("vert", getDefines(variant)),
+                shaderLibrary.preprocess("frag", getDefines(variant)), variant);
+    }
+
+    /**
+     * A program with a fill level, which takes quantized vertices.
+     *
+     * @param vertexSource   source of the vertex shader
+     * @param fragmentSource source of the fragment shader
+     */
+    public ModelShaderProgram(GLApi gl, String vertexSource, String fragmentSource) {
+        this(gl, null, vertexSource, fragmentSource, FILL_LEVEL | QUANTIZED);
+    }
+
+    /**
+     * @param programCache   may be null to always compile
+     * @param vertexSource   preprocessed source of the vertex shader
+     * @param fragmentSource preprocessed source of the fragment shader
+     * @param variant        the variant bits the sources were preprocessed with
+     */
+    public ModelShaderProgram(GLApi gl, ProgramCache programCache, String vertexSource, String fragmentSource, int variant) {
+        super(gl, programCache, vertexSource, fragmentSource, A_POSITION, A_COLOR, A_NORMAL, A_TEX_COORDINATE);
+        this.variant = variant;
+
+        uMVPMatrix = getUniform(U_MVP_MATRIX);
+        uMVMatrix = getUniform(U_MV_MATRIX);
+        uTexture = getUniform(U_TEXTURE);
+        uLightPos = getUniform(U_LIGHT_POS);
+        uHighestY = getUniform(U_HIGHEST_Y);
+        uLowestY = getUniform(U_LOWEST_Y);
+        uFromValues = getUniform(U_FROM_VALUES);
+        uToValues = getUniform(U_TO_VALUES);
+        uTime = getUniform(U_TIME);
+        uAnimationDuration = getUniform(U_ANIMATION_DURATION);
+        uEasing = getUniform(U_EASING);
+        uMetric = getUniform(U_METRIC);
+        uMetricRange = getUniform(U_METRIC_RANGE);
+        uColormap = getUniform(U_COLORMAP);
+        uColormapRow = getUniform(U_COLORMAP_ROW);
+        uPositionScale = getUniform(U_POSITION_SCALE);
+        uPositionOffset = getUniform(U_POSITION_OFFSET);
+        uNormalScale = getUniform(U_NORMAL_SCALE);
+        uTexelScale = getUniform(U_TEXEL_SCALE);
+        uTexelOffset = getUniform(U_TEXEL_OFFSET);
+
+        aPositionLocation = getAttributeLocation(A_POSITION);
+        aColorLocation = getAttributeLocation(A_COLOR);
+        aNormalLocation = getAttributeLocation(A_NORMAL);
+        aTexCoordinateLocation = getAttributeLocation(A_TEX_COORDINATE);
+    }
+
+    /**
+     * @param variant the variant bits
+     * @return the defines selecting the {@code variant} in the shaders.
+     */
+    public static String[] getDefines(int variant) {
+        final List<String> defines = new ArrayList<>(3);
+        if ((variant & FILL_LEVEL) != 0) {
+            defines.add("FILL_LEVEL");
+        }
+        if ((variant & QUANTIZED) != 0) {
+            defines.add("QUANTIZED");
+        }
+        if ((variant & VERTEX_LIGHTING) != 0) {
+            defines.add("VERTEX_LIGHTING");
+        }
+        return defines.toArray(new String[defines.size()]);
+    }
+
+    /**
+     * @return the variant bits.
+     */
+    public int getVariant() {
+        return variant;
+    }
+
+    /**
+     * @param mvMatrix  the modelview matrix
+     * @param mvpMatrix the combined model/view/projection matrix
+     */
+    public void setMatrices(float[] mvMatrix, float[] mvpMatrix) {
+        uMVMatrix.setMatrix4(mvMatrix, 0);
+        uMVPMatrix.setMatrix4(mvpMatrix, 0);
+    }
+
+    /**
+     * @param textureUnit the texture unit the texture is bound to
+     */
+    public void setTextureUnit(int textureUnit) {
+        uTexture.set(textureUnit);
+    }
+
+    /**
+     * @param lightPosInEyeSpace the position of the light in eye space
+     */
+    public void setLightPosition(float[] lightPosInEyeSpace) {
+        uLightPos.set(lightPosInEyeSpace[0], lightPosInEyeSpace[1], lightPosInEyeSpace[2]);
+    }
+
+    /**
+     * @param lowestY  the lowest Y coordinate of the model
+     * @param highestY the highest Y coordinate of the model
+     */
+    public void setBounds(float lowestY, float highestY) {
+        uLowestY.set(lowestY);
+        uHighestY.set(highestY);
+    }
+
+    /**
+     * @param values holds the temperature, the viscosity, the fill level [0; 1] and 0 before the last data update,
+     *               then the same since
+     * @param offset offset of the 8 values in {@code values}
+     */
+    public void setValues(float[] values, int offset) {
+        uFromValues.set(values[offset], values[offset + 1], values[offset + 2], values[offset + 3]);
+        uToValues.set(values[offset + 4], values[offset + 5], values[offset + 6], values[offset + 7]);
+    }
+
+    /**
+     * @param component which of the values is shown, e.g. the temperature
+     * @param min       the value at the start of the colormap
+     * @param max       the value at the end of the colormap
+     */
+    public void setMetric(int component, float min, float max) {
+        uMetric.set(component == 0 ? 1.f : 0.f, component == 1 ? 1.f : 0.f, component == 2 ? 1.f : 0.f,
+                component == 3 ? 1.f : 0.f);
+        uMetricRange.set(min, max);
+    }
+
+    /**
+     * @param textureUnit the texture unit the colormap texture is bound to
+     * @param row         the V coordinate of the row of the colormap
+     */
+    public void setColormap(int textureUnit, float row) {
+        uColormap.set(textureUnit);
+        uColormapRow.set(row);
+    }
+
+    /**
+     * @param time     seconds since the last data update
+     * @param duration seconds an animation takes
+     * @param easing   the coefficients of t, t^2 and t^3 of the easing curve
+     */
+    public void setAnimation(float time, float duration, float[] easing) {
+        uTime.set(time);
+        uAnimationDuration.set(duration);
+        uEasing.set(easing[0], easing[1], easing[2]);
+    }
+
+    /**
+     * @param vertexFormat how to get the attributes of the mesh back, see
+     *                     {@link de.tum.androidpraktikum.cardroarddatavisualizationjava.models.QuantizedVertices}
+     */
+    public void setVertexFormat(VertexFormat vertexFormat) {
+        final float[] positionScale = vertexFormat.getPositionScale();
+        final float[] positionOffset = vertexFormat.getPositionOffset();
+        uPositionScale.set(positionScale[0], positionScale[1], positionScale[2]);
+        uPositionOffset.set(positionOffset[0], positionOffset[1], positionOffset[2]);
+        uNormalScale.set(vertexFormat.getNormalScale());
+        uTexelScale.set(vertexFormat.getTexelScale()[0], vertexFormat.getTexelScale()[1]);
+        uTexelOffset.set(vertexFormat.getTexelOffset()[0], vertexFormat.getTexelOffset()[1]);
+    }
+
+    public int getPositionAttributeLocation() {
+        return aPositionLocation;
+    }
+
+    public int getColorAttributeLocation() {
+        return aColorLocation;
+    }
+
+    public int getNormalAttributeLocation() {
+        return aNormalLocation;
+    }
+
+    public int getTexCoordinateAttributeLocation() {
+        return aTexCoordinateLocation;
+    }
+}
@@ -0,0 +1,111 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * The variants of the {@link ModelShaderProgram}, each compiled (or loaded from the {@link ProgramCache}) when it's
+ * first asked for.
+ */
+public class ModelShaderVariants {
+    private final ShaderLibrary shaderLibrary;
+    private final GLApi gl;
+    private final ProgramCache programCache;
+    private final ModelShaderProgram[] programs = new ModelShaderProgram[ModelShaderProgram.VARIANTS];
+
+    /**
+     * @param programCache may be null to always compile
+     */
+    public ModelShaderVariants(ShaderLibrary shaderLibrary, GLApi gl, ProgramCache programCache) {
+        this.shaderLibrary = shaderLibrary;
+        this.gl = gl;
+        this.programCache = programCache;
+    }
+
+    /**
+     * Uses the {@code program} for every variant, e.g. one taking every kind of model.
+     */
+    public ModelShaderVariants(ModelShaderProgram program) {
+        this(null, null, null);
+        Arrays.fill(programs, program);
+    }
+
+    /**
+     * @param variant the variant bits, see {@link ModelShaderProgram}
+     * @return the program of the {@code variant}.
+     */
+    public ModelShaderProgram get(int variant) {
+        ModelShaderProgram program = programs[variant];
+        if (program == null) {
+            program = new ModelShaderProgram(shaderLibrary, gl, programCache, variant);
+            programs[variant] = program;
+        }
+        return program;
+    }
+
+    /**
+     * @return the number of programs created so far.
+     */
+    public int getProgramCount() {
+        int created = 0;
+        for (int variant = 0; variant < programs.length; variant++) {
+            if (isFirst(variant)) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * @return the uniform uploads of all the variants passed on to OpenGL.
+     */
+    public int getIssuedUploads() {
+        int uploads = 0;
+        for (int variant = 0; variant < programs.length; variant++) {
+            if (isFirst(variant)) {
+                uploads += programs[variant].getIssuedUploads();
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * @return the uniform uploads of all the variants dropped, because the value didn't change.
+     */
+    public int getSkippedUploads() {
+        int uploads = 0;
+        for (int variant = 0; variant < programs.length; variant++) {
+            if (isFirst(variant)) {
+                uploads += programs[variant].getSkippedUploads();
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * Resets the upload counts of all the variants.
+     */
+    public void resetUploadCounts() {
+        for (ModelShaderProgram program : programs) {
+            if (program != null) {
+                program.resetUploadCounts();
+            }
+        }
+    }
+
+    /**
+     * @return whether the program of the {@code variant} exists and isn't used by an earlier variant too.
+     */
+    private boolean isFirst(int variant) {
+        if (programs[variant] == null) {
+            return false;
+        }
+        for (int i = 0; i < variant; i++) {
+            if (programs[i] == programs[variant]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
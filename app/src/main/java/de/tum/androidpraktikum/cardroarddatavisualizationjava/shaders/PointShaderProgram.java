@@ -0,0 +1,29 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * Draws a white point, e.g. to indicate the light.
+ */
+public class PointShaderProgram extends ShaderProgram {
+    // Uniform constants
+    protected static final String U_MVP_MATRIX = "u_MVPMatrix";
+
+    private final Uniform uMVPMatrix;
+    private final int aPositionLocation;
+
+    public PointShaderProgram(ShaderLibrary shaderLibrary, GLApi gl, ProgramCache programCache) {
+        super(gl, programCache, shaderLibrary.preprocess("light_vert"), shaderLibrary.preprocess("light_frag"), A_POSITION);
+
+        uMVPMatrix = getUniform(U_MVP_MATRIX);
+        aPositionLocation = getAttributeLocation(A_POSITION);
+    }
+
+    public void setMatrix(float[] mvpMatrix) {
+        uMVPMatrix.setMatrix4(mvpMatrix, 0);
+    }
+
+    public int getPositionAttributeLocation() {
+        return aPositionLocation;
+    }
+}
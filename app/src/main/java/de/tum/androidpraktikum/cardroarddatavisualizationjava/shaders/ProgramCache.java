@@ -0,0 +1,300 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * Keeps the linked programs on disk, so that a restart or a context loss doesn't compile the shaders again. A program
+ * is stored as the binary of the driver (OpenGL ES 3.0 {@code glGetProgramBinary}) behind a fixed size header. The
+ * file name is a hash of the driver followed by a hash of the sources and the attribute bindings: a changed shader
+ * (including its defines, which are part of the source) or an updated driver misses the cache.
+ * <p>
+ * Binaries the driver refuses anyway are deleted and the program is compiled from source. Without support for program
+ * binaries every program is compiled. The time spent compiling and loading is recorded.
+ */
+public class ProgramCache {
+    /**
+     * Directory of the cached programs in the cache directory of the app.
+     */
+    public static final String DIRECTORY = "programs";
+    /**
+     * Extension of the cached program files.
+     */
+    public static final String EXTENSION = ".program";
+    /**
+     * 'PROG' read in the native byte order.
+     */
+    public static final int MAGIC = 0x50524F47;
+    /**
+     * Bump this whenever the layout changes, so that stale caches get rebuilt.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    private static final String TAG = "ProgramCache";
+
+    // Header offsets.
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_BINARY_FORMAT = 8;
+    private static final int OFFSET_BINARY_LENGTH = 12;
+
+    private final File directory;
+    private final boolean binariesSupported;
+    /**
+     * Hash of the driver, the prefix of the file names.
+     */
+    private final String driverHash;
+
+    // Profiling.
+    private int compiledPrograms;
+    private long compileNanos;
+    private int loadedPrograms;
+    private long loadNanos;
+    /**
+     * Cached binaries, which didn't link.
+     */
+    private int rejectedBinaries;
+
+    /**
+     * Deletes the programs of other drivers from the {@code directory}.
+     *
+     * @param directory         where the programs are kept, created when needed
+     * @param driver            identifies the driver, e.g. {@code GL_RENDERER} and {@code GL_VERSION}
+     * @param binariesSupported whether the context supports program binaries. Otherwise every program is compiled.
+     */
+    public ProgramCache(File directory, String driver, boolean binariesSupported) {
+        this.directory = directory;
+        this.binariesSupported = binariesSupported;
+        driverHash = hash(driver).substring(0, 16);
+
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().startsWith(driverHash + "-")) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the program from the cache or compiles and links it, then stores it in the cache.
+     *
+     * @param attributes attributes to bind to the locations 0, 1, ... in the given order
+     * @return an OpenGL handle to the linked program
+     */
+    public int getProgram(GLApi gl, String vertexShaderSource, String fragmentShaderSource, String... attributes) {
+        final File file = getFile(vertexShaderSource, fragmentShaderSource, attributes);
+        if (binariesSupported) {
+            final long start = System.nanoTime();
+            final int program = load(gl, file);
+            if (program != 0) {
+                loadedPrograms++;
+                loadNanos += System.nanoTime() - start;
+                return program;
+            }
+        }
+
+        final long start = System.nanoTime();
+        final int vertexShaderHandle = ShaderProgram.compileShader(gl, GLES20.GL_VERTEX_SHADER, vertexShaderSource);
+        final int fragmentShaderHandle = ShaderProgram.compileShader(gl, GLES20.GL_FRAGMENT_SHADER, fragmentShaderSource);
+        final int program = ShaderProgram.createAndLinkProgram(gl, vertexShaderHandle, fragmentShaderHandle, attributes);
+        compiledPrograms++;
+        compileNanos += System.nanoTime() - start;
+
+        if (binariesSupported) {
+            store(gl, program, file);
+        }
+        return program;
+    }
+
+    /**
+     * @return the file of the program, whether it exists or not.
+     */
+    File getFile(String vertexShaderSource, String fragmentShaderSource, String... attributes) {
+        final StringBuilder key = new StringBuilder(vertexShaderSource).append('\0').append(fragmentShaderSource);
+        for (String attribute : attributes) {
+            key.append('\0').append(attribute);
+        }
+        return new File(directory, driverHash + "-" + hash(key.toString()) + EXTENSION);
+    }
+
+    /**
+     * @return the program linked from the cached binary or 0, if it isn't cached or the driver refuses it.
+     */
+    private int load(GLApi gl, File file) {
+        final ByteBuffer data;
+        try {
+            data = map(file);
+        } catch (IOException e) {
+            Log.w(TAG, "Error mapping the program cache " + file + ". Falling back to the sources.");
+            return 0;
+        }
+        if (data == null) {
+            return 0;
+        }
+
+        final int program = gl.glCreateProgram();
+        final int length = data.getInt(OFFSET_BINARY_LENGTH);
+        data.position(HEADER_SIZE);
+        gl.glProgramBinary(program, data.getInt(OFFSET_BINARY_FORMAT), data.slice(), length);
+
+        final int[] linkStatus = new int[1];
+        gl.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] == 0) {
+            // E.g. a driver update, which kept the version string.
+            gl.glDeleteProgram(program);
+            file.delete();
+            rejectedBinaries++;
+            return 0;
+        }
+        return program;
+    }
+
+    /**
+     * @return the content of the file or null, if there's none or it isn't a valid program file.
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed.
+            final ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.nativeOrder());
+            if (data.getInt(OFFSET_MAGIC) != MAGIC || data.getInt(OFFSET_VERSION) != VERSION
+                    || data.getInt(OFFSET_BINARY_LENGTH) != data.capacity() - HEADER_SIZE) {
+                return null;
+            }
+            return data;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes the binary of the {@code program} to the cache.
+     */
+    private void store(GLApi gl, int program, File file) {
+        final int[] params = new int[1];
+        gl.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, params, 0);
+        if (params[0] <= 0) {
+            return;
+        }
+
+        final ByteBuffer data = ByteBuffer.allocateDirect(HEADER_SIZE + params[0]).order(ByteOrder.nativeOrder());
+        data.position(HEADER_SIZE);
+        final int[] length = new int[1];
+        final int[] binaryFormat = new int[1];
+        gl.glGetProgramBinary(program, params[0], length, 0, binaryFormat, 0, data.slice());
+        data.putInt(OFFSET_MAGIC, MAGIC);
+        data.putInt(OFFSET_VERSION, VERSION);
+        data.putInt(OFFSET_BINARY_FORMAT, binaryFormat[0]);
+        data.putInt(OFFSET_BINARY_LENGTH, length[0]);
+        data.limit(HEADER_SIZE + length[0]);
+        data.position(0);
+
+        try {
+            write(file, data);
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing the program cache " + file);
+        }
+    }
+
+    private void write(File file, ByteBuffer data) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outputStream = new FileOutputStream(tmpFile);
+        try {
+            FileChannel channel = outputStream.getChannel();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Could not move " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * @return the SHA-1 of the UTF-8 encoded {@code text} in hex.
+     */
+    private static String hash(String text) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean areBinariesSupported() {
+        return binariesSupported;
+    }
+
+    /**
+     * @return the number of programs compiled from source.
+     */
+    public int getCompiledPrograms() {
+        return compiledPrograms;
+    }
+
+    /**
+     * @return the time spent compiling and linking in nanoseconds, without storing the binaries.
+     */
+    public long getCompileNanos() {
+        return compileNanos;
+    }
+
+    /**
+     * @return the number of programs loaded from the cache.
+     */
+    public int getLoadedPrograms() {
+        return loadedPrograms;
+    }
+
+    /**
+     * @return the time spent loading the programs from the cache in nanoseconds.
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * @return the number of cached binaries, which the driver refused.
+     */
+    public int getRejectedBinaries() {
+        return rejectedBinaries;
+    }
+}
@@ -0,0 +1,100 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.AssetLoader;
+
+/**
+ * The shader sources by name. A source is read once from the raw resource of its name (e.g. "vert" for
+ * {@code res/raw/vert.shader}) and kept for the next programs, also across context losses.
+ * <p>
+ * {@link #preprocess(String, String...)} expands the {@code #include "name"} lines and puts the defines of a variant in
+ * front of the source. Every source is included at most once per shader, so the includes may include each other.
+ */
+public class ShaderLibrary {
+    private static final String INCLUDE = "#include";
+
+    private final Context context;
+    private final Map<String, String> sources = new HashMap<>();
+
+    /**
+     * @param context to read the raw resources with. May be null, if all the sources are {@link #put}.
+     */
+    public ShaderLibrary(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Adds a source, which isn't a raw resource, or replaces one.
+     */
+    public void put(String name, String source) {
+        sources.put(name, source);
+    }
+
+    /**
+     * @return the source {@code name} as it is, read on the first call.
+     */
+    public String getSource(String name) {
+        String source = sources.get(name);
+        if (source == null) {
+            final int resourceId = context == null ? 0
+                    : context.getResources().getIdentifier(name, "raw", context.getPackageName());
+            if (resourceId == 0) {
+                throw new RuntimeException("Unknown shader source " + name + ".");
+            }
+            source = AssetLoader.loadShaderResource(context, resourceId);
+            sources.put(name, source);
+        }
+        return source;
+    }
+
+    /**
+     * @param name    the source of the shader
+     * @param defines the macros of the variant, either a name or a name followed by the value
+     * @return the source with the includes expanded and the defines in front of it, ready to be compiled.
+     */
+    public String preprocess(String name, String... defines) {
+        final StringBuilder result = new StringBuilder();
+        for (String define : defines) {
+            result.append("#define ").append(define).append('\n');
+        }
+        include(name, result, new HashSet<String>());
+        return result.toString();
+    }
+
+    /**
+     * Appends the source {@code name} to the {@code result}, unless it's among the {@code included} already.
+     */
+    private void include(String name, StringBuilder result, Set<String> included) {
+        if (!included.add(name)) {
+            return;
+        }
+
+        final String source = getSource(name);
+        int start = 0;
+        while (start < source.length()) {
+            int end = source.indexOf('\n', start);
+            end = end == -1 ? source.length() : end + 1;
+            final String line = source.substring(start, end);
+            final String directive = line.trim();
+            if (directive.startsWith(INCLUDE)) {
+                final String argument = directive.substring(INCLUDE.length()).trim();
+                if (argument.length() < 2 || argument.charAt(0) != '"' || argument.charAt(argument.length() - 1) != '"') {
+                    throw new RuntimeException("Bad include in the shader source " + name + ": " + directive);
+                }
+                include(argument.substring(1, argument.length() - 1), result, included);
+            } else {
+                result.append(line);
+                if (end == source.length() && !line.endsWith("\n")) {
+                    result.append('\n');
+                }
+            }
+            start = end;
+        }
+    }
+}
@@ -9,14 +9,21 @@ package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
  * Visit http://www.pragmaticprogrammer.com/titles/kbogla for more book information.
  ***/
 
-import static android.opengl.GLES20.glUseProgram;
-import android.content.Context;
 import android.opengl.GLES20;
+import android.util.Log;
 
-import de.tum.androidpraktikum.cardroarddatavisualizationjava.AssetLoader;
-import de.tum.androidpraktikum.cardroarddatavisualizationjava.CardboardRenderer;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * A linked shader program. All the active uniforms and attributes are looked up once after linking. The uniforms are
+ * set through {@link Uniform}s, which remember the last uploaded value and skip the GL call, if it didn't change.
+ */
+public class ShaderProgram {
+    private static final String TAG = "ShaderProgram";
 
-abstract class ShaderProgram {
     // Uniform constants
     protected static final String U_MATRIX = "u_Matrix";
     protected static final String U_COLOR = "u_Color";
@@ -30,21 +37,462 @@ abstract class ShaderProgram {
     protected static final String A_DIRECTION_VECTOR = "a_DirectionVector";
     protected static final String A_PARTICLE_START_TIME = "a_ParticleStartTime";
 
+    protected final GLApi gl;
+
     // Shader program
     protected final int program;
 
-    protected ShaderProgram(Context context, int vertexShaderResourceId,
-                            int fragmentShaderResourceId) {
-        final String skyboxVertexShader = AssetLoader.loadShader(context, AssetLoader.SKYBOX_VERTEX_SHADER);
-        final String skyboxFragmentShader = AssetLoader.loadShader(context, AssetLoader.SKYBOX_FRAGMENT_SHADER);
-        final int skyboxVertexShaderHandle = CardboardRenderer.compileShader(GLES20.GL_VERTEX_SHADER, skyboxVertexShader);
-        final int skyboxFragmentShaderHandle = CardboardRenderer.compileShader(GLES20.GL_FRAGMENT_SHADER, skyboxFragmentShader);
+    /**
+     * The active uniforms by name. Array uniforms are stored without the "[0]" suffix.
+     */
+    private final Map<String, Uniform> uniforms = new HashMap<>();
+    /**
+     * The locations of the active attributes by name.
+     */
+    private final Map<String, Integer> attributes = new HashMap<>();
 
-        program = CardboardRenderer.createAndLinkProgram(skyboxVertexShaderHandle, skyboxFragmentShaderHandle, new String[] { "a_Position" });
+    // Profiling.
+    /**
+     * Uniform uploads passed on to OpenGL.
+     */
+    private int issuedUploads;
+    /**
+     * Uniform uploads dropped, because the value didn't change.
+     */
+    private int skippedUploads;
+
+    /**
+     * Compiles and links the given shader sources.
+     *
+     * @param attributes attributes to bind to the locations 0, 1, ... in the given order
+     */
+    public ShaderProgram(GLApi gl, String vertexShaderSource, String fragmentShaderSource, String... attributes) {
+        this(gl, null, vertexShaderSource, fragmentShaderSource, attributes);
+    }
+
+    /**
+     * Loads the program of the given shader sources from the {@code programCache} or compiles and links them.
+     *
+     * @param programCache may be null to always compile
+     * @param attributes   attributes to bind to the locations 0, 1, ... in the given order
+     */
+    public ShaderProgram(GLApi gl, ProgramCache programCache, String vertexShaderSource, String fragmentShaderSource,
+                         String... attributes) {
+        this.gl = gl;
+
+        if (programCache != null) {
+            program = programCache.getProgram(gl, vertexShaderSource, fragmentShaderSource, attributes);
+        } else {
+            final int vertexShaderHandle = compileShader(gl, GLES20.GL_VERTEX_SHADER, vertexShaderSource);
+            final int fragmentShaderHandle = compileShader(gl, GLES20.GL_FRAGMENT_SHADER, fragmentShaderSource);
+            program = createAndLinkProgram(gl, vertexShaderHandle, fragmentShaderHandle, attributes);
+        }
+
+        reflect();
+    }
+
+    /**
+     * Looks up all the active uniforms and attributes of the program.
+     */
+    private void reflect() {
+        final int[] params = new int[2];
+
+        gl.glGetProgramiv(program, GLES20.GL_ACTIVE_UNIFORMS, params, 0);
+        final int uniformCount = params[0];
+        for (int i = 0; i < uniformCount; i++) {
+            // Size and type.
+            String name = gl.glGetActiveUniform(program, i, params, 0, params, 1);
+            final int location = gl.glGetUniformLocation(program, name);
+            if (name.endsWith("[0]")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            uniforms.put(name, new Uniform(name, location, params[1], params[0]));
+        }
+
+        gl.glGetProgramiv(program, GLES20.GL_ACTIVE_ATTRIBUTES, params, 0);
+        final int attributeCount = params[0];
+        for (int i = 0; i < attributeCount; i++) {
+            final String name = gl.glGetActiveAttrib(program, i, params, 0, params, 1);
+            attributes.put(name, gl.glGetAttribLocation(program, name));
+        }
     }
 
     public void useProgram() {
         // Set the current OpenGL shader program to this program.
-        glUseProgram(program);
+        gl.glUseProgram(program);
+    }
+
+    /**
+     * Deletes the program.
+     */
+    public void release() {
+        gl.glDeleteProgram(program);
+    }
+
+    /**
+     * @param name
+     * @return the uniform or an inactive one, which ignores all the values, if the program doesn't use it.
+     */
+    public Uniform getUniform(String name) {
+        Uniform uniform = uniforms.get(name);
+        if (uniform == null) {
+            uniform = new Uniform(name, -1, GLES20.GL_FLOAT, 0);
+        }
+        return uniform;
+    }
+
+    /**
+     * @param name
+     * @return the location of the attribute or -1, if the program doesn't use it.
+     */
+    public int getAttributeLocation(String name) {
+        final Integer location = attributes.get(name);
+        return location == null ? -1 : location;
+    }
+
+    public int getProgramHandle() {
+        return program;
+    }
+
+    public int getIssuedUploads() {
+        return issuedUploads;
+    }
+
+    public int getSkippedUploads() {
+        return skippedUploads;
+    }
+
+    /**
+     * Resets the issued and skipped uniform upload counts.
+     */
+    public void resetUploadCounts() {
+        issuedUploads = 0;
+        skippedUploads = 0;
+    }
+
+    /**
+     * An active uniform of the program. Remembers the value last uploaded to it.
+     */
+    public final class Uniform {
+        private final String name;
+        private final int location;
+        private final int type;
+        /**
+         * Number of array elements. 0 for an inactive uniform.
+         */
+        private final int size;
+        /**
+         * Number of float components of a float, vector or matrix type.
+         */
+        private final int components;
+
+        /**
+         * The last uploaded value. Holds all the elements of an array.
+         */
+        private final float[] floatValues;
+        private int intValue;
+        /**
+         * Number of array elements last uploaded.
+         */
+        private int uploadedCount;
+        /**
+         * Whether anything has been uploaded yet.
+         */
+        private boolean uploaded;
+
+        private Uniform(String name, int location, int type, int size) {
+            this.name = name;
+            this.location = location;
+            this.type = type;
+            this.size = size;
+            components = getComponents(type);
+            floatValues = new float[components * Math.max(size, 1)];
+        }
+
+        public void set(int x) {
+            if (skip(1)) {
+                return;
+            }
+            if (uploaded && intValue == x) {
+                skippedUploads++;
+                return;
+            }
+            intValue = x;
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniform1i(location, x);
+        }
+
+        public void set(float x) {
+            if (skip(1)) {
+                return;
+            }
+            if (uploaded && floatValues[0] == x) {
+                skippedUploads++;
+                return;
+            }
+            floatValues[0] = x;
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniform1f(location, x);
+        }
+
+        public void set(float x, float y) {
+            if (skip(2)) {
+                return;
+            }
+            if (uploaded && floatValues[0] == x && floatValues[1] == y) {
+                skippedUploads++;
+                return;
+            }
+            floatValues[0] = x;
+            floatValues[1] = y;
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniform2f(location, x, y);
+        }
+
+        public void set(float x, float y, float z) {
+            if (skip(3)) {
+                return;
+            }
+            if (uploaded && floatValues[0] == x && floatValues[1] == y && floatValues[2] == z) {
+                skippedUploads++;
+                return;
+            }
+            floatValues[0] = x;
+            floatValues[1] = y;
+            floatValues[2] = z;
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniform3f(location, x, y, z);
+        }
+
+        public void set(float x, float y, float z, float w) {
+            if (skip(4)) {
+                return;
+            }
+            if (uploaded && floatValues[0] == x && floatValues[1] == y && floatValues[2] == z && floatValues[3] == w) {
+                skippedUploads++;
+                return;
+            }
+            floatValues[0] = x;
+            floatValues[1] = y;
+            floatValues[2] = z;
+            floatValues[3] = w;
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniform4f(location, x, y, z, w);
+        }
+
+        /**
+         * Sets a 4x4 matrix.
+         *
+         * @param matrix
+         * @param offset offset of the matrix in {@code matrix}
+         */
+        public void setMatrix4(float[] matrix, int offset) {
+            if (skip(16)) {
+                return;
+            }
+            if (uploaded && equals(matrix, offset, 16)) {
+                skippedUploads++;
+                return;
+            }
+            System.arraycopy(matrix, offset, floatValues, 0, 16);
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniformMatrix4fv(location, 1, false, matrix, offset);
+        }
+
+        /**
+         * Sets the first {@code count} elements of a vec4 array.
+         *
+         * @param values
+         * @param offset offset of the first element in {@code values}
+         * @param count  number of elements, at most {@link #getSize()}
+         */
+        public void setVector4Array(float[] values, int offset, int count) {
+            if (skip(4)) {
+                return;
+            }
+            if (count > size) {
+                throw new RuntimeException("Uniform " + name + " has " + size + " elements, not " + count + ".");
+            }
+            if (uploaded && uploadedCount == count && equals(values, offset, count * 4)) {
+                skippedUploads++;
+                return;
+            }
+            System.arraycopy(values, offset, floatValues, 0, count * 4);
+            uploadedCount = count;
+            uploaded = true;
+            issuedUploads++;
+            gl.glUniform4fv(location, count, values, offset);
+        }
+
+        /**
+         * Forgets the last uploaded value, so that the next one is uploaded in any case.
+         */
+        public void invalidate() {
+            uploaded = false;
+        }
+
+        /**
+         * @return whether the value should be dropped, because the uniform is inactive.
+         */
+        private boolean skip(int valueComponents) {
+            if (location < 0) {
+                return true;
+            }
+            if (valueComponents != components) {
+                throw new RuntimeException("Uniform " + name + " has " + components + " components, not " + valueComponents + ".");
+            }
+            return false;
+        }
+
+        private boolean equals(float[] values, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                if (floatValues[i] != values[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLocation() {
+            return location;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isActive() {
+            return location >= 0;
+        }
+    }
+
+    /**
+     * @return number of components of a uniform {@code type}. 1 for scalars and samplers.
+     */
+    private static int getComponents(int type) {
+        switch (type) {
+            case GLES20.GL_FLOAT_VEC2:
+            case GLES20.GL_INT_VEC2:
+            case GLES20.GL_BOOL_VEC2:
+                return 2;
+            case GLES20.GL_FLOAT_VEC3:
+            case GLES20.GL_INT_VEC3:
+            case GLES20.GL_BOOL_VEC3:
+                return 3;
+            case GLES20.GL_FLOAT_VEC4:
+            case GLES20.GL_INT_VEC4:
+            case GLES20.GL_BOOL_VEC4:
+            case GLES20.GL_FLOAT_MAT2:
+                return 4;
+            case GLES20.GL_FLOAT_MAT3:
+                return 9;
+            case GLES20.GL_FLOAT_MAT4:
+                return 16;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Helper function to compile a shader.
+     *
+     * @param shaderType   The shader type.
+     * @param shaderSource The shader source code.
+     * @return An OpenGL handle to the shader.
+     */
+    public static int compileShader(GLApi gl, final int shaderType, final String shaderSource) {
+        int shaderHandle = gl.glCreateShader(shaderType);
+
+        if (shaderHandle != 0) {
+            // Pass in the shader source.
+            gl.glShaderSource(shaderHandle, shaderSource);
+
+            // Compile the shader.
+            gl.glCompileShader(shaderHandle);
+
+            // Get the compilation status.
+            final int[] compileStatus = new int[1];
+            gl.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+
+            // If the compilation failed, delete the shader.
+            if (compileStatus[0] == 0) {
+                Log.e(TAG, "Error compiling shader: " + gl.glGetShaderInfoLog(shaderHandle));
+                gl.glDeleteShader(shaderHandle);
+                shaderHandle = 0;
+            }
+        }
+
+        if (shaderHandle == 0) {
+            throw new RuntimeException("Error creating shader.");
+        }
+
+        return shaderHandle;
+    }
+
+    /**
+     * Helper function to link a program. The shaders are deleted afterwards, as they aren't needed anymore.
+     *
+     * @param vertexShaderHandle   An OpenGL handle to an already-compiled vertex shader.
+     * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment shader.
+     * @param attributes           Attributes that need to be bound to the program.
+     * @return An OpenGL handle to the program.
+     */
+    public static int createAndLinkProgram(GLApi gl, final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) {
+        int programHandle = gl.glCreateProgram();
+
+        if (programHandle != 0) {
+            // Bind the vertex shader to the program.
+            gl.glAttachShader(programHandle, vertexShaderHandle);
+
+            // Bind the fragment shader to the program.
+            gl.glAttachShader(programHandle, fragmentShaderHandle);
+
+            // Bind attributes
+            if (attributes != null) {
+                for (int i = 0; i < attributes.length; i++) {
+                    gl.glBindAttribLocation(programHandle, i, attributes[i]);
+                }
+            }
+
+            // Link the two shaders together into a program.
+            gl.glLinkProgram(programHandle);
+
+            // Get the link status.
+            final int[] linkStatus = new int[1];
+            gl.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+
+            // If the link failed, delete the program.
+            if (linkStatus[0] == 0) {
+                Log.e(TAG, "Error compiling program: " + gl.glGetProgramInfoLog(programHandle));
+                gl.glDeleteProgram(programHandle);
+                programHandle = 0;
+            } else {
+                gl.glDetachShader(programHandle, vertexShaderHandle);
+                gl.glDetachShader(programHandle, fragmentShaderHandle);
+            }
+        }
+
+        gl.glDeleteShader(vertexShaderHandle);
+        gl.glDeleteShader(fragmentShaderHandle);
+
+        if (programHandle == 0) {
+            throw new RuntimeException("Error creating program.");
+        }
+
+        return programHandle;
     }
 }
@@ -11,37 +11,28 @@ package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
 
 import static android.opengl.GLES20.GL_TEXTURE0;
 import static android.opengl.GLES20.GL_TEXTURE_CUBE_MAP;
-import static android.opengl.GLES20.glActiveTexture;
-import static android.opengl.GLES20.glBindTexture;
-import static android.opengl.GLES20.glGetAttribLocation;
-import static android.opengl.GLES20.glGetUniformLocation;
-import static android.opengl.GLES20.glUniform1i;
-import static android.opengl.GLES20.glUniformMatrix4fv;
 
-import android.content.Context;
-
-import de.tum.androidpraktikum.cardroarddatavisualizationjava.R;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
 
 public class SkyboxShaderProgram extends ShaderProgram {
-    private final int uMatrixLocation;
-    private final int uTextureUnitLocation;
+    private final Uniform uMatrix;
+    private final Uniform uTextureUnit;
     private final int aPositionLocation;
 
-    public SkyboxShaderProgram(Context context) {
-        super(context, R.raw.skybox_vert,
-                R.raw.skybox_frag);
+    public SkyboxShaderProgram(ShaderLibrary shaderLibrary, GLApi gl, ProgramCache programCache) {
+        super(gl, programCache, shaderLibrary.preprocess("skybox_vert"), shaderLibrary.preprocess("skybox_frag"), A_POSITION);
 
-        uMatrixLocation = glGetUniformLocation(program, U_MATRIX);
-        uTextureUnitLocation = glGetUniformLocation(program, U_TEXTURE_UNIT);
-        aPositionLocation = glGetAttribLocation(program, A_POSITION);
+        uMatrix = getUniform(U_MATRIX);
+        uTextureUnit = getUniform(U_TEXTURE_UNIT);
+        aPositionLocation = getAttributeLocation(A_POSITION);
     }
 
     public void setUniforms(float[] matrix, int textureId) {
-        glUniformMatrix4fv(uMatrixLocation, 1, false, matrix, 0);
+        uMatrix.setMatrix4(matrix, 0);
 
-        glActiveTexture(GL_TEXTURE0);
-        glBindTexture(GL_TEXTURE_CUBE_MAP, textureId);
-        glUniform1i(uTextureUnitLocation, 0);
+        gl.glActiveTexture(GL_TEXTURE0);
+        gl.glBindTexture(GL_TEXTURE_CUBE_MAP, textureId);
+        uTextureUnit.set(0);
     }
 
     public int getPositionAttributeLocation() {
@@ -0,0 +1,85 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+/**
+ * A color scale: colors at evenly spaced stops, blended linearly in between. Baked into a row of a
+ * {@link ColormapTexture}, which the shaders sample with a normalized value.
+ */
+public class Colormap {
+    /**
+     * The temperature scale the units always had.
+     */
+    public static final Colormap BLUE_YELLOW_RED = new Colormap("blue-yellow-red", 0x0000FF, 0xFFFF00, 0xFF0000);
+    /**
+     * Perceptually uniform, readable with color vision deficiencies and in gray (matplotlib's viridis).
+     */
+    public static final Colormap VIRIDIS = new Colormap("viridis",
+            0x440154, 0x472D7B, 0x3B528B, 0x2C728E, 0x21918C, 0x28AE80, 0x5EC962, 0xADDC30, 0xFDE725);
+    /**
+     * Perceptually uniform from black to yellow (matplotlib's inferno).
+     */
+    public static final Colormap INFERNO = new Colormap("inferno",
+            0x000004, 0x1F0C48, 0x550F6D, 0x88226A, 0xBA3655, 0xE35933, 0xF98C0A, 0xF9C932, 0xFCFFA4);
+    /**
+     * Diverging from blue over light gray to red, for values around a reference (Moreland's cool to warm).
+     */
+    public static final Colormap COOL_WARM = new Colormap("cool-warm",
+            0x3B4CC0, 0x6788EE, 0x9ABBFF, 0xC9D7F0, 0xEDD1C2, 0xF7A889, 0xE26952, 0xB40426);
+
+    private final String name;
+    /**
+     * 0xRRGGBB per stop, the first at 0 and the last at 1.
+     */
+    private final int[] stops;
+
+    /**
+     * @param name
+     * @param stops 0xRRGGBB at evenly spaced stops, at least two
+     */
+    public Colormap(String name, int... stops) {
+        if (stops.length < 2) {
+            throw new RuntimeException("Bad colormap " + name + "! Expecting at least two stops..");
+        }
+        this.name = name;
+        this.stops = stops.clone();
+    }
+
+    /**
+     * @param value [0; 1], clamped
+     * @return the color at the {@code value} as 0xRRGGBB.
+     */
+    public int getColor(float value) {
+        final float position = Math.max(0.f, Math.min(value, 1.f)) * (stops.length - 1);
+        final int stop = Math.min((int) position, stops.length - 2);
+        final float t = position - stop;
+        final int left = stops[stop];
+        final int right = stops[stop + 1];
+        int color = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            final int l = (left >> shift) & 0xFF;
+            final int r = (right >> shift) & 0xFF;
+            color |= Math.round(l + (r - l) * t) << shift;
+        }
+        return color;
+    }
+
+    /**
+     * Samples the colormap at {@code size} evenly spaced values as r, g, b bytes: the first texel holds the color at 0,
+     * the last one the color at 1.
+     *
+     * @param pixels receives {@code size} * 3 bytes
+     * @param offset offset of the first texel in {@code pixels}
+     * @param size   number of texels
+     */
+    public void bake(byte[] pixels, int offset, int size) {
+        for (int i = 0; i < size; i++) {
+            final int color = getColor(size == 1 ? 0.f : i / (size - 1.f));
+            pixels[offset + i * 3] = (byte) (color >> 16);
+            pixels[offset + i * 3 + 1] = (byte) (color >> 8);
+            pixels[offset + i * 3 + 2] = (byte) color;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+}
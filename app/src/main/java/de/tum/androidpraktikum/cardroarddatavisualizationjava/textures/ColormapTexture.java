@@ -0,0 +1,91 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * Colormaps baked into the rows of a small RGB texture, {@link #SIZE} texels each. The shaders look a color up with a
+ * normalized value along the row and the V coordinate of the row (see {@link #getRow(Colormap)}), so that switching the
+ * colormap is a uniform change.
+ * <p>
+ * The texture is filtered linearly and clamped. A value v hits the texel centers with
+ * {@code u = (.5 + v * (SIZE - 1)) / SIZE}, so the ends of the colormap aren't blended with the edge.
+ */
+public class ColormapTexture {
+    /**
+     * Texels per colormap. The shaders have the same constant.
+     */
+    public static final int SIZE = 256;
+
+    private final Colormap[] colormaps;
+    /**
+     * r, g, b per texel, a row per colormap.
+     */
+    private final byte[] pixels;
+
+    /**
+     * @param colormaps the rows, from the top
+     */
+    public ColormapTexture(Colormap... colormaps) {
+        if (colormaps.length == 0) {
+            throw new RuntimeException("Bad colormap texture! Expecting at least one colormap..");
+        }
+        this.colormaps = colormaps.clone();
+        pixels = new byte[colormaps.length * SIZE * 3];
+        for (int row = 0; row < colormaps.length; row++) {
+            colormaps[row].bake(pixels, row * SIZE * 3, SIZE);
+        }
+    }
+
+    /**
+     * @return the V coordinate of the center of the row of the {@code colormap}.
+     */
+    public float getRow(Colormap colormap) {
+        for (int row = 0; row < colormaps.length; row++) {
+            if (colormaps[row] == colormap) {
+                return (row + .5f) / colormaps.length;
+            }
+        }
+        throw new RuntimeException("Colormap " + colormap.getName() + " is not in the texture.");
+    }
+
+    /**
+     * Uploads the colormaps into a new texture. Must be called on the GL thread.
+     *
+     * @param gl
+     * @return the texture handle or 0, if the upload failed.
+     */
+    public int upload(GLApi gl) {
+        final int[] textureHandle = new int[1];
+        gl.glGenTextures(1, textureHandle, 0);
+        if (textureHandle[0] == 0) {
+            return 0;
+        }
+
+        final ByteBuffer data = ByteBuffer.allocateDirect(pixels.length);
+        data.put(pixels).position(0);
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        // The rows aren't a power of two high. No mipmaps and clamping, as OpenGL ES 2.0 needs for that.
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        // A row is 768 bytes, so the default unpack alignment of 4 fits.
+        gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGB, SIZE, colormaps.length, 0, GLES20.GL_RGB,
+                GLES20.GL_UNSIGNED_BYTE, data);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+        return textureHandle[0];
+    }
+
+    /**
+     * @return r, g, b per texel, a row per colormap. Not to be modified.
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,136 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+/**
+ * Builds the mip levels of an image on the CPU with a 2x2 box filter, and picks the cheapest uncompressed layout of its
+ * pixels. The pixels are tightly packed bytes, 1 to 4 channels per pixel.
+ */
+public final class MipChain {
+    /**
+     * Opaque and gray: luminance only.
+     */
+    public static final int LUMINANCE = 1;
+    /**
+     * Opaque: r, g, b.
+     */
+    public static final int RGB = 3;
+    /**
+     * r, g, b, a.
+     */
+    public static final int RGBA = 4;
+
+    private MipChain() {
+    }
+
+    /**
+     * @return the number of levels of a full mip chain down to 1x1.
+     */
+    public static int getLevels(int width, int height) {
+        int levels = 1;
+        for (int size = Math.max(width, height); size > 1; size >>= 1) {
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * @return the width or height {@code size} at the {@code level}.
+     */
+    public static int getSize(int size, int level) {
+        return Math.max(1, size >> level);
+    }
+
+    public static boolean isPowerOfTwo(int size) {
+        return size > 0 && (size & (size - 1)) == 0;
+    }
+
+    /**
+     * @param argb the pixels as ARGB ints, e.g. from {@code Bitmap.getPixels}
+     * @return the fewest channels, which keep the pixels: {@link #LUMINANCE}, {@link #RGB} or {@link #RGBA}.
+     */
+    public static int getChannels(int[] argb) {
+        boolean gray = true;
+        for (int pixel : argb) {
+            if (pixel >>> 24 != 0xFF) {
+                return RGBA;
+            }
+            final int r = (pixel >> 16) & 0xFF;
+            gray &= r == ((pixel >> 8) & 0xFF) && r == (pixel & 0xFF);
+        }
+        return gray ? LUMINANCE : RGB;
+    }
+
+    /**
+     * @param argb     the pixels as ARGB ints
+     * @param channels {@link #LUMINANCE}, {@link #RGB} or {@link #RGBA}
+     * @return the pixels as tightly packed bytes: l (the average of r, g and b), r g b or r g b a.
+     */
+    public static byte[] toBytes(int[] argb, int channels) {
+        final byte[] pixels = new byte[argb.length * channels];
+        for (int i = 0; i < argb.length; i++) {
+            final int pixel = argb[i];
+            if (channels == LUMINANCE) {
+                pixels[i] = (byte) ((((pixel >> 16) & 0xFF) + ((pixel >> 8) & 0xFF) + (pixel & 0xFF) + 1) / 3);
+                continue;
+            }
+            pixels[i * channels] = (byte) (pixel >> 16);
+            pixels[i * channels + 1] = (byte) (pixel >> 8);
+            pixels[i * channels + 2] = (byte) pixel;
+            if (channels == RGBA) {
+                pixels[i * channels + 3] = (byte) (pixel >>> 24);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Halves the image. Every pixel is the average of the 2x2 pixels it covers; an axis of 1 pixel stays.
+     *
+     * @param pixels   tightly packed pixels
+     * @param width
+     * @param height
+     * @param channels bytes per pixel
+     * @return the pixels of the next level.
+     */
+    public static byte[] downsample(byte[] pixels, int width, int height, int channels) {
+        final int nextWidth = getSize(width, 1);
+        final int nextHeight = getSize(height, 1);
+        final byte[] next = new byte[nextWidth * nextHeight * channels];
+
+        for (int y = 0; y < nextHeight; y++) {
+            final int row0 = Math.min(2 * y, height - 1) * width;
+            final int row1 = Math.min(2 * y + 1, height - 1) * width;
+            for (int x = 0; x < nextWidth; x++) {
+                final int column0 = Math.min(2 * x, width - 1);
+                final int column1 = Math.min(2 * x + 1, width - 1);
+                for (int c = 0; c < channels; c++) {
+                    final int sum = (pixels[(row0 + column0) * channels + c] & 0xFF)
+                            + (pixels[(row0 + column1) * channels + c] & 0xFF)
+                            + (pixels[(row1 + column0) * channels + c] & 0xFF)
+                            + (pixels[(row1 + column1) * channels + c] & 0xFF);
+                    // Rounded.
+                    next[(y * nextWidth + x) * channels + c] = (byte) ((sum + 2) >> 2);
+                }
+            }
+        }
+
+        return next;
+    }
+
+    /**
+     * Builds the full mip chain.
+     *
+     * @param pixels   tightly packed pixels of level 0
+     * @param width
+     * @param height
+     * @param channels bytes per pixel
+     * @return the pixels per level, starting with the given ones.
+     */
+    public static byte[][] build(byte[] pixels, int width, int height, int channels) {
+        final byte[][] levels = new byte[getLevels(width, height)][];
+        levels[0] = pixels;
+        for (int level = 1; level < levels.length; level++) {
+            levels[level] = downsample(levels[level - 1], getSize(width, level - 1), getSize(height, level - 1), channels);
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,339 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs 2D textures into one or a few atlases, so that the geometry using them can be drawn with the same texture
+ * bound. Every texture gets a cell of a power of two size. Its image fills the cell but a border of {@link #PADDING}
+ * pixels, which continues the image (wrapping or clamping its edges), so that the bilinear filter doesn't bleed into
+ * the neighbours. The cells are packed on shelves, the tallest first.
+ * <p>
+ * The image and its border are aligned to {@link #PADDING}, so the mip levels up to {@link #CLEAN_LEVELS} average only
+ * pixels of their own texture. The smaller levels mix the neighbours, which only shows far away.
+ */
+public class TextureAtlas {
+    /**
+     * Border around every image in pixels of level 0.
+     */
+    public static final int PADDING = 16;
+    /**
+     * Mip levels, which don't bleed: log2 of the {@link #PADDING}.
+     */
+    public static final int CLEAN_LEVELS = 4;
+    /**
+     * The smallest cell, so that the image keeps at least twice the padding.
+     */
+    private static final int MIN_CELL_SIZE = 4 * PADDING;
+    /**
+     * Color between the cells. Opaque, so that an atlas of opaque images can drop the alpha channel.
+     */
+    private static final int BACKGROUND = 0xFF000000;
+
+    /**
+     * Where a texture ended up.
+     */
+    public static final class Region {
+        private final int atlas;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final int atlasWidth;
+        private final int atlasHeight;
+
+        Region(int atlas, int x, int y, int width, int height, int atlasWidth, int atlasHeight) {
+            this.atlas = atlas;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.atlasWidth = atlasWidth;
+            this.atlasHeight = atlasHeight;
+        }
+
+        /**
+         * @return the number of the atlas holding the texture.
+         */
+        public int getAtlas() {
+            return atlas;
+        }
+
+        /**
+         * @return the left edge of the image in the atlas in pixels, without the padding.
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * @return the top edge of the image in the atlas in pixels (the first row is t = 0), without the padding.
+         */
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Maps the texel {@code s} of the texture to the atlas.
+         */
+        public float mapS(float s) {
+            return (x + s * width) / atlasWidth;
+        }
+
+        /**
+         * Maps the texel {@code t} of the texture to the atlas.
+         */
+        public float mapT(float t) {
+            return (y + t * height) / atlasHeight;
+        }
+    }
+
+    private final int[] sourceWidths;
+    private final int[] sourceHeights;
+    private final Region[] regions;
+    private final int[] atlasWidths;
+    private final int[] atlasHeights;
+
+    private TextureAtlas(int[] sourceWidths, int[] sourceHeights, Region[] regions, int[] atlasWidths, int[] atlasHeights) {
+        this.sourceWidths = sourceWidths;
+        this.sourceHeights = sourceHeights;
+        this.regions = regions;
+        this.atlasWidths = atlasWidths;
+        this.atlasHeights = atlasHeights;
+    }
+
+    /**
+     * Lays out the textures of the given sizes. Opens another atlas for the textures, which don't fit into one of
+     * {@code maxSize}. Images larger than an atlas are scaled down.
+     *
+     * @param widths  the widths of the textures
+     * @param heights the heights of the textures
+     * @param maxSize the largest width and height of an atlas, a power of two (e.g. {@code GL_MAX_TEXTURE_SIZE})
+     * @return the layout
+     */
+    public static TextureAtlas pack(int[] widths, int[] heights, int maxSize) {
+        if (!MipChain.isPowerOfTwo(maxSize) || maxSize < MIN_CELL_SIZE) {
+            throw new RuntimeException("Atlases of " + maxSize + " pixels aren't supported.");
+        }
+
+        final int textures = widths.length;
+        final int[] cellWidths = new int[textures];
+        final int[] cellHeights = new int[textures];
+        final List<Integer> remaining = new ArrayList<>();
+        for (int i = 0; i < textures; i++) {
+            cellWidths[i] = getCellSize(widths[i], maxSize);
+            cellHeights[i] = getCellSize(heights[i], maxSize);
+            remaining.add(i);
+        }
+        // The tallest first, then the widest. Stable, so the order of the textures breaks the ties.
+        Collections.sort(remaining, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (cellHeights[a] != cellHeights[b]) {
+                    return cellHeights[b] - cellHeights[a];
+                }
+                return cellWidths[b] - cellWidths[a];
+            }
+        });
+
+        final Region[] regions = new Region[textures];
+        final List<int[]> atlasSizes = new ArrayList<>();
+        final int[] cellX = new int[textures];
+        final int[] cellY = new int[textures];
+        while (!remaining.isEmpty()) {
+            // Grow the atlas until the rest fits or it can't grow anymore.
+            int width = cellWidths[remaining.get(0)];
+            int height = cellHeights[remaining.get(0)];
+            while (packShelves(remaining, cellWidths, cellHeights, width, height, cellX, cellY).size() < remaining.size()
+                    && (width < maxSize || height < maxSize)) {
+                if (width <= height && width < maxSize || height == maxSize) {
+                    width *= 2;
+                } else {
+                    height *= 2;
+                }
+            }
+
+            final List<Integer> packed = packShelves(remaining, cellWidths, cellHeights, width, height, cellX, cellY);
+            // Drop the unused space.
+            int usedWidth = 0;
+            int usedHeight = 0;
+            for (int i : packed) {
+                usedWidth = Math.max(usedWidth, cellX[i] + cellWidths[i]);
+                usedHeight = Math.max(usedHeight, cellY[i] + cellHeights[i]);
+            }
+            width = nextPowerOfTwo(usedWidth);
+            height = nextPowerOfTwo(usedHeight);
+
+            final int atlas = atlasSizes.size();
+            atlasSizes.add(new int[]{width, height});
+            for (int i : packed) {
+                regions[i] = new Region(atlas, cellX[i] + PADDING, cellY[i] + PADDING,
+                        cellWidths[i] - 2 * PADDING, cellHeights[i] - 2 * PADDING, width, height);
+            }
+            remaining.removeAll(packed);
+        }
+
+        final int[] atlasWidths = new int[atlasSizes.size()];
+        final int[] atlasHeights = new int[atlasSizes.size()];
+        for (int atlas = 0; atlas < atlasWidths.length; atlas++) {
+            atlasWidths[atlas] = atlasSizes.get(atlas)[0];
+            atlasHeights[atlas] = atlasSizes.get(atlas)[1];
+        }
+        return new TextureAtlas(widths.clone(), heights.clone(), regions, atlasWidths, atlasHeights);
+    }
+
+    /**
+     * Places the {@code cells} in rows from the top left, as long as they fit.
+     *
+     * @return the cells placed, their positions are stored in {@code cellX} and {@code cellY}.
+     */
+    private static List<Integer> packShelves(List<Integer> cells, int[] cellWidths, int[] cellHeights, int width, int height,
+                                             int[] cellX, int[] cellY) {
+        final List<Integer> packed = new ArrayList<>();
+        int shelfY = 0;
+        int shelfHeight = 0;
+        int x = 0;
+        for (int i : cells) {
+            if (x + cellWidths[i] > width) {
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+                x = 0;
+            }
+            if (cellWidths[i] > width || shelfY + cellHeights[i] > height) {
+                // Left for the next atlas.
+                continue;
+            }
+
+            cellX[i] = x;
+            cellY[i] = shelfY;
+            x += cellWidths[i];
+            shelfHeight = Math.max(shelfHeight, cellHeights[i]);
+            packed.add(i);
+        }
+        return packed;
+    }
+
+    /**
+     * @return the cell for an image of {@code size} pixels: the power of two holding it, at least
+     * {@link #MIN_CELL_SIZE} and at most {@code maxSize}.
+     */
+    private static int getCellSize(int size, int maxSize) {
+        return Math.min(maxSize, Math.max(MIN_CELL_SIZE, nextPowerOfTwo(size)));
+    }
+
+    private static int nextPowerOfTwo(int size) {
+        int powerOfTwo = 1;
+        while (powerOfTwo < size) {
+            powerOfTwo <<= 1;
+        }
+        return powerOfTwo;
+    }
+
+    /**
+     * Draws the images into an atlas. Every image is resampled bilinearly to its region and continued into the
+     * padding: repeating textures wrap around, the others clamp to their edges.
+     *
+     * @param atlas   the number of the atlas
+     * @param images  the ARGB pixels of every texture, row by row. Only the ones in the {@code atlas} are read.
+     * @param repeats whether a texture repeats, i.e. its texels leave [0; 1]
+     * @return the ARGB pixels of the atlas.
+     */
+    public int[] compose(int atlas, int[][] images, boolean[] repeats) {
+        final int width = atlasWidths[atlas];
+        final int[] pixels = new int[width * atlasHeights[atlas]];
+        Arrays.fill(pixels, BACKGROUND);
+
+        for (int i = 0; i < regions.length; i++) {
+            final Region region = regions[i];
+            if (region.atlas != atlas) {
+                continue;
+            }
+
+            final float scaleX = (float) sourceWidths[i] / region.width;
+            final float scaleY = (float) sourceHeights[i] / region.height;
+            for (int y = region.y - PADDING; y < region.y + region.height + PADDING; y++) {
+                final float sourceY = (y - region.y + .5f) * scaleY - .5f;
+                for (int x = region.x - PADDING; x < region.x + region.width + PADDING; x++) {
+                    final float sourceX = (x - region.x + .5f) * scaleX - .5f;
+                    pixels[y * width + x] = sample(images[i], sourceWidths[i], sourceHeights[i], sourceX, sourceY, repeats[i]);
+                }
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * @return the bilinear interpolation of the four pixels around ({@code x}, {@code y}), channel by channel.
+     */
+    private static int sample(int[] image, int width, int height, float x, float y, boolean repeat) {
+        final int x0 = (int) Math.floor(x);
+        final int y0 = (int) Math.floor(y);
+        final float fx = x - x0;
+        final float fy = y - y0;
+
+        final int left = address(x0, width, repeat);
+        final int right = address(x0 + 1, width, repeat);
+        final int top = address(y0, height, repeat) * width;
+        final int bottom = address(y0 + 1, height, repeat) * width;
+        final int topLeft = image[top + left];
+        final int topRight = image[top + right];
+        final int bottomLeft = image[bottom + left];
+        final int bottomRight = image[bottom + right];
+
+        int pixel = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final float upper = channel(topLeft, shift) + (channel(topRight, shift) - channel(topLeft, shift)) * fx;
+            final float lower = channel(bottomLeft, shift) + (channel(bottomRight, shift) - channel(bottomLeft, shift)) * fx;
+            pixel |= Math.round(upper + (lower - upper) * fy) << shift;
+        }
+        return pixel;
+    }
+
+    private static int channel(int pixel, int shift) {
+        return (pixel >>> shift) & 0xFF;
+    }
+
+    /**
+     * @return the pixel {@code i} of a row or a column of {@code size} pixels, wrapped or clamped.
+     */
+    private static int address(int i, int size, boolean repeat) {
+        if (repeat) {
+            return ((i % size) + size) % size;
+        }
+        return Math.max(0, Math.min(size - 1, i));
+    }
+
+    /**
+     * @return the number of atlases.
+     */
+    public int getAtlases() {
+        return atlasWidths.length;
+    }
+
+    public int getWidth(int atlas) {
+        return atlasWidths[atlas];
+    }
+
+    public int getHeight(int atlas) {
+        return atlasHeights[atlas];
+    }
+
+    /**
+     * @return the region of the texture {@code texture}, in the order given to {@link #pack(int[], int[], int)}.
+     */
+    public Region getRegion(int texture) {
+        return regions[texture];
+    }
+}
@@ -0,0 +1,477 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import android.opengl.GLES20;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLApi;
+
+/**
+ * A 2D texture with its mip chain in the KTX 1.1 container: a fixed size header with the OpenGL formats and the size,
+ * a key/value block and the levels, each prefixed by its size in bytes. The rows of uncompressed levels are padded to
+ * 4 bytes, which is the default unpack alignment, so every level can be handed to OpenGL as it is.
+ * <p>
+ * Files written by this class store the version of their source in the key/value block, so that a cache file can be
+ * told from a stale one. Files made by other tools (e.g. shipped in the assets) don't need it.
+ *
+ * @see <a href="https://www.khronos.org/opengles/sdk/tools/KTX/file_format_spec/">KTX file format</a>
+ */
+public class TextureFile {
+    /**
+     * Extension of the texture files.
+     */
+    public static final String EXTENSION = ".ktx";
+    /**
+     * The internal format of ETC1 compressed textures (OES_compressed_ETC1_RGB8_texture).
+     */
+    public static final int GL_ETC1_RGB8_OES = 0x8D64;
+    /**
+     * Size of an ETC1 block of 4x4 pixels in bytes.
+     */
+    public static final int ETC1_BLOCK_SIZE = 8;
+
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int ENDIANNESS = 0x04030201;
+    /**
+     * The key under which the version of the source is stored.
+     */
+    private static final String SOURCE_STAMP_KEY = "cdv.sourceStamp";
+
+    // Header offsets.
+    private static final int OFFSET_ENDIANNESS = 12;
+    private static final int OFFSET_GL_TYPE = 16;
+    private static final int OFFSET_GL_TYPE_SIZE = 20;
+    private static final int OFFSET_GL_FORMAT = 24;
+    private static final int OFFSET_GL_INTERNAL_FORMAT = 28;
+    private static final int OFFSET_GL_BASE_INTERNAL_FORMAT = 32;
+    private static final int OFFSET_WIDTH = 36;
+    private static final int OFFSET_HEIGHT = 40;
+    private static final int OFFSET_DEPTH = 44;
+    private static final int OFFSET_ARRAY_ELEMENTS = 48;
+    private static final int OFFSET_FACES = 52;
+    private static final int OFFSET_LEVELS = 56;
+    private static final int OFFSET_KEY_VALUE_BYTES = 60;
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Header, key/value block and levels. Either a direct buffer or a read-only mapping of the file.
+     */
+    private final ByteBuffer data;
+    /**
+     * Position of the data of every level, behind its size.
+     */
+    private final int[] levelOffsets;
+    private final int[] levelSizes;
+
+    private TextureFile(ByteBuffer data, int[] levelOffsets, int[] levelSizes) {
+        this.data = data;
+        this.levelOffsets = levelOffsets;
+        this.levelSizes = levelSizes;
+    }
+
+    /**
+     * Allocates an empty texture to be filled level by level.
+     *
+     * @param glType           {@link GLES20#GL_UNSIGNED_BYTE} or 0 for a compressed texture
+     * @param glFormat         {@link GLES20#GL_LUMINANCE}, {@link GLES20#GL_RGB} or {@link GLES20#GL_RGBA}, 0 for a
+     *                         compressed texture
+     * @param glInternalFormat the same as the {@code glFormat} or {@link #GL_ETC1_RGB8_OES}
+     * @param width
+     * @param height
+     * @param levels           number of mip levels, at most {@link MipChain#getLevels(int, int)}
+     * @param sourceStamp      identifies the version of the source the texture is built from
+     * @return a writable texture backed by a direct buffer
+     */
+    public static TextureFile allocate(int glType, int glFormat, int glInternalFormat, int width, int height, int levels, long sourceStamp) {
+        if (levels < 1 || levels > MipChain.getLevels(width, height)) {
+            throw new RuntimeException("A texture of " + width + "x" + height + " can't have " + levels + " levels.");
+        }
+
+        final byte[] key = (SOURCE_STAMP_KEY + '\0').getBytes();
+        final int keyAndValueSize = key.length + 8;
+        final int keyValueBytes = align4(4 + keyAndValueSize);
+
+        final int[] levelSizes = new int[levels];
+        final int[] levelOffsets = new int[levels];
+        int size = HEADER_SIZE + keyValueBytes;
+        for (int level = 0; level < levels; level++) {
+            levelSizes[level] = getImageSize(glInternalFormat, MipChain.getSize(width, level), MipChain.getSize(height, level));
+            levelOffsets[level] = size + 4;
+            size += 4 + align4(levelSizes[level]);
+        }
+
+        final ByteBuffer data = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        data.put(IDENTIFIER);
+        data.putInt(OFFSET_ENDIANNESS, ENDIANNESS);
+        data.putInt(OFFSET_GL_TYPE, glType);
+        data.putInt(OFFSET_GL_TYPE_SIZE, 1);
+        data.putInt(OFFSET_GL_FORMAT, glFormat);
+        data.putInt(OFFSET_GL_INTERNAL_FORMAT, glInternalFormat);
+        data.putInt(OFFSET_GL_BASE_INTERNAL_FORMAT, glInternalFormat == GL_ETC1_RGB8_OES ? GLES20.GL_RGB : glInternalFormat);
+        data.putInt(OFFSET_WIDTH, width);
+        data.putInt(OFFSET_HEIGHT, height);
+        data.putInt(OFFSET_DEPTH, 0);
+        data.putInt(OFFSET_ARRAY_ELEMENTS, 0);
+        data.putInt(OFFSET_FACES, 1);
+        data.putInt(OFFSET_LEVELS, levels);
+        data.putInt(OFFSET_KEY_VALUE_BYTES, keyValueBytes);
+
+        data.position(HEADER_SIZE);
+        data.putInt(keyAndValueSize);
+        data.put(key);
+        data.putLong(sourceStamp);
+        for (int level = 0; level < levels; level++) {
+            data.putInt(levelOffsets[level] - 4, levelSizes[level]);
+        }
+        data.position(0);
+
+        return new TextureFile(data, levelOffsets, levelSizes);
+    }
+
+    /**
+     * Maps a cached texture into memory.
+     *
+     * @param file        the cache file
+     * @param sourceStamp expected version of the source
+     * @return the mapped texture or null, if there is no valid cache for the given {@code sourceStamp}
+     * @throws IOException
+     */
+    public static TextureFile map(File file, long sourceStamp) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed.
+            final TextureFile textureFile = parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (textureFile == null || textureFile.getSourceStamp() != sourceStamp) {
+                return null;
+            }
+            return textureFile;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads a texture, e.g. one shipped in the assets.
+     *
+     * @param inputStream is read to the end, but not closed
+     * @return the texture or null, if it isn't a valid KTX file of a 2D texture
+     * @throws IOException
+     */
+    public static TextureFile read(InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[64 * 1024];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+
+        final ByteBuffer data = ByteBuffer.allocateDirect(length);
+        data.put(bytes, 0, length).position(0);
+        return parse(data);
+    }
+
+    /**
+     * Checks the header and finds the levels.
+     *
+     * @return the texture or null, if the {@code data} isn't a valid KTX file of a 2D texture.
+     */
+    private static TextureFile parse(ByteBuffer data) {
+        if (data.capacity() < HEADER_SIZE) {
+            return null;
+        }
+        for (int i = 0; i < IDENTIFIER.length; i++) {
+            if (data.get(i) != IDENTIFIER[i]) {
+                return null;
+            }
+        }
+        // The writer stores the header in its byte order. The data is bytes, so only the header needs to be swapped.
+        data.order(ByteOrder.BIG_ENDIAN);
+        if (data.getInt(OFFSET_ENDIANNESS) != ENDIANNESS) {
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.getInt(OFFSET_ENDIANNESS) != ENDIANNESS) {
+                return null;
+            }
+        }
+
+        final int levels = Math.max(1, data.getInt(OFFSET_LEVELS));
+        if (data.getInt(OFFSET_GL_TYPE_SIZE) != 1
+                || data.getInt(OFFSET_DEPTH) != 0
+                || data.getInt(OFFSET_ARRAY_ELEMENTS) != 0
+                || data.getInt(OFFSET_FACES) != 1
+                || levels > MipChain.getLevels(data.getInt(OFFSET_WIDTH), data.getInt(OFFSET_HEIGHT))) {
+            return null;
+        }
+
+        final int[] levelOffsets = new int[levels];
+        final int[] levelSizes = new int[levels];
+        long offset = HEADER_SIZE + (data.getInt(OFFSET_KEY_VALUE_BYTES) & 0xFFFFFFFFL);
+        for (int level = 0; level < levels; level++) {
+            if (offset + 4 > data.capacity()) {
+                return null;
+            }
+            levelSizes[level] = data.getInt((int) offset);
+            levelOffsets[level] = (int) offset + 4;
+            offset += 4 + align4(levelSizes[level]);
+            if (levelSizes[level] < 0 || offset > data.capacity()) {
+                return null;
+            }
+        }
+
+        return new TextureFile(data, levelOffsets, levelSizes);
+    }
+
+    /**
+     * Writes the texture to the {@code file}. Writes to a temporary file first, so that a crash never leaves a
+     * half-written cache behind.
+     *
+     * @param file the cache file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outputStream = new FileOutputStream(tmpFile);
+        try {
+            ByteBuffer content = data.duplicate();
+            content.clear();
+            FileChannel channel = outputStream.getChannel();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Could not move " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * Fills an uncompressed level with tightly packed pixels, padding the rows.
+     *
+     * @param level
+     * @param pixels {@link #getBytesPerPixel()} bytes per pixel, row by row
+     */
+    public void putLevel(int level, byte[] pixels) {
+        final int bytesPerPixel = getBytesPerPixel();
+        if (bytesPerPixel == 0) {
+            throw new RuntimeException("Compressed levels can't be filled with pixels.");
+        }
+
+        final int width = getWidth(level);
+        final int height = getHeight(level);
+        final int rowBytes = width * bytesPerPixel;
+        final int paddedRowBytes = align4(rowBytes);
+        final ByteBuffer levelData = getLevelData(level);
+        for (int row = 0; row < height; row++) {
+            levelData.position(row * paddedRowBytes);
+            levelData.put(pixels, row * rowBytes, rowBytes);
+        }
+    }
+
+    /**
+     * Uploads all the levels into a new texture. Generates the mip chain on the GPU, if the file holds an uncompressed
+     * level 0 only and the size allows mipmapping (OpenGL ES 2.0 needs a power of two). Must be called on the GL thread.
+     *
+     * @param gl
+     * @return the texture handle or 0, if the upload failed.
+     */
+    public int upload(GLApi gl) {
+        final int[] textureHandle = new int[1];
+        gl.glGenTextures(1, textureHandle, 0);
+        if (textureHandle[0] == 0) {
+            return 0;
+        }
+
+        final boolean generateMipmaps = needsGeneratedMipmaps();
+        final boolean mipmapped = getLevels() > 1 || generateMipmaps;
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        // Trilinear filtering, if there are mipmaps.
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, mipmapped ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+
+        for (int level = 0; level < getLevels(); level++) {
+            if (isCompressed()) {
+                gl.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level, getGlInternalFormat(), getWidth(level), getHeight(level), 0,
+                        levelSizes[level], getLevelData(level));
+            } else {
+                // OpenGL ES 2.0 wants the internal format to be the format.
+                gl.glTexImage2D(GLES20.GL_TEXTURE_2D, level, getGlFormat(), getWidth(level), getHeight(level), 0,
+                        getGlFormat(), getGlType(), getLevelData(level));
+            }
+        }
+        if (generateMipmaps) {
+            gl.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        }
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        return textureHandle[0];
+    }
+
+    /**
+     * @return whether {@link #upload(GLApi)} lets the GPU generate the mip chain.
+     */
+    public boolean needsGeneratedMipmaps() {
+        return getLevels() == 1 && !isCompressed() && MipChain.isPowerOfTwo(getWidth(0)) && MipChain.isPowerOfTwo(getHeight(0))
+                && MipChain.getLevels(getWidth(0), getHeight(0)) > 1;
+    }
+
+    /**
+     * @return the size of the texture in the GPU memory in bytes, including the generated mip levels.
+     */
+    public int getGpuBytes() {
+        int bytes = 0;
+        for (int size : levelSizes) {
+            bytes += size;
+        }
+        if (needsGeneratedMipmaps()) {
+            for (int level = 1; level < MipChain.getLevels(getWidth(0), getHeight(0)); level++) {
+                bytes += getImageSize(getGlInternalFormat(), getWidth(level), getHeight(level));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the size of a level of {@code width} x {@code height} pixels in the {@code glInternalFormat} in bytes.
+     */
+    public static int getImageSize(int glInternalFormat, int width, int height) {
+        if (glInternalFormat == GL_ETC1_RGB8_OES) {
+            return ((width + 3) / 4) * ((height + 3) / 4) * ETC1_BLOCK_SIZE;
+        }
+        return align4(width * getBytesPerPixel(glInternalFormat)) * height;
+    }
+
+    private static int getBytesPerPixel(int glFormat) {
+        switch (glFormat) {
+            case GLES20.GL_LUMINANCE:
+            case GLES20.GL_ALPHA:
+                return 1;
+            case GLES20.GL_LUMINANCE_ALPHA:
+                return 2;
+            case GLES20.GL_RGB:
+                return 3;
+            case GLES20.GL_RGBA:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static int align4(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    /**
+     * @return the version of the source or 0, if the file doesn't tell.
+     */
+    public long getSourceStamp() {
+        final int keyValueEnd = HEADER_SIZE + data.getInt(OFFSET_KEY_VALUE_BYTES);
+        final byte[] key = (SOURCE_STAMP_KEY + '\0').getBytes();
+        int offset = HEADER_SIZE;
+        while (offset + 4 <= keyValueEnd) {
+            final int keyAndValueSize = data.getInt(offset);
+            if (keyAndValueSize == key.length + 8 && offset + 4 + keyAndValueSize <= keyValueEnd) {
+                boolean matches = true;
+                for (int i = 0; i < key.length && matches; i++) {
+                    matches = data.get(offset + 4 + i) == key[i];
+                }
+                if (matches) {
+                    return data.getLong(offset + 4 + key.length);
+                }
+            }
+            offset += 4 + align4(Math.max(keyAndValueSize, 0));
+        }
+        return 0;
+    }
+
+    /**
+     * @return a view of the data of the {@code level}, which is writable, if the file is.
+     */
+    public ByteBuffer getLevelData(int level) {
+        ByteBuffer duplicate = data.duplicate();
+        duplicate.position(levelOffsets[level]);
+        duplicate.limit(levelOffsets[level] + levelSizes[level]);
+        return duplicate.slice().order(ByteOrder.nativeOrder());
+    }
+
+    public int getLevelSize(int level) {
+        return levelSizes[level];
+    }
+
+    public int getLevels() {
+        return levelOffsets.length;
+    }
+
+    public int getWidth(int level) {
+        return MipChain.getSize(data.getInt(OFFSET_WIDTH), level);
+    }
+
+    public int getHeight(int level) {
+        return MipChain.getSize(data.getInt(OFFSET_HEIGHT), level);
+    }
+
+    public boolean isCompressed() {
+        return getGlType() == 0;
+    }
+
+    public int getGlType() {
+        return data.getInt(OFFSET_GL_TYPE);
+    }
+
+    public int getGlFormat() {
+        return data.getInt(OFFSET_GL_FORMAT);
+    }
+
+    public int getGlInternalFormat() {
+        return data.getInt(OFFSET_GL_INTERNAL_FORMAT);
+    }
+
+    /**
+     * @return the format for the logs.
+     */
+    public String getFormatName() {
+        switch (getGlInternalFormat()) {
+            case GL_ETC1_RGB8_OES:
+                return "ETC1";
+            case GLES20.GL_LUMINANCE:
+                return "LUMINANCE";
+            case GLES20.GL_LUMINANCE_ALPHA:
+                return "LUMINANCE_ALPHA";
+            case GLES20.GL_ALPHA:
+                return "ALPHA";
+            case GLES20.GL_RGB:
+                return "RGB";
+            case GLES20.GL_RGBA:
+                return "RGBA";
+            default:
+                return "0x" + Integer.toHexString(getGlInternalFormat());
+        }
+    }
+
+    /**
+     * @return the size of an uncompressed pixel in bytes, 0 for a compressed texture.
+     */
+    public int getBytesPerPixel() {
+        return isCompressed() ? 0 : getBytesPerPixel(getGlFormat());
+    }
+}
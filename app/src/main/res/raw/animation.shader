@@ -0,0 +1,11 @@
+// Animates the values of a unit from the ones before the last data update to the latest ones, see Easing.
+
+uniform float u_Time;               // Seconds since the last data update.
+uniform float u_AnimationDuration;  // Seconds an animation takes.
+uniform vec3 u_Easing;              // The easing curve: the coefficients of t, t^2 and t^3.
+
+vec4 animate(vec4 from, vec4 to) {
+    // The elapsed part of the animation.
+    float t = clamp(u_Time / u_AnimationDuration, 0.0, 1.0);
+    return mix(from, to, dot(u_Easing, vec3(t, t * t, t * t * t)));
+}
@@ -0,0 +1,11 @@
+// Colors a unit up to its fill level with the colormap, the rest is painted dark gray.
+
+uniform sampler2D u_Colormap;       // The colormaps, a row each, see ColormapTexture.
+uniform float u_ColormapRow;        // V coordinate of the row of the colormap in use.
+
+// fill: the U coordinate in the colormap (x), the fill level (y) and the normalized height (z).
+vec4 fillColor(vec3 fill) {
+    vec4 color = texture2D(u_Colormap, vec2(fill.x, u_ColormapRow));
+    // The color below the fill level, dark gray above it. Without a branch.
+    return mix(color, vec4(.5, .5, .5, 1.0), step(fill.y, fill.z));
+}
@@ -0,0 +1,9 @@
+// The height in a unit relative to its bounds, which the fragment shader compares with the fill level, see colormap.
+
+uniform float u_HighestY;           // The highest Y coordinate of the model.
+uniform float u_LowestY;            // The lowest Y coordinate of the model.
+
+// Y coordinate normalized with respect to u_LowestY and u_HighestY.
+float normalizedHeight(float y) {
+    return (y - u_LowestY) / (u_HighestY - u_LowestY);
+}
@@ -1,30 +1,44 @@
-// Shaders from these files should be manualy copied to the corresponding variables (vertexShader and fragmentShader respectively)
+// Textures and lights a model. With FILL_LEVEL, the color comes from the colormap, see colormap. With VERTEX_LIGHTING,
+// the lighting comes from the vertex shader.
 
 // Set the default precision to medium. We don't need as high of a
 // precision in the fragment shader.
 precision mediump float;
 
+#ifdef FILL_LEVEL
+#include "colormap"
+#endif
+#ifndef VERTEX_LIGHTING
+#include "lighting"
+#endif
+
 uniform sampler2D u_Texture;        // The input texture.
-uniform vec3 u_LightPos;       	    // The position of the light in eye space.
 
 varying vec2 v_TexCoordinate;       // Interpolated texture coordinate per fragment.
+#ifdef FILL_LEVEL
+varying vec3 v_Fill;                // The U coordinate in the colormap, the fill level and the normalized height.
+#else
+varying vec4 v_Color;               // This is the color from the vertex shader interpolated across the triangle.
+#endif
+#ifdef VERTEX_LIGHTING
+varying float v_Lighting;
+#else
 varying vec3 v_Position;
 varying vec3 v_Normal;
-varying vec4 v_Color;             // This is the color from the vertex shader interpolated across the
+#endif
 
-void main()                    		// The entry point for our fragment shader.
+void main()                         // The entry point for our fragment shader.
 {
-    // Get a lighting direction vector from the light to the vertex.
-    vec3 vecToLight = normalize(u_LightPos - v_Position);
-    // Distance from the point to the light source. Will be used for attenuation.
-    float distance = length(u_LightPos - v_Position);
-    // Calculate the dot product of the light vector and vertex normal. If the normal and light vector are
-    // pointing in the same direction then it will get max illumination.
-    float diffuse = max(dot(v_Normal, vecToLight), 0.1);
-    // Add attenuation.
-    diffuse = diffuse * (1.0 / (1.0 + (0.10 * distance)));
-    diffuse += 0.6;
-    //diffuse = diffuse * (1.0 / (1.0 + (0.01 * distance)));
-    // Multiply the color by the diffuse illumination level to get final output color.
-    gl_FragColor = diffuse * v_Color * texture2D(u_Texture, v_TexCoordinate);     		// Pass the color directly through the pipeline.
-}
\ No newline at end of file
+#ifdef VERTEX_LIGHTING
+    float light = v_Lighting;
+#else
+    float light = pointLighting(v_Position, v_Normal);
+#endif
+#ifdef FILL_LEVEL
+    vec4 color = fillColor(v_Fill);
+#else
+    vec4 color = v_Color;
+#endif
+    // Multiply the color by the illumination level to get final output color.
+    gl_FragColor = light * color * texture2D(u_Texture, v_TexCoordinate);
+}
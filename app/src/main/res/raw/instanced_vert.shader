@@ -0,0 +1,51 @@
+// Draws up to MAX_INSTANCES units of the same mesh at once. The mesh is replicated MAX_INSTANCES times in the vertex
+// buffer and a_InstanceId tells the copies apart. MAX_INSTANCES and QUANTIZED are defined by the
+// InstancedModelShaderProgram.
+
+#include "vertex_format"
+#include "animation"
+#include "fill_level"
+#include "metric"
+
+uniform mat4 u_ViewMatrix;          // Transforms world space to eye space.
+uniform mat4 u_ProjectionMatrix;    // Transforms eye space to clip space.
+
+uniform vec4 u_Transforms[MAX_INSTANCES];   // Per instance: the position in world space (xyz) and the rotation around Y in radians (w).
+uniform vec4 u_Values[2 * MAX_INSTANCES];   // Per instance: the temperature, the viscosity and the fill level before
+                                            // and since the last data update.
+
+attribute vec2 a_TexCoordinate;     // Per-vertex texture coordinates;
+attribute vec4 a_Position;          // Per-vertex position information we will pass in.
+attribute vec3 a_Normal;            // Per-vertex normal information we will pass in.
+attribute float a_InstanceId;       // Number of the copy of the mesh the vertex belongs to.
+
+varying vec2 v_TexCoordinate;       // This will be passed into the fragment shader.
+varying vec3 v_Position;            // This will be passed into the fragment shader.
+varying vec3 v_Normal;              // This will be passed into the fragment shader.
+varying vec3 v_Fill;                // The U coordinate in the colormap, the fill level and the normalized height.
+
+void main() {
+    int instance = int(a_InstanceId);
+    vec4 transform = u_Transforms[instance];
+    vec4 values = animate(u_Values[2 * instance], u_Values[2 * instance + 1]);
+
+    // Rotation around Y (column by column), the same as Matrix.rotateM(m, 0, angle, 0, 1, 0).
+    float s = sin(transform.w);
+    float c = cos(transform.w);
+    mat3 rotation = mat3(c, 0.0, -s,
+                         0.0, 1.0, 0.0,
+                         s, 0.0, c);
+
+    // The position in model space.
+    vec3 modelPosition = decodePosition(a_Position.xyz);
+    v_Fill = vec3(colormapCoordinate(values), values.z, normalizedHeight(modelPosition.y));
+
+    // Pass through the texture coordinates.
+    v_TexCoordinate = decodeTexel(a_TexCoordinate);
+    // Transform the normal's orientation into eye space.
+    v_Normal = vec3(u_ViewMatrix * vec4(rotation * decodeNormal(a_Normal), 0.0));
+    // Transform the vertex into world space and then into eye space.
+    vec4 position = u_ViewMatrix * vec4(rotation * modelPosition + transform.xyz, 1.0);
+    v_Position = position.xyz;
+    gl_Position = u_ProjectionMatrix * position;
+}
@@ -0,0 +1,14 @@
+// The point light at u_LightPos with attenuation, plus the ambient light.
+
+uniform vec3 u_LightPos;            // The position of the light in eye space.
+
+float pointLighting(vec3 position, vec3 normal) {
+    vec3 toLight = u_LightPos - position;
+    // Distance from the point to the light source. Will be used for attenuation.
+    float distance = length(toLight);
+    // Calculate the dot product of the light vector and vertex normal. If the normal and light vector are
+    // pointing in the same direction then it will get max illumination.
+    float diffuse = max(dot(normal, toLight / distance), 0.1);
+    // Add attenuation and the ambient light.
+    return diffuse * (1.0 / (1.0 + (0.10 * distance))) + 0.6;
+}
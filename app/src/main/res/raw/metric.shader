@@ -0,0 +1,12 @@
+// Picks the shown metric from the values of a unit and maps it onto the colormap, see Metric and ColormapTexture.
+
+const float COLORMAP_SIZE = 256.0;  // Texels per colormap, ColormapTexture.SIZE.
+
+uniform vec4 u_Metric;              // 1 for the component of the shown metric, 0 for the others.
+uniform vec2 u_MetricRange;         // The values at the start and at the end of the colormap.
+
+// The U coordinate of the metric in the colormap. The ends hit the centers of the first and the last texel.
+float colormapCoordinate(vec4 values) {
+    float value = clamp((dot(values, u_Metric) - u_MetricRange.x) / (u_MetricRange.y - u_MetricRange.x), 0.0, 1.0);
+    return (0.5 + value * (COLORMAP_SIZE - 1.0)) / COLORMAP_SIZE;
+}
@@ -1,43 +1,68 @@
-// Shaders from these files should be manualy copied to the corresponding variables (vertexShader and fragmentShader respectively)
+// Draws a model lit by a point light. The variants are picked with defines, see ModelShaderProgram:
+// FILL_LEVEL       colors the model with the colormap up to its fill level, both animated, see frag. Otherwise
+//                  a_Color is used as it is.
+// QUANTIZED        dequantizes the attributes, see vertex_format.
+// VERTEX_LIGHTING  lights the vertices instead of the fragments, see frag.
+
+#include "vertex_format"
+#ifdef FILL_LEVEL
+#include "animation"
+#include "fill_level"
+#include "metric"
+#endif
+#ifdef VERTEX_LIGHTING
+#include "lighting"
+#endif
 
 uniform mat4 u_MVPMatrix;           // A constant representing the combined model/view/projection matrix.
 uniform mat4 u_MVMatrix;            // A constant representing the combined model/view matrix.
-
-uniform float u_HighestY;         // The highest Z coordinate of a model in the eye view space.
-uniform float u_LowestY;          // The lowest Z coordinate of a model in the eye view space.
-uniform float u_FillLevel;        // fragments with Z < ( (v_Position - u_LowestZ) / (u_HighestZ - u_LowestZ) ) should be colored.
+#ifdef FILL_LEVEL
+uniform vec4 u_FromValues;          // The temperature, the viscosity and the fill level before the last data update.
+uniform vec4 u_ToValues;            // The temperature, the viscosity and the fill level since the last data update.
+#endif
 
 attribute vec2 a_TexCoordinate;     // Per-vertex texture coordinates;
-attribute vec4 a_Position;     		// Per-vertex position information we will pass in.
+attribute vec4 a_Position;          // Per-vertex position information we will pass in.
 attribute vec4 a_Color;             // Per-vertex color information we will pass in.
-attribute vec3 a_Normal;       		// Per-vertex normal information we will pass in.
+attribute vec3 a_Normal;            // Per-vertex normal information we will pass in.
 
 varying vec2 v_TexCoordinate;       // This will be passed into the fragment shader.
+#ifdef FILL_LEVEL
+varying vec3 v_Fill;                // The U coordinate in the colormap, the fill level and the normalized height.
+#else
+varying vec4 v_Color;               // This will be passed into the fragment shader.
+#endif
+#ifdef VERTEX_LIGHTING
+varying float v_Lighting;           // This will be passed into the fragment shader.
+#else
 varying vec3 v_Position;            // This will be passed into the fragment shader.
 varying vec3 v_Normal;              // This will be passed into the fragment shader.
-varying vec4 v_Color;               // This will be passed into the fragment shader.
+#endif
 
-void main() {        	            // The entry point for our vertex shader.
+void main() {                       // The entry point for our vertex shader.
+    // The position in model space.
+    vec4 position = vec4(decodePosition(a_Position.xyz), 1.0);
 
-    // Z coordinate normalized with respect to u_LowestZ and u_HighestZ.
-    float normalizedY = (a_Position.y - u_LowestY) / (u_HighestY - u_LowestY);
-    // Decide on the color according to the normalized Y component of a vertex.
-    if (normalizedY < u_FillLevel) {
-        // If less than the fill level -> apply the temperature color.
-        v_Color = a_Color;
-    } else {
-        // Else -> paint dark gray.
-        v_Color = vec4(.5, .5, .5, 1.0);
-    }
+#ifdef FILL_LEVEL
+    vec4 values = animate(u_FromValues, u_ToValues);
+    v_Fill = vec3(colormapCoordinate(values), values.z, normalizedHeight(position.y));
+#else
+    v_Color = a_Color;
+#endif
 
     // Pass through the texture coordinates.
-    v_TexCoordinate = a_TexCoordinate;
+    v_TexCoordinate = decodeTexel(a_TexCoordinate);
     // Transform the normal's orientation into eye space.
-    v_Normal = vec3(u_MVMatrix * vec4(a_Normal, 0.0));
+    vec3 normal = vec3(u_MVMatrix * vec4(decodeNormal(a_Normal), 0.0));
     // Transform the vertex into eye space.
-    v_Position = vec3(u_MVMatrix * a_Position);
+    vec3 eyePosition = vec3(u_MVMatrix * position);
+#ifdef VERTEX_LIGHTING
+    v_Lighting = pointLighting(eyePosition, normal);
+#else
+    v_Normal = normal;
+    v_Position = eyePosition;
+#endif
     // gl_Position is a special variable used to store the final position.
     // Multiply the vertex by the matrix to get the final point in normalized screen coordinates.
-    gl_Position = u_MVPMatrix * a_Position;
-
-}
\ No newline at end of file
+    gl_Position = u_MVPMatrix * position;
+}
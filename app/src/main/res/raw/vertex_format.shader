@@ -0,0 +1,34 @@
+// Gets the attributes of a mesh back, see VertexFormat. With QUANTIZED, they are scaled and offset, otherwise they are
+// floats already and passed through.
+
+#ifdef QUANTIZED
+uniform vec3 u_PositionScale;       // Dequantizes the position: a_Position * u_PositionScale + u_PositionOffset.
+uniform vec3 u_PositionOffset;
+uniform float u_NormalScale;        // Dequantizes the normal: a_Normal * u_NormalScale.
+uniform vec2 u_TexelScale;          // Dequantizes the texture coordinates: a_TexCoordinate * u_TexelScale + u_TexelOffset.
+uniform vec2 u_TexelOffset;
+#endif
+
+vec3 decodePosition(vec3 position) {
+#ifdef QUANTIZED
+    return position * u_PositionScale + u_PositionOffset;
+#else
+    return position;
+#endif
+}
+
+vec3 decodeNormal(vec3 normal) {
+#ifdef QUANTIZED
+    return normal * u_NormalScale;
+#else
+    return normal;
+#endif
+}
+
+vec2 decodeTexel(vec2 texel) {
+#ifdef QUANTIZED
+    return texel * u_TexelScale + u_TexelOffset;
+#else
+    return texel;
+#endif
+}
@@ -0,0 +1,132 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.gl;
+
+/**
+ * {@link RecordingGL}, which only counts the per-frame calls instead of recording them, so that drawing with it
+ * doesn't allocate. Creating the buffers and the programs is still recorded.
+ */
+public class CountingGL extends RecordingGL {
+    public int frameCalls;
+    public int drawCalls;
+    public int textureBinds;
+    /**
+     * Calls with the location -1 of an attribute, which the program doesn't read. Raise GL_INVALID_VALUE.
+     */
+    public int invalidAttributeCalls;
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        frameCalls++;
+        countInvalidAttribute(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        frameCalls++;
+        countInvalidAttribute(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        frameCalls++;
+        countInvalidAttribute(index);
+    }
+
+    @Override
+    public void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+        frameCalls++;
+        countInvalidAttribute(index);
+    }
+
+    private void countInvalidAttribute(int index) {
+        if (index < 0) {
+            invalidAttributeCalls++;
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        frameCalls++;
+        textureBinds++;
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        frameCalls++;
+        drawCalls++;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        frameCalls++;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        frameCalls++;
+    }
+}
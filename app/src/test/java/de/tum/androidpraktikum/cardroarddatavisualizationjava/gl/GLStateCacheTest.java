@@ -0,0 +1,139 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.gl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class GLStateCacheTest {
+    // GLES20 constants.
+    private static final int GL_FLOAT = 0x1406;
+    private static final int GL_DEPTH_TEST = 0x0B71;
+    private static final int GL_CULL_FACE = 0x0B44;
+    private static final int GL_DITHER = 0x0BD0;
+    private static final int GL_TEXTURE_2D = 0x0DE1;
+    private static final int GL_TEXTURE_CUBE_MAP = 0x8513;
+    private static final int GL_TEXTURE0 = 0x84C0;
+    private static final int GL_ARRAY_BUFFER = 0x8892;
+    private static final int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+
+    private RecordingGL recordingGL;
+    private GLStateCache gl;
+
+    @Before
+    public void setUp() {
+        recordingGL = new RecordingGL();
+        gl = new GLStateCache(recordingGL);
+    }
+
+    @Test
+    public void dropsRedundantStateChanges() {
+        // The same draw setup twice, e.g. the floor and a wall.
+        for (int i = 0; i < 2; i++) {
+            gl.glUseProgram(3);
+            gl.glBindBuffer(GL_ARRAY_BUFFER, 1);
+            gl.glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 2);
+            gl.glVertexAttribPointer(0, 3, GL_FLOAT, false, 32, 0);
+            gl.glEnableVertexAttribArray(0);
+            gl.glDisableVertexAttribArray(1);
+            gl.glActiveTexture(GL_TEXTURE0);
+            gl.glBindTexture(GL_TEXTURE_2D, 5);
+            gl.glEnable(GL_DEPTH_TEST);
+            gl.glDepthMask(true);
+        }
+
+        assertEquals(10, recordingGL.calls.size());
+        assertEquals(10, gl.getIssuedCalls());
+        assertEquals(10, gl.getSuppressedCalls());
+    }
+
+    @Test
+    public void passesOnChanges() {
+        gl.glEnable(GL_CULL_FACE);
+        gl.glDisable(GL_CULL_FACE);
+        gl.glBlendFunc(1, 0);
+        gl.glBlendFunc(1, 0x0303);
+        gl.glBindBuffer(GL_ARRAY_BUFFER, 1);
+        gl.glVertexAttribPointer(0, 3, GL_FLOAT, false, 32, 0);
+        // Same pointer into another buffer.
+        gl.glBindBuffer(GL_ARRAY_BUFFER, 2);
+        gl.glVertexAttribPointer(0, 3, GL_FLOAT, false, 32, 0);
+
+        assertEquals(8, recordingGL.calls.size());
+        assertEquals(0, gl.getSuppressedCalls());
+    }
+
+    @Test
+    public void tracksTexturesPerUnitAndTarget() {
+        gl.glActiveTexture(GL_TEXTURE0);
+        gl.glBindTexture(GL_TEXTURE_2D, 5);
+        gl.glBindTexture(GL_TEXTURE_CUBE_MAP, 5);
+        gl.glActiveTexture(GL_TEXTURE0 + 1);
+        gl.glBindTexture(GL_TEXTURE_2D, 5);
+        gl.glActiveTexture(GL_TEXTURE0);
+        recordingGL.clear();
+
+        gl.glBindTexture(GL_TEXTURE_2D, 5);
+        gl.glBindTexture(GL_TEXTURE_CUBE_MAP, 5);
+        gl.glBindTexture(GL_TEXTURE_2D, 6);
+
+        assertEquals(Arrays.asList("glBindTexture(" + GL_TEXTURE_2D + ", 6)"), recordingGL.calls);
+    }
+
+    @Test
+    public void forgetsDeletedBuffers() {
+        gl.glBindBuffer(GL_ARRAY_BUFFER, 1);
+        gl.glVertexAttribPointer(0, 3, GL_FLOAT, false, 32, 0);
+        gl.glDeleteBuffers(1, new int[]{1}, 0);
+        recordingGL.clear();
+
+        // The name may be handed out again.
+        gl.glBindBuffer(GL_ARRAY_BUFFER, 1);
+        gl.glVertexAttribPointer(0, 3, GL_FLOAT, false, 32, 0);
+        gl.glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        assertEquals(3, recordingGL.calls.size());
+    }
+
+    @Test
+    public void passesOnEverythingAfterInvalidation() {
+        gl.glUseProgram(3);
+        gl.glEnable(GL_DEPTH_TEST);
+        gl.invalidate();
+        recordingGL.clear();
+
+        gl.glUseProgram(3);
+        gl.glEnable(GL_DEPTH_TEST);
+        gl.glUseProgram(3);
+
+        assertEquals(Arrays.asList("glUseProgram(3)", "glEnable(" + GL_DEPTH_TEST + ")"), recordingGL.calls);
+    }
+
+    @Test
+    public void passesOnUntrackedCaps() {
+        gl.glEnable(GL_DITHER);
+        gl.glEnable(GL_DITHER);
+
+        assertEquals(2, recordingGL.calls.size());
+    }
+
+    @Test
+    public void countsPerFrame() {
+        gl.glUseProgram(3);
+        gl.glUseProgram(3);
+        gl.beginFrame();
+
+        assertEquals(1, gl.getLastFrameIssuedCalls());
+        assertEquals(1, gl.getLastFrameSuppressedCalls());
+        assertEquals(0, gl.getIssuedCalls());
+        assertEquals(0, gl.getSuppressedCalls());
+
+        // The state survives the frame boundary.
+        recordingGL.clear();
+        gl.glUseProgram(3);
+        assertEquals(Collections.<String>emptyList(), recordingGL.calls);
+    }
+}
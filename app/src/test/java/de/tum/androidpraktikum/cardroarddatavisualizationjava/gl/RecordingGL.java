@@ -0,0 +1,360 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.gl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fake {@link GLApi}, which records every call as a string and hands out increasing object names. Compiling and
+ * linking always succeeds; every program reports the uniforms and attributes added with {@link #addActiveUniform} and
+ * {@link #addActiveAttribute}, located at their index.
+ * <p>
+ * The binary of a program is {@link #BINARY_LENGTH} bytes holding its name. Loading a binary succeeds, unless
+ * {@link #rejectBinaries} is set.
+ */
+public class RecordingGL implements GLApi {
+    public static final int BINARY_FORMAT = 0x1234;
+    public static final int BINARY_LENGTH = 8;
+
+    public final List<String> calls = new ArrayList<>();
+    /**
+     * Whether programs loaded from a binary fail to link, like after a driver update.
+     */
+    public boolean rejectBinaries;
+    private int nextName = 1;
+    private final Set<Integer> binaryPrograms = new HashSet<>();
+
+    private final List<String> uniformNames = new ArrayList<>();
+    private final List<int[]> uniformTypes = new ArrayList<>();
+    private final List<String> attributeNames = new ArrayList<>();
+    private final List<Integer> attributeTypes = new ArrayList<>();
+
+    /**
+     * Adds a uniform reported as active by every program. The location is the number of uniforms added before.
+     */
+    public void addActiveUniform(String name, int type, int size) {
+        uniformNames.add(name);
+        uniformTypes.add(new int[]{type, size});
+    }
+
+    /**
+     * Adds an attribute reported as active by every program. The location is the number of attributes added before.
+     */
+    public void addActiveAttribute(String name, int type) {
+        attributeNames.add(name);
+        attributeTypes.add(type);
+    }
+
+    /**
+     * Forgets the recorded calls.
+     */
+    public void clear() {
+        calls.clear();
+    }
+
+    private void record(String call) {
+        calls.add(call);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++) {
+            textures[offset + i] = nextName++;
+        }
+        record("glGenTextures(" + n + ")");
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        StringBuilder call = new StringBuilder("glDeleteTextures(");
+        for (int i = 0; i < n; i++) {
+            call.append(i == 0 ? "" : ", ").append(textures[offset + i]);
+        }
+        record(call.append(")").toString());
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        record("glTexParameteri(" + target + ", " + pname + ", " + param + ")");
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        record("glTexImage2D(" + target + ", " + level + ", " + internalformat + ", " + width + ", " + height + ", " + format + ", " + type
+                + ", " + (pixels == null ? 0 : pixels.remaining()) + ")");
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+        record("glCompressedTexImage2D(" + target + ", " + level + ", " + internalformat + ", " + width + ", " + height + ", " + imageSize + ")");
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        record("glGenerateMipmap(" + target + ")");
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            buffers[offset + i] = nextName++;
+        }
+        record("glGenBuffers(" + n + ")");
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        StringBuilder call = new StringBuilder("glDeleteBuffers(");
+        for (int i = 0; i < n; i++) {
+            call.append(i == 0 ? "" : ", ").append(buffers[offset + i]);
+        }
+        record(call.append(")").toString());
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        record("glBindBuffer(" + target + ", " + buffer + ")");
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        record("glBufferData(" + target + ", " + size + ", " + usage + ")");
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        record("glEnableVertexAttribArray(" + index + ")");
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        record("glDisableVertexAttribArray(" + index + ")");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        record("glVertexAttribPointer(" + index + ", " + size + ", " + type + ", " + normalized + ", " + stride + ", " + offset + ")");
+    }
+
+    @Override
+    public void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+        record("glVertexAttrib4f(" + index + ", " + x + ", " + y + ", " + z + ", " + w + ")");
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        record("glActiveTexture(" + texture + ")");
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        record("glBindTexture(" + target + ", " + texture + ")");
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        record("glUniform1i(" + location + ", " + x + ")");
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        record("glUniform1f(" + location + ", " + x + ")");
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        record("glUniform3f(" + location + ", " + x + ", " + y + ", " + z + ")");
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        record("glUniform2f(" + location + ", " + x + ", " + y + ")");
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        record("glUniform4f(" + location + ", " + x + ", " + y + ", " + z + ", " + w + ")");
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        record("glUniform4fv(" + location + ", " + count + ")");
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        record("glUniformMatrix4fv(" + location + ", " + count + ")");
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        record("glDrawElements(" + mode + ", " + count + ", " + type + ", " + offset + ")");
+    }
+
+    @Override
+    public void glClear(int mask) {
+        record("glClear(" + mask + ")");
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        record("glEnable(" + cap + ")");
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        record("glDisable(" + cap + ")");
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        record("glBlendFunc(" + sfactor + ", " + dfactor + ")");
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        record("glDepthMask(" + flag + ")");
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        record("glCreateShader(" + type + ")");
+        return nextName++;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        record("glShaderSource(" + shader + ")");
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        record("glCompileShader(" + shader + ")");
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        params[offset] = pname == GLES20.GL_COMPILE_STATUS ? 1 : 0;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        record("glDeleteShader(" + shader + ")");
+    }
+
+    @Override
+    public int glCreateProgram() {
+        record("glCreateProgram()");
+        return nextName++;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        record("glAttachShader(" + program + ", " + shader + ")");
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader) {
+        record("glDetachShader(" + program + ", " + shader + ")");
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        record("glBindAttribLocation(" + program + ", " + index + ", " + name + ")");
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        record("glLinkProgram(" + program + ")");
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        switch (pname) {
+            case GLES20.GL_LINK_STATUS:
+                params[offset] = rejectBinaries && binaryPrograms.contains(program) ? 0 : 1;
+                break;
+            case GLES30.GL_PROGRAM_BINARY_LENGTH:
+                params[offset] = BINARY_LENGTH;
+                break;
+            case GLES20.GL_ACTIVE_UNIFORMS:
+                params[offset] = uniformNames.size();
+                break;
+            case GLES20.GL_ACTIVE_ATTRIBUTES:
+                params[offset] = attributeNames.size();
+                break;
+            default:
+                params[offset] = 0;
+        }
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return "";
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        record("glDeleteProgram(" + program + ")");
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat,
+                                   int binaryFormatOffset, Buffer binary) {
+        final ByteBuffer bytes = (ByteBuffer) binary;
+        bytes.putInt(bytes.position(), program);
+        bytes.putInt(bytes.position() + 4, program);
+        length[lengthOffset] = BINARY_LENGTH;
+        binaryFormat[binaryFormatOffset] = BINARY_FORMAT;
+        record("glGetProgramBinary(" + program + ")");
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        binaryPrograms.add(program);
+        record("glProgramBinary(" + program + ", " + binaryFormat + ", " + length + ")");
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        record("glUseProgram(" + program + ")");
+    }
+
+    @Override
+    public String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset) {
+        type[typeOffset] = uniformTypes.get(index)[0];
+        size[sizeOffset] = uniformTypes.get(index)[1];
+        // Drivers report arrays with the index of the first element.
+        return size[sizeOffset] > 1 ? uniformNames.get(index) + "[0]" : uniformNames.get(index);
+    }
+
+    @Override
+    public String glGetActiveAttrib(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset) {
+        type[typeOffset] = attributeTypes.get(index);
+        size[sizeOffset] = 1;
+        return attributeNames.get(index);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        record("glGetUniformLocation(" + name + ")");
+        return uniformNames.indexOf(name.endsWith("[0]") ? name.substring(0, name.length() - 3) : name);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        record("glGetAttribLocation(" + name + ")");
+        return attributeNames.indexOf(name);
+    }
+}
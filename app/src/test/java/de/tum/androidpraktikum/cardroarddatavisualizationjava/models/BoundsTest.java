@@ -0,0 +1,58 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BoundsTest {
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void enclosesAllTheVertices() {
+        final int vertices = 200;
+        final float[] data = new float[vertices * MeshIndexer.FLOATS_PER_VERTEX];
+        final Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextFloat() * 10.f - 3.f;
+        }
+
+        final Bounds bounds = Bounds.of(FloatBuffer.wrap(data), vertices);
+
+        for (int i = 0; i < vertices; i++) {
+            final int offset = i * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET;
+            float distanceSquared = 0.f;
+            for (int j = 0; j < 3; j++) {
+                assertTrue(data[offset + j] >= bounds.getMin()[j]);
+                assertTrue(data[offset + j] <= bounds.getMax()[j]);
+                final float d = data[offset + j] - bounds.getCenter()[j];
+                distanceSquared += d * d;
+            }
+            assertTrue((float) Math.sqrt(distanceSquared) <= bounds.getRadius() + EPSILON);
+        }
+    }
+
+    @Test
+    public void isTightAroundABox() {
+        // The corners of the box from (-1, 0, -2) to (1, 4, 2), the normals and texels in between don't count.
+        final int vertices = 8;
+        final float[] data = new float[vertices * MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < vertices; i++) {
+            final int offset = i * MeshIndexer.FLOATS_PER_VERTEX;
+            data[offset + MeshIndexer.POSITION_OFFSET] = (i & 1) == 0 ? -1.f : 1.f;
+            data[offset + MeshIndexer.POSITION_OFFSET + 1] = (i & 2) == 0 ? 0.f : 4.f;
+            data[offset + MeshIndexer.POSITION_OFFSET + 2] = (i & 4) == 0 ? -2.f : 2.f;
+            data[offset + MeshIndexer.NORMAL_OFFSET] = 100.f;
+            data[offset + MeshIndexer.TEXEL_OFFSET] = -100.f;
+        }
+
+        final Bounds bounds = Bounds.of(FloatBuffer.wrap(data), vertices);
+
+        assertArrayEquals(new float[]{-1.f, 0.f, -2.f}, bounds.getMin(), 0.f);
+        assertArrayEquals(new float[]{1.f, 4.f, 2.f}, bounds.getMax(), 0.f);
+        assertArrayEquals(new float[]{0.f, 2.f, 0.f}, bounds.getCenter(), 0.f);
+        assertEquals(3.f, bounds.getRadius(), EPSILON);
+    }
+}
@@ -0,0 +1,65 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class InstancedMeshTest {
+    @Test
+    public void replicatesVerticesWithInstanceIds() {
+        final int vertices = 3;
+        final float[] data = new float[vertices * MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+
+        final FloatBuffer replicated = InstancedMesh.replicateVertices(FloatBuffer.wrap(data), vertices, 4);
+
+        assertEquals(4 * vertices * InstancedMesh.FLOATS_PER_VERTEX, replicated.capacity());
+        for (int instance = 0; instance < 4; instance++) {
+            for (int vertex = 0; vertex < vertices; vertex++) {
+                final int offset = (instance * vertices + vertex) * InstancedMesh.FLOATS_PER_VERTEX;
+                for (int i = 0; i < MeshIndexer.FLOATS_PER_VERTEX; i++) {
+                    assertEquals(data[vertex * MeshIndexer.FLOATS_PER_VERTEX + i], replicated.get(offset + i), 0.f);
+                }
+                assertEquals(instance, replicated.get(offset + InstancedMesh.INSTANCE_ID_OFFSET), 0.f);
+            }
+        }
+    }
+
+    @Test
+    public void shiftsTheIndicesOfEveryCopy() {
+        final ShortBuffer fromShorts = InstancedMesh.replicateIndices(ShortBuffer.wrap(new short[]{0, 1, 2, 2, 1, 3}), 6, 4, 3);
+        final ShortBuffer fromInts = InstancedMesh.replicateIndices(IntBuffer.wrap(new int[]{0, 1, 2, 2, 1, 3}), 6, 4, 3);
+
+        final short[] expected = {0, 1, 2, 2, 1, 3, 4, 5, 6, 6, 5, 7, 8, 9, 10, 10, 9, 11};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], fromShorts.get(i));
+            assertEquals(expected[i], fromInts.get(i));
+        }
+    }
+
+    @Test
+    public void limitsTheInstancesToShortIndices() {
+        assertEquals(48, InstancedMesh.getMaxInstances(500, 48));
+        assertEquals(6, InstancedMesh.getMaxInstances(10000, 48));
+        assertEquals(0, InstancedMesh.getMaxInstances(70000, 48));
+    }
+
+    @Test
+    public void replicatesEveryLevelOfDetail() {
+        // A quad and a single triangle as the simplified level.
+        final ShortBuffer replicated = InstancedMesh.replicateIndices(ShortBuffer.wrap(new short[]{0, 1, 2, 2, 1, 3, 0, 1, 3}),
+                new int[]{6, 3}, 4, 2);
+
+        final short[] expected = {0, 1, 2, 2, 1, 3, 4, 5, 6, 6, 5, 7, 0, 1, 3, 4, 5, 7};
+        assertEquals(expected.length, replicated.capacity());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], replicated.get(i));
+        }
+    }
+}
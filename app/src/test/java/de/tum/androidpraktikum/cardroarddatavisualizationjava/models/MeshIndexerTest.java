@@ -0,0 +1,82 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the indexed meshes reproduce the expanded faces and reports the dedup ratio of our models.
+ */
+public class MeshIndexerTest {
+    private static final String[] OBJS = {
+            "src/main/res/raw/aging_vessel.obj",
+            "src/main/res/raw/Brewkettle.obj",
+            "src/main/res/raw/bright_beer_vessel.obj",
+            "src/main/res/raw/floor.obj"};
+
+    @Test
+    public void indexedMeshesMatchExpandedFaces() throws Exception {
+        for (String obj : OBJS) {
+            ObjParser parser = parse(obj);
+            MeshIndexer indexer = new MeshIndexer();
+            indexer.index(parser);
+
+            final int corners = parser.getFacesCount() * 3;
+            assertEquals(corners, indexer.getIndicesCount());
+            assertTrue(indexer.getVerticesCount() <= corners);
+
+            float[] vertices = indexer.getVertices();
+            for (int i = 0; i < corners; i++) {
+                int offset = indexer.getIndices()[i] * MeshIndexer.FLOATS_PER_VERTEX;
+                int p = parser.getFaces()[i * 3];
+                int t = parser.getFaces()[i * 3 + 1];
+                int n = parser.getFaces()[i * 3 + 2];
+                for (int j = 0; j < 3; j++) {
+                    assertEquals(parser.getPositions()[p * 3 + j], vertices[offset + MeshIndexer.POSITION_OFFSET + j], 0.f);
+                    assertEquals(parser.getNormals()[n * 3 + j], vertices[offset + MeshIndexer.NORMAL_OFFSET + j], 0.f);
+                }
+                for (int j = 0; j < 2; j++) {
+                    assertEquals(parser.getTexels()[t * 2 + j], vertices[offset + MeshIndexer.TEXEL_OFFSET + j], 0.f);
+                }
+            }
+
+            System.out.println(String.format(Locale.US, "%s: %d corners -> %d vertices (dedup ratio %.2f)",
+                    new File(obj).getName(), corners, indexer.getVerticesCount(), (float) corners / indexer.getVerticesCount()));
+        }
+    }
+
+    @Test
+    public void sharesVerticesWithTheSameAttributes() {
+        // Two triangles of a quad, sharing an edge.
+        int[] faces = {
+                0, 0, 0, 1, 1, 0, 2, 2, 0,
+                2, 2, 0, 1, 1, 0, 3, 3, 0};
+        float[] positions = {0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0};
+        float[] texels = {0, 0, 1, 0, 0, 1, 1, 1};
+        float[] normals = {0, 0, 1};
+
+        MeshIndexer indexer = new MeshIndexer();
+        indexer.index(faces, 2, positions, texels, normals);
+
+        assertEquals(4, indexer.getVerticesCount());
+        assertEquals(6, indexer.getIndicesCount());
+        assertEquals(indexer.getIndices()[2], indexer.getIndices()[3]);
+        assertEquals(indexer.getIndices()[1], indexer.getIndices()[4]);
+    }
+
+    private static ObjParser parse(String path) throws Exception {
+        InputStream inputStream = new FileInputStream(path);
+        try {
+            ObjParser parser = new ObjParser();
+            parser.parse(inputStream);
+            return parser;
+        } finally {
+            inputStream.close();
+        }
+    }
+}
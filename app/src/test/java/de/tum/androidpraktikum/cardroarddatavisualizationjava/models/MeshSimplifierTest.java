@@ -0,0 +1,214 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class MeshSimplifierTest {
+    private static final String[] OBJS = {
+            "src/main/res/raw/aging_vessel.obj",
+            "src/main/res/raw/Brewkettle.obj",
+            "src/main/res/raw/bright_beer_vessel.obj"};
+
+    /**
+     * @return a flat grid of {@code n} x {@code n} quads in the XY plane, facing +Z.
+     */
+    private static MeshIndexer createGrid(int n) {
+        final float[] positions = new float[(n + 1) * (n + 1) * 3];
+        for (int y = 0; y <= n; y++) {
+            for (int x = 0; x <= n; x++) {
+                positions[(y * (n + 1) + x) * 3] = x;
+                positions[(y * (n + 1) + x) * 3 + 1] = y;
+            }
+        }
+        final int[] faces = new int[n * n * 2 * 9];
+        int f = 0;
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                final int p = y * (n + 1) + x;
+                for (int corner : new int[]{p, p + 1, p + n + 1, p + n + 1, p + 1, p + n + 2}) {
+                    faces[f++] = corner;
+                    faces[f++] = -1;
+                    faces[f++] = -1;
+                }
+            }
+        }
+
+        final MeshIndexer meshIndexer = new MeshIndexer();
+        meshIndexer.index(faces, n * n * 2, positions, new float[0], new float[0]);
+        return meshIndexer;
+    }
+
+    /**
+     * @return a closed sphere of {@code rings} x {@code segments} quads around the origin, facing outwards. The
+     * vertices on the seam are split by their texels.
+     */
+    private static MeshIndexer createSphere(int rings, int segments) {
+        final float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+        final float[] texels = new float[(rings + 1) * (segments + 1) * 2];
+        for (int r = 0; r <= rings; r++) {
+            final double theta = Math.PI * r / rings;
+            for (int s = 0; s <= segments; s++) {
+                final double phi = 2 * Math.PI * (s % segments) / segments;
+                final int p = r * (segments + 1) + s;
+                positions[p * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+                positions[p * 3 + 1] = (float) Math.cos(theta);
+                positions[p * 3 + 2] = -(float) (Math.sin(theta) * Math.sin(phi));
+                // The poles collapse into a single position each.
+                if (r == 0 || r == rings) {
+                    positions[p * 3] = 0.f;
+                    positions[p * 3 + 2] = 0.f;
+                }
+                texels[p * 2] = (float) s / segments;
+                texels[p * 2 + 1] = (float) r / rings;
+            }
+        }
+
+        final int[] faces = new int[rings * segments * 2 * 9];
+        int faceCount = 0;
+        for (int r = 0; r < rings; r++) {
+            for (int s = 0; s < segments; s++) {
+                final int p = r * (segments + 1) + s;
+                final int[][] quad = {{p, p + segments + 1, p + 1}, {p + 1, p + segments + 1, p + segments + 2}};
+                for (int[] triangle : quad) {
+                    for (int corner : triangle) {
+                        faces[faceCount * 9 + (corner == triangle[0] ? 0 : corner == triangle[1] ? 3 : 6)] = corner;
+                        faces[faceCount * 9 + (corner == triangle[0] ? 1 : corner == triangle[1] ? 4 : 7)] = corner;
+                        faces[faceCount * 9 + (corner == triangle[0] ? 2 : corner == triangle[1] ? 5 : 8)] = -1;
+                    }
+                    faceCount++;
+                }
+            }
+        }
+
+        final MeshIndexer meshIndexer = new MeshIndexer();
+        meshIndexer.index(faces, faceCount, positions, texels, new float[0]);
+        return meshIndexer;
+    }
+
+    private static float[] getPosition(MeshIndexer meshIndexer, int vertex) {
+        final float[] position = new float[3];
+        System.arraycopy(meshIndexer.getVertices(), vertex * MeshIndexer.FLOATS_PER_VERTEX + MeshIndexer.POSITION_OFFSET, position, 0, 3);
+        return position;
+    }
+
+    /**
+     * @return the (not normalized) normal of the {@code triangle}.
+     */
+    private static float[] getNormal(MeshIndexer meshIndexer, int[] indices, int triangle) {
+        final float[] a = getPosition(meshIndexer, indices[triangle * 3]);
+        final float[] b = getPosition(meshIndexer, indices[triangle * 3 + 1]);
+        final float[] c = getPosition(meshIndexer, indices[triangle * 3 + 2]);
+        final float ux = b[0] - a[0], uy = b[1] - a[1], uz = b[2] - a[2];
+        final float vx = c[0] - a[0], vy = c[1] - a[1], vz = c[2] - a[2];
+        return new float[]{uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+
+    @Test
+    public void collapsesTheInsideOfAPlaneKeepingItsOutline() {
+        final MeshIndexer grid = createGrid(16);
+        final MeshSimplifier meshSimplifier = new MeshSimplifier(grid.getVertices(), grid.getVerticesCount(),
+                grid.getIndices(), grid.getIndicesCount());
+
+        final int[] indices = meshSimplifier.simplify(grid.getIndicesCount() / 4);
+
+        assertTrue(indices.length <= grid.getIndicesCount() / 4);
+        assertTrue(indices.length > 0);
+        float area = 0.f;
+        for (int t = 0; t < indices.length / 3; t++) {
+            // Nothing is flipped.
+            final float[] normal = getNormal(grid, indices, t);
+            assertTrue(normal[2] > 0.f);
+            area += normal[2] / 2.f;
+        }
+        // The outline is kept, so the simplified grid covers the same area.
+        assertEquals(16.f * 16.f, area, 1e-3f);
+    }
+
+    @Test
+    public void keepsAClosedSurfaceFacingOutwards() {
+        final MeshIndexer sphere = createSphere(16, 24);
+        final MeshSimplifier meshSimplifier = new MeshSimplifier(sphere.getVertices(), sphere.getVerticesCount(),
+                sphere.getIndices(), sphere.getIndicesCount());
+
+        int previousIndices = sphere.getIndicesCount();
+        for (int level = 1; level <= 3; level++) {
+            final int[] indices = meshSimplifier.simplify(sphere.getIndicesCount() >> level);
+
+            assertTrue(indices.length < previousIndices);
+            for (int t = 0; t < indices.length / 3; t++) {
+                final float[] normal = getNormal(sphere, indices, t);
+                final float[] a = getPosition(sphere, indices[t * 3]);
+                assertTrue("triangle " + t + " of level " + level + " faces inwards",
+                        normal[0] * a[0] + normal[1] * a[1] + normal[2] * a[2] > 0.f);
+            }
+            previousIndices = indices.length;
+        }
+    }
+
+    @Test
+    public void picksTheVertexWithTheClosestTexelOnTheSeam() {
+        final MeshIndexer sphere = createSphere(16, 24);
+        final MeshSimplifier meshSimplifier = new MeshSimplifier(sphere.getVertices(), sphere.getVerticesCount(),
+                sphere.getIndices(), sphere.getIndicesCount());
+
+        final int[] indices = meshSimplifier.simplify(sphere.getIndicesCount() / 4);
+
+        // The texels of a triangle span a small part of the texture, it doesn't wrap around the seam. Except around the
+        // poles, where the whole width of the texture is squeezed into a few triangles.
+        final float[] vertices = sphere.getVertices();
+        int checked = 0;
+        for (int t = 0; t < indices.length / 3; t++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            boolean nearPole = false;
+            for (int k = 0; k < 3; k++) {
+                final int offset = indices[t * 3 + k] * MeshIndexer.FLOATS_PER_VERTEX;
+                final float u = vertices[offset + MeshIndexer.TEXEL_OFFSET];
+                min = Math.min(min, u);
+                max = Math.max(max, u);
+                nearPole |= Math.abs(vertices[offset + MeshIndexer.POSITION_OFFSET + 1]) > .8f;
+            }
+            if (!nearPole) {
+                assertTrue("triangle " + t + " wraps around", max - min < .5f);
+                checked++;
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    @Test
+    public void buildsTheLevelsOfTheBreweryModels() throws Exception {
+        for (String obj : OBJS) {
+            final ObjParser objParser = new ObjParser();
+            final InputStream inputStream = new FileInputStream(obj);
+            try {
+                objParser.parse(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            final MeshIndexer meshIndexer = new MeshIndexer();
+            meshIndexer.index(objParser);
+
+            final int[][] levels = Model.buildLevels(meshIndexer);
+
+            assertTrue(levels.length >= 2);
+            final StringBuilder triangles = new StringBuilder().append(meshIndexer.getIndicesCount() / 3);
+            int previousIndices = meshIndexer.getIndicesCount();
+            for (int[] level : levels) {
+                assertTrue(level.length < previousIndices);
+                for (int index : level) {
+                    assertTrue(index >= 0 && index < meshIndexer.getVerticesCount());
+                }
+                triangles.append(" -> ").append(level.length / 3);
+                previousIndices = level.length;
+            }
+            System.out.println(String.format(Locale.US, "%s: %s triangles", new File(obj).getName(), triangles));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.RecordingGL;
+
+import static org.junit.Assert.*;
+
+public class MeshTest {
+    // GLES20 constants.
+    private static final int GL_TRIANGLES = 0x0004;
+    private static final int GL_BYTE = 0x1400;
+    private static final int GL_FLOAT = 0x1406;
+    private static final int GL_UNSIGNED_SHORT = 0x1403;
+    private static final int GL_ARRAY_BUFFER = 0x8892;
+    private static final int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+    private static final int GL_STATIC_DRAW = 0x88E4;
+
+    @Test
+    public void uploadsOnceAndBindsByOffset() {
+        final int vertices = 4;
+        final int indices = 6;
+        FloatBuffer vertexData = ByteBuffer.allocateDirect(vertices * Mesh.VERTEX_STRIDE).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        ShortBuffer indexData = ByteBuffer.allocateDirect(indices * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        RecordingGL gl = new RecordingGL();
+
+        Mesh mesh = new Mesh(gl, vertexData, indexData, GL_UNSIGNED_SHORT, indices);
+
+        assertEquals(Arrays.asList(
+                "glGenBuffers(2)",
+                "glBindBuffer(" + GL_ARRAY_BUFFER + ", 1)",
+                "glBufferData(" + GL_ARRAY_BUFFER + ", " + vertices * Mesh.VERTEX_STRIDE + ", " + GL_STATIC_DRAW + ")",
+                "glBindBuffer(" + GL_ARRAY_BUFFER + ", 0)",
+                "glBindBuffer(" + GL_ELEMENT_ARRAY_BUFFER + ", 2)",
+                "glBufferData(" + GL_ELEMENT_ARRAY_BUFFER + ", " + indices * 2 + ", " + GL_STATIC_DRAW + ")",
+                "glBindBuffer(" + GL_ELEMENT_ARRAY_BUFFER + ", 0)"), gl.calls);
+
+        gl.clear();
+        // The program doesn't use normals.
+        mesh.bind(gl, 0, -1, 3);
+        mesh.draw(gl);
+
+        assertEquals(Arrays.asList(
+                "glBindBuffer(" + GL_ARRAY_BUFFER + ", 1)",
+                "glBindBuffer(" + GL_ELEMENT_ARRAY_BUFFER + ", 2)",
+                "glVertexAttribPointer(0, 3, " + GL_FLOAT + ", false, 32, 0)",
+                "glEnableVertexAttribArray(0)",
+                "glVertexAttribPointer(3, 2, " + GL_FLOAT + ", false, 32, 24)",
+                "glEnableVertexAttribArray(3)",
+                "glDrawElements(" + GL_TRIANGLES + ", 6, " + GL_UNSIGNED_SHORT + ", 0)"), gl.calls);
+
+        gl.clear();
+        mesh.release(gl);
+        assertEquals(Arrays.asList("glDeleteBuffers(1, 2)"), gl.calls);
+    }
+
+    @Test
+    public void drawsTheLevelsOfDetailByOffset() {
+        FloatBuffer vertexData = ByteBuffer.allocateDirect(4 * Mesh.VERTEX_STRIDE).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        ShortBuffer indexData = ByteBuffer.allocateDirect(9 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        RecordingGL gl = new RecordingGL();
+
+        // A quad and a single triangle as the simplified level.
+        Mesh mesh = new Mesh(gl, vertexData, indexData, GL_UNSIGNED_SHORT, new int[]{6, 3});
+
+        assertEquals(2, mesh.getLevels());
+        assertTrue(gl.calls.contains("glBufferData(" + GL_ELEMENT_ARRAY_BUFFER + ", " + 9 * 2 + ", " + GL_STATIC_DRAW + ")"));
+
+        gl.clear();
+        mesh.draw(gl, 0);
+        mesh.draw(gl, 1);
+
+        assertEquals(Arrays.asList(
+                "glDrawElements(" + GL_TRIANGLES + ", 6, " + GL_UNSIGNED_SHORT + ", 0)",
+                "glDrawElements(" + GL_TRIANGLES + ", 3, " + GL_UNSIGNED_SHORT + ", 12)"), gl.calls);
+    }
+
+    @Test
+    public void bindsTheQuantizedAttributes() {
+        final float[] vertices = new float[3 * MeshIndexer.FLOATS_PER_VERTEX];
+        QuantizedVertices quantized = QuantizedVertices.quantize(FloatBuffer.wrap(vertices), 3);
+        ShortBuffer indexData = ByteBuffer.allocateDirect(3 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        RecordingGL gl = new RecordingGL();
+
+        Mesh mesh = new Mesh(gl, quantized, indexData, GL_UNSIGNED_SHORT, new int[]{3});
+
+        assertSame(quantized.getFormat(), mesh.getVertexFormat());
+        assertTrue(gl.calls.contains("glBufferData(" + GL_ARRAY_BUFFER + ", " + 3 * QuantizedVertices.VERTEX_STRIDE + ", " + GL_STATIC_DRAW + ")"));
+
+        gl.clear();
+        mesh.bind(gl, 0, 1, 2);
+
+        assertEquals(Arrays.asList(
+                "glBindBuffer(" + GL_ARRAY_BUFFER + ", 1)",
+                "glBindBuffer(" + GL_ELEMENT_ARRAY_BUFFER + ", 2)",
+                "glVertexAttribPointer(0, 3, " + GL_UNSIGNED_SHORT + ", false, 16, 0)",
+                "glEnableVertexAttribArray(0)",
+                "glVertexAttribPointer(1, 3, " + GL_BYTE + ", false, 16, 8)",
+                "glEnableVertexAttribArray(1)",
+                "glVertexAttribPointer(2, 2, " + GL_UNSIGNED_SHORT + ", false, 16, 12)",
+                "glEnableVertexAttribArray(2)"), gl.calls);
+    }
+}
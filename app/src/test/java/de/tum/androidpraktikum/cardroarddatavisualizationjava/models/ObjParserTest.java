@@ -0,0 +1,322 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringTokenizer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link ObjParser} against a straightforward {@code String} based reference parser and compares the
+ * timings of both.
+ */
+public class ObjParserTest {
+    /**
+     * Relative to the module directory, which is the working directory of the unit tests.
+     */
+    private static final String BREWKETTLE_OBJ = "src/main/res/raw/Brewkettle.obj";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void parsesBrewkettleLikeTheReferenceParser() throws Exception {
+        byte[] obj = readFile(new File(BREWKETTLE_OBJ));
+
+        ObjParser parser = new ObjParser();
+        parser.parse(new ByteArrayInputStream(obj));
+        ReferenceObj reference = ReferenceObj.parse(obj);
+
+        assertEquals(reference.positions.size() / 3, parser.getPositionsCount());
+        assertEquals(reference.texels.size() / 2, parser.getTexelsCount());
+        assertEquals(reference.normals.size() / 3, parser.getNormalsCount());
+        assertEquals(reference.faces.size() / ObjParser.INDICES_PER_FACE, parser.getFacesCount());
+
+        assertFloatsEqual(reference.positions, parser.getPositions());
+        assertFloatsEqual(reference.texels, parser.getTexels());
+        assertFloatsEqual(reference.normals, parser.getNormals());
+        for (int i = 0; i < reference.faces.size(); i++) {
+            assertEquals(reference.faces.get(i).intValue(), parser.getFaces()[i]);
+        }
+    }
+
+    @Test
+    public void parsesFaceFormatsAndPolygons() throws Exception {
+        String obj = "# comment\r\n"
+                + "v 1 2 3\r\n"
+                + "v -1.5e1 +2.25 0.000001\r\n"
+                + "v 4 5 6\n"
+                + "v 7 8 9\n"
+                + "vt 0.5 0.25\n"
+                + "vn 0 1 0\n"
+                + "s off\n"
+                + "f 1 2 3\n"
+                + "f 1/1 2/1 3/1\n"
+                + "f 1//1 2//1 3//1\n"
+                + "f -4/-1/-1 -3/-1/-1 -2/-1/-1 -1/-1/-1\n";
+
+        ObjParser parser = new ObjParser();
+        parser.parse(new ByteArrayInputStream(obj.getBytes(ASCII)));
+
+        assertEquals(4, parser.getPositionsCount());
+        assertEquals(-15.f, parser.getPositions()[3], 0.f);
+        assertEquals(2.25f, parser.getPositions()[4], 0.f);
+        assertEquals(0.000001f, parser.getPositions()[5], 0.f);
+        // The quad is split into two triangles.
+        assertEquals(5, parser.getFacesCount());
+
+        int[] faces = parser.getFaces();
+        // f 1 2 3
+        assertArrayEquals(new int[]{0, -1, -1, 1, -1, -1, 2, -1, -1}, copy(faces, 0));
+        // f 1/1 2/1 3/1
+        assertArrayEquals(new int[]{0, 0, -1, 1, 0, -1, 2, 0, -1}, copy(faces, 1));
+        // f 1//1 2//1 3//1
+        assertArrayEquals(new int[]{0, -1, 0, 1, -1, 0, 2, -1, 0}, copy(faces, 2));
+        // The fan of the quad.
+        assertArrayEquals(new int[]{0, 0, 0, 1, 0, 0, 2, 0, 0}, copy(faces, 3));
+        assertArrayEquals(new int[]{0, 0, 0, 2, 0, 0, 3, 0, 0}, copy(faces, 4));
+    }
+
+    @Test
+    public void parsesPolygonsOfManyCorners() throws Exception {
+        final int cornersCount = 100;
+        final StringBuilder obj = new StringBuilder();
+        for (int i = 0; i < cornersCount; i++) {
+            obj.append("v ").append(i).append(" 0 0\n");
+        }
+        obj.append('f');
+        for (int i = 1; i <= cornersCount; i++) {
+            obj.append(' ').append(i);
+        }
+
+        ObjParser parser = new ObjParser();
+        parser.parse(new ByteArrayInputStream(obj.toString().getBytes(ASCII)));
+
+        assertEquals(cornersCount - 2, parser.getFacesCount());
+        assertArrayEquals(new int[]{0, -1, -1, cornersCount - 2, -1, -1, cornersCount - 1, -1, -1},
+                copy(parser.getFaces(), cornersCount - 3));
+    }
+
+    @Test
+    public void leavesTheParsedBytesAlone() throws Exception {
+        final byte[] first = "v 1 2 3\n".getBytes(ASCII);
+        final byte[] copy = first.clone();
+
+        ObjParser parser = new ObjParser();
+        parser.parse(first, first.length);
+        parser.parse(new ByteArrayInputStream("v 4 5 6\nv 7 8 9\n".getBytes(ASCII)));
+
+        assertArrayEquals(copy, first);
+        assertEquals(2, parser.getPositionsCount());
+    }
+
+    @Test
+    public void parsesLargeSyntheticObj() throws Exception {
+        final int gridSize = 300;
+        byte[] obj = createGridObj(gridSize);
+
+        ObjParser parser = new ObjParser();
+        parser.parse(new ByteArrayInputStream(obj));
+
+        assertEquals((gridSize + 1) * (gridSize + 1), parser.getPositionsCount());
+        assertEquals(gridSize * gridSize * 2, parser.getFacesCount());
+        assertFloatsEqual(ReferenceObj.parse(obj).positions, parser.getPositions());
+    }
+
+    /**
+     * Not a real benchmark harness, but enough to see the difference between the two approaches.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        benchmark("Brewkettle.obj", readFile(new File(BREWKETTLE_OBJ)), 50);
+        benchmark("synthetic grid", createGridObj(300), 5);
+    }
+
+    private static void benchmark(String name, byte[] obj, int iterations) throws IOException {
+        ObjParser parser = new ObjParser();
+
+        // Warm up.
+        for (int i = 0; i < iterations; i++) {
+            parser.parse(new ByteArrayInputStream(obj));
+            LegacyObj.parse(obj);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parser.parse(new ByteArrayInputStream(obj));
+        }
+        long parserTime = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            LegacyObj.parse(obj);
+        }
+        long legacyTime = (System.nanoTime() - start) / iterations;
+
+        System.out.println(String.format(Locale.US, "%s (%d faces): ObjParser %.2f ms, two-pass StringTokenizer %.2f ms",
+                name, parser.getFacesCount(), parserTime / 1e6, legacyTime / 1e6));
+    }
+
+    private static byte[] createGridObj(int gridSize) {
+        StringBuilder obj = new StringBuilder();
+        for (int z = 0; z <= gridSize; z++) {
+            for (int x = 0; x <= gridSize; x++) {
+                obj.append(String.format(Locale.US, "v %f %f %f%n", x * 0.1f, (float) Math.sin(x * z), -z * 0.1f));
+            }
+        }
+        obj.append("vt 0.000000 0.000000\nvn 0.000000 1.000000 0.000000\n");
+        for (int z = 0; z < gridSize; z++) {
+            for (int x = 0; x < gridSize; x++) {
+                int a = z * (gridSize + 1) + x + 1;
+                int b = a + 1;
+                int c = a + gridSize + 1;
+                int d = c + 1;
+                obj.append("f ").append(a).append("/1/1 ").append(b).append("/1/1 ").append(c).append("/1/1\n");
+                obj.append("f ").append(b).append("/1/1 ").append(d).append("/1/1 ").append(c).append("/1/1\n");
+            }
+        }
+        return obj.toString().getBytes(ASCII);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < data.length && (read = inputStream.read(data, offset, data.length - offset)) != -1) {
+                offset += read;
+            }
+            return data;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static int[] copy(int[] faces, int face) {
+        int[] result = new int[ObjParser.INDICES_PER_FACE];
+        System.arraycopy(faces, face * ObjParser.INDICES_PER_FACE, result, 0, result.length);
+        return result;
+    }
+
+    private static void assertFloatsEqual(List<Float> expected, float[] actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            float value = expected.get(i);
+            assertEquals("Value #" + i, value, actual[i], Math.ulp(value));
+        }
+    }
+
+    /**
+     * Reference parser built on {@code String.split} and {@link Float#parseFloat}.
+     */
+    private static class ReferenceObj {
+        final List<Float> positions = new ArrayList<>();
+        final List<Float> texels = new ArrayList<>();
+        final List<Float> normals = new ArrayList<>();
+        final List<Integer> faces = new ArrayList<>();
+
+        static ReferenceObj parse(byte[] obj) throws IOException {
+            ReferenceObj result = new ReferenceObj();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(obj), ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals("v")) {
+                    add(result.positions, tokens, 3);
+                } else if (tokens[0].equals("vt")) {
+                    add(result.texels, tokens, 2);
+                } else if (tokens[0].equals("vn")) {
+                    add(result.normals, tokens, 3);
+                } else if (tokens[0].equals("f")) {
+                    for (int i = 1; i <= 3; i++) {
+                        for (String index : tokens[i].split("/")) {
+                            result.faces.add(Integer.parseInt(index) - 1);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static void add(List<Float> target, String[] tokens, int count) {
+            for (int i = 1; i <= count; i++) {
+                target.add(Float.parseFloat(tokens[i]));
+            }
+        }
+    }
+
+    /**
+     * The two-pass parser {@link Model} used before the {@link ObjParser}.
+     */
+    private static class LegacyObj {
+        static void parse(byte[] obj) throws IOException {
+            int positionsCount = 0;
+            int texelsCount = 0;
+            int normalsCount = 0;
+            int facesCount = 0;
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(obj)));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String type = line.substring(0, 2);
+                if (type.equals("v ")) {
+                    positionsCount++;
+                } else if (type.equals("vt")) {
+                    texelsCount++;
+                } else if (type.equals("vn")) {
+                    normalsCount++;
+                } else if (type.equals("f ")) {
+                    facesCount++;
+                }
+            }
+
+            float[][] positions = new float[positionsCount][3];
+            float[][] texels = new float[texelsCount][2];
+            float[][] normals = new float[normalsCount][3];
+            int[][] faces = new int[facesCount][9];
+            int p = 0, t = 0, n = 0, f = 0;
+
+            reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(obj)));
+            while ((line = reader.readLine()) != null) {
+                String type = line.substring(0, 2);
+                if (type.equals("v ")) {
+                    StringTokenizer tokenizer = new StringTokenizer(line.substring(2), " ");
+                    for (int i = 0; i < 3; i++) {
+                        positions[p][i] = Float.parseFloat(tokenizer.nextToken());
+                    }
+                    p++;
+                } else if (type.equals("vt")) {
+                    StringTokenizer tokenizer = new StringTokenizer(line.substring(2), " ");
+                    for (int i = 0; i < 2; i++) {
+                        texels[t][i] = Float.parseFloat(tokenizer.nextToken());
+                    }
+                    t++;
+                } else if (type.equals("vn")) {
+                    StringTokenizer tokenizer = new StringTokenizer(line.substring(2), " ");
+                    for (int i = 0; i < 3; i++) {
+                        normals[n][i] = Float.parseFloat(tokenizer.nextToken());
+                    }
+                    n++;
+                } else if (type.equals("f ")) {
+                    StringTokenizer tokenizer = new StringTokenizer(line.substring(2), " ");
+                    for (int i = 0; i < 9; i += 3) {
+                        StringTokenizer dashTokenizer = new StringTokenizer(tokenizer.nextToken(), "/");
+                        faces[f][i] = Integer.parseInt(dashTokenizer.nextToken());
+                        faces[f][i + 1] = Integer.parseInt(dashTokenizer.nextToken());
+                        faces[f][i + 2] = Integer.parseInt(dashTokenizer.nextToken());
+                    }
+                    f++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantizedVerticesTest {
+    private static final String[] OBJS = {
+            "src/main/res/raw/aging_vessel.obj",
+            "src/main/res/raw/Brewkettle.obj",
+            "src/main/res/raw/bright_beer_vessel.obj",
+            "src/main/res/raw/floor.obj"};
+
+    /**
+     * @return the attribute of the {@code vertex} back as floats, the way the shader does it.
+     */
+    private static float[] dequantize(QuantizedVertices quantized, int vertex) {
+        final ByteBuffer data = quantized.getData();
+        final VertexFormat format = quantized.getFormat();
+        final int offset = vertex * QuantizedVertices.VERTEX_STRIDE;
+        final float[] result = new float[MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < 3; i++) {
+            result[MeshIndexer.POSITION_OFFSET + i] = (data.getShort(offset + QuantizedVertices.POSITION_OFFSET + i * 2) & 0xFFFF)
+                    * format.getPositionScale()[i] + format.getPositionOffset()[i];
+            result[MeshIndexer.NORMAL_OFFSET + i] = data.get(offset + QuantizedVertices.NORMAL_OFFSET + i) * format.getNormalScale();
+        }
+        for (int i = 0; i < 2; i++) {
+            result[MeshIndexer.TEXEL_OFFSET + i] = (data.getShort(offset + QuantizedVertices.TEXEL_OFFSET + i * 2) & 0xFFFF)
+                    * format.getTexelScale()[i] + format.getTexelOffset()[i];
+        }
+        return result;
+    }
+
+    @Test
+    public void keepsTheErrorWithinHalfAStep() {
+        final int vertices = 1000;
+        final float[] data = new float[vertices * MeshIndexer.FLOATS_PER_VERTEX];
+        final Random random = new Random(7);
+        for (int vertex = 0; vertex < vertices; vertex++) {
+            final int offset = vertex * MeshIndexer.FLOATS_PER_VERTEX;
+            data[offset] = random.nextFloat() * 10.f - 5.f;
+            data[offset + 1] = random.nextFloat() * 3.f;
+            data[offset + 2] = random.nextFloat() * 200.f - 100.f;
+            final double theta = random.nextDouble() * Math.PI;
+            final double phi = random.nextDouble() * 2 * Math.PI;
+            data[offset + 3] = (float) (Math.sin(theta) * Math.cos(phi));
+            data[offset + 4] = (float) Math.cos(theta);
+            data[offset + 5] = (float) (Math.sin(theta) * Math.sin(phi));
+            // Tiling texture coordinates.
+            data[offset + 6] = random.nextFloat() * 4.f;
+            data[offset + 7] = -random.nextFloat();
+        }
+
+        final QuantizedVertices quantized = QuantizedVertices.quantize(FloatBuffer.wrap(data), vertices);
+
+        assertEquals(vertices * QuantizedVertices.VERTEX_STRIDE, quantized.getData().capacity());
+        assertEquals(vertices * QuantizedVertices.VERTEX_STRIDE, quantized.getBytes());
+        assertEquals(2 * quantized.getBytes(), quantized.getFloatBytes());
+        assertTrue(quantized.getFormat().isQuantized());
+
+        float maxPositionError = 0.f;
+        float maxTexelError = 0.f;
+        for (int vertex = 0; vertex < vertices; vertex++) {
+            final float[] back = dequantize(quantized, vertex);
+            final int offset = vertex * MeshIndexer.FLOATS_PER_VERTEX;
+            // Half a step of the extent of every axis.
+            assertEquals(data[offset], back[0], 10.f / 0xFFFF / 2 + 1e-6f);
+            assertEquals(data[offset + 1], back[1], 3.f / 0xFFFF / 2 + 1e-6f);
+            assertEquals(data[offset + 2], back[2], 200.f / 0xFFFF / 2 + 1e-5f);
+            assertEquals(data[offset + 6], back[6], 4.f / 0xFFFF / 2 + 1e-6f);
+            assertEquals(data[offset + 7], back[7], 1.f / 0xFFFF / 2 + 1e-6f);
+
+            // The direction survives, the length doesn't matter.
+            final float cos = (data[offset + 3] * back[3] + data[offset + 4] * back[4] + data[offset + 5] * back[5])
+                    / (float) Math.sqrt(back[3] * back[3] + back[4] * back[4] + back[5] * back[5]);
+            assertTrue((float) Math.toDegrees(Math.acos(Math.min(cos, 1.f))) <= quantized.getMaxNormalError() + 1e-3f);
+
+            maxPositionError = Math.max(maxPositionError, (float) Math.sqrt((data[offset] - back[0]) * (data[offset] - back[0])
+                    + (data[offset + 1] - back[1]) * (data[offset + 1] - back[1])
+                    + (data[offset + 2] - back[2]) * (data[offset + 2] - back[2])));
+            maxTexelError = Math.max(maxTexelError, Math.max(Math.abs(data[offset + 6] - back[6]), Math.abs(data[offset + 7] - back[7])));
+        }
+        assertEquals(maxPositionError, quantized.getMaxPositionError(), 1e-5f);
+        assertEquals(maxTexelError, quantized.getMaxTexelError(), 1e-6f);
+        assertTrue(quantized.getMaxNormalError() < 1.f);
+    }
+
+    @Test
+    public void quantizesAFlatMeshWithoutNormals() {
+        // A quad in the XZ plane: Y doesn't vary, the normals and the texels are missing.
+        final float[] data = new float[4 * MeshIndexer.FLOATS_PER_VERTEX];
+        for (int vertex = 0; vertex < 4; vertex++) {
+            data[vertex * MeshIndexer.FLOATS_PER_VERTEX] = vertex % 2;
+            data[vertex * MeshIndexer.FLOATS_PER_VERTEX + 1] = -5.f;
+            data[vertex * MeshIndexer.FLOATS_PER_VERTEX + 2] = vertex / 2;
+        }
+
+        final QuantizedVertices quantized = QuantizedVertices.quantize(FloatBuffer.wrap(data), 4);
+
+        for (int vertex = 0; vertex < 4; vertex++) {
+            final float[] back = dequantize(quantized, vertex);
+            for (int i = 0; i < MeshIndexer.FLOATS_PER_VERTEX; i++) {
+                assertEquals(data[vertex * MeshIndexer.FLOATS_PER_VERTEX + i], back[i], 0.f);
+            }
+        }
+        assertEquals(0.f, quantized.getMaxPositionError(), 0.f);
+        assertEquals(0.f, quantized.getMaxNormalError(), 0.f);
+    }
+
+    @Test
+    public void storesTheInstanceIdOfEveryCopy() {
+        final float[] data = new float[3 * MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        final QuantizedVertices quantized = QuantizedVertices.quantize(FloatBuffer.wrap(data), 3);
+
+        final ByteBuffer replicated = quantized.replicate(4);
+
+        assertEquals(4 * quantized.getBytes(), replicated.capacity());
+        assertEquals(0, replicated.position());
+        for (int instance = 0; instance < 4; instance++) {
+            for (int vertex = 0; vertex < 3; vertex++) {
+                final int offset = (instance * 3 + vertex) * QuantizedVertices.VERTEX_STRIDE;
+                for (int i = 0; i < QuantizedVertices.VERTEX_STRIDE; i++) {
+                    if (i == QuantizedVertices.INSTANCE_ID_OFFSET || i == QuantizedVertices.INSTANCE_ID_OFFSET + 1) {
+                        continue;
+                    }
+                    assertEquals(quantized.getData().get(vertex * QuantizedVertices.VERTEX_STRIDE + i), replicated.get(offset + i));
+                }
+                assertEquals(instance, replicated.getShort(offset + QuantizedVertices.INSTANCE_ID_OFFSET));
+            }
+        }
+    }
+
+    @Test
+    public void halvesTheVerticesOfTheModels() throws Exception {
+        for (String obj : OBJS) {
+            final ObjParser objParser = new ObjParser();
+            final InputStream inputStream = new FileInputStream(obj);
+            try {
+                objParser.parse(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            final MeshIndexer meshIndexer = new MeshIndexer();
+            meshIndexer.index(objParser);
+
+            final QuantizedVertices quantized = QuantizedVertices.quantize(FloatBuffer.wrap(meshIndexer.getVertices()),
+                    meshIndexer.getVerticesCount());
+
+            // Well below a pixel and a texel.
+            assertTrue(quantized.getRelativePositionError() < 1e-4f);
+            assertTrue(quantized.getMaxNormalError() < 1.f);
+            assertEquals(quantized.getFloatBytes(), 2 * quantized.getBytes());
+            // The instanced layout stores the instance id in the padding instead of a float of its own.
+            final int instancedFloatBytes = meshIndexer.getVerticesCount() * InstancedMesh.VERTEX_STRIDE;
+            System.out.println(String.format(Locale.US, "%s: %d vertices, %d -> %d bytes (instanced %d -> %d per copy), "
+                            + "max error: position %.5f (%.4f%% of the extent), normal %.2f deg, texel %.6f",
+                    new File(obj).getName(), quantized.getVertices(), quantized.getFloatBytes(), quantized.getBytes(),
+                    instancedFloatBytes, quantized.getBytes(), quantized.getMaxPositionError(),
+                    100.f * quantized.getRelativePositionError(), quantized.getMaxNormalError(), quantized.getMaxTexelError()));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SceneTest {
+    @Test
+    public void parsesTheSceneOfTheApp() throws IOException {
+        final Scene scene;
+        try (Reader reader = new FileReader("src/main/assets/scene.json")) {
+            scene = Scene.parse(reader);
+        }
+
+        assertEquals(6, scene.size());
+        assertEquals(3, scene.getMeshTypeCount());
+        for (int i = 0; i < scene.size(); i++) {
+            assertEquals("Unit" + (i + 1), scene.getId(i));
+            assertEquals(i, scene.getUnitNum("Unit" + (i + 1)));
+            assertEquals(i % 3, scene.getMeshTypes()[i]);
+            assertEquals(60 * i, scene.getYaws()[i], 0.f);
+        }
+        assertEquals("aging_vessel", scene.getMeshName(0));
+        assertEquals(-15.f, scene.getPositions()[2], 0.f);
+    }
+
+    @Test
+    public void addsTheMeshTypesInOrderOfAppearance() {
+        final Scene scene = Scene.parse(new StringReader("{ \"units\": ["
+                + "{ \"id\": \"A\", \"mesh\": \"b\", \"position\": [0, 0, 0] },"
+                + "{ \"id\": \"B\", \"mesh\": \"a\", \"position\": [1, 2, 3], \"yaw\": 90 },"
+                + "{ \"id\": \"C\", \"mesh\": \"b\", \"position\": [0, 0, 0] } ] }"));
+
+        assertEquals(2, scene.getMeshTypeCount());
+        assertEquals(0, scene.getMeshType("b"));
+        assertEquals(1, scene.getMeshType("a"));
+        assertArrayEquals(new int[]{0, 1, 0}, Arrays.copyOf(scene.getMeshTypes(), 3));
+        assertEquals(2.f, scene.getPositions()[4], 0.f);
+        assertEquals(90.f, scene.getYaws()[1], 0.f);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsUnitsWithoutAPosition() {
+        Scene.parse(new StringReader("{ \"units\": [ { \"id\": \"A\", \"mesh\": \"b\" } ] }"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsDuplicateUnits() {
+        final Scene scene = new Scene(2);
+        final int meshType = scene.addMeshType("mesh");
+        scene.addUnit("A", meshType, 0.f, 0.f, 0.f, 0.f);
+        scene.addUnit("A", meshType, 1.f, 0.f, 0.f, 0.f);
+    }
+
+    @Test
+    public void growsKeepingTheUnits() {
+        final Scene scene = Scene.createGrid(100, 2.f, "a", "b");
+        scene.getValues()[42 * Scene.VALUE_SIZE + 2] = .5f;
+        scene.getValues()[42 * Scene.VALUE_SIZE + 6] = 1.f;
+
+        for (int i = 0; i < 1000; i++) {
+            scene.addUnit("More" + i, 1, i, 0.f, 0.f, 0.f);
+        }
+
+        assertEquals(1100, scene.size());
+        assertEquals(42, scene.getUnitNum("Unit43"));
+        assertEquals(.5f, scene.getValues()[42 * Scene.VALUE_SIZE + 2], 0.f);
+        assertEquals(1.f, scene.getValues()[42 * Scene.VALUE_SIZE + 6], 0.f);
+        assertEquals(999.f, scene.getPositions()[1099 * Scene.POSITION_SIZE], 0.f);
+    }
+
+    @Test
+    public void removesByMovingTheLastUnitIntoTheGap() {
+        final Scene scene = Scene.createGrid(4, 2.f, "a", "b");
+        final Unit lastData = new Unit();
+        scene.setData(3, lastData);
+        final float lastX = scene.getPositions()[3 * Scene.POSITION_SIZE];
+
+        assertTrue(scene.removeUnit("Unit2"));
+        assertFalse(scene.removeUnit("Unit2"));
+
+        assertEquals(3, scene.size());
+        assertEquals(-1, scene.getUnitNum("Unit2"));
+        assertEquals(1, scene.getUnitNum("Unit4"));
+        assertEquals("Unit4", scene.getId(1));
+        assertSame(lastData, scene.getData(1));
+        assertEquals(lastX, scene.getPositions()[Scene.POSITION_SIZE], 0.f);
+        assertEquals(1, scene.getMeshTypes()[1]);
+    }
+}
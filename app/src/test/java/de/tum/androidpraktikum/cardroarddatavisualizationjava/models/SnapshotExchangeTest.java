@@ -0,0 +1,236 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SnapshotExchangeTest {
+    /**
+     * Size and number of the snapshots of the stress tests.
+     */
+    private static final int UNITS = 600;
+    private static final int PUBLISHES = 20000;
+    /**
+     * Upper bound of the 99th percentile of an acquire on the GL thread, far more than a swap takes, to catch waiting.
+     */
+    private static final long MAX_ACQUIRE_NANOS = 50000L;
+
+    private final SnapshotExchange exchange = new SnapshotExchange(1);
+
+    @Test
+    public void acquiresNothingBeforeAPublish() {
+        assertNull(exchange.acquire());
+    }
+
+    @Test
+    public void acquiresTheNewestSnapshotOnce() {
+        for (int temperature = 1; temperature <= 3; temperature++) {
+            exchange.publish(createUpdate(0, 2, temperature));
+        }
+
+        final TelemetrySnapshot snapshot = exchange.acquire();
+        assertEquals(2, snapshot.size());
+        assertEquals(3, snapshot.getTemperature(0));
+        assertNull(exchange.acquire());
+        assertEquals(3, exchange.getPublished());
+        assertEquals(1, exchange.getAcquired());
+    }
+
+    @Test
+    public void keepsTheAcquiredSnapshotWhilePublishing() {
+        exchange.publish(createUpdate(0, 2, 1));
+        final TelemetrySnapshot snapshot = exchange.acquire();
+        for (int temperature = 2; temperature <= 10; temperature++) {
+            exchange.publish(createUpdate(0, 2, temperature));
+        }
+
+        assertEquals(1, snapshot.getTemperature(1));
+        assertEquals(10, exchange.acquire().getTemperature(1));
+    }
+
+    @Test
+    public void mergesTheUpdatesOfSomeUnits() {
+        exchange.publish(createUpdate(0, 3, 1));
+        exchange.publish(createUpdate(1, 1, 2));
+        exchange.publish(createUpdate(3, 1, 3));
+
+        // The dropped snapshots lose nothing.
+        final TelemetrySnapshot snapshot = exchange.acquire();
+        assertEquals(4, snapshot.size());
+        assertEquals("Unit1", snapshot.getId(0));
+        assertEquals(1, snapshot.getTemperature(0));
+        assertEquals(2, snapshot.getTemperature(1));
+        assertEquals(1, snapshot.getTemperature(2));
+        assertEquals("Unit4", snapshot.getId(3));
+        assertEquals(3, snapshot.getTemperature(3));
+    }
+
+    /**
+     * Publishes as fast as possible, while the GL thread acquires: every snapshot acquired has to be one published as a
+     * whole, newer than the one before.
+     */
+    @Test
+    public void neverTearsASnapshot() throws InterruptedException {
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final TelemetrySnapshot update = createUpdate(0, UNITS, 0);
+                for (int sequence = 1; sequence <= PUBLISHES; sequence++) {
+                    for (int slot = 0; slot < UNITS; slot++) {
+                        setSequence(update, slot, sequence);
+                    }
+                    exchange.publish(update);
+                }
+            }
+        });
+
+        final Consumer consumer = new Consumer(producer) {
+            private int lastSequence;
+
+            @Override
+            void check(TelemetrySnapshot snapshot) {
+                assertEquals(UNITS, snapshot.size());
+                final int sequence = getSequence(snapshot, 0);
+                assertTrue(sequence > lastSequence);
+                for (int slot = 1; slot < UNITS; slot++) {
+                    assertEquals(sequence, getSequence(snapshot, slot));
+                }
+                lastSequence = sequence;
+            }
+        };
+        consumer.run("one producer");
+
+        assertEquals(PUBLISHES, getSequence(consumer.last, UNITS - 1));
+    }
+
+    /**
+     * Like {@link #neverTearsASnapshot()}, but the stream and a poll publish the updates of half of the units each.
+     */
+    @Test
+    public void neverTearsTheUpdatesOfSeveralProducers() throws InterruptedException {
+        final Thread[] producers = new Thread[2];
+        for (int i = 0; i < producers.length; i++) {
+            final int first = i * UNITS / 2;
+            producers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final TelemetrySnapshot update = createUpdate(first, UNITS / 2, 0);
+                    for (int sequence = 1; sequence <= PUBLISHES / 2; sequence++) {
+                        for (int slot = 0; slot < UNITS / 2; slot++) {
+                            setSequence(update, slot, sequence);
+                        }
+                        exchange.publish(update);
+                    }
+                }
+            });
+        }
+        // All the units are there from the start.
+        exchange.publish(createUpdate(0, UNITS, 0));
+        producers[1].start();
+
+        final Consumer consumer = new Consumer(producers[0]) {
+            private final int[] lastSequences = new int[2];
+
+            @Override
+            void check(TelemetrySnapshot snapshot) {
+                assertEquals(UNITS, snapshot.size());
+                for (int half = 0; half < 2; half++) {
+                    final int sequence = getSequence(snapshot, half * UNITS / 2);
+                    assertTrue(sequence >= lastSequences[half]);
+                    for (int slot = half * UNITS / 2; slot < (half + 1) * UNITS / 2; slot++) {
+                        assertEquals(sequence, getSequence(snapshot, slot));
+                    }
+                    lastSequences[half] = sequence;
+                }
+            }
+        };
+        consumer.run("two producers");
+        producers[1].join();
+
+        // The last one published may not have been acquired yet.
+        final TelemetrySnapshot last = exchange.acquire();
+        consumer.check(last != null ? last : consumer.last);
+        assertEquals(PUBLISHES / 2, getSequence(last != null ? last : consumer.last, 0));
+        assertEquals(PUBLISHES / 2, getSequence(last != null ? last : consumer.last, UNITS - 1));
+    }
+
+    /**
+     * Acquires the snapshots like the GL thread, until the producer is done, and measures the time of the acquires.
+     */
+    private abstract class Consumer {
+        private final Thread producer;
+        TelemetrySnapshot last;
+
+        Consumer(Thread producer) {
+            this.producer = producer;
+        }
+
+        abstract void check(TelemetrySnapshot snapshot);
+
+        void run(String name) throws InterruptedException {
+            final long[] acquireNanos = new long[1 << 20];
+            int acquires = 0;
+            int checked = 0;
+            final AtomicBoolean done = new AtomicBoolean();
+            final long start = System.nanoTime();
+            producer.start();
+            while (!done.get()) {
+                // Read before the acquire, so that nothing published before is missed.
+                done.set(!producer.isAlive());
+                final long acquireStart = System.nanoTime();
+                final TelemetrySnapshot snapshot = exchange.acquire();
+                acquireNanos[acquires++ & (acquireNanos.length - 1)] = System.nanoTime() - acquireStart;
+                if (snapshot != null) {
+                    check(snapshot);
+                    last = snapshot;
+                    checked++;
+                }
+            }
+            final long nanos = System.nanoTime() - start;
+            producer.join();
+
+            final long[] sorted = Arrays.copyOf(acquireNanos, Math.min(acquires, acquireNanos.length));
+            Arrays.sort(sorted);
+            final long percentile99 = sorted[sorted.length * 99 / 100];
+            System.out.println(String.format("%s: %8.0f updates/s, %5d of %5d snapshots checked, acquire %5d ns median, %6d ns 99th percentile, %8d ns max",
+                    name, exchange.getPublished() / (nanos / 1e9), checked, exchange.getPublished(),
+                    sorted[sorted.length / 2], percentile99, sorted[sorted.length - 1]));
+
+            assertTrue(checked > 0);
+            assertTrue(exchange.getPublished() / (nanos / 1e9) > 1000);
+            assertTrue("Acquiring took " + percentile99 + " ns", percentile99 < MAX_ACQUIRE_NANOS);
+        }
+    }
+
+    /**
+     * The sequence is stored in all the fields, so that a snapshot mixing two of them shows.
+     */
+    private static void setSequence(TelemetrySnapshot snapshot, int slot, int sequence) {
+        snapshot.setTemperature(slot, sequence);
+        snapshot.setViscosity(slot, sequence);
+        snapshot.setLevel(slot, sequence);
+    }
+
+    private static int getSequence(TelemetrySnapshot snapshot, int slot) {
+        final int sequence = snapshot.getTemperature(slot);
+        assertEquals(sequence, snapshot.getViscosity(slot));
+        assertEquals(sequence, snapshot.getLevel(slot), 0.f);
+        return sequence;
+    }
+
+    /**
+     * @return the units Unit{first + 1} to Unit{first + count} at the {@code temperature}.
+     */
+    private static TelemetrySnapshot createUpdate(int first, int count, int temperature) {
+        final TelemetrySnapshot update = new TelemetrySnapshot(count);
+        for (int i = first; i < first + count; i++) {
+            final int slot = update.add("Unit" + (i + 1));
+            update.setName(slot, "Aging vessel " + (i + 1));
+            update.setTemperature(slot, temperature);
+        }
+        return update;
+    }
+}
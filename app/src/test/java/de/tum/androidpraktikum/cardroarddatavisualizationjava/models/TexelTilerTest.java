@@ -0,0 +1,99 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.models;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+public class TexelTilerTest {
+    /**
+     * A quad in the xz plane from (-1, -1) to (1, 1), whose texels run from (-1.5, -1.5) to (2.5, 2.5) like the ones
+     * of the floor.
+     */
+    private static final float[] QUAD = {
+            -1, 0, -1, 0, 1, 0, -1.5f, -1.5f,
+            1, 0, -1, 0, 1, 0, 2.5f, -1.5f,
+            1, 0, 1, 0, 1, 0, 2.5f, 2.5f,
+            -1, 0, 1, 0, 1, 0, -1.5f, 2.5f,
+    };
+    private static final int[] QUAD_INDICES = {0, 1, 2, 0, 2, 3};
+
+    private static FloatBuffer floats(float[] values) {
+        final FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(values).position(0);
+        return buffer;
+    }
+
+    @Test
+    public void tellsRepeatingTexels() {
+        assertTrue(TexelTiler.isRepeating(floats(QUAD), 4));
+        assertFalse(TexelTiler.isRepeating(floats(new float[]{0, 0, 0, 0, 1, 0, 0.f, 1.f, 1, 0, 0, 0, 1, 0, 1.f, 0.5f}), 2));
+    }
+
+    @Test
+    public void cutsTheQuadIntoCellsOfTheTexelGrid() {
+        final TexelTiler texelTiler = new TexelTiler(floats(QUAD), QUAD_INDICES, new int[]{6});
+        final FloatBuffer vertexData = texelTiler.getVertexData();
+        final int[] indices = texelTiler.getIndices();
+
+        assertEquals(indices.length, texelTiler.getLevelIndexCounts()[0]);
+        float area = 0.f;
+        for (int i = 0; i < indices.length; i += 3) {
+            final float[] a = vertex(vertexData, indices[i]);
+            final float[] b = vertex(vertexData, indices[i + 1]);
+            final float[] c = vertex(vertexData, indices[i + 2]);
+            for (float[] vertex : new float[][]{a, b, c}) {
+                assertTrue(vertex[MeshIndexer.TEXEL_OFFSET] >= 0.f && vertex[MeshIndexer.TEXEL_OFFSET] <= 1.f);
+                assertTrue(vertex[MeshIndexer.TEXEL_OFFSET + 1] >= 0.f && vertex[MeshIndexer.TEXEL_OFFSET + 1] <= 1.f);
+                assertEquals(1.f, vertex[MeshIndexer.NORMAL_OFFSET + 1], 1e-6f);
+                // The texel keeps its fraction: the position tells where it was.
+                final float s = (vertex[0] + 1.f) * 2.f - 1.5f;
+                final float fraction = s - (float) Math.floor(s);
+                final float texel = vertex[MeshIndexer.TEXEL_OFFSET];
+                assertTrue(Math.abs(texel - fraction) < 1e-5f || Math.abs(texel - fraction - 1.f) < 1e-5f
+                        || Math.abs(texel - fraction + 1.f) < 1e-5f);
+            }
+            // The same winding as the quad.
+            final float cross = (b[0] - a[0]) * (c[2] - a[2]) - (b[2] - a[2]) * (c[0] - a[0]);
+            assertTrue(cross > 0.f);
+            area += cross / 2.f;
+        }
+        // The pieces cover the quad.
+        assertEquals(4.f, area, 1e-4f);
+        // 5 x 5 cells (half ones at the borders) of two triangles. The diagonal of the quad runs through the corners.
+        assertEquals(50, indices.length / 3);
+        // The corners are shared by the pieces of a cell, but not across cells.
+        assertEquals(25 * 4, texelTiler.getVerticesCount());
+    }
+
+    @Test
+    public void keepsTheLevelsApart() {
+        final int[] indices = {0, 1, 2, 0, 2, 3, 0, 1, 2};
+        final TexelTiler texelTiler = new TexelTiler(floats(QUAD), indices, new int[]{6, 3});
+
+        final int[] levels = texelTiler.getLevelIndexCounts();
+        assertEquals(2, levels.length);
+        assertEquals(texelTiler.getIndices().length, levels[0] + levels[1]);
+        assertTrue(levels[1] < levels[0]);
+    }
+
+    @Test
+    public void keepsTrianglesWithoutTexels() {
+        final float[] triangle = {0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0};
+        final TexelTiler texelTiler = new TexelTiler(floats(triangle), new int[]{0, 1, 2}, new int[]{3});
+
+        assertArrayEquals(new int[]{0, 1, 2}, texelTiler.getIndices());
+        assertEquals(3, texelTiler.getVerticesCount());
+    }
+
+    private static float[] vertex(FloatBuffer vertexData, int index) {
+        final float[] vertex = new float[MeshIndexer.FLOATS_PER_VERTEX];
+        for (int i = 0; i < vertex.length; i++) {
+            vertex[i] = vertexData.get(index * MeshIndexer.FLOATS_PER_VERTEX + i);
+        }
+        return vertex;
+    }
+}
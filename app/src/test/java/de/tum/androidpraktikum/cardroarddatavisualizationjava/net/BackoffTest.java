@@ -0,0 +1,44 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BackoffTest {
+    @Test
+    public void doublesUpToTheMaximum() {
+        final Backoff backoff = new Backoff(1000, 30000, new Random(1));
+        final long[] caps = {1000, 2000, 4000, 8000, 16000, 30000, 30000, 30000};
+        for (long cap : caps) {
+            final long delay = backoff.nextDelayMillis();
+            assertTrue(delay + " not in [" + cap / 2 + "; " + cap + "]", delay >= cap / 2 && delay <= cap);
+        }
+        assertEquals(caps.length, backoff.getFailures());
+
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 1000);
+    }
+
+    @Test
+    public void spreadsTheRetries() {
+        final Backoff first = new Backoff(1000, 30000, new Random(1));
+        final Backoff second = new Backoff(1000, 30000, new Random(2));
+        int same = 0;
+        for (int i = 0; i < 8; i++) {
+            if (first.nextDelayMillis() == second.nextDelayMillis()) {
+                same++;
+            }
+        }
+        assertTrue(same < 2);
+    }
+
+    @Test
+    public void neverOverflows() {
+        final Backoff backoff = new Backoff(1, Long.MAX_VALUE / 3, new Random(3));
+        for (int i = 0; i < 200; i++) {
+            assertTrue(backoff.nextDelayMillis() >= 0);
+        }
+    }
+}
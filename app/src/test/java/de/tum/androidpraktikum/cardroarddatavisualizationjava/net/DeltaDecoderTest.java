@@ -0,0 +1,209 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+import static org.junit.Assert.*;
+
+public class DeltaDecoderTest {
+    private final DeltaEncoder encoder = new DeltaEncoder(StubTelemetryServer.KEYFRAME_INTERVAL);
+    private final DeltaDecoder decoder = new DeltaDecoder();
+    private final TelemetrySnapshot changed = new TelemetrySnapshot(1);
+
+    @Test
+    public void sendsAllTheUnitsInAKeyframe() throws IOException {
+        final TelemetrySnapshot row = parse(TelemetryClientTest.createRow(6));
+        encoder.update(row);
+
+        assertTrue(decode(encoder.encode(0)));
+        assertSameUnits(row, changed);
+        assertSameUnits(row, decoder.getUnits());
+        assertEquals(1, decoder.getSequence());
+    }
+
+    @Test
+    public void sendsOnlyTheChangedFields() throws IOException {
+        final TelemetrySnapshot row = parse(TelemetryClientTest.createRow(600));
+        encoder.update(row);
+        decode(encoder.encode(0));
+
+        row.setLevel(41, 12.25f);
+        encoder.update(row);
+        final byte[] delta = encoder.encode(decoder.getSequence());
+        assertFalse(decode(delta));
+
+        // The whole unit, though only its level was sent.
+        assertEquals(1, changed.size());
+        assertEquals("Unit42", changed.getId(0));
+        assertEquals(12.25f, changed.getLevel(0), 0.f);
+        assertEquals("Aging vessel 42", changed.getName(0));
+        assertTrue("A delta of " + delta.length + " bytes", delta.length < 16);
+        assertSameUnits(row, decoder.getUnits());
+
+        // Nothing changed.
+        encoder.update(row);
+        assertFalse(decode(encoder.encode(decoder.getSequence())));
+        assertEquals(0, changed.size());
+    }
+
+    @Test
+    public void sendsTheStringsOnce() throws IOException {
+        final TelemetrySnapshot row = parse(TelemetryClientTest.createRow(6));
+        encoder.update(row);
+        // The ids and the names, but the stage once.
+        assertEquals(6 + 6 + 1, encoder.getDictionarySize());
+        decode(encoder.encode(0));
+
+        row.setStage(2, "Filtration");
+        encoder.update(row);
+        decode(encoder.encode(decoder.getSequence()));
+        row.setStage(4, "Filtration");
+        encoder.update(row);
+        decode(encoder.encode(decoder.getSequence()));
+
+        assertEquals(6 + 6 + 2, encoder.getDictionarySize());
+        assertEquals("Filtration", changed.getStage(0));
+        assertSameUnits(row, decoder.getUnits());
+    }
+
+    @Test
+    public void catchesUpOnSeveralUpdates() throws IOException {
+        final TelemetrySnapshot row = parse(TelemetryClientTest.createRow(6));
+        encoder.update(row);
+        decode(encoder.encode(0));
+
+        final TelemetrySnapshot update = new TelemetrySnapshot(1);
+        for (int i = 0; i < 5; i++) {
+            update.clear();
+            final int slot = update.add("Unit" + (i % 3 + 1));
+            update.setName(slot, "Tank " + i);
+            update.setTemperature(slot, -i * 1000);
+            update.setLevel(slot, i * 10.f);
+            encoder.update(update);
+
+            row.setName(i % 3, "Tank " + i);
+            row.setTemperature(i % 3, -i * 1000);
+            row.setViscosity(i % 3, 0);
+            row.setLevel(i % 3, i * 10.f);
+            row.setStage(i % 3, null);
+        }
+        // A unit, which wasn't there before.
+        update.clear();
+        update.add("Unit7");
+        encoder.update(update);
+        row.add("Unit7");
+
+        assertFalse(decode(encoder.encode(decoder.getSequence())));
+        assertEquals(4, changed.size());
+        assertSameUnits(row, decoder.getUnits());
+        assertEquals(7, decoder.getSequence());
+    }
+
+    @Test
+    public void sendsKeyframesPeriodically() throws IOException {
+        final DeltaEncoder encoder = new DeltaEncoder(4);
+        final TelemetrySnapshot row = parse(TelemetryClientTest.createRow(6));
+        final boolean[] keyframes = new boolean[10];
+        for (int sequence = 1; sequence < keyframes.length; sequence++) {
+            row.setTemperature(0, sequence);
+            encoder.update(row);
+            keyframes[sequence] = decode(encoder.encode(decoder.getSequence()));
+        }
+
+        assertArrayEquals(new boolean[]{false, true, false, false, true, false, false, false, true, false}, keyframes);
+        assertSameUnits(row, decoder.getUnits());
+        // As well as to the clients, which are ahead, e.g. of a restarted server.
+        assertTrue(encoder.isKeyframe(encoder.getSequence() + 1));
+    }
+
+    @Test
+    public void startsOverOnADeltaForAnotherSequence() throws IOException {
+        final TelemetrySnapshot row = parse(TelemetryClientTest.createRow(6));
+        encoder.update(row);
+        encoder.update(row);
+        final byte[] delta = encoder.encode(1);
+        decode(encoder.encode(0));
+
+        try {
+            decode(delta);
+            fail();
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertEquals(0, decoder.getSequence());
+        assertEquals(0, decoder.getUnits().size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnotherVersion() throws IOException {
+        encoder.update(parse(TelemetryClientTest.createRow(6)));
+        final byte[] frame = encoder.encode(0);
+        frame[0]++;
+        decode(frame);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsATruncatedFrame() throws IOException {
+        encoder.update(parse(TelemetryClientTest.createRow(6)));
+        final byte[] frame = encoder.encode(0);
+        decode(Arrays.copyOf(frame, frame.length - 1));
+    }
+
+    @Test
+    public void pollsTheDeltasFromTheServer() throws IOException {
+        final StubTelemetryServer server = new StubTelemetryServer();
+        try {
+            server.publish(TelemetryClientTest.createRow(60));
+            assertTrue(poll(server));
+            final String row = TelemetryClientTest.createRow(60).replace("\"Temp\":7,", "\"Temp\":-7,");
+            server.publish(row);
+            assertFalse(poll(server));
+
+            assertEquals(1, changed.size());
+            assertEquals(-7, changed.getTemperature(0));
+            assertSameUnits(parse(row), decoder.getUnits());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private boolean poll(StubTelemetryServer server) throws IOException {
+        final URL url = new URL(server.getDeltasUrl() + "?since=" + decoder.getSequence());
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream body = connection.getInputStream()) {
+            assertEquals(DeltaFormat.CONTENT_TYPE, connection.getContentType());
+            return decoder.decode(body, changed);
+        }
+    }
+
+    private boolean decode(byte[] frame) throws IOException {
+        return decoder.decode(new ByteArrayInputStream(frame), changed);
+    }
+
+    static TelemetrySnapshot parse(String json) throws IOException {
+        final TelemetrySnapshot snapshot = new TelemetrySnapshot(1);
+        new TelemetryDecoder().decode(new StringReader(json), snapshot);
+        return snapshot;
+    }
+
+    private static void assertSameUnits(TelemetrySnapshot expected, TelemetrySnapshot actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int slot = 0; slot < expected.size(); slot++) {
+            assertEquals(expected.getId(slot), actual.getId(slot));
+            assertEquals(expected.getName(slot), actual.getName(slot));
+            assertEquals(expected.getTemperature(slot), actual.getTemperature(slot));
+            assertEquals(expected.getViscosity(slot), actual.getViscosity(slot));
+            assertEquals(expected.getLevel(slot), actual.getLevel(slot), 0.f);
+            assertEquals(expected.getStage(slot), actual.getStage(slot));
+        }
+    }
+}
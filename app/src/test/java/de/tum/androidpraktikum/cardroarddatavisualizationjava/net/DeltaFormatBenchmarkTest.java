@@ -0,0 +1,145 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the bytes sent and the time to decode per update of large halls: the whole latest row as JSON against the
+ * frames of a {@link DeltaEncoder}. Every update a percent of the units changes its level and every tenth one a percent
+ * its temperature as well, as the telemetry of a brewery would.
+ */
+public class DeltaFormatBenchmarkTest {
+    private static final int[] UNITS = {60, 600, 6000};
+    private static final int UPDATES = 100;
+    private static final float CHANGED_UNITS = .01f;
+    private static final int WARM_UP_MEASUREMENTS = 10;
+    private static final int MEASUREMENTS = 11;
+
+    @Test
+    public void sendsAndDecodesLessThanTheRow() throws IOException {
+        for (final int units : UNITS) {
+            final Random random = new Random(42);
+            final TelemetrySnapshot row = DeltaDecoderTest.parse(TelemetryClientTest.createRow(units));
+            final DeltaEncoder encoder = new DeltaEncoder(UPDATES * 2);
+            encoder.update(row);
+            final byte[] keyframe = encoder.encode(0);
+
+            // Each delta brings the client from the previous update to the next one.
+            final byte[][] deltas = new byte[UPDATES][];
+            final long[] deltaBytes = new long[UPDATES];
+            final long[] gzippedDeltaBytes = new long[UPDATES];
+            for (int update = 0; update < UPDATES; update++) {
+                for (int i = 0; i < units * CHANGED_UNITS; i++) {
+                    final int slot = random.nextInt(units);
+                    row.setLevel(slot, random.nextInt(10000) / 100.f);
+                    if (update % 10 == 0) {
+                        row.setTemperature(slot, 10 + random.nextInt(80));
+                    }
+                }
+                final long since = encoder.getSequence();
+                encoder.update(row);
+                deltas[update] = encoder.encode(since);
+                deltaBytes[update] = deltas[update].length;
+                gzippedDeltaBytes[update] = gzip(deltas[update]).length;
+            }
+            Arrays.sort(deltaBytes);
+            Arrays.sort(gzippedDeltaBytes);
+            final String json = toJson(row, encoder.getSequence());
+            final byte[] jsonBytes = json.getBytes("UTF-8");
+
+            final long jsonNanos = measureJson(json, units);
+            final long deltaNanos = measureDeltas(keyframe, deltas, row);
+
+            System.out.println(String.format("%4d units: json %7d bytes (%6d gzipped), keyframe %6d bytes (%6d gzipped), "
+                            + "delta %5d bytes (%5d gzipped) median; decoding json %9.3f us, delta %7.3f us",
+                    units, jsonBytes.length, gzip(jsonBytes).length, keyframe.length, gzip(keyframe).length,
+                    deltaBytes[UPDATES / 2], gzippedDeltaBytes[UPDATES / 2], jsonNanos / 1e3, deltaNanos / 1e3));
+
+            assertTrue(keyframe.length < jsonBytes.length);
+            if (units == UNITS[UNITS.length - 1]) {
+                assertTrue(gzippedDeltaBytes[UPDATES / 2] * 10 < gzip(jsonBytes).length);
+                assertTrue(deltaNanos * 10 < jsonNanos);
+            }
+        }
+    }
+
+    /**
+     * @return the median nanoseconds to decode the row.
+     */
+    private static long measureJson(String json, int units) throws IOException {
+        final TelemetryDecoder decoder = new TelemetryDecoder();
+        final TelemetrySnapshot snapshot = new TelemetrySnapshot(units);
+        final long[] nanos = new long[MEASUREMENTS];
+        for (int measurement = -WARM_UP_MEASUREMENTS; measurement < MEASUREMENTS; measurement++) {
+            final long start = System.nanoTime();
+            decoder.decode(new StringReader(json), snapshot);
+            if (measurement >= 0) {
+                nanos[measurement] = System.nanoTime() - start;
+            }
+            assertEquals(units, snapshot.size());
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASUREMENTS / 2];
+    }
+
+    /**
+     * @return the median nanoseconds to decode a delta.
+     */
+    private static long measureDeltas(byte[] keyframe, byte[][] deltas, TelemetrySnapshot row) throws IOException {
+        final DeltaDecoder decoder = new DeltaDecoder();
+        final TelemetrySnapshot changed = new TelemetrySnapshot(row.size());
+        final long[] nanos = new long[MEASUREMENTS];
+        for (int measurement = -WARM_UP_MEASUREMENTS; measurement < MEASUREMENTS; measurement++) {
+            decoder.decode(new ByteArrayInputStream(keyframe), changed);
+            final long start = System.nanoTime();
+            for (byte[] delta : deltas) {
+                decoder.decode(new ByteArrayInputStream(delta), changed);
+            }
+            if (measurement >= 0) {
+                nanos[measurement] = (System.nanoTime() - start) / deltas.length;
+            }
+        }
+        Arrays.sort(nanos);
+
+        // The client ends up with the latest data.
+        for (int slot = 0; slot < row.size(); slot++) {
+            assertEquals(row.getLevel(slot), decoder.getUnits().getLevel(slot), 0.f);
+            assertEquals(row.getTemperature(slot), decoder.getUnits().getTemperature(slot));
+        }
+        return nanos[MEASUREMENTS / 2];
+    }
+
+    /**
+     * @return the units as the latest row of the telemetry server.
+     */
+    private static String toJson(TelemetrySnapshot units, long id) {
+        final StringBuilder row = new StringBuilder("[{\"id\":").append(id);
+        for (int slot = 0; slot < units.size(); slot++) {
+            row.append(",\"").append(units.getId(slot)).append("\":{\"Name\":\"").append(units.getName(slot))
+                    .append("\",\"Temp\":").append(units.getTemperature(slot))
+                    .append(",\"Visco\":").append(units.getViscosity(slot))
+                    .append(",\"Level\":").append(units.getLevel(slot))
+                    .append(",\"Stage\":\"").append(units.getStage(slot)).append("\"}");
+        }
+        return row.append("}]").toString();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write(data);
+        gzip.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,404 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+/**
+ * A local stand-in for the telemetry server: serves the latest row at {@link #PATH}, with an ETag per version of the
+ * row, gzip compressed on request. Counts the requests and the connections they came in on.
+ * <p>
+ * The updates {@link #publish(String) published} are pushed as server-sent events at {@link #EVENTS_PATH} and
+ * long-polled at {@link #UPDATES_PATH}. It keeps all of them, so a new client gets the whole history and a client
+ * resuming from a sequence the updates after it. The same updates are served as binary frames of a
+ * {@link DeltaEncoder} at {@link #DELTAS_PATH}, for the sequence a client acknowledges with {@code since}.
+ */
+public class StubTelemetryServer {
+    public static final String PATH = "/latestRow";
+    public static final String EVENTS_PATH = "/events";
+    public static final String UPDATES_PATH = "/updates";
+    public static final String DELTAS_PATH = "/deltas";
+    /**
+     * Number of the updates, after which the clients of the deltas get a keyframe again.
+     */
+    public static final int KEYFRAME_INTERVAL = 100;
+    /**
+     * Milliseconds between the comments, which keep an idle stream alive.
+     */
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * The updates published, the one with the sequence n at n - 1.
+     */
+    private final List<String> updates = new ArrayList<>();
+    private final TelemetryDecoder decoder = new TelemetryDecoder();
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot(16);
+    private final DeltaEncoder deltas = new DeltaEncoder(KEYFRAME_INTERVAL);
+    /**
+     * Incremented to end all the streams.
+     */
+    private int streamGeneration;
+    private boolean stopped;
+    private volatile boolean streamingSupported = true;
+    /**
+     * Status to answer the long polls with instead of the updates, 0 to serve them.
+     */
+    private volatile int longPollFailureStatus;
+    /**
+     * Whether the long polls are answered right away with no events, like by a proxy.
+     */
+    private volatile boolean emptyLongPolls;
+    private volatile long longPollMillis = 2000;
+
+    private volatile byte[] row = "[{}]".getBytes();
+    private volatile int version;
+    /**
+     * Status to answer with instead of the row, 0 to serve the row.
+     */
+    private volatile int failureStatus;
+
+    private int requests;
+    private final Set<Integer> clientPorts = new HashSet<>();
+
+    public StubTelemetryServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.createContext(EVENTS_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveEvents(exchange);
+            }
+        });
+        server.createContext(UPDATES_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveUpdates(exchange);
+            }
+        });
+        server.createContext(DELTAS_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveDeltas(exchange);
+            }
+        });
+        // The streams and the long polls block a thread each.
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        synchronized (this) {
+            requests++;
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        drain(exchange.getRequestBody());
+
+        if (failureStatus != 0) {
+            final byte[] error = "error".getBytes();
+            exchange.sendResponseHeaders(failureStatus, error.length);
+            exchange.getResponseBody().write(error);
+            exchange.close();
+            return;
+        }
+
+        final String eTag = "\"" + version + "\"";
+        if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = row;
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            body = gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("ETag", eTag);
+        exchange.sendResponseHeaders(200, body.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private void serveEvents(HttpExchange exchange) throws IOException {
+        synchronized (this) {
+            requests++;
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        drain(exchange.getRequestBody());
+        if (!streamingSupported) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        final String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        int sent = lastEventId == null ? 0 : Integer.parseInt(lastEventId);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        final OutputStream out = exchange.getResponseBody();
+        try {
+            // Reconnect quickly.
+            out.write("retry: 10\n\n".getBytes());
+            out.flush();
+            final int generation;
+            synchronized (this) {
+                generation = streamGeneration;
+            }
+            while (true) {
+                final StringBuilder events = new StringBuilder();
+                synchronized (this) {
+                    if (sent == updates.size() && !stopped && generation == streamGeneration) {
+                        waitForUpdates(HEARTBEAT_MILLIS);
+                    }
+                    if (stopped || generation != streamGeneration) {
+                        break;
+                    }
+                    for (; sent < updates.size(); sent++) {
+                        appendEvent(events, sent + 1, updates.get(sent));
+                    }
+                }
+                // A comment, if there's nothing new.
+                out.write(events.length() > 0 ? events.toString().getBytes("UTF-8") : ":\n".getBytes());
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client is gone.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serveUpdates(HttpExchange exchange) throws IOException {
+        synchronized (this) {
+            requests++;
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        drain(exchange.getRequestBody());
+        if (longPollFailureStatus != 0) {
+            exchange.sendResponseHeaders(longPollFailureStatus, -1);
+            exchange.close();
+            return;
+        }
+        if (emptyLongPolls) {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        final String query = exchange.getRequestURI().getQuery();
+        final int since = query != null && query.startsWith("since=") ? Integer.parseInt(query.substring(6)) : -1;
+        final StringBuilder events = new StringBuilder();
+        synchronized (this) {
+            final long deadline = System.currentTimeMillis() + longPollMillis;
+            long now;
+            while (updates.size() <= Math.max(since, 0) && !stopped && (now = System.currentTimeMillis()) < deadline) {
+                waitForUpdates(deadline - now);
+            }
+            for (int sequence = Math.max(since, 0) + 1; sequence <= updates.size(); sequence++) {
+                appendEvent(events, sequence, updates.get(sequence - 1));
+            }
+        }
+
+        if (events.length() == 0) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] body = events.toString().getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, body.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private void serveDeltas(HttpExchange exchange) throws IOException {
+        synchronized (this) {
+            requests++;
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        drain(exchange.getRequestBody());
+
+        final String query = exchange.getRequestURI().getQuery();
+        final long since = query != null && query.startsWith("since=") ? Long.parseLong(query.substring(6)) : 0;
+        byte[] body;
+        synchronized (this) {
+            body = deltas.encode(since);
+        }
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            body = gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", DeltaFormat.CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private void waitForUpdates(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void appendEvent(StringBuilder events, int sequence, String data) {
+        events.append("id: ").append(sequence).append('\n');
+        for (String line : data.split("\n", -1)) {
+            events.append("data: ").append(line).append('\n');
+        }
+        events.append('\n');
+    }
+
+    /**
+     * Pushes an update and makes it the latest row.
+     *
+     * @return the sequence of the update.
+     */
+    public synchronized int publish(String update) {
+        try {
+            decoder.decode(new StringReader(update), snapshot);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        deltas.update(snapshot);
+        updates.add(update);
+        setRow(update);
+        notifyAll();
+        return updates.size();
+    }
+
+    /**
+     * Ends all the streams, as if the connections were cut.
+     */
+    public synchronized void dropStreams() {
+        streamGeneration++;
+        notifyAll();
+    }
+
+    public void setStreamingSupported(boolean streamingSupported) {
+        this.streamingSupported = streamingSupported;
+    }
+
+    public void setLongPollingSupported(boolean longPollingSupported) {
+        setLongPollFailureStatus(longPollingSupported ? 0 : 404);
+    }
+
+    /**
+     * @param status answer the long polls with it, 0 to serve the updates again
+     */
+    public void setLongPollFailureStatus(int status) {
+        longPollFailureStatus = status;
+    }
+
+    public void setEmptyLongPolls(boolean emptyLongPolls) {
+        this.emptyLongPolls = emptyLongPolls;
+    }
+
+    /**
+     * @param millis how long a long poll waits for updates at most
+     */
+    public void setLongPollMillis(long millis) {
+        longPollMillis = millis;
+    }
+
+    public URL getEventsUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + EVENTS_PATH);
+    }
+
+    public URL getUpdatesUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + UPDATES_PATH);
+    }
+
+    public URL getDeltasUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + DELTAS_PATH);
+    }
+
+    /**
+     * Replaces the row. Clients holding the ETag of the old one get the new one.
+     */
+    public void setRow(String row) {
+        this.row = row.getBytes();
+        version++;
+    }
+
+    /**
+     * @param status answer every request with it, 0 to serve the row again
+     */
+    public void setFailureStatus(int status) {
+        failureStatus = status;
+    }
+
+    public URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + PATH);
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the number of connections the requests came in on.
+     */
+    public synchronized int getConnections() {
+        return clientPorts.size();
+    }
+
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write(data);
+        gzip.close();
+        return bytes.toByteArray();
+    }
+
+    private static void drain(InputStream stream) throws IOException {
+        final byte[] buffer = new byte[1024];
+        while (stream.read(buffer) != -1) {
+            // Skip.
+        }
+        stream.close();
+    }
+}
@@ -0,0 +1,160 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TelemetryClientTest {
+    private static final int POLLS = 50;
+
+    private StubTelemetryServer server;
+    private TelemetryClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubTelemetryServer();
+        server.setRow(createRow(6));
+        client = new TelemetryClient(server.getUrl(), new Backoff(100, 1000, new Random(42)));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void getsNothingWhileTheRowIsUnchanged() throws IOException {
+        assertEquals(createRow(6), client.fetch());
+        final long bytes = client.getBytesReceived();
+        assertNull(client.fetch());
+        assertNull(client.fetch());
+        assertEquals(2, client.getNotModifiedResponses());
+        assertEquals(bytes, client.getBytesReceived());
+
+        server.setRow(createRow(7));
+        assertEquals(createRow(7), client.fetch());
+    }
+
+    @Test
+    public void readsCompressedRowsOfAnySize() throws IOException {
+        // Far beyond the 3000 chars, which were read before.
+        final String row = createRow(600);
+        server.setRow(row);
+        assertEquals(row, client.fetch());
+        assertEquals(row.length(), client.getBytesDecoded());
+        assertTrue(client.getBytesReceived() * 5 < client.getBytesDecoded());
+    }
+
+    @Test
+    public void keepsTheConnectionAlive() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            server.setRow(createRow(i));
+            client.fetch();
+            client.fetch();
+        }
+        assertEquals(20, server.getRequests());
+        assertEquals(1, server.getConnections());
+    }
+
+    @Test
+    public void backsOffOnFailures() throws IOException {
+        server.setFailureStatus(503);
+        long previousCap = 0;
+        for (int failure = 0; failure < 6; failure++) {
+            try {
+                client.fetch();
+                fail();
+            } catch (IOException e) {
+                // Expected.
+            }
+            final long cap = Math.min(100L << failure, 1000L);
+            assertTrue(client.getRetryDelayMillis() >= cap / 2 && client.getRetryDelayMillis() <= cap);
+            assertTrue(cap >= previousCap);
+            previousCap = cap;
+        }
+        assertEquals(6, client.getFailures());
+
+        server.setFailureStatus(0);
+        assertEquals(createRow(6), client.fetch());
+        assertEquals(0, client.getRetryDelayMillis());
+        // The errors didn't cost the connection either.
+        assertEquals(1, server.getConnections());
+    }
+
+    /**
+     * Compares polling an unchanged row with the client against a fresh uncompressed request per poll, as before.
+     */
+    @Test
+    public void pollsCheaperThanFreshRequests() throws IOException {
+        server.setRow(createRow(60));
+        final long[] freshNanos = new long[POLLS];
+        long freshBytes = 0;
+        for (int poll = 0; poll < POLLS; poll++) {
+            final long start = System.nanoTime();
+            freshBytes += fetchFresh(server);
+            freshNanos[poll] = System.nanoTime() - start;
+        }
+        final int freshConnections = server.getConnections();
+
+        final long[] clientNanos = new long[POLLS];
+        for (int poll = 0; poll < POLLS; poll++) {
+            final long start = System.nanoTime();
+            client.fetch();
+            clientNanos[poll] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(freshNanos);
+        Arrays.sort(clientNanos);
+        System.out.println(String.format("fresh requests: %8.3f ms, %6d bytes per poll, %d connections",
+                freshNanos[POLLS / 2] / 1e6, freshBytes / POLLS, freshConnections));
+        System.out.println(String.format("client:         %8.3f ms, %6d bytes per poll, %d connections",
+                clientNanos[POLLS / 2] / 1e6, client.getBytesReceived() / POLLS, server.getConnections() - freshConnections));
+
+        assertEquals(POLLS, freshConnections);
+        assertEquals(POLLS + 1, server.getConnections());
+        assertEquals(POLLS - 1, client.getNotModifiedResponses());
+        assertTrue(client.getBytesReceived() * 10 < freshBytes);
+    }
+
+    /**
+     * Requests the row on a new connection without compression or validators.
+     *
+     * @return the body bytes.
+     */
+    private static long fetchFresh(StubTelemetryServer server) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) server.getUrl().openConnection();
+        connection.setRequestProperty("Connection", "close");
+        final InputStream stream = connection.getInputStream();
+        long bytes = 0;
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            bytes += read;
+        }
+        stream.close();
+        return bytes;
+    }
+
+    /**
+     * @return a latest row with the given number of units.
+     */
+    static String createRow(int units) {
+        final StringBuilder row = new StringBuilder("[{\"id\":1");
+        for (int i = 1; i <= units; i++) {
+            row.append(",\"Unit").append(i).append("\":{\"Name\":\"Aging vessel ").append(i)
+                    .append("\",\"Temp\":").append(i % 100)
+                    .append(",\"Visco\":").append(i % 37)
+                    .append(",\"Level\":").append(i % 100).append(".5")
+                    .append(",\"Stage\":\"Fermentation\"}");
+        }
+        return row.append("}]").toString();
+    }
+}
@@ -0,0 +1,108 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import com.google.gson.Gson;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Unit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the time to decode rows of 6 to 6k units: parsed into a tree and mapped per unit by reflection, as the app
+ * did before, against the single pass of the {@link TelemetryDecoder} into a reused {@link TelemetrySnapshot}.
+ */
+public class TelemetryDecoderBenchmarkTest {
+    private static final int[] UNITS = {6, 600, 6000};
+    /**
+     * Rows decoded per measurement, so that the small ones take long enough to be measured.
+     */
+    private static final int UNITS_PER_MEASUREMENT = 60000;
+    private static final int WARM_UP_MEASUREMENTS = 10;
+    private static final int MEASUREMENTS = 11;
+
+    @Test
+    public void decodesFasterThanTheTree() throws Exception {
+        final TelemetryDecoder decoder = new TelemetryDecoder();
+        final TelemetrySnapshot snapshot = new TelemetrySnapshot(1);
+
+        for (final int units : UNITS) {
+            final String row = TelemetryClientTest.createRow(units);
+            final int rows = Math.max(1, UNITS_PER_MEASUREMENT / units);
+
+            final long treeNanos = measure(new Decoding() {
+                @Override
+                public void run() throws Exception {
+                    final Map<String, Unit> modelData = decodeTree(row);
+                    assertEquals(units, modelData.size());
+                }
+            }, rows);
+            final long streamNanos = measure(new Decoding() {
+                @Override
+                public void run() throws Exception {
+                    decoder.decode(new StringReader(row), snapshot);
+                    assertEquals(units, snapshot.size());
+                }
+            }, rows);
+
+            System.out.println(String.format("%4d units, %7d chars: tree %9.3f us, single pass %9.3f us per row, %4.1fx",
+                    units, row.length(), treeNanos / 1e3, streamNanos / 1e3, (double) treeNanos / streamNanos));
+            if (units == UNITS[UNITS.length - 1]) {
+                assertTrue(streamNanos < treeNanos);
+            }
+        }
+    }
+
+    /**
+     * The way the row was decoded before: a tree of the whole row, then every unit printed and mapped again by Gson.
+     */
+    private static Map<String, Unit> decodeTree(String json) throws JSONException {
+        final Map<String, Unit> modelData = new HashMap<>();
+        final JSONObject row = new JSONArray(json).getJSONObject(0);
+        final Gson gson = new Gson();
+        final Iterator<?> keys = row.keys();
+        while (keys.hasNext()) {
+            final String key = (String) keys.next();
+            final Object unit = row.get(key);
+            if (unit instanceof JSONObject) {
+                modelData.put(key, gson.fromJson(unit.toString(), Unit.class));
+            }
+        }
+        return modelData;
+    }
+
+    /**
+     * @return the median nanoseconds per row.
+     */
+    private static long measure(Decoding decoding, int rows) throws Exception {
+        for (int i = 0; i < WARM_UP_MEASUREMENTS * rows; i++) {
+            decoding.run();
+        }
+
+        final long[] nanos = new long[MEASUREMENTS];
+        for (int measurement = 0; measurement < MEASUREMENTS; measurement++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < rows; i++) {
+                decoding.run();
+            }
+            nanos[measurement] = (System.nanoTime() - start) / rows;
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASUREMENTS / 2];
+    }
+
+    private interface Decoding {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,89 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+
+import static org.junit.Assert.*;
+
+public class TelemetryDecoderTest {
+    private final TelemetryDecoder decoder = new TelemetryDecoder();
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot(1);
+
+    @Test
+    public void decodesTheRow() throws IOException {
+        decode(TelemetryClientTest.createRow(6));
+
+        assertEquals(6, snapshot.size());
+        assertEquals("Unit1", snapshot.getId(0));
+        assertEquals("Unit6", snapshot.getId(5));
+        assertEquals("Aging vessel 3", snapshot.getName(2));
+        assertEquals(3, snapshot.getTemperature(2));
+        assertEquals(3, snapshot.getViscosity(2));
+        assertEquals(3.5f, snapshot.getLevel(2), 0.f);
+        assertEquals("Fermentation", snapshot.getStage(2));
+    }
+
+    @Test
+    public void decodesAnyNumberOfUnits() throws IOException {
+        // Far beyond the 3000 chars, which were read before.
+        decode(TelemetryClientTest.createRow(6000));
+
+        assertEquals(6000, snapshot.size());
+        assertEquals("Unit6000", snapshot.getId(5999));
+        assertEquals(6000 % 37, snapshot.getViscosity(5999));
+
+        // The storage is reused.
+        decode(TelemetryClientTest.createRow(2));
+        assertEquals(2, snapshot.size());
+        assertEquals("Aging vessel 2", snapshot.getName(1));
+    }
+
+    @Test
+    public void decodesTheRowWithoutTheArray() throws IOException {
+        decode("{\"id\":7,\"Unit4\":{\"Temp\":21}}");
+
+        assertEquals(1, snapshot.size());
+        assertEquals("Unit4", snapshot.getId(0));
+        assertEquals(21, snapshot.getTemperature(0));
+    }
+
+    @Test
+    public void skipsTheUnknownAndMissingFields() throws IOException {
+        decode("[{\"Unit1\":{\"Temp\":12.9,\"Pressure\":{\"bar\":[1,2]},\"Name\":null,\"Level\":\"40\"},"
+                + "\"Updated\":\"today\",\"Unit2\":{}}]");
+
+        assertEquals(2, snapshot.size());
+        assertEquals(12, snapshot.getTemperature(0));
+        assertEquals(40.f, snapshot.getLevel(0), 0.f);
+        assertNull(snapshot.getName(0));
+        assertEquals("Unit2", snapshot.getId(1));
+        assertEquals(0, snapshot.getTemperature(1));
+    }
+
+    @Test
+    public void clearsTheUnitsOfTheSlots() throws IOException {
+        decode("[{\"Unit1\":{\"Temp\":12,\"Stage\":\"Mashing\"}}]");
+        decode("[{\"Unit1\":{\"Level\":1}}]");
+
+        assertEquals(0, snapshot.getTemperature(0));
+        assertNull(snapshot.getStage(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsABadRow() throws IOException {
+        decode("[{\"Unit1\":{\"Temp\":\"hot\"}}]");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsATruncatedRow() throws IOException {
+        decode("[{\"Unit1\":{\"Temp\":1");
+    }
+
+    private void decode(String json) throws IOException {
+        decoder.decode(new StringReader(json), snapshot);
+    }
+}
@@ -0,0 +1,330 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TelemetryStreamTest {
+    /**
+     * Rate and number of the updates the latency is measured with.
+     */
+    private static final int UPDATES_PER_SECOND = 50;
+    private static final int UPDATES = 100;
+    /**
+     * The polling interval to compare with, a 20th of the one of the app, so that the test stays short.
+     */
+    private static final long POLL_INTERVAL_MILLIS = 250;
+
+    private StubTelemetryServer server;
+    private TelemetryStream stream;
+    private final BlockingQueue<Update> received = new LinkedBlockingQueue<>();
+    private final CountDownLatch unsupported = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubTelemetryServer();
+        server.setLongPollMillis(500);
+        stream = new TelemetryStream(server.getEventsUrl(), server.getUpdatesUrl(), new TelemetryStream.Listener() {
+            @Override
+            public void onUpdate(long sequence, String data) {
+                received.add(new Update(sequence, data));
+            }
+
+            @Override
+            public void onUnsupported() {
+                unsupported.countDown();
+            }
+        }, new Backoff(10, 100, new Random(42)));
+    }
+
+    @After
+    public void tearDown() {
+        stream.stop();
+        server.stop();
+    }
+
+    @Test
+    public void streamsTheUpdates() throws InterruptedException {
+        stream.start();
+        for (int i = 1; i <= 3; i++) {
+            server.publish("[{\"Unit" + i + "\":{}}]");
+        }
+
+        assertReceived(1, 3);
+        assertFalse(stream.isLongPolling());
+        assertEquals(3, stream.getSequence());
+    }
+
+    @Test
+    public void keepsTheLinesOfTheData() throws InterruptedException {
+        stream.start();
+        server.publish("[{\n\"Unit1\":{}\n}]");
+        assertEquals("[{\n\"Unit1\":{}\n}]", take().data);
+    }
+
+    @Test
+    public void resumesAfterAReconnect() throws InterruptedException {
+        stream.start();
+        server.publish("[{\"Unit1\":{}}]");
+        server.publish("[{\"Unit2\":{}}]");
+        assertReceived(1, 2);
+
+        server.dropStreams();
+        for (int i = 3; i <= 5; i++) {
+            server.publish("[{\"Unit" + i + "\":{}}]");
+        }
+
+        // Only the missed ones, once each.
+        assertReceived(3, 5);
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        assertTrue(stream.getConnections() >= 2);
+    }
+
+    @Test
+    public void longPollsIfTheServerDoesntStream() throws InterruptedException {
+        server.setStreamingSupported(false);
+        server.publish("[{\"Unit1\":{}}]");
+        stream.start();
+        assertReceived(1, 1);
+
+        server.publish("[{\"Unit2\":{}}]");
+        server.publish("[{\"Unit3\":{}}]");
+        assertReceivedUpTo(3);
+        assertTrue(stream.isLongPolling());
+    }
+
+    @Test
+    public void stopsIfTheServerDoesntPush() throws InterruptedException {
+        server.setStreamingSupported(false);
+        server.setLongPollingSupported(false);
+        stream.start();
+
+        assertTrue(unsupported.await(5, TimeUnit.SECONDS));
+        assertFalse(stream.isRunning());
+    }
+
+    @Test
+    public void stopsOnAnyClientError() throws InterruptedException {
+        server.setStreamingSupported(false);
+        server.setLongPollFailureStatus(405);
+        stream.start();
+
+        assertTrue(unsupported.await(5, TimeUnit.SECONDS));
+        assertFalse(stream.isRunning());
+    }
+
+    @Test
+    public void waitsAfterAnEmptyLongPoll() throws InterruptedException {
+        server.setStreamingSupported(false);
+        server.setEmptyLongPolls(true);
+        stream.start();
+        Thread.sleep(1500);
+
+        // The stream and a poll per reconnect delay of a second, rather than as many as possible.
+        assertTrue(stream.isLongPolling());
+        assertTrue(server.getRequests() + " requests", server.getRequests() <= 4);
+
+        server.setEmptyLongPolls(false);
+        server.publish("[{\"Unit1\":{}}]");
+        assertReceived(1, 1);
+    }
+
+    @Test
+    public void stopsQuietlyWhileTheServerHangs() throws Exception {
+        final List<Throwable> uncaught = Collections.synchronizedList(new ArrayList<Throwable>());
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable e) {
+                uncaught.add(e);
+            }
+        });
+        // Accepts the connections, but never answers.
+        final ServerSocket hangingServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        try {
+            final URL url = new URL("http://127.0.0.1:" + hangingServer.getLocalPort() + "/events");
+            final TelemetryStream stream = new TelemetryStream(url, url, new TelemetryStream.Listener() {
+                @Override
+                public void onUpdate(long sequence, String data) {
+                }
+
+                @Override
+                public void onUnsupported() {
+                }
+            });
+            for (int i = 0; i < 5; i++) {
+                stream.start();
+                final Socket socket = hangingServer.accept();
+                final long start = System.nanoTime();
+                stream.stop();
+                final long stopMillis = (System.nanoTime() - start) / 1000000;
+                socket.close();
+
+                assertTrue("Stopping took " + stopMillis + " ms", stopMillis <= TelemetryStream.STOP_TIMEOUT_MILLIS + 100);
+                assertFalse(stream.isRunning());
+            }
+            // Give the threads, which are still ending, the time to fail.
+            Thread.sleep(200);
+            assertEquals(Collections.<Throwable>emptyList(), uncaught);
+        } finally {
+            hangingServer.close();
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    /**
+     * Measures the latency from publishing an update to receiving it: pushed as an event against polling the latest row.
+     */
+    @Test
+    public void deliversFasterThanPolling() throws Exception {
+        final long[] pushed = measureLatencies(false);
+        final long[] polled = measureLatencies(true);
+        System.out.println(String.format("%d updates/s: pushed %7.3f ms median, %7.3f ms max; polled every %d ms %7.3f ms median, %7.3f ms max",
+                UPDATES_PER_SECOND, pushed[UPDATES / 2] / 1e6, pushed[UPDATES - 1] / 1e6,
+                POLL_INTERVAL_MILLIS, polled[UPDATES / 2] / 1e6, polled[UPDATES - 1] / 1e6));
+
+        assertTrue(pushed[UPDATES / 2] * 10 < polled[UPDATES / 2]);
+        assertTrue(pushed[UPDATES / 2] < POLL_INTERVAL_MILLIS * 1000000L);
+    }
+
+    /**
+     * @return the sorted nanoseconds from publishing to receiving per update.
+     */
+    private long[] measureLatencies(boolean polling) throws Exception {
+        final StubTelemetryServer server = new StubTelemetryServer();
+        final long[] publishedNanos = new long[UPDATES + 1];
+        final long[] receivedNanos = new long[UPDATES + 1];
+        final Object lock = new Object();
+        final int[] latest = {0};
+
+        // Receives the updates, as the app would.
+        final TelemetryStream stream = new TelemetryStream(server.getEventsUrl(), server.getUpdatesUrl(), new TelemetryStream.Listener() {
+            @Override
+            public void onUpdate(long sequence, String data) {
+                markReceived(lock, latest, receivedNanos, (int) sequence);
+            }
+
+            @Override
+            public void onUnsupported() {
+            }
+        });
+        final TelemetryClient client = new TelemetryClient(server.getUrl());
+        final Thread poller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        final String row = client.fetch();
+                        if (row != null && row.startsWith("[{\"sequence\":")) {
+                            markReceived(lock, latest, receivedNanos, Integer.parseInt(row.substring(13, row.indexOf('}'))));
+                        }
+                        Thread.sleep(POLL_INTERVAL_MILLIS);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+
+        if (polling) {
+            poller.start();
+        } else {
+            stream.start();
+        }
+        try {
+            for (int sequence = 1; sequence <= UPDATES; sequence++) {
+                Thread.sleep(1000 / UPDATES_PER_SECOND);
+                publishedNanos[sequence] = System.nanoTime();
+                server.publish("[{\"sequence\":" + sequence + "}]");
+            }
+            synchronized (lock) {
+                final long deadline = System.currentTimeMillis() + 5000;
+                while (latest[0] < UPDATES && System.currentTimeMillis() < deadline) {
+                    lock.wait(100);
+                }
+                assertEquals(UPDATES, latest[0]);
+            }
+        } finally {
+            poller.interrupt();
+            poller.join();
+            stream.stop();
+            server.stop();
+        }
+
+        final long[] latencies = new long[UPDATES];
+        for (int sequence = 1; sequence <= UPDATES; sequence++) {
+            latencies[sequence - 1] = receivedNanos[sequence] - publishedNanos[sequence];
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /**
+     * Marks all the updates up to the {@code sequence} as received, as the latest row holds them all.
+     */
+    private static void markReceived(Object lock, int[] latest, long[] receivedNanos, int sequence) {
+        final long now = System.nanoTime();
+        synchronized (lock) {
+            for (; latest[0] < sequence; latest[0]++) {
+                receivedNanos[latest[0] + 1] = now;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void assertReceived(int first, int last) throws InterruptedException {
+        for (int sequence = first; sequence <= last; sequence++) {
+            final Update update = take();
+            assertEquals(sequence, update.sequence);
+            assertEquals("[{\"Unit" + sequence + "\":{}}]", update.data);
+        }
+    }
+
+    /**
+     * Long polls may get several updates at once, but still in order and each once.
+     */
+    private void assertReceivedUpTo(int last) throws InterruptedException {
+        long sequence = 0;
+        while (sequence < last) {
+            final Update update = take();
+            assertTrue(update.sequence > sequence);
+            sequence = update.sequence;
+        }
+        assertEquals(last, sequence);
+    }
+
+    private Update take() throws InterruptedException {
+        final Update update = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No update received.", update);
+        return update;
+    }
+
+    private static class Update {
+        final long sequence;
+        final String data;
+
+        Update(long sequence, String data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+}
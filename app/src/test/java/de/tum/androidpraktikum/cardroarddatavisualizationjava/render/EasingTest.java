@@ -0,0 +1,35 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EasingTest {
+    private static final Easing[] EASINGS = {Easing.LINEAR, Easing.EASE_IN, Easing.EASE_OUT, Easing.EASE_IN_OUT};
+
+    @Test
+    public void startsAtTheBeginningAndEndsAtTheEnd() {
+        for (Easing easing : EASINGS) {
+            assertEquals(0.f, easing.apply(0.f), 1e-6f);
+            assertEquals(1.f, easing.apply(1.f), 1e-6f);
+        }
+    }
+
+    @Test
+    public void clampsTheTime() {
+        for (Easing easing : EASINGS) {
+            assertEquals(0.f, easing.apply(-3.f), 1e-6f);
+            assertEquals(1.f, easing.apply(42.f), 1e-6f);
+        }
+    }
+
+    @Test
+    public void bendsTheWay() {
+        assertEquals(.5f, Easing.LINEAR.apply(.5f), 1e-6f);
+        assertEquals(.125f, Easing.EASE_IN.apply(.5f), 1e-6f);
+        assertEquals(.875f, Easing.EASE_OUT.apply(.5f), 1e-6f);
+        assertEquals(.5f, Easing.EASE_IN_OUT.apply(.5f), 1e-6f);
+        assertTrue(Easing.EASE_IN_OUT.apply(.1f) < .1f);
+        assertTrue(Easing.EASE_IN_OUT.apply(.9f) > .9f);
+    }
+}
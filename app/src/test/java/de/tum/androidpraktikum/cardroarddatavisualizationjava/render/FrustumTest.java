@@ -0,0 +1,59 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrustumTest {
+    private final float[] view = new float[16];
+    private final float[] projection = new float[16];
+    private final float[] viewProjection = new float[16];
+    private final Frustum frustum = new Frustum();
+
+    @Before
+    public void setUp() {
+        // A camera at the origin looking down -Z with a field of view of 90 degrees.
+        Matrices.setIdentityM(view, 0);
+        Matrices.perspectiveM(projection, 0, 90.f, 1.f, 1.f, 40.f);
+        update();
+    }
+
+    private void update() {
+        Matrices.multiplyMM(viewProjection, 0, projection, 0, view, 0);
+        frustum.set(viewProjection);
+    }
+
+    @Test
+    public void keepsTheSpheresInFront() {
+        assertTrue(frustum.intersectsSphere(0.f, 0.f, -10.f, 1.f));
+        assertTrue(frustum.intersectsSphere(9.f, -9.f, -10.f, .1f));
+        // Straddling the near and the far plane.
+        assertTrue(frustum.intersectsSphere(0.f, 0.f, -.5f, 1.f));
+        assertTrue(frustum.intersectsSphere(0.f, 0.f, -40.5f, 1.f));
+    }
+
+    @Test
+    public void cullsTheSpheresOutside() {
+        // Behind.
+        assertFalse(frustum.intersectsSphere(0.f, 0.f, 10.f, 1.f));
+        // Left, right, below and above at 45 degrees plus the radius.
+        assertFalse(frustum.intersectsSphere(-12.f, 0.f, -10.f, 1.f));
+        assertFalse(frustum.intersectsSphere(12.f, 0.f, -10.f, 1.f));
+        assertFalse(frustum.intersectsSphere(0.f, -12.f, -10.f, 1.f));
+        assertFalse(frustum.intersectsSphere(0.f, 12.f, -10.f, 1.f));
+        // Too close and too far.
+        assertFalse(frustum.intersectsSphere(0.f, 0.f, -.5f, .25f));
+        assertFalse(frustum.intersectsSphere(0.f, 0.f, -50.f, 1.f));
+    }
+
+    @Test
+    public void followsTheCamera() {
+        // Turn around.
+        Matrices.rotateM(view, 0, 180.f, 0.f, 1.f, 0.f);
+        update();
+
+        assertTrue(frustum.intersectsSphere(0.f, 0.f, 10.f, 1.f));
+        assertFalse(frustum.intersectsSphere(0.f, 0.f, -10.f, 1.f));
+    }
+}
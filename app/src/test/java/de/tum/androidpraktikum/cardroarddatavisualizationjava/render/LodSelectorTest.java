@@ -0,0 +1,47 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LodSelectorTest {
+    // With a field of view of 90 degrees, the projected size is simply the radius over the distance.
+    private final LodSelector lodSelector = new LodSelector(new float[]{.2f, .1f, .05f}, .1f, 90.f);
+
+    @Test
+    public void picksCoarserLevelsFartherAway() {
+        assertEquals(0, lodSelector.select(0, 1.f, 2.f, 4));
+        assertEquals(1, lodSelector.select(0, 1.f, 7.f, 4));
+        assertEquals(2, lodSelector.select(0, 1.f, 15.f, 4));
+        assertEquals(3, lodSelector.select(0, 1.f, 40.f, 4));
+        // From the coarsest level back.
+        assertEquals(0, lodSelector.select(3, 1.f, 2.f, 4));
+        // Inside of the sphere.
+        assertEquals(0, lodSelector.select(3, 1.f, .5f, 4));
+    }
+
+    @Test
+    public void staysWithinTheLevelsOfTheModel() {
+        assertEquals(1, lodSelector.select(0, 1.f, 40.f, 2));
+        assertEquals(0, lodSelector.select(0, 1.f, 40.f, 1));
+        assertEquals(1, lodSelector.select(3, 1.f, 7.f, 2));
+    }
+
+    @Test
+    public void keepsTheLevelAroundTheThreshold() {
+        // Size .2 is right at the first threshold: both levels stick.
+        assertEquals(0, lodSelector.select(0, 1.f, 5.f, 4));
+        assertEquals(1, lodSelector.select(1, 1.f, 5.f, 4));
+        // Within 10% around it as well.
+        assertEquals(0, lodSelector.select(0, 1.f, 5.4f, 4));
+        assertEquals(1, lodSelector.select(1, 1.f, 4.6f, 4));
+        // Clearly past it.
+        assertEquals(1, lodSelector.select(0, 1.f, 5.8f, 4));
+        assertEquals(0, lodSelector.select(1, 1.f, 4.3f, 4));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsIncreasingThresholds() {
+        new LodSelector(new float[]{.1f, .2f}, .1f, 90.f);
+    }
+}
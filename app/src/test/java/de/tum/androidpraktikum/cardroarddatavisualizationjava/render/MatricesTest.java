@@ -0,0 +1,66 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MatricesTest {
+    private static final float EPSILON = 1e-5f;
+
+    private static float[] transform(float[] m, float x, float y, float z) {
+        final float[] result = new float[4];
+        Matrices.multiplyMV(result, 0, m, 0, new float[]{x, y, z, 1.f}, 0);
+        return result;
+    }
+
+    @Test
+    public void rotatesTranslatesAndScales() {
+        final float[] m = new float[16];
+        Matrices.setIdentityM(m, 0);
+        Matrices.translateM(m, 0, 1.f, 2.f, 3.f);
+        Matrices.rotateM(m, 0, 90.f, 0.f, 1.f, 0.f);
+        Matrices.scaleM(m, 0, 2.f, 2.f, 2.f);
+
+        // Scaled, then X rotated onto -Z, then translated.
+        assertArrayEquals(new float[]{1.f, 2.f, 1.f, 1.f}, transform(m, 1.f, 0.f, 0.f), EPSILON);
+        assertArrayEquals(new float[]{1.f, 4.f, 3.f, 1.f}, transform(m, 0.f, 1.f, 0.f), EPSILON);
+    }
+
+    @Test
+    public void multipliesIntoTheRightHandSide() {
+        final float[] lhs = new float[16];
+        Matrices.setIdentityM(lhs, 0);
+        Matrices.rotateM(lhs, 0, 30.f, 1.f, 1.f, 0.f);
+        final float[] rhs = new float[16];
+        Matrices.setIdentityM(rhs, 0);
+        Matrices.translateM(rhs, 0, 5.f, -1.f, 2.f);
+
+        final float[] expected = new float[16];
+        Matrices.multiplyMM(expected, 0, lhs, 0, rhs, 0);
+        Matrices.multiplyMM(rhs, 0, lhs, 0, rhs, 0);
+
+        assertArrayEquals(expected, rhs, 0.f);
+    }
+
+    @Test
+    public void looksAtTheCenter() {
+        final float[] view = new float[16];
+        Matrices.setLookAtM(view, 0, 0.f, 0.f, -.5f, 0.f, 0.f, -5.f, 0.f, 1.f, 0.f);
+
+        // The center ends up straight ahead, down -Z.
+        assertArrayEquals(new float[]{0.f, 0.f, -4.5f, 1.f}, transform(view, 0.f, 0.f, -5.f), EPSILON);
+        // Up stays up.
+        assertArrayEquals(new float[]{0.f, 1.f, 0.f, 1.f}, transform(view, 0.f, 1.f, -.5f), EPSILON);
+    }
+
+    @Test
+    public void projectsTheNearAndTheFarPlane() {
+        final float[] m = new float[16];
+        Matrices.perspectiveM(m, 0, 90.f, 2.f, 1.f, 40.f);
+
+        final float[] near = transform(m, 2.f, 1.f, -1.f);
+        assertArrayEquals(new float[]{1.f, 1.f, -1.f}, new float[]{near[0] / near[3], near[1] / near[3], near[2] / near[3]}, EPSILON);
+        final float[] far = transform(m, 0.f, 0.f, -40.f);
+        assertEquals(1.f, far[2] / far[3], EPSILON);
+    }
+}
@@ -0,0 +1,154 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.RecordingGL;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.MeshFile;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.MeshIndexer;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ShaderProgram;
+
+import static org.junit.Assert.*;
+
+public class RenderQueueTest {
+    private static final float[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+    private static final float[] COLOR = {1, 1, 1, 1};
+
+    private RecordingGL gl;
+    private ShaderProgram program;
+    private Model vessel;
+    private Model floor;
+
+    @Before
+    public void setUp() {
+        gl = new RecordingGL();
+        program = new ShaderProgram(gl, "vertex", "fragment");
+        vessel = createModel("vessel");
+        floor = createModel("floor");
+    }
+
+    /**
+     * @return an uploaded model of a single triangle.
+     */
+    private Model createModel(String name) {
+        MeshIndexer meshIndexer = new MeshIndexer();
+        meshIndexer.index(new int[]{0, -1, -1, 1, -1, -1, 2, -1, -1}, 1, new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new float[0], new float[0]);
+        MeshFile meshFile = MeshFile.allocate(0, meshIndexer.getVerticesCount(), meshIndexer.getIndicesCount(), 3, 0, 0, 1);
+        meshFile.put(meshIndexer);
+        meshFile.setBounds(new float[]{0, 1, 0}, new float[3]);
+
+        Model model = new Model(name, meshFile);
+        model.upload(gl);
+        return model;
+    }
+
+    @Test
+    public void groupsByStateAndSortsFrontToBack() {
+        RenderQueue renderQueue = new RenderQueue(40.f);
+        // Interleaved textures and meshes at various depths.
+        renderQueue.add(program, 2, floor, IDENTITY, 5.f, COLOR);  // 0
+        renderQueue.add(program, 1, vessel, IDENTITY, 30.f, COLOR); // 1
+        renderQueue.add(program, 2, floor, IDENTITY, 1.f, COLOR);  // 2
+        renderQueue.add(program, 1, vessel, IDENTITY, 10.f, COLOR); // 3
+        renderQueue.add(program, 1, floor, IDENTITY, 100.f, COLOR); // 4, beyond the max depth
+        renderQueue.add(program, 1, vessel, IDENTITY, -1.f, COLOR); // 5, behind the camera
+        renderQueue.sort();
+
+        final int[] expected = {5, 3, 1, 4, 2, 0};
+        assertEquals(expected.length, renderQueue.size());
+        for (int position = 0; position < expected.length; position++) {
+            assertEquals("position " + position, expected[position], renderQueue.getItem(position));
+        }
+
+        assertEquals(COLOR[0], renderQueue.getValues()[renderQueue.getValueOffset(3) + 4], 0.f);
+        assertSame(floor, renderQueue.getModel(4));
+        assertEquals(2, renderQueue.getTexture(0));
+    }
+
+    @Test
+    public void keepsItemsWhenGrowing() {
+        RenderQueue renderQueue = new RenderQueue(40.f);
+        final float[] modelMatrix = IDENTITY.clone();
+        final float[] color = COLOR.clone();
+        final int items = 1000;
+
+        // Farthest first.
+        for (int i = 0; i < items; i++) {
+            modelMatrix[12] = i;
+            color[0] = i;
+            renderQueue.add(program, 1, vessel, modelMatrix, 39.f - i * 0.03f, color);
+        }
+        renderQueue.sort();
+
+        assertEquals(items, renderQueue.size());
+        for (int position = 0; position < items; position++) {
+            final int item = renderQueue.getItem(position);
+            assertEquals(items - 1 - position, item);
+            assertEquals(item, renderQueue.getModelMatrices()[renderQueue.getModelMatrixOffset(item) + 12], 0.f);
+            assertEquals(item, renderQueue.getValues()[renderQueue.getValueOffset(item)], 0.f);
+        }
+    }
+
+    @Test
+    public void sortsRandomDepths() {
+        RenderQueue renderQueue = new RenderQueue(40.f);
+        Random random = new Random(42);
+        final int items = 5000;
+        final float[] depths = new float[items];
+
+        for (int frame = 0; frame < 3; frame++) {
+            renderQueue.clear();
+            for (int i = 0; i < items; i++) {
+                depths[i] = random.nextFloat() * 40.f;
+                renderQueue.add(program, random.nextInt(3), random.nextBoolean() ? vessel : floor, IDENTITY, depths[i], COLOR);
+            }
+            renderQueue.sort();
+
+            for (int position = 1; position < items; position++) {
+                final int previous = renderQueue.getItem(position - 1);
+                final int item = renderQueue.getItem(position);
+                final boolean sameState = renderQueue.getTexture(previous) == renderQueue.getTexture(item)
+                        && renderQueue.getModel(previous) == renderQueue.getModel(item);
+                if (sameState) {
+                    assertTrue(depths[previous] <= depths[item] + 1e-4f);
+                } else {
+                    // A group never comes back.
+                    assertTrue(renderQueue.getTexture(previous) <= renderQueue.getTexture(item));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cullsByTheBoundingSphereInWorldSpace() {
+        final float[] projection = new float[16];
+        Matrices.perspectiveM(projection, 0, 90.f, 1.f, 1.f, 40.f);
+        final Frustum frustum = new Frustum();
+        frustum.set(projection);
+
+        final float[] modelMatrix = new float[16];
+        final RenderQueue renderQueue = new RenderQueue(40.f);
+        // In front.
+        Matrices.setIdentityM(modelMatrix, 0);
+        Matrices.translateM(modelMatrix, 0, 0.f, 0.f, -10.f);
+        renderQueue.add(program, 1, vessel, modelMatrix, 10.f, COLOR);
+        // Behind.
+        Matrices.setIdentityM(modelMatrix, 0);
+        Matrices.translateM(modelMatrix, 0, 0.f, 0.f, 10.f);
+        renderQueue.add(program, 1, vessel, modelMatrix, -10.f, COLOR);
+        // Just outside on the left, unless it's scaled up.
+        Matrices.setIdentityM(modelMatrix, 0);
+        Matrices.translateM(modelMatrix, 0, -12.f, 0.f, -10.f);
+        renderQueue.add(program, 1, vessel, modelMatrix, 10.f, COLOR);
+        Matrices.scaleM(modelMatrix, 0, 4.f, 4.f, 4.f);
+        renderQueue.add(program, 1, vessel, modelMatrix, 10.f, COLOR);
+
+        assertTrue(renderQueue.isVisible(frustum, 0));
+        assertFalse(renderQueue.isVisible(frustum, 1));
+        assertFalse(renderQueue.isVisible(frustum, 2));
+        assertTrue(renderQueue.isVisible(frustum, 3));
+    }
+}
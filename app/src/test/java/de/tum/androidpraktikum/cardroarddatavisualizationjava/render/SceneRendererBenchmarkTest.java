@@ -0,0 +1,175 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.CountingGL;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLStateCache;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.MeshFile;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.MeshIndexer;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Scene;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.InstancedModelShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ModelShaderProgram;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the CPU time of a frame of synthetic scenes of 1k to 10k units against a GL, which only counts the calls. The
+ * cost has to grow linearly with the number of units and stay well within a frame.
+ */
+public class SceneRendererBenchmarkTest {
+    // GLES20 constants.
+    private static final int GL_FLOAT = 0x1406;
+    private static final int GL_FLOAT_VEC2 = 0x8B50;
+    private static final int GL_FLOAT_VEC3 = 0x8B51;
+    private static final int GL_FLOAT_VEC4 = 0x8B52;
+    private static final int GL_FLOAT_MAT4 = 0x8B5C;
+    private static final int GL_INT = 0x1404;
+
+    private static final int[] UNITS = {1000, 2500, 5000, 10000};
+    private static final int WARM_UP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 31;
+    /**
+     * How much more a unit may cost in the largest scene than in the smallest one. Generous, since the sort of the
+     * render queue is not linear and the timings are noisy.
+     */
+    private static final double MAX_COST_GROWTH = 3.0;
+    /**
+     * Upper bound of the CPU time of a frame of 10k units in the sandbox of a test.
+     */
+    private static final long MAX_FRAME_NANOS = 50000000L;
+
+    private GLStateCache gl;
+    private final float[] eyeView = new float[16];
+    private final float[] eyeProjection = new float[16];
+
+    @Before
+    public void setUp() {
+        CountingGL countingGL = new CountingGL();
+        countingGL.addActiveUniform("u_MVPMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_MVMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_Texture", GL_INT, 1);
+        countingGL.addActiveUniform("u_LightPos", GL_FLOAT_VEC3, 1);
+        countingGL.addActiveUniform("u_HighestY", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_LowestY", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_FromValues", GL_FLOAT_VEC4, 1);
+        countingGL.addActiveUniform("u_ToValues", GL_FLOAT_VEC4, 1);
+        countingGL.addActiveUniform("u_Time", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_AnimationDuration", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_Easing", GL_FLOAT_VEC3, 1);
+        countingGL.addActiveUniform("u_Metric", GL_FLOAT_VEC4, 1);
+        countingGL.addActiveUniform("u_MetricRange", GL_FLOAT_VEC2, 1);
+        countingGL.addActiveUniform("u_Colormap", GL_INT, 1);
+        countingGL.addActiveUniform("u_ColormapRow", GL_FLOAT, 1);
+        countingGL.addActiveAttribute("a_Position", GL_FLOAT_VEC4);
+        countingGL.addActiveAttribute("a_Normal", GL_FLOAT_VEC3);
+        countingGL.addActiveAttribute("a_TexCoordinate", GL_FLOAT_VEC4);
+        countingGL.addActiveUniform("u_ViewMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_ProjectionMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_Transforms", GL_FLOAT_VEC4, InstancedModelShaderProgram.MAX_INSTANCES);
+        countingGL.addActiveUniform("u_Values", GL_FLOAT_VEC4, 2 * InstancedModelShaderProgram.MAX_INSTANCES);
+        countingGL.addActiveAttribute("a_InstanceId", GL_FLOAT);
+        gl = new GLStateCache(countingGL);
+
+        // The units are culled against the frustum of a headset-like eye.
+        Matrices.setIdentityM(eyeView, 0);
+        Matrices.perspectiveM(eyeProjection, 0, 90.f, 1.f, 1.f, 40.f);
+    }
+
+    @Test
+    public void scalesLinearlyWithTheUnits() {
+        assertLinear(false);
+    }
+
+    @Test
+    public void scalesLinearlyWithTheInstancedUnits() {
+        assertLinear(true);
+    }
+
+    private void assertLinear(boolean instanced) {
+        final double[] nanosPerUnit = new double[UNITS.length];
+        long largestFrameNanos = 0;
+
+        for (int i = 0; i < UNITS.length; i++) {
+            final SceneRenderer scene = createSceneRenderer(UNITS[i], instanced);
+            final long frameNanos = measureFrame(scene);
+            nanosPerUnit[i] = (double) frameNanos / UNITS[i];
+            largestFrameNanos = frameNanos;
+            System.out.println(String.format("%s %5d units: %8.3f ms per frame, %6.1f ns per unit",
+                    instanced ? "instanced" : "queued", UNITS[i], frameNanos / 1e6, nanosPerUnit[i]));
+        }
+
+        final double growth = nanosPerUnit[UNITS.length - 1] / nanosPerUnit[0];
+        assertTrue("The cost per unit grew by " + growth, growth < MAX_COST_GROWTH);
+        assertTrue("A frame of " + UNITS[UNITS.length - 1] + " units took " + largestFrameNanos + " ns",
+                largestFrameNanos < MAX_FRAME_NANOS);
+    }
+
+    /**
+     * @return the median CPU time of a frame with both eyes in nanoseconds.
+     */
+    private long measureFrame(SceneRenderer scene) {
+        long time = 0;
+        for (int frame = 0; frame < WARM_UP_FRAMES; frame++) {
+            drawFrame(scene, time += 16);
+        }
+
+        final long[] frameNanos = new long[MEASURED_FRAMES];
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            final long start = System.nanoTime();
+            drawFrame(scene, time += 16);
+            frameNanos[frame] = System.nanoTime() - start;
+        }
+        Arrays.sort(frameNanos);
+        return frameNanos[MEASURED_FRAMES / 2];
+    }
+
+    private void drawFrame(SceneRenderer scene, long time) {
+        scene.newFrame(time);
+        scene.drawEye(eyeView, eyeProjection);
+        scene.drawEye(eyeView, eyeProjection);
+    }
+
+    private SceneRenderer createSceneRenderer(int units, boolean instanced) {
+        final SceneRenderer sceneRenderer = new SceneRenderer(gl, 40.f);
+        final Scene scene = Scene.createGrid(units, 4.f, "a", "b", "c");
+        sceneRenderer.setScene(scene);
+        sceneRenderer.setModelShaderProgram(new ModelShaderProgram(gl, "vertex", "fragment"));
+        if (instanced) {
+            sceneRenderer.setInstancedModelShaderProgram(new InstancedModelShaderProgram(gl, "vertex", "fragment"));
+        }
+        for (int meshType = 0; meshType < scene.getMeshTypeCount(); meshType++) {
+            sceneRenderer.setBreweryModel(meshType, createModel(scene.getMeshName(meshType)));
+        }
+
+        final TelemetrySnapshot data = new TelemetrySnapshot(units);
+        for (int i = 0; i < units; i++) {
+            final int slot = data.add(scene.getId(i));
+            data.setTemperature(slot, i % 100);
+            data.setLevel(slot, i % 100);
+        }
+        sceneRenderer.updateModelData(data, 0);
+
+        return sceneRenderer;
+    }
+
+    /**
+     * @return an uploaded model of a single triangle.
+     */
+    private Model createModel(String name) {
+        MeshIndexer meshIndexer = new MeshIndexer();
+        meshIndexer.index(new int[]{0, -1, -1, 1, -1, -1, 2, -1, -1}, 1, new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new float[0], new float[0]);
+        MeshFile meshFile = MeshFile.allocate(0, meshIndexer.getVerticesCount(), meshIndexer.getIndicesCount(), 3, 0, 0, 1);
+        meshFile.put(meshIndexer);
+        meshFile.setBounds(new float[]{0, 1, 0}, new float[3]);
+
+        Model model = new Model(name, meshFile);
+        model.prepareInstances(InstancedModelShaderProgram.MAX_INSTANCES);
+        model.upload(gl);
+        return model;
+    }
+}
@@ -0,0 +1,437 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.CountingGL;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.GLStateCache;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.MeshFile;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.MeshIndexer;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Model;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Scene;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.TelemetrySnapshot;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.models.Unit;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.InstancedModelShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ModelShaderProgram;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ModelShaderVariants;
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders.ShaderLibrary;
+
+import static org.junit.Assert.*;
+
+public class SceneRendererTest {
+    // GLES20 constants.
+    private static final int GL_FLOAT = 0x1406;
+    private static final int GL_FLOAT_VEC2 = 0x8B50;
+    private static final int GL_FLOAT_VEC3 = 0x8B51;
+    private static final int GL_FLOAT_VEC4 = 0x8B52;
+    private static final int GL_FLOAT_MAT4 = 0x8B5C;
+    private static final int GL_INT = 0x1404;
+
+    private static final int WARM_UP_FRAMES = 2000;
+    private static final int MEASURED_FRAMES = 1000;
+
+    private CountingGL countingGL;
+    private GLStateCache gl;
+    private SceneRenderer scene;
+    private final float[] eyeView = new float[16];
+    private final float[] eyeProjection = new float[16];
+
+    @Before
+    public void setUp() {
+        createScene(true);
+    }
+
+    /**
+     * @param colorAttribute whether the model program reads a_Color, unlike its variants with a fill level
+     */
+    private void createScene(boolean colorAttribute) {
+        countingGL = new CountingGL();
+        countingGL.addActiveUniform("u_MVPMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_MVMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_Texture", GL_INT, 1);
+        countingGL.addActiveUniform("u_LightPos", GL_FLOAT_VEC3, 1);
+        countingGL.addActiveUniform("u_HighestY", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_LowestY", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_FromValues", GL_FLOAT_VEC4, 1);
+        countingGL.addActiveUniform("u_ToValues", GL_FLOAT_VEC4, 1);
+        countingGL.addActiveUniform("u_Time", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_AnimationDuration", GL_FLOAT, 1);
+        countingGL.addActiveUniform("u_Easing", GL_FLOAT_VEC3, 1);
+        countingGL.addActiveUniform("u_Metric", GL_FLOAT_VEC4, 1);
+        countingGL.addActiveUniform("u_MetricRange", GL_FLOAT_VEC2, 1);
+        countingGL.addActiveUniform("u_Colormap", GL_INT, 1);
+        countingGL.addActiveUniform("u_ColormapRow", GL_FLOAT, 1);
+        countingGL.addActiveAttribute("a_Position", GL_FLOAT_VEC4);
+        if (colorAttribute) {
+            countingGL.addActiveAttribute("a_Color", GL_FLOAT_VEC4);
+        }
+        countingGL.addActiveAttribute("a_Normal", GL_FLOAT_VEC3);
+        countingGL.addActiveAttribute("a_TexCoordinate", GL_FLOAT_VEC4);
+        // Instanced program.
+        countingGL.addActiveUniform("u_ViewMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_ProjectionMatrix", GL_FLOAT_MAT4, 1);
+        countingGL.addActiveUniform("u_Transforms", GL_FLOAT_VEC4, InstancedModelShaderProgram.MAX_INSTANCES);
+        countingGL.addActiveUniform("u_Values", GL_FLOAT_VEC4, 2 * InstancedModelShaderProgram.MAX_INSTANCES);
+        countingGL.addActiveAttribute("a_InstanceId", GL_FLOAT);
+
+        gl = new GLStateCache(countingGL);
+        scene = new SceneRenderer(gl, 40.f);
+        scene.setScene(loadScene());
+        scene.setModelShaderProgram(new ModelShaderProgram(gl, "vertex", "fragment"));
+        for (int i = 0; i < 3; i++) {
+            scene.setBreweryModel(i, createModel(gl, "unit" + i, InstancedModelShaderProgram.MAX_INSTANCES));
+        }
+        scene.setFloorModel(createModel(gl, "floor", 0));
+        scene.setBreweryModelsTexture(1);
+        scene.setFloorTexture(2);
+
+        // Fresh data, so that the colors are interpolated.
+        final TelemetrySnapshot units = new TelemetrySnapshot(scene.getScene().size());
+        for (int i = 0; i < scene.getScene().size(); i++) {
+            final int slot = units.add(scene.getScene().getId(i));
+            units.setTemperature(slot, i * 20);
+            units.setLevel(slot, i * 15);
+        }
+        scene.updateModelData(units, 0);
+
+        Matrices.setIdentityM(eyeView, 0);
+        Matrices.translateM(eyeView, 0, .03f, 0.f, 0.f);
+        // An orthographic projection seeing the whole brewery, so that nothing is culled.
+        Matrices.setIdentityM(eyeProjection, 0);
+        Matrices.scaleM(eyeProjection, 0, 1.f / 50.f, 1.f / 50.f, 1.f / 50.f);
+    }
+
+    /**
+     * @return the scene shipped with the app.
+     */
+    private static Scene loadScene() {
+        try (Reader reader = new FileReader("src/main/assets/scene.json")) {
+            return Scene.parse(reader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return an uploaded model of a single triangle, replicated for {@code instances} per draw.
+     */
+    private Model createModel(GLStateCache gl, String name, int instances) {
+        MeshIndexer meshIndexer = new MeshIndexer();
+        meshIndexer.index(new int[]{0, -1, -1, 1, -1, -1, 2, -1, -1}, 1, new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new float[0], new float[0]);
+        MeshFile meshFile = MeshFile.allocate(0, meshIndexer.getVerticesCount(), meshIndexer.getIndicesCount(), 3, 0, 0, 1);
+        meshFile.put(meshIndexer);
+        meshFile.setBounds(new float[]{0, 1, 0}, new float[3]);
+
+        Model model = new Model(name, meshFile);
+        if (instances > 0) {
+            model.prepareInstances(instances);
+        }
+        model.upload(gl);
+        return model;
+    }
+
+    /**
+     * @return an uploaded model of a single triangle with two simplified levels of detail, which are the same triangle.
+     */
+    private Model createModelWithLevels(GLStateCache gl, String name) {
+        MeshIndexer meshIndexer = new MeshIndexer();
+        meshIndexer.index(new int[]{0, -1, -1, 1, -1, -1, 2, -1, -1}, 1, new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new float[0], new float[0]);
+        MeshFile meshFile = MeshFile.allocate(0, meshIndexer.getVerticesCount(), meshIndexer.getIndicesCount(), 3, 0, 0, 1, new int[]{3, 3});
+        meshFile.put(meshIndexer);
+        meshFile.putLevel(1, new int[]{0, 1, 2});
+        meshFile.putLevel(2, new int[]{0, 1, 2});
+        meshFile.setBounds(new float[]{0, 1, 0}, new float[3]);
+
+        Model model = new Model(name, meshFile);
+        model.prepareInstances(InstancedModelShaderProgram.MAX_INSTANCES);
+        model.upload(gl);
+        return model;
+    }
+
+    private void drawFrame(long time) {
+        scene.newFrame(time);
+        scene.drawEye(eyeView, eyeProjection);
+        scene.drawEye(eyeView, eyeProjection);
+    }
+
+    @Test
+    public void picksTheCheapestVariantPerItem() {
+        final ShaderLibrary shaderLibrary = new ShaderLibrary(null);
+        shaderLibrary.put("vert", "vertex");
+        shaderLibrary.put("frag", "fragment");
+        final ModelShaderVariants variants = new ModelShaderVariants(shaderLibrary, gl, null);
+        scene.setModelShaderVariants(variants);
+        drawFrame(0);
+
+        // The units with a fill level, the floor and the walls without. All of them have float vertices at full detail.
+        assertEquals(2, variants.getProgramCount());
+        variants.get(ModelShaderProgram.FILL_LEVEL);
+        variants.get(0);
+        assertEquals(2, variants.getProgramCount());
+        assertEquals(scene.getScene().size() + 5, scene.getDrawCount());
+    }
+
+    @Test
+    public void drawsTheUnitsTheFloorAndTheWalls() {
+        drawFrame(0);
+
+        assertEquals(scene.getScene().size() + 5, scene.getDrawCount());
+        assertEquals(2 * (scene.getScene().size() + 5), countingGL.drawCalls);
+    }
+
+    @Test
+    public void drawsTheUnitsInBatchesPerModel() {
+        scene.setInstancedModelShaderProgram(new InstancedModelShaderProgram(gl, "vertex", "fragment"));
+        drawFrame(0);
+
+        // One batch for each of the three models, the floor and the walls on their own.
+        assertEquals(3 + 5, scene.getDrawCount());
+        assertEquals(2 * (3 + 5), countingGL.drawCalls);
+    }
+
+    @Test
+    public void skipsTheUnitsWithoutAModel() {
+        scene.setBreweryModel(0, null);
+        drawFrame(0);
+
+        // Two of the six units use the first mesh.
+        assertEquals(4 + 5, scene.getDrawCount());
+    }
+
+    @Test
+    public void drawsTheUnitsAddedAtRuntime() {
+        scene.getScene().addUnit("Unit7", 1, 0.f, -5.f, 0.f, 0.f);
+        scene.getScene().removeUnit("Unit1");
+        scene.getScene().removeUnit("Unit2");
+        drawFrame(0);
+
+        assertEquals(5 + 5, scene.getDrawCount());
+    }
+
+    @Test
+    public void startsTheNextAnimationFromTheShownValues() {
+        scene.setAnimation(1.f, Easing.LINEAR);
+        final float[] values = scene.getScene().getValues();
+        final int offset = scene.getScene().getUnitNum("Unit2") * Scene.VALUE_SIZE;
+        final float level = values[offset + 6];
+        assertTrue(level > 0.f);
+
+        // Halfway through the animation, the unit runs empty.
+        final TelemetrySnapshot units = new TelemetrySnapshot(1);
+        units.add("Unit2");
+        scene.updateModelData(units, 500);
+
+        assertEquals(level / 2.f, values[offset + 2], 1e-6f);
+        assertEquals(0.f, values[offset + 6], 0.f);
+        // The units without new data keep on animating from where they are.
+        final int other = scene.getScene().getUnitNum("Unit3") * Scene.VALUE_SIZE;
+        assertEquals(values[other + 4] / 2.f, values[other], 1e-6f);
+        assertEquals(values[other + 6] / 2.f, values[other + 2], 1e-6f);
+    }
+
+    @Test
+    public void copiesTheSnapshotIntoTheUnits() {
+        final TelemetrySnapshot snapshot = new TelemetrySnapshot(1);
+        final int slot = snapshot.add("Unit2");
+        snapshot.setName(slot, "Aging vessel 2");
+        snapshot.setTemperature(slot, 40);
+        snapshot.setLevel(slot, 50.f);
+        snapshot.add("UnitWithoutAModel");
+        final Unit before = scene.getUnitData(scene.getScene().getUnitNum("Unit2"));
+        scene.updateModelData(snapshot, 0);
+
+        final int unitNum = scene.getScene().getUnitNum("Unit2");
+        // Copied, rather than replaced.
+        assertSame(before, scene.getUnitData(unitNum));
+        assertEquals("Aging vessel 2", before.name);
+        assertEquals(40, before.temperature);
+        assertEquals(.5f, before.level, 0.f);
+        assertEquals(.5f, scene.getScene().getValues()[unitNum * Scene.VALUE_SIZE + 6], 0.f);
+    }
+
+    @Test
+    public void changesTheDataVersionWithTheData() {
+        final int version = scene.getDataVersion();
+        drawFrame(0);
+        assertEquals(version, scene.getDataVersion());
+
+        scene.updateModelData(new TelemetrySnapshot(1), 16);
+        assertNotEquals(version, scene.getDataVersion());
+    }
+
+    @Test
+    public void skipsTheColorAttributeTheProgramDoesntRead() {
+        createScene(false);
+        drawFrame(0);
+        assertEquals(0, countingGL.invalidAttributeCalls);
+    }
+
+    @Test
+    public void findsTheUnitInView() {
+        // The camera looks down -Z from the origin, Unit1 stands straight ahead.
+        final float[] headView = new float[16];
+        Matrices.setIdentityM(headView, 0);
+        assertEquals(scene.getScene().getUnitNum("Unit1"), scene.findUnitInView(headView));
+
+        // Turned around, Unit4 stands straight ahead.
+        Matrices.rotateM(headView, 0, 180.f, 0.f, 1.f, 0.f);
+        assertEquals(scene.getScene().getUnitNum("Unit4"), scene.findUnitInView(headView));
+    }
+
+    @Test
+    public void cullsWhatIsOutsideOfTheFrustum() {
+        // Only Unit1 is in front of the camera. The floor model is a small triangle behind it.
+        Matrices.perspectiveM(eyeProjection, 0, 90.f, 1.f, 1.f, 40.f);
+        drawFrame(0);
+
+        assertEquals(1, scene.getDrawCount());
+        assertEquals(2, scene.getDrawnCount());
+        assertEquals(2 * (scene.getScene().size() + 5 - 1), scene.getCulledCount());
+        assertEquals(2, countingGL.drawCalls);
+    }
+
+    @Test
+    public void cullsTheInstancesOutsideOfTheFrustum() {
+        scene.setInstancedModelShaderProgram(new InstancedModelShaderProgram(gl, "vertex", "fragment"));
+        scene.setFloorModel(null);
+        // Turned around: only Unit4 is in front of the camera.
+        Matrices.perspectiveM(eyeProjection, 0, 90.f, 1.f, 1.f, 40.f);
+        Matrices.rotateM(eyeView, 0, 180.f, 0.f, 1.f, 0.f);
+        drawFrame(0);
+
+        // Just the batch of the first model, with a single instance.
+        assertEquals(1, scene.getDrawCount());
+        assertEquals(2, scene.getDrawnCount());
+        assertEquals(2 * (scene.getScene().size() - 1), scene.getCulledCount());
+        assertEquals(2, countingGL.drawCalls);
+    }
+
+    @Test
+    public void countsPerFrame() {
+        Matrices.perspectiveM(eyeProjection, 0, 90.f, 1.f, 1.f, 40.f);
+        drawFrame(0);
+        drawFrame(16);
+
+        assertEquals(2 * (scene.getScene().size() + 5), scene.getDrawnCount() + scene.getCulledCount());
+    }
+
+    @Test
+    public void bindsASharedAtlasOncePerFrame() {
+        drawFrame(0);
+        countingGL.textureBinds = 0;
+        drawFrame(16);
+        // The units and the floor alternate between their textures in both eyes.
+        final int separateTextureBinds = countingGL.textureBinds;
+
+        scene.setBreweryModelsTexture(3);
+        scene.setFloorTexture(3);
+        countingGL.textureBinds = 0;
+        drawFrame(32);
+
+        assertEquals(4, separateTextureBinds);
+        assertEquals(1, countingGL.textureBinds);
+    }
+
+    @Test
+    public void drawsTheUnitsFartherAwayAtCoarserLevels() {
+        // The bounding sphere of the triangle around the axis of a unit has a radius of about 1.2.
+        final Scene near = new Scene(3);
+        final int meshType = near.addMeshType("triangle");
+        near.addUnit("Near", meshType, 0.f, 0.f, -5.f, 0.f);
+        near.addUnit("Middle", meshType, 0.f, 0.f, -15.f, 0.f);
+        near.addUnit("Far", meshType, 0.f, 0.f, -35.f, 0.f);
+        scene.setScene(near);
+        scene.setBreweryModel(meshType, createModelWithLevels(gl, "triangle"));
+        scene.setLodSelector(new LodSelector(new float[]{.1f, .05f}, .1f, 90.f));
+        drawFrame(0);
+
+        assertArrayEquals(new int[]{0, 1, 2}, Arrays.copyOf(near.getLods(), 3));
+
+        // The far unit comes closer, but stays within the hysteresis.
+        near.getPositions()[2 * Scene.POSITION_SIZE + 2] = -26.f;
+        drawFrame(16);
+        assertEquals(2, near.getLods()[2]);
+        near.getPositions()[2 * Scene.POSITION_SIZE + 2] = -20.f;
+        drawFrame(32);
+        assertEquals(1, near.getLods()[2]);
+    }
+
+    @Test
+    public void batchesTheInstancesPerLevelOfDetail() {
+        final Scene levels = Scene.createGrid(100, 4.f, "triangle");
+        scene.setScene(levels);
+        scene.setBreweryModel(0, createModelWithLevels(gl, "triangle"));
+        scene.setInstancedModelShaderProgram(new InstancedModelShaderProgram(gl, "vertex", "fragment"));
+        drawFrame(0);
+
+        final int[] instances = new int[3];
+        for (int i = 0; i < levels.size(); i++) {
+            instances[levels.getLods()[i]]++;
+        }
+        int usedLevels = 0;
+        int batches = 0;
+        for (int count : instances) {
+            usedLevels += count > 0 ? 1 : 0;
+            batches += (count + InstancedModelShaderProgram.MAX_INSTANCES - 1) / InstancedModelShaderProgram.MAX_INSTANCES;
+        }
+        // The batches of every level of detail in use. The floor and the walls on their own.
+        assertTrue(usedLevels > 1);
+        assertEquals(batches + 5, scene.getDrawCount());
+    }
+
+    @Test
+    public void leavesTheEyeViewUntouched() {
+        final float[] expected = eyeView.clone();
+        drawFrame(0);
+
+        assertArrayEquals(expected, eyeView, 0.f);
+        // The camera is applied in the scene's own storage.
+        final float[] eyeViewMatrix = new float[16];
+        Matrices.multiplyMM(eyeViewMatrix, 0, eyeView, 0, scene.getViewMatrix(), 0);
+        assertTrue(Arrays.equals(eyeViewMatrix, scene.getEyeViewMatrix()));
+    }
+
+    @Test
+    public void allocatesNothingPerFrame() {
+        assertNoAllocationsPerFrame();
+    }
+
+    @Test
+    public void allocatesNothingPerInstancedFrame() {
+        scene.setInstancedModelShaderProgram(new InstancedModelShaderProgram(gl, "vertex", "fragment"));
+        assertNoAllocationsPerFrame();
+    }
+
+    private void assertNoAllocationsPerFrame() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        // Warm up: grow the render queue, reflect and cache everything.
+        long time = 0;
+        for (int frame = 0; frame < WARM_UP_FRAMES; frame++) {
+            drawFrame(time += 16);
+        }
+
+        // What the measurement itself allocates.
+        final long overheadStart = threads.getThreadAllocatedBytes(threadId);
+        final long overhead = threads.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        final long start = threads.getThreadAllocatedBytes(threadId);
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            drawFrame(time += 16);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - start - overhead;
+
+        // Even the smallest object allocated in every frame adds up to more than a byte per frame. Less than that
+        // comes from the JVM itself, e.g. from the JIT swapping in compiled code.
+        assertEquals("Allocated " + allocated + " bytes in " + MEASURED_FRAMES + " frames", 0, allocated / MEASURED_FRAMES);
+        // The frames were actually drawn.
+        assertTrue(countingGL.drawCalls >= 2 * MEASURED_FRAMES * scene.getDrawCount());
+    }
+}
@@ -0,0 +1,128 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.RecordingGL;
+
+import static org.junit.Assert.*;
+
+public class ProgramCacheTest {
+    private static final String DRIVER = "Adreno (TM) 530; OpenGL ES 3.2 V@145.0";
+
+    private File directory;
+    private RecordingGL gl;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("programs", "");
+        assertTrue(directory.delete());
+        gl = new RecordingGL();
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void compilesOnceThenLoadsTheBinary() {
+        final ProgramCache first = new ProgramCache(directory, DRIVER, true);
+        first.getProgram(gl, "vertex", "fragment", "a_Position");
+        assertEquals(1, first.getCompiledPrograms());
+        assertEquals(0, first.getLoadedPrograms());
+        assertEquals(1, countCalls("glGetProgramBinary"));
+        assertTrue(first.getFile("vertex", "fragment", "a_Position").isFile());
+
+        // E.g. after a restart.
+        gl.clear();
+        final ProgramCache second = new ProgramCache(directory, DRIVER, true);
+        final int program = second.getProgram(gl, "vertex", "fragment", "a_Position");
+        assertEquals(0, second.getCompiledPrograms());
+        assertEquals(1, second.getLoadedPrograms());
+        assertEquals(0, countCalls("glCompileShader"));
+        assertTrue(gl.calls.contains("glProgramBinary(" + program + ", " + RecordingGL.BINARY_FORMAT + ", "
+                + RecordingGL.BINARY_LENGTH + ")"));
+    }
+
+    @Test
+    public void missesOnChangedSourcesOrAttributes() {
+        new ProgramCache(directory, DRIVER, true).getProgram(gl, "vertex", "fragment", "a_Position");
+
+        final ProgramCache programCache = new ProgramCache(directory, DRIVER, true);
+        programCache.getProgram(gl, "#define MAX_INSTANCES 8\nvertex", "fragment", "a_Position");
+        programCache.getProgram(gl, "vertex", "fragment", "a_Position", "a_Normal");
+        programCache.getProgram(gl, "vertex", "fragment", "a_Position");
+        assertEquals(2, programCache.getCompiledPrograms());
+        assertEquals(1, programCache.getLoadedPrograms());
+    }
+
+    @Test
+    public void dropsTheBinariesOfAnotherDriver() {
+        new ProgramCache(directory, DRIVER, true).getProgram(gl, "vertex", "fragment");
+
+        final ProgramCache programCache = new ProgramCache(directory, DRIVER + ".1", true);
+        assertEquals(0, directory.listFiles().length);
+        programCache.getProgram(gl, "vertex", "fragment");
+        assertEquals(1, programCache.getCompiledPrograms());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void compilesWhenTheDriverRejectsTheBinary() {
+        new ProgramCache(directory, DRIVER, true).getProgram(gl, "vertex", "fragment");
+
+        gl.clear();
+        gl.rejectBinaries = true;
+        final ProgramCache programCache = new ProgramCache(directory, DRIVER, true);
+        final int program = programCache.getProgram(gl, "vertex", "fragment");
+        assertEquals(1, programCache.getRejectedBinaries());
+        assertEquals(1, programCache.getCompiledPrograms());
+        assertEquals(0, programCache.getLoadedPrograms());
+        assertEquals(2, countCalls("glCompileShader"));
+        assertEquals(1, countCalls("glDeleteProgram"));
+        assertFalse(gl.calls.contains("glDeleteProgram(" + program + ")"));
+        // The binary of the compiled program replaces the rejected one.
+        assertTrue(programCache.getFile("vertex", "fragment").isFile());
+    }
+
+    @Test
+    public void compilesWithoutProgramBinaries() {
+        final ProgramCache programCache = new ProgramCache(directory, DRIVER, false);
+        programCache.getProgram(gl, "vertex", "fragment");
+        programCache.getProgram(gl, "vertex", "fragment");
+        assertEquals(2, programCache.getCompiledPrograms());
+        assertEquals(0, countCalls("glGetProgramBinary"));
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void programsFromTheCacheAreReflected() {
+        gl.addActiveAttribute("a_Position", 0x8B52);
+        new ProgramCache(directory, DRIVER, true).getProgram(gl, "vertex", "fragment", "a_Position");
+
+        final ShaderProgram program = new ShaderProgram(gl, new ProgramCache(directory, DRIVER, true), "vertex", "fragment",
+                "a_Position");
+        assertEquals(0, program.getAttributeLocation("a_Position"));
+    }
+
+    private int countCalls(String name) {
+        int count = 0;
+        for (String call : gl.calls) {
+            if (call.startsWith(name + "(")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
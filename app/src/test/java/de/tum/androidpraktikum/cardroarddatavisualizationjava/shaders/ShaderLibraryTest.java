@@ -0,0 +1,167 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShaderLibraryTest {
+    private static final String RAW = "src/main/res/raw";
+
+    @Test
+    public void expandsEveryIncludeOnce() {
+        final ShaderLibrary shaderLibrary = new ShaderLibrary(null);
+        shaderLibrary.put("main", "#include \"a\"\n  #include \"b\"\nvoid main() {}");
+        shaderLibrary.put("a", "#include \"b\"\nfloat a;\n");
+        shaderLibrary.put("b", "#include \"a\"\nfloat b;\n");
+
+        assertEquals("float b;\nfloat a;\nvoid main() {}\n", shaderLibrary.preprocess("main"));
+    }
+
+    @Test
+    public void putsTheDefinesInFront() {
+        final ShaderLibrary shaderLibrary = new ShaderLibrary(null);
+        shaderLibrary.put("main", "void main() {}\n");
+
+        assertEquals("#define FILL_LEVEL\n#define MAX_INSTANCES 48\nvoid main() {}\n",
+                shaderLibrary.preprocess("main", "FILL_LEVEL", "MAX_INSTANCES 48"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsUnknownSources() {
+        final ShaderLibrary shaderLibrary = new ShaderLibrary(null);
+        shaderLibrary.put("main", "#include \"missing\"\n");
+        shaderLibrary.preprocess("main");
+    }
+
+    @Test
+    public void variantsDeclareOnlyWhatTheyUse() throws IOException {
+        final ShaderLibrary shaderLibrary = loadRawShaders();
+
+        for (int variant = 0; variant < ModelShaderProgram.VARIANTS; variant++) {
+            final String[] defines = ModelShaderProgram.getDefines(variant);
+            final List<String> vertexShader = activeLines(shaderLibrary.preprocess("vert", defines));
+            final List<String> fragmentShader = activeLines(shaderLibrary.preprocess("frag", defines));
+
+            final boolean fillLevel = (variant & ModelShaderProgram.FILL_LEVEL) != 0;
+            final boolean quantized = (variant & ModelShaderProgram.QUANTIZED) != 0;
+            final boolean vertexLighting = (variant & ModelShaderProgram.VERTEX_LIGHTING) != 0;
+            assertEquals(fillLevel, declares(vertexShader, "uniform vec4 u_FromValues;"));
+            assertEquals(fillLevel, declares(vertexShader, "uniform vec4 u_Metric;"));
+            assertEquals(fillLevel, declares(fragmentShader, "uniform sampler2D u_Colormap;"));
+            assertEquals(fillLevel, declares(vertexShader, "uniform float u_Time;"));
+            assertEquals(quantized, declares(vertexShader, "uniform vec3 u_PositionScale;"));
+            assertEquals(vertexLighting, declares(vertexShader, "uniform vec3 u_LightPos;"));
+            assertEquals(!vertexLighting, declares(fragmentShader, "uniform vec3 u_LightPos;"));
+            // Every varying read by the fragment shader is written by the vertex shader.
+            for (String line : fragmentShader) {
+                if (line.startsWith("varying ")) {
+                    assertTrue(variant + ": " + line, declares(vertexShader, line));
+                }
+            }
+        }
+
+        final List<String> instanced = activeLines(shaderLibrary.preprocess("instanced_vert", "MAX_INSTANCES 48", "QUANTIZED"));
+        assertTrue(declares(instanced, "uniform vec3 u_PositionScale;"));
+        assertTrue(declares(instanced, "uniform float u_HighestY;"));
+        assertTrue(declares(instanced, "uniform float u_Time;"));
+        assertTrue(declares(instanced, "uniform vec2 u_MetricRange;"));
+    }
+
+    /**
+     * @return the shaders in the raw resources, named like the resources.
+     */
+    private static ShaderLibrary loadRawShaders() throws IOException {
+        final ShaderLibrary shaderLibrary = new ShaderLibrary(null);
+        final File[] files = new File(RAW).listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            if (file.getName().endsWith(".shader")) {
+                shaderLibrary.put(file.getName().substring(0, file.getName().length() - ".shader".length()), readFile(file));
+            }
+        }
+        return shaderLibrary;
+    }
+
+    private static String readFile(File file) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return content.toString();
+    }
+
+    /**
+     * Evaluates the {@code #define}, {@code #ifdef}, {@code #ifndef}, {@code #else} and {@code #endif} directives.
+     *
+     * @return the trimmed lines of the {@code source}, which the GLSL preprocessor keeps, without the comments.
+     */
+    private static List<String> activeLines(String source) {
+        final Set<String> defined = new HashSet<>();
+        // Whether the lines of every open #if block are kept.
+        final Deque<Boolean> active = new ArrayDeque<>();
+        active.push(true);
+        final List<String> lines = new ArrayList<>();
+        for (String line : source.split("\n")) {
+            final int comment = line.indexOf("//");
+            final String[] tokens = (comment == -1 ? line : line.substring(0, comment)).trim().split("\\s+");
+            final boolean enclosing = active.peek();
+            switch (tokens[0]) {
+                case "#define":
+                    if (enclosing) {
+                        defined.add(tokens[1]);
+                    }
+                    break;
+                case "#ifdef":
+                    active.push(enclosing && defined.contains(tokens[1]));
+                    break;
+                case "#ifndef":
+                    active.push(enclosing && !defined.contains(tokens[1]));
+                    break;
+                case "#else":
+                    final boolean taken = active.pop();
+                    active.push(active.peek() && !taken);
+                    break;
+                case "#endif":
+                    active.pop();
+                    break;
+                default:
+                    if (enclosing && !tokens[0].isEmpty()) {
+                        lines.add(join(tokens));
+                    }
+            }
+        }
+        assertEquals(1, active.size());
+        return lines;
+    }
+
+    private static String join(String[] tokens) {
+        final StringBuilder line = new StringBuilder(tokens[0]);
+        for (int i = 1; i < tokens.length; i++) {
+            line.append(' ').append(tokens[i]);
+        }
+        return line.toString();
+    }
+
+    private static boolean declares(List<String> lines, String declaration) {
+        return lines.contains(declaration);
+    }
+}
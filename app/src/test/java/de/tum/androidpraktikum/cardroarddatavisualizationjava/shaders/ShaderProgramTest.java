@@ -0,0 +1,154 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.shaders;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.RecordingGL;
+
+import static org.junit.Assert.*;
+
+public class ShaderProgramTest {
+    // GLES20 constants.
+    private static final int GL_FLOAT = 0x1406;
+    private static final int GL_FLOAT_VEC3 = 0x8B51;
+    private static final int GL_FLOAT_VEC4 = 0x8B52;
+    private static final int GL_FLOAT_MAT4 = 0x8B5C;
+    private static final int GL_SAMPLER_2D = 0x8B5E;
+
+    private RecordingGL gl;
+    private ShaderProgram program;
+
+    @Before
+    public void setUp() {
+        gl = new RecordingGL();
+        gl.addActiveUniform("u_MVPMatrix", GL_FLOAT_MAT4, 1);
+        gl.addActiveUniform("u_Texture", GL_SAMPLER_2D, 1);
+        gl.addActiveUniform("u_LightPos", GL_FLOAT_VEC3, 1);
+        gl.addActiveUniform("u_FillLevel", GL_FLOAT, 1);
+        gl.addActiveUniform("u_Instances", GL_FLOAT_VEC4, 8);
+        gl.addActiveAttribute("a_Position", GL_FLOAT_VEC4);
+        gl.addActiveAttribute("a_Normal", GL_FLOAT_VEC3);
+
+        program = new ShaderProgram(gl, "vertex", "fragment", "a_Position", "a_Normal");
+    }
+
+    @Test
+    public void reflectsLocationsOnceAtLinkTime() {
+        assertEquals(5, countCalls("glGetUniformLocation"));
+        assertEquals(2, countCalls("glGetAttribLocation"));
+
+        gl.clear();
+        assertEquals(0, program.getUniform("u_MVPMatrix").getLocation());
+        assertEquals(2, program.getUniform("u_LightPos").getLocation());
+        // Arrays are stored without the index suffix.
+        assertEquals(4, program.getUniform("u_Instances").getLocation());
+        assertEquals(8, program.getUniform("u_Instances").getSize());
+        assertEquals(1, program.getAttributeLocation("a_Normal"));
+        assertEquals(-1, program.getAttributeLocation("a_Color"));
+        assertEquals(Collections.<String>emptyList(), gl.calls);
+    }
+
+    @Test
+    public void skipsUnchangedValues() {
+        gl.clear();
+        final ShaderProgram.Uniform fillLevel = program.getUniform("u_FillLevel");
+        final ShaderProgram.Uniform lightPos = program.getUniform("u_LightPos");
+        final ShaderProgram.Uniform texture = program.getUniform("u_Texture");
+
+        for (int i = 0; i < 3; i++) {
+            fillLevel.set(.5f);
+            lightPos.set(1.f, 2.f, 3.f);
+            texture.set(0);
+        }
+        lightPos.set(1.f, 2.f, 4.f);
+
+        assertEquals(Arrays.asList(
+                "glUniform1f(3, 0.5)",
+                "glUniform3f(2, 1.0, 2.0, 3.0)",
+                "glUniform1i(1, 0)",
+                "glUniform3f(2, 1.0, 2.0, 4.0)"), gl.calls);
+        assertEquals(4, program.getIssuedUploads());
+        assertEquals(6, program.getSkippedUploads());
+
+        program.resetUploadCounts();
+        assertEquals(0, program.getIssuedUploads());
+        assertEquals(0, program.getSkippedUploads());
+    }
+
+    @Test
+    public void comparesMatricesByValue() {
+        gl.clear();
+        final ShaderProgram.Uniform mvpMatrix = program.getUniform("u_MVPMatrix");
+        final float[] matrix = new float[16];
+        matrix[0] = 1.f;
+
+        mvpMatrix.setMatrix4(matrix, 0);
+        // Same values in the same array.
+        mvpMatrix.setMatrix4(matrix, 0);
+        // Same array, new values.
+        matrix[5] = 2.f;
+        mvpMatrix.setMatrix4(matrix, 0);
+        // After an invalidation.
+        mvpMatrix.invalidate();
+        mvpMatrix.setMatrix4(matrix, 0);
+
+        assertEquals(3, countCalls("glUniformMatrix4fv"));
+        assertEquals(1, program.getSkippedUploads());
+    }
+
+    @Test
+    public void comparesArraysByValue() {
+        gl.clear();
+        final ShaderProgram.Uniform instances = program.getUniform("u_Instances");
+        final float[] values = new float[8 * 4];
+        Arrays.fill(values, 1.f);
+
+        instances.setVector4Array(values, 0, 8);
+        instances.setVector4Array(values.clone(), 0, 8);
+        // Fewer elements.
+        instances.setVector4Array(values, 0, 2);
+        // A changed element.
+        values[5] = 2.f;
+        instances.setVector4Array(values, 0, 2);
+        instances.setVector4Array(values, 0, 2);
+
+        assertEquals(Arrays.asList("glUniform4fv(4, 8)", "glUniform4fv(4, 2)", "glUniform4fv(4, 2)"), gl.calls);
+        assertEquals(2, program.getSkippedUploads());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsTooManyElements() {
+        program.getUniform("u_Instances").setVector4Array(new float[9 * 4], 0, 9);
+    }
+
+    @Test
+    public void ignoresInactiveUniforms() {
+        gl.clear();
+        final ShaderProgram.Uniform unused = program.getUniform("u_Unused");
+        assertFalse(unused.isActive());
+
+        unused.set(1.f, 2.f, 3.f);
+        unused.setMatrix4(new float[16], 0);
+
+        assertEquals(Collections.<String>emptyList(), gl.calls);
+        assertEquals(0, program.getIssuedUploads());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsWrongNumberOfComponents() {
+        program.getUniform("u_LightPos").set(1.f);
+    }
+
+    private int countCalls(String function) {
+        int count = 0;
+        for (String call : gl.calls) {
+            if (call.startsWith(function + "(")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
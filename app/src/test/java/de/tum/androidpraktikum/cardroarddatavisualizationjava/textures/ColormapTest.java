@@ -0,0 +1,51 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColormapTest {
+    @Test
+    public void blendsTheStops() {
+        final Colormap colormap = Colormap.BLUE_YELLOW_RED;
+        assertEquals(0x0000FF, colormap.getColor(0.f));
+        assertEquals(0xFFFF00, colormap.getColor(.5f));
+        assertEquals(0xFF0000, colormap.getColor(1.f));
+        // Halfway from blue to yellow.
+        assertEquals(0x808080, colormap.getColor(.25f));
+    }
+
+    @Test
+    public void clampsTheValue() {
+        for (Colormap colormap : new Colormap[]{Colormap.VIRIDIS, Colormap.INFERNO, Colormap.COOL_WARM}) {
+            assertEquals(colormap.getColor(0.f), colormap.getColor(-3.f));
+            assertEquals(colormap.getColor(1.f), colormap.getColor(42.f));
+        }
+    }
+
+    @Test
+    public void bakesARowPerColormap() {
+        final ColormapTexture texture = new ColormapTexture(Colormap.BLUE_YELLOW_RED, Colormap.VIRIDIS);
+        final byte[] pixels = texture.getPixels();
+        assertEquals(2 * ColormapTexture.SIZE * 3, pixels.length);
+
+        // The first and the last texel of a row hold the ends of the colormap.
+        assertEquals(0x0000FF, getTexel(pixels, 0));
+        assertEquals(0xFF0000, getTexel(pixels, ColormapTexture.SIZE - 1));
+        assertEquals(0x440154, getTexel(pixels, ColormapTexture.SIZE));
+        assertEquals(0xFDE725, getTexel(pixels, 2 * ColormapTexture.SIZE - 1));
+
+        // The rows are sampled at their centers.
+        assertEquals(.25f, texture.getRow(Colormap.BLUE_YELLOW_RED), 0.f);
+        assertEquals(.75f, texture.getRow(Colormap.VIRIDIS), 0.f);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsAColormapNotInTheTexture() {
+        new ColormapTexture(Colormap.VIRIDIS).getRow(Colormap.INFERNO);
+    }
+
+    private static int getTexel(byte[] pixels, int texel) {
+        return (pixels[texel * 3] & 0xFF) << 16 | (pixels[texel * 3 + 1] & 0xFF) << 8 | pixels[texel * 3 + 2] & 0xFF;
+    }
+}
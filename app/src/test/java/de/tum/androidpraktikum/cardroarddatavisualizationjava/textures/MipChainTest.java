@@ -0,0 +1,117 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class MipChainTest {
+    private static final String[] TEXTURES = {
+            "src/main/res/drawable/brewery_models_texture.png",
+            "src/main/res/drawable/floor_tiles_heightmap.png",
+            "src/main/res/drawable/floor_tiles_texture.png",
+    };
+    /**
+     * The textures loaded as single channel data.
+     */
+    private static final String HEIGHTMAP = "src/main/res/drawable/floor_tiles_heightmap.png";
+
+    @Test
+    public void countsTheLevelsDownToOnePixel() {
+        assertEquals(1, MipChain.getLevels(1, 1));
+        assertEquals(3, MipChain.getLevels(4, 2));
+        assertEquals(11, MipChain.getLevels(1024, 1024));
+        assertEquals(4, MipChain.getLevels(5, 8));
+
+        assertEquals(1, MipChain.getSize(4, 5));
+        assertEquals(2, MipChain.getSize(5, 1));
+        assertTrue(MipChain.isPowerOfTwo(1024));
+        assertFalse(MipChain.isPowerOfTwo(0));
+        assertFalse(MipChain.isPowerOfTwo(768));
+    }
+
+    @Test
+    public void averagesTheCoveredPixels() {
+        final byte[] pixels = {
+                0, 10, (byte) 200, (byte) 255,
+                2, 4, (byte) 255, (byte) 255,
+        };
+
+        final byte[][] levels = MipChain.build(pixels, 4, 2, MipChain.LUMINANCE);
+
+        assertEquals(3, levels.length);
+        // (0 + 10 + 2 + 4) / 4 and (200 + 255 + 255 + 255) / 4, rounded.
+        assertArrayEquals(new byte[]{4, (byte) 241}, levels[1]);
+        assertArrayEquals(new byte[]{(byte) 123}, levels[2]);
+    }
+
+    @Test
+    public void roundsOddSizesDown() {
+        // 3x1 RGB halves to 1x1 like in OpenGL, the single row is averaged with itself.
+        final byte[] pixels = {10, 20, 30, 30, 40, 50, 100, 110, 120};
+
+        assertArrayEquals(new byte[]{20, 30, 40}, MipChain.downsample(pixels, 3, 1, MipChain.RGB));
+    }
+
+    @Test
+    public void picksTheFewestChannels() {
+        assertEquals(MipChain.LUMINANCE, MipChain.getChannels(new int[]{0xFF000000, 0xFF808080, 0xFFFFFFFF}));
+        assertEquals(MipChain.RGB, MipChain.getChannels(new int[]{0xFF808080, 0xFF102030}));
+        assertEquals(MipChain.RGBA, MipChain.getChannels(new int[]{0xFF808080, 0x80808080}));
+
+        assertArrayEquals(new byte[]{(byte) 0x80}, MipChain.toBytes(new int[]{0xFF808080}, MipChain.LUMINANCE));
+        // Almost gray data is averaged.
+        assertArrayEquals(new byte[]{(byte) 0x81}, MipChain.toBytes(new int[]{0xFF7F8084}, MipChain.LUMINANCE));
+        assertArrayEquals(new byte[]{0x10, 0x20, 0x30}, MipChain.toBytes(new int[]{0xFF102030}, MipChain.RGB));
+        assertArrayEquals(new byte[]{0x10, 0x20, 0x30, 0x40}, MipChain.toBytes(new int[]{0x40102030}, MipChain.RGBA));
+    }
+
+    /**
+     * Reports the video memory of the textures: as RGBA bitmaps without mipmaps (as they used to be uploaded) and with
+     * their full mip chain in the format the loader picks.
+     */
+    @Test
+    public void reportsTheTextureMemory() throws IOException {
+        long rgbaTotal = 0;
+        long uncompressedTotal = 0;
+        long etc1Total = 0;
+        for (String texture : TEXTURES) {
+            final BufferedImage image = ImageIO.read(new File(texture));
+            final int width = image.getWidth();
+            final int height = image.getHeight();
+            final int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+            final int channels = texture.equals(HEIGHTMAP) ? MipChain.LUMINANCE : MipChain.getChannels(argb);
+            final byte[][] levels = MipChain.build(MipChain.toBytes(argb, channels), width, height, channels);
+            final int glFormat = channels == MipChain.LUMINANCE ? 0x1909 : channels == MipChain.RGB ? 0x1907 : 0x1908;
+            final TextureFile uncompressed = TextureFile.allocate(0x1401, glFormat, glFormat, width, height, levels.length, 0);
+            for (int level = 0; level < levels.length; level++) {
+                uncompressed.putLevel(level, levels[level]);
+            }
+            final TextureFile etc1 = TextureFile.allocate(0, 0, TextureFile.GL_ETC1_RGB8_OES, width, height, levels.length, 0);
+            final int compressed = channels == MipChain.RGB ? etc1.getGpuBytes() : uncompressed.getGpuBytes();
+
+            final int rgba = width * height * 4;
+            rgbaTotal += rgba;
+            uncompressedTotal += uncompressed.getGpuBytes();
+            etc1Total += compressed;
+            System.out.println(String.format(Locale.US, "%s: %dx%d %s, %d levels, %d KB as RGBA -> %d KB mipmapped, %d KB with ETC1",
+                    new File(texture).getName(), width, height, uncompressed.getFormatName(), levels.length,
+                    rgba / 1024, uncompressed.getGpuBytes() / 1024, compressed / 1024));
+
+            // The last level is the average of the image.
+            assertEquals(1, levels[levels.length - 1].length / channels);
+        }
+        System.out.println(String.format(Locale.US, "Textures: %d KB as RGBA -> %d KB mipmapped, %d KB with ETC1",
+                rgbaTotal / 1024, uncompressedTotal / 1024, etc1Total / 1024));
+
+        // Mipmaps add a third, smaller formats must make up for it.
+        assertTrue(etc1Total < rgbaTotal);
+    }
+}
@@ -0,0 +1,109 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class TextureAtlasTest {
+    @Test
+    public void packsTheTexturesSideBySide() {
+        final TextureAtlas textureAtlas = TextureAtlas.pack(new int[]{1024, 1024}, new int[]{1024, 1024}, 4096);
+
+        assertEquals(1, textureAtlas.getAtlases());
+        assertEquals(2048, textureAtlas.getWidth(0));
+        assertEquals(1024, textureAtlas.getHeight(0));
+
+        final TextureAtlas.Region floor = textureAtlas.getRegion(0);
+        final TextureAtlas.Region units = textureAtlas.getRegion(1);
+        assertEquals(TextureAtlas.PADDING, floor.getX());
+        assertEquals(1024 + TextureAtlas.PADDING, units.getX());
+        assertEquals(TextureAtlas.PADDING, units.getY());
+        assertEquals(1024 - 2 * TextureAtlas.PADDING, units.getWidth());
+
+        // The corners of the texture map to the corners of its region.
+        assertEquals((float) TextureAtlas.PADDING / 2048, floor.mapS(0.f), 1e-6f);
+        assertEquals((float) (1024 - TextureAtlas.PADDING) / 2048, floor.mapS(1.f), 1e-6f);
+        assertEquals((float) TextureAtlas.PADDING / 1024, units.mapT(0.f), 1e-6f);
+        assertEquals((float) (1024 - TextureAtlas.PADDING) / 1024, units.mapT(1.f), 1e-6f);
+    }
+
+    @Test
+    public void opensAnotherAtlasForWhatDoesNotFit() {
+        final TextureAtlas textureAtlas = TextureAtlas.pack(new int[]{256, 512, 256}, new int[]{256, 512, 256}, 512);
+
+        assertEquals(2, textureAtlas.getAtlases());
+        // The largest comes first and fills the first atlas.
+        assertEquals(0, textureAtlas.getRegion(1).getAtlas());
+        assertEquals(1, textureAtlas.getRegion(0).getAtlas());
+        assertEquals(1, textureAtlas.getRegion(2).getAtlas());
+        assertEquals(512, textureAtlas.getWidth(1));
+        assertEquals(256, textureAtlas.getHeight(1));
+    }
+
+    @Test
+    public void alignsTheRegionsToThePadding() {
+        final TextureAtlas textureAtlas = TextureAtlas.pack(new int[]{128, 64, 16, 300, 64}, new int[]{64, 64, 16, 200, 128}, 1024);
+
+        for (int i = 0; i < 5; i++) {
+            final TextureAtlas.Region region = textureAtlas.getRegion(i);
+            assertEquals(0, region.getX() % TextureAtlas.PADDING);
+            assertEquals(0, region.getY() % TextureAtlas.PADDING);
+            assertEquals(0, region.getWidth() % TextureAtlas.PADDING);
+            assertEquals(0, region.getHeight() % TextureAtlas.PADDING);
+            // No overlaps, including the padding.
+            for (int j = 0; j < i; j++) {
+                final TextureAtlas.Region other = textureAtlas.getRegion(j);
+                assertTrue(region.getAtlas() != other.getAtlas()
+                        || region.getX() + region.getWidth() + TextureAtlas.PADDING <= other.getX() - TextureAtlas.PADDING
+                        || other.getX() + other.getWidth() + TextureAtlas.PADDING <= region.getX() - TextureAtlas.PADDING
+                        || region.getY() + region.getHeight() + TextureAtlas.PADDING <= other.getY() - TextureAtlas.PADDING
+                        || other.getY() + other.getHeight() + TextureAtlas.PADDING <= region.getY() - TextureAtlas.PADDING);
+            }
+        }
+    }
+
+    @Test
+    public void wrapsRepeatingTexturesIntoThePadding() {
+        // Two 32x32 images: the left half of each is red, the right half blue.
+        final int[] image = new int[32 * 32];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = i % 32 < 16 ? 0xFFFF0000 : 0xFF0000FF;
+        }
+        final TextureAtlas textureAtlas = TextureAtlas.pack(new int[]{32, 32}, new int[]{32, 32}, 256);
+
+        final int[] pixels = textureAtlas.compose(0, new int[][]{image, image}, new boolean[]{true, false});
+
+        final int width = textureAtlas.getWidth(0);
+        final TextureAtlas.Region repeating = textureAtlas.getRegion(0);
+        final TextureAtlas.Region clamped = textureAtlas.getRegion(1);
+        final int row = repeating.getY() + 3;
+        // The region is 32 pixels wide, the image is scaled to it.
+        assertEquals(0xFFFF0000, pixels[row * width + repeating.getX()]);
+        assertEquals(0xFF0000FF, pixels[row * width + repeating.getX() + repeating.getWidth() - 1]);
+        // Left of the image, the repeating one continues with its right edge, the clamped one with its left edge.
+        assertEquals(0xFF0000FF, pixels[row * width + repeating.getX() - 2]);
+        assertEquals(0xFFFF0000, pixels[row * width + clamped.getX() - 2]);
+        assertEquals(0xFF0000FF, pixels[row * width + clamped.getX() + clamped.getWidth() + 2]);
+        assertEquals(MipChain.RGB, MipChain.getChannels(pixels));
+    }
+
+    @Test
+    public void reportsTheAtlasOfTheScene() {
+        // The floor tiles and the units, see CardboardRenderer.
+        final TextureAtlas textureAtlas = TextureAtlas.pack(new int[]{1024, 1024}, new int[]{1024, 1024}, 2048);
+        final int[] images = new int[1024 * 1024];
+        Arrays.fill(images, 0xFF808080);
+
+        final long start = System.nanoTime();
+        final int[] pixels = textureAtlas.compose(0, new int[][]{images, images}, new boolean[]{true, false});
+        final long composeTime = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.US, "Atlas: %d atlas of %dx%d for 2 textures of 1024x1024, regions of %dx%d, composed in %.1f ms",
+                textureAtlas.getAtlases(), textureAtlas.getWidth(0), textureAtlas.getHeight(0),
+                textureAtlas.getRegion(0).getWidth(), textureAtlas.getRegion(0).getHeight(), composeTime / 1e6));
+        assertEquals(2048 * 1024, pixels.length);
+    }
+}
@@ -0,0 +1,171 @@
+package de.tum.androidpraktikum.cardroarddatavisualizationjava.textures;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import de.tum.androidpraktikum.cardroarddatavisualizationjava.gl.RecordingGL;
+
+import static org.junit.Assert.*;
+
+public class TextureFileTest {
+    // GLES20 constants.
+    private static final int GL_TEXTURE_2D = 0x0DE1;
+    private static final int GL_TEXTURE_MIN_FILTER = 0x2801;
+    private static final int GL_TEXTURE_MAG_FILTER = 0x2800;
+    private static final int GL_LINEAR = 0x2601;
+    private static final int GL_LINEAR_MIPMAP_LINEAR = 0x2703;
+    private static final int GL_UNSIGNED_BYTE = 0x1401;
+    private static final int GL_LUMINANCE = 0x1909;
+    private static final int GL_RGB = 0x1907;
+    private static final int GL_RGBA = 0x1908;
+
+    private static final long SOURCE_STAMP = 1234567890123L;
+
+    @Test
+    public void mapsTheWrittenFile() throws IOException {
+        final TextureFile textureFile = TextureFile.allocate(GL_UNSIGNED_BYTE, GL_RGB, GL_RGB, 4, 2, 3, SOURCE_STAMP);
+        final byte[][] levels = MipChain.build(pixels(4 * 2 * 3), 4, 2, MipChain.RGB);
+        for (int level = 0; level < levels.length; level++) {
+            textureFile.putLevel(level, levels[level]);
+        }
+
+        final File file = File.createTempFile("texture", TextureFile.EXTENSION);
+        try {
+            textureFile.write(file);
+
+            final TextureFile mapped = TextureFile.map(file, SOURCE_STAMP);
+            assertNotNull(mapped);
+            assertEquals(GL_UNSIGNED_BYTE, mapped.getGlType());
+            assertEquals(GL_RGB, mapped.getGlFormat());
+            assertEquals(GL_RGB, mapped.getGlInternalFormat());
+            assertEquals(3, mapped.getLevels());
+            assertEquals(4, mapped.getWidth(0));
+            assertEquals(2, mapped.getHeight(0));
+            assertEquals(1, mapped.getWidth(2));
+            assertEquals(1, mapped.getHeight(2));
+            for (int level = 0; level < 3; level++) {
+                assertArrayEquals(bytes(textureFile.getLevelData(level)), bytes(mapped.getLevelData(level)));
+            }
+
+            assertNull("A cache of another version is stale", TextureFile.map(file, SOURCE_STAMP + 1));
+
+            final TextureFile read = TextureFile.read(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+            assertNotNull(read);
+            assertEquals(SOURCE_STAMP, read.getSourceStamp());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        assertNull(TextureFile.read(new ByteArrayInputStream(new byte[100])));
+
+        final File file = File.createTempFile("texture", TextureFile.EXTENSION);
+        try {
+            Files.write(file.toPath(), new byte[]{1, 2, 3});
+            assertNull(TextureFile.map(file, SOURCE_STAMP));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void padsTheRowsToFourBytes() {
+        // 3 luminance pixels per row take 4 bytes.
+        final TextureFile textureFile = TextureFile.allocate(GL_UNSIGNED_BYTE, GL_LUMINANCE, GL_LUMINANCE, 3, 2, 1, SOURCE_STAMP);
+        textureFile.putLevel(0, new byte[]{1, 2, 3, 4, 5, 6});
+
+        assertEquals(8, textureFile.getLevelSize(0));
+        assertArrayEquals(new byte[]{1, 2, 3, 0, 4, 5, 6, 0}, bytes(textureFile.getLevelData(0)));
+    }
+
+    @Test
+    public void sizesTheEtc1Blocks() {
+        assertEquals(8, TextureFile.getImageSize(TextureFile.GL_ETC1_RGB8_OES, 1, 1));
+        assertEquals(8, TextureFile.getImageSize(TextureFile.GL_ETC1_RGB8_OES, 4, 4));
+        assertEquals(2 * 2 * 8, TextureFile.getImageSize(TextureFile.GL_ETC1_RGB8_OES, 5, 8));
+        assertEquals(256 * 256 * 8, TextureFile.getImageSize(TextureFile.GL_ETC1_RGB8_OES, 1024, 1024));
+
+        final TextureFile textureFile = TextureFile.allocate(0, 0, TextureFile.GL_ETC1_RGB8_OES, 1024, 1024, 11, SOURCE_STAMP);
+        assertTrue(textureFile.isCompressed());
+        // Half a byte per pixel and a third more for the mip chain.
+        assertEquals(699064, textureFile.getGpuBytes());
+    }
+
+    @Test
+    public void uploadsEveryCompressedLevel() {
+        final TextureFile textureFile = TextureFile.allocate(0, 0, TextureFile.GL_ETC1_RGB8_OES, 8, 4, 4, SOURCE_STAMP);
+        final RecordingGL gl = new RecordingGL();
+
+        assertEquals(1, textureFile.upload(gl));
+
+        final int etc1 = TextureFile.GL_ETC1_RGB8_OES;
+        assertEquals(Arrays.asList(
+                "glGenTextures(1)",
+                "glBindTexture(" + GL_TEXTURE_2D + ", 1)",
+                "glTexParameteri(" + GL_TEXTURE_2D + ", " + GL_TEXTURE_MIN_FILTER + ", " + GL_LINEAR_MIPMAP_LINEAR + ")",
+                "glTexParameteri(" + GL_TEXTURE_2D + ", " + GL_TEXTURE_MAG_FILTER + ", " + GL_LINEAR + ")",
+                "glCompressedTexImage2D(" + GL_TEXTURE_2D + ", 0, " + etc1 + ", 8, 4, 16)",
+                "glCompressedTexImage2D(" + GL_TEXTURE_2D + ", 1, " + etc1 + ", 4, 2, 8)",
+                "glCompressedTexImage2D(" + GL_TEXTURE_2D + ", 2, " + etc1 + ", 2, 1, 8)",
+                "glCompressedTexImage2D(" + GL_TEXTURE_2D + ", 3, " + etc1 + ", 1, 1, 8)",
+                "glBindTexture(" + GL_TEXTURE_2D + ", 0)"), gl.calls);
+    }
+
+    @Test
+    public void generatesTheMipmapsOfASingleLevel() {
+        final TextureFile textureFile = TextureFile.allocate(GL_UNSIGNED_BYTE, GL_RGBA, GL_RGBA, 4, 4, 1, SOURCE_STAMP);
+        final RecordingGL gl = new RecordingGL();
+
+        assertTrue(textureFile.needsGeneratedMipmaps());
+        textureFile.upload(gl);
+
+        assertEquals(Arrays.asList(
+                "glGenTextures(1)",
+                "glBindTexture(" + GL_TEXTURE_2D + ", 1)",
+                "glTexParameteri(" + GL_TEXTURE_2D + ", " + GL_TEXTURE_MIN_FILTER + ", " + GL_LINEAR_MIPMAP_LINEAR + ")",
+                "glTexParameteri(" + GL_TEXTURE_2D + ", " + GL_TEXTURE_MAG_FILTER + ", " + GL_LINEAR + ")",
+                "glTexImage2D(" + GL_TEXTURE_2D + ", 0, " + GL_RGBA + ", 4, 4, " + GL_RGBA + ", " + GL_UNSIGNED_BYTE + ", 64)",
+                "glGenerateMipmap(" + GL_TEXTURE_2D + ")",
+                "glBindTexture(" + GL_TEXTURE_2D + ", 0)"), gl.calls);
+        // 4x4, 2x2 and 1x1.
+        assertEquals((16 + 4 + 1) * 4, textureFile.getGpuBytes());
+    }
+
+    @Test
+    public void doesNotMipmapOtherSizes() {
+        final TextureFile textureFile = TextureFile.allocate(GL_UNSIGNED_BYTE, GL_RGB, GL_RGB, 6, 3, 1, SOURCE_STAMP);
+        final RecordingGL gl = new RecordingGL();
+
+        assertFalse(textureFile.needsGeneratedMipmaps());
+        textureFile.upload(gl);
+
+        assertTrue(gl.calls.contains(
+                "glTexParameteri(" + GL_TEXTURE_2D + ", " + GL_TEXTURE_MIN_FILTER + ", " + GL_LINEAR + ")"));
+        assertFalse(gl.calls.contains("glGenerateMipmap(" + GL_TEXTURE_2D + ")"));
+        // Rows of 18 bytes, padded to 20.
+        assertEquals(60, textureFile.getGpuBytes());
+    }
+
+    private static byte[] pixels(int length) {
+        final byte[] pixels = new byte[length];
+        for (int i = 0; i < length; i++) {
+            pixels[i] = (byte) (i * 7);
+        }
+        return pixels;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        final ByteBuffer content = buffer.duplicate();
+        final byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+}